@@ -0,0 +1,64 @@
+package org.motechproject.admin.web.controller;
+
+import org.motechproject.event.metrics.EventMetrics;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Responsible for the event metrics view in the Admin UI.
+ * Uses {@link org.motechproject.event.metrics.EventMetricsService} for retrieving the metrics of the event relay.
+ */
+@Controller
+public class EventMetricsController {
+
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
+    /**
+     * Returns the metrics of the handled events, grouped by subject.
+     * @return a list of {@link org.motechproject.event.metrics.EventMetrics}, one for each subject
+     */
+    @RequestMapping(value = "/events/metrics/subjects", method = RequestMethod.GET)
+    @ResponseBody
+    public List<EventMetrics> subjectMetrics() {
+        return eventMetricsService.getSubjectMetrics();
+    }
+
+    /**
+     * Returns the metrics of the handled events, grouped by listener.
+     * @return a list of {@link org.motechproject.event.metrics.EventMetrics}, one for each listener
+     */
+    @RequestMapping(value = "/events/metrics/listeners", method = RequestMethod.GET)
+    @ResponseBody
+    public List<EventMetrics> listenerMetrics() {
+        return eventMetricsService.getListenerMetrics();
+    }
+
+    /**
+     * Returns the number of broadcast events waiting for each listener.
+     * @return a map of listener identifiers to the number of waiting events
+     */
+    @RequestMapping(value = "/events/metrics/backlog", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Integer> topicBacklog() {
+        return eventMetricsService.getTopicBacklog();
+    }
+
+    /**
+     * Clears the collected event metrics.
+     */
+    @RequestMapping(value = "/events/metrics", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        eventMetricsService.reset();
+    }
+}
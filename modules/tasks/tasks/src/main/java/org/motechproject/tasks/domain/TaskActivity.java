@@ -46,6 +46,9 @@ public class TaskActivity implements Comparable<TaskActivity> {
     @Field(displayName = "Parameters")
     private Map<String, Object> parameters;
 
+    @Field(displayName = "Step times")
+    private Map<String, Long> stepTimes;
+
     /**
      * Constructor.
      */
@@ -188,6 +191,20 @@ public class TaskActivity implements Comparable<TaskActivity> {
         this.parameters = parameters;
     }
 
+    /**
+     * Returns the times of the steps (data source lookups, filter sets and actions) executed by the task, in
+     * milliseconds.
+     *
+     * @return the times of the steps, mapped by the step names
+     */
+    public Map<String, Long> getStepTimes() {
+        return stepTimes;
+    }
+
+    public void setStepTimes(Map<String, Long> stepTimes) {
+        this.stepTimes = stepTimes;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
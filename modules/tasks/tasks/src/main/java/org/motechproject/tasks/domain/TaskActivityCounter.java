@@ -0,0 +1,138 @@
+package org.motechproject.tasks.domain;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.annotations.Access;
+import org.motechproject.mds.annotations.CrudEvents;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.util.SecurityMode;
+import org.motechproject.tasks.constants.TasksRoles;
+
+import java.util.Objects;
+
+/**
+ * Represents the number of activities of a single type, which were recorded for a task in a single hour or day.
+ * The counters are updated when the activities are written and they are kept when the activities are purged, so
+ * that the numbers of task executions can be shown without counting the activities.
+ */
+@Entity(nonEditable = true, tableName = TaskActivityCounter.TABLE_NAME)
+@CrudEvents(CrudEventType.NONE)
+@Access(value = SecurityMode.PERMISSIONS, members = {TasksRoles.MANAGE_TASKS})
+public class TaskActivityCounter {
+
+    /**
+     * The name of the table of the counters, the totals are incremented with SQL updates.
+     */
+    public static final String TABLE_NAME = "MOTECH_TASKS_TASKACTIVITYCOUNTER";
+
+    @Field(displayName = "Task", required = true)
+    private Long task;
+
+    @Field(displayName = "Activity Type", required = true)
+    private TaskActivityType activityType;
+
+    @Field(displayName = "Period", required = true)
+    private TaskActivityCounterPeriod period;
+
+    @Field(displayName = "Period Start", required = true)
+    private DateTime periodStart;
+
+    @Field(displayName = "Total", required = true)
+    private Long total;
+
+    /**
+     * Constructor.
+     */
+    public TaskActivityCounter() {
+        this(null, null, null, null, 0L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param task  the task ID
+     * @param activityType  the type of the counted activities
+     * @param period  the period of the counter
+     * @param periodStart  the start of the period
+     * @param total  the number of activities
+     */
+    public TaskActivityCounter(Long task, TaskActivityType activityType, TaskActivityCounterPeriod period,
+                               DateTime periodStart, Long total) {
+        this.task = task;
+        this.activityType = activityType;
+        this.period = period;
+        this.periodStart = periodStart;
+        this.total = total;
+    }
+
+    public Long getTask() {
+        return task;
+    }
+
+    public void setTask(Long task) {
+        this.task = task;
+    }
+
+    public TaskActivityType getActivityType() {
+        return activityType;
+    }
+
+    public void setActivityType(TaskActivityType activityType) {
+        this.activityType = activityType;
+    }
+
+    public TaskActivityCounterPeriod getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(TaskActivityCounterPeriod period) {
+        this.period = period;
+    }
+
+    public DateTime getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(DateTime periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final TaskActivityCounter other = (TaskActivityCounter) obj;
+
+        return Objects.equals(this.task, other.task) &&
+                Objects.equals(this.activityType, other.activityType) &&
+                Objects.equals(this.period, other.period) &&
+                Objects.equals(this.periodStart, other.periodStart) &&
+                Objects.equals(this.total, other.total);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(task, activityType, period, periodStart, total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaskActivityCounter{task=%d, activityType=%s, period=%s, periodStart=%s, total=%d}",
+                task, activityType, period, periodStart, total);
+    }
+}
@@ -0,0 +1,23 @@
+package org.motechproject.tasks.domain;
+
+import org.joda.time.DateTime;
+
+/**
+ * Enumerates the periods for which the task activities are counted, see {@link TaskActivityCounter}.
+ */
+public enum TaskActivityCounterPeriod {
+
+    HOUR,
+    DAY;
+
+    /**
+     * Returns the start of the period containing the given time.
+     *
+     * @param dateTime  the time, not null
+     * @return  the start of the period
+     */
+    public DateTime getStart(DateTime dateTime) {
+        DateTime hour = dateTime.withMillisOfSecond(0).withSecondOfMinute(0).withMinuteOfHour(0);
+        return this == HOUR ? hour : hour.withTimeAtStartOfDay();
+    }
+}
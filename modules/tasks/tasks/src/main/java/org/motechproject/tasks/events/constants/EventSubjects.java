@@ -21,6 +21,16 @@ public final class EventSubjects {
     public static final String DATA_PROVIDER_SUBJECT = BASE_SUBJECT + "dataProvider.";
     public static final String DATA_PROVIDER_UPDATE_SUBJECT = DATA_PROVIDER_SUBJECT + "update";
 
+    /**
+     * Matches the subjects of the events sent by MDS after a task was created, updated or deleted.
+     */
+    public static final String TASK_CRUD_SUBJECTS = "mds.crud.tasks.Task.*";
+
+    /**
+     * The subject of the event broadcast to all instances when their cached active tasks have to be reloaded.
+     */
+    public static final String ACTIVE_TASKS_INVALIDATE_SUBJECT = BASE_SUBJECT + "activeTasks.invalidate";
+
     /**
      * Creates a subject used by the task trigger handler to send an event notifying about successful task execution.
      *
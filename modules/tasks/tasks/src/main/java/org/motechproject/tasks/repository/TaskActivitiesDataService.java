@@ -1,9 +1,11 @@
 package org.motechproject.tasks.repository;
 
+import org.joda.time.DateTime;
 import org.motechproject.mds.annotations.Lookup;
 import org.motechproject.mds.annotations.LookupField;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 
@@ -17,6 +19,7 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
 
     String TASK = "task";
     String ACTIVITY_TYPE = "activityType";
+    String DATE = "date";
 
     /**
      * Returns the list of activities for the given task id.
@@ -51,4 +54,44 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
     long countByTaskAndActivityTypes(@LookupField(name = TASK) final Long task,
                                      @LookupField(name = ACTIVITY_TYPE) final Set<TaskActivityType> activityTypes);
 
+    /**
+     * Returns the list of activities of the given type, which were recorded before the given date.
+     *
+     * @param activityType the type of activities
+     * @param date the date before which the activities were recorded
+     * @param queryParams the query parameters to use
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Activity Type and Date Before")
+    List<TaskActivity> byActivityTypeAndDateBefore(@LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType,
+                                                   @LookupField(name = DATE, customOperator = Constants.Operators.LT) final DateTime date,
+                                                   QueryParams queryParams);
+
+    /**
+     * Returns the list of activities of the given type for the given task id, which were recorded before the given
+     * date.
+     *
+     * @param task the id of the task
+     * @param activityType the type of activities
+     * @param date the date before which the activities were recorded
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Task, Activity Type and Date Before")
+    List<TaskActivity> byTaskActivityTypeAndDateBefore(@LookupField(name = TASK) final Long task,
+                                                       @LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType,
+                                                       @LookupField(name = DATE, customOperator = Constants.Operators.LT) final DateTime date);
+
+    /**
+     * Returns the count of activities of the given type for the given task id, which were recorded before the given
+     * date.
+     *
+     * @param task the id of the task
+     * @param activityType the type of activities
+     * @param date the date before which the activities were recorded
+     * @return the count of matching task activities
+     */
+    long countByTaskActivityTypeAndDateBefore(@LookupField(name = TASK) final Long task,
+                                              @LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType,
+                                              @LookupField(name = DATE, customOperator = Constants.Operators.LT) final DateTime date);
+
 }
@@ -0,0 +1,88 @@
+package org.motechproject.tasks.repository;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
+import org.motechproject.tasks.domain.TaskActivityType;
+
+import java.util.List;
+
+/**
+ * Data service for the counters of task activities.
+ */
+public interface TaskActivityCountersDataService extends MotechDataService<TaskActivityCounter> {
+
+    String TASK = "task";
+    String ACTIVITY_TYPE = "activityType";
+    String PERIOD = "period";
+    String PERIOD_START = "periodStart";
+    String TOTAL = "total";
+
+    /**
+     * Returns the list of counters for the given task id.
+     *
+     * @param task  the id of the task
+     * @return the list of matching counters
+     */
+    @Lookup(name = "By Task")
+    List<TaskActivityCounter> byTask(@LookupField(name = TASK) final Long task);
+
+    /**
+     * Returns the list of counters of the given period for the given task id.
+     *
+     * @param task  the id of the task
+     * @param period  the period of the counters
+     * @param queryParams  the query parameters to use
+     * @return the list of matching counters
+     */
+    @Lookup(name = "By Task and Period")
+    List<TaskActivityCounter> byTaskAndPeriod(@LookupField(name = TASK) final Long task,
+                                              @LookupField(name = PERIOD) final TaskActivityCounterPeriod period,
+                                              QueryParams queryParams);
+
+    /**
+     * Returns the list of counters of the given period and activity type for the given task id.
+     *
+     * @param task  the id of the task
+     * @param activityType  the type of the counted activities
+     * @param period  the period of the counters
+     * @return the list of matching counters
+     */
+    @Lookup(name = "By Task, Activity Type and Period")
+    List<TaskActivityCounter> byTaskActivityTypeAndPeriod(@LookupField(name = TASK) final Long task,
+                                                          @LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType,
+                                                          @LookupField(name = PERIOD) final TaskActivityCounterPeriod period);
+
+    /**
+     * Returns the counter of the given period, starting at the given time, for the given task and activity type.
+     *
+     * @param task  the id of the task
+     * @param activityType  the type of the counted activities
+     * @param period  the period of the counter
+     * @param periodStart  the start of the period
+     * @return the matching counter, null if there is none
+     */
+    @Lookup(name = "By Task, Activity Type, Period and Period Start")
+    TaskActivityCounter byTaskActivityTypePeriodAndPeriodStart(@LookupField(name = TASK) final Long task,
+                                                               @LookupField(name = ACTIVITY_TYPE) final TaskActivityType activityType,
+                                                               @LookupField(name = PERIOD) final TaskActivityCounterPeriod period,
+                                                               @LookupField(name = PERIOD_START) final DateTime periodStart);
+
+    /**
+     * Returns the list of counters of the given period which started before the given time.
+     *
+     * @param period  the period of the counters
+     * @param periodStart  the time before which the periods started
+     * @param queryParams  the query parameters to use
+     * @return the list of matching counters
+     */
+    @Lookup(name = "By Period and Period Start Before")
+    List<TaskActivityCounter> byPeriodAndPeriodStartBefore(@LookupField(name = PERIOD) final TaskActivityCounterPeriod period,
+                                                           @LookupField(name = PERIOD_START, customOperator = Constants.Operators.LT) final DateTime periodStart,
+                                                           QueryParams queryParams);
+}
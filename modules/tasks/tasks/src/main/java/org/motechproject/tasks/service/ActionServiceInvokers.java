@@ -0,0 +1,251 @@
+package org.motechproject.tasks.service;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the OSGi services used by the task actions and the method handles of their methods, so that the service
+ * reference and the method are not looked up on every action execution. The cached service of an interface is
+ * released when a service with that interface is registered, modified or unregistered, which also happens when
+ * the bundle providing the service is stopped or updated. An invoker created while a service was changing is not
+ * kept, so a released service is never cached.
+ *
+ * @see TaskActionExecutor
+ */
+class ActionServiceInvokers implements ServiceListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionServiceInvokers.class);
+
+    // the handles take the service and the array of arguments and return the result as an object
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final ConcurrentMap<String, ServiceInvoker> invokers = new ConcurrentHashMap<>();
+
+    // incremented before the invokers are released, the invokers created in the meantime may hold a stale service
+    private final AtomicLong changes = new AtomicLong();
+
+    private BundleContext bundleContext;
+
+    /**
+     * Sets the bundle context used for retrieving the services. The services retrieved from the previous context
+     * are released.
+     *
+     * @param bundleContext the bundle context, null if the services are not available
+     */
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        if (this.bundleContext != null) {
+            this.bundleContext.removeServiceListener(this);
+        }
+        clear();
+
+        this.bundleContext = bundleContext;
+
+        if (bundleContext != null) {
+            bundleContext.addServiceListener(this);
+        }
+    }
+
+    /**
+     * Returns the invoker of the service with the given interface.
+     *
+     * @param serviceInterface the name of the service interface
+     * @return the invoker, null if the service is not available
+     */
+    ServiceInvoker get(String serviceInterface) {
+        ServiceInvoker invoker = invokers.get(serviceInterface);
+
+        while (invoker == null) {
+            long version = changes.get();
+            ServiceInvoker created = createInvoker(serviceInterface);
+
+            if (created == null) {
+                break;
+            }
+
+            ServiceInvoker previous = invokers.putIfAbsent(serviceInterface, created);
+            if (previous != null) {
+                created.release();
+                invoker = previous;
+            } else if (changes.get() == version) {
+                invoker = created;
+            } else if (invokers.remove(serviceInterface, created)) {
+                // the service has changed before the invoker was cached, so it is retrieved again
+                created.release();
+            }
+        }
+
+        return invoker;
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        Object objectClass = event.getServiceReference().getProperty(Constants.OBJECTCLASS);
+
+        if (objectClass instanceof String[]) {
+            changes.incrementAndGet();
+
+            for (String serviceInterface : (String[]) objectClass) {
+                ServiceInvoker invoker = invokers.remove(serviceInterface);
+
+                if (invoker != null) {
+                    LOGGER.debug("The service {} has changed, its cached methods are released", serviceInterface);
+                    invoker.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases all cached services.
+     */
+    void clear() {
+        changes.incrementAndGet();
+
+        for (String serviceInterface : new ArrayList<>(invokers.keySet())) {
+            ServiceInvoker invoker = invokers.remove(serviceInterface);
+            if (invoker != null) {
+                invoker.release();
+            }
+        }
+    }
+
+    private synchronized ServiceInvoker createInvoker(String serviceInterface) {
+        if (bundleContext == null) {
+            return null;
+        }
+
+        ServiceReference reference = bundleContext.getServiceReference(serviceInterface);
+        Object service = reference == null ? null : bundleContext.getService(reference);
+
+        return service == null ? null : new ServiceInvoker(bundleContext, reference, service);
+    }
+
+    /**
+     * Invokes the methods of a single service. The handles of the methods are resolved once for every method name
+     * and list of parameter types, and they are looked up by the method name and compared by the parameter types,
+     * so that no key is created for an invocation.
+     */
+    static final class ServiceInvoker {
+        private final BundleContext bundleContext;
+        private final ServiceReference reference;
+        private final Object service;
+        private final ConcurrentMap<String, ResolvedMethod[]> methods = new ConcurrentHashMap<>();
+
+        private ServiceInvoker(BundleContext bundleContext, ServiceReference reference, Object service) {
+            this.bundleContext = bundleContext;
+            this.reference = reference;
+            this.service = service;
+        }
+
+        /**
+         * Invokes the method with the given name and parameter types.
+         *
+         * @param methodName the name of the method
+         * @param classes the types of the parameters
+         * @param arguments the arguments
+         * @return the result of the method, null for void methods
+         * @throws NoSuchMethodException if the service has no matching method
+         * @throws IllegalAccessException if the method is not accessible
+         * @throws InvocationTargetException if the method has thrown an exception
+         * @throws Error if the method has thrown an error, it is not wrapped
+         */
+        @SuppressWarnings("PMD.AvoidCatchingThrowable")
+        Object invoke(String methodName, Class[] classes, Object[] arguments)
+                throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+            MethodHandle handle = getMethod(methodName, classes);
+
+            try {
+                return (Object) handle.invokeExact(service, arguments);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // wrapped like the exceptions of the methods called through reflection
+                throw new InvocationTargetException(e);
+            }
+        }
+
+        private MethodHandle getMethod(String methodName, Class[] classes)
+                throws NoSuchMethodException, IllegalAccessException {
+            MethodHandle handle = findMethod(methods.get(methodName), classes);
+
+            if (handle == null) {
+                Method method = service.getClass().getMethod(methodName, classes);
+                handle = unreflect(method).asSpreader(Object[].class, classes.length).asType(INVOKER_TYPE);
+
+                synchronized (methods) {
+                    ResolvedMethod[] resolved = methods.get(methodName);
+
+                    if (findMethod(resolved, classes) == null) {
+                        // the arrays are not changed once they are cached, so they are read without locking
+                        ResolvedMethod[] updated = resolved == null
+                                ? new ResolvedMethod[1]
+                                : Arrays.copyOf(resolved, resolved.length + 1);
+                        updated[updated.length - 1] = new ResolvedMethod(classes.clone(), handle);
+                        methods.put(methodName, updated);
+                    }
+                }
+            }
+
+            return handle;
+        }
+
+        private static MethodHandle findMethod(ResolvedMethod[] resolved, Class[] classes) {
+            if (resolved != null) {
+                for (ResolvedMethod method : resolved) {
+                    if (Arrays.equals(method.parameterTypes, classes)) {
+                        return method.handle;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private MethodHandle unreflect(Method method) throws IllegalAccessException {
+            try {
+                return MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e) {
+                // a public method of a class that is not public, it can be still called like through reflection
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            }
+        }
+
+        private void release() {
+            try {
+                bundleContext.ungetService(reference);
+            } catch (IllegalStateException e) {
+                LOGGER.debug("The bundle context is no longer valid", e);
+            }
+        }
+    }
+
+    /**
+     * The handle of a method with the given parameter types.
+     */
+    private static final class ResolvedMethod {
+        private final Class[] parameterTypes;
+        private final MethodHandle handle;
+
+        private ResolvedMethod(Class[] parameterTypes, MethodHandle handle) {
+            this.parameterTypes = parameterTypes;
+            this.handle = handle;
+        }
+    }
+}
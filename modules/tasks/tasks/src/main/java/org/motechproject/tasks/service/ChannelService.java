@@ -3,6 +3,7 @@ package org.motechproject.tasks.service;
 import org.motechproject.server.api.BundleIcon;
 import org.motechproject.tasks.contract.ChannelRequest;
 import org.motechproject.tasks.domain.Channel;
+import org.motechproject.tasks.domain.TriggerEvent;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -66,6 +67,16 @@ public interface ChannelService {
      */
     Channel getChannel(String moduleName);
 
+    /**
+     * Returns the trigger with the given subject from the registered channels. The subjects are compared ignoring
+     * the case. The triggers are indexed in memory, the index is rebuilt after a channel is added, updated or
+     * deleted, or a module is installed, updated or uninstalled.
+     *
+     * @param subject  the subject of the trigger, null returns null
+     * @return  the trigger with the given subject, null if there is no such trigger
+     */
+    TriggerEvent getTrigger(String subject);
+
     /**
      * Returns the icon for the channel from module with the given name.
      *
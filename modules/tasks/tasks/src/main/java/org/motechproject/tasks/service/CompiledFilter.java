@@ -0,0 +1,410 @@
+package org.motechproject.tasks.service;
+
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.Months;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.tasks.domain.Filter;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.OperatorType;
+import org.motechproject.tasks.domain.ParameterType;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A filter of a task with its key parsed, the manipulations of the key compiled and its operator turned into
+ * a condition on the value of the key. The expression of the filter is converted to the type of the filter once,
+ * so checking the filter for a task execution only retrieves and converts the value of the key.
+ * <p>
+ * Compiled filters are cached by the definition of the filter, so a task whose filters were changed gets them
+ * compiled again on its first execution. If the expression of a filter is invalid, the error is reported
+ * each time the filter is checked, the same way as if it was parsed at that time.
+ */
+final class CompiledFilter {
+
+    private static final CompiledFormCache<List<Object>, CompiledFilter> CACHE = new CompiledFormCache<>();
+
+    private static final Condition NEVER = new Condition() {
+        @Override
+        boolean matches(Object value) {
+            return false;
+        }
+    };
+
+    private final KeyInformation key;
+    private final List<CompiledManipulation> manipulations;
+    private final boolean negationOperator;
+    private final Condition condition;
+
+    private CompiledFilter(KeyInformation key, boolean negationOperator, Condition condition) {
+        this.key = key;
+        this.negationOperator = negationOperator;
+        this.condition = condition;
+        this.manipulations = new ArrayList<>(key.getManipulations().size());
+
+        for (String manipulation : key.getManipulations()) {
+            manipulations.add(CompiledManipulation.forKey(manipulation));
+        }
+    }
+
+    /**
+     * Returns the compiled form of the given filter, compiling it if it was not compiled before.
+     *
+     * @param filter  the filter, not null
+     * @return  the compiled filter
+     * @throws IllegalArgumentException if the key of the filter is invalid
+     */
+    static CompiledFilter of(Filter filter) {
+        // the filters are mutable, so they are not used as the keys themselves
+        List<Object> cacheKey = Arrays.<Object>asList(filter.getKey(), filter.getType(), filter.isNegationOperator(),
+                filter.getOperator(), filter.getExpression());
+        CompiledFilter compiled = CACHE.get(cacheKey);
+
+        if (compiled == null) {
+            compiled = compile(filter);
+            CACHE.put(cacheKey, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compiles the given filter, without caching it.
+     *
+     * @param filter  the filter, not null
+     * @return  the compiled filter
+     * @throws IllegalArgumentException if the key of the filter is invalid
+     */
+    static CompiledFilter compile(Filter filter) {
+        final ParameterType type = filter.getType();
+        final String operator = filter.getOperator();
+        final String expression = filter.getExpression();
+        Condition condition;
+
+        try {
+            condition = createCondition(type, operator, expression);
+        } catch (RuntimeException e) {
+            // report the error when the filter is checked
+            condition = new Condition() {
+                @Override
+                boolean matches(Object value) {
+                    return createCondition(type, operator, expression).matches(value);
+                }
+            };
+        }
+
+        return new CompiledFilter(KeyInformation.parse(filter.getKey()), filter.isNegationOperator(), condition);
+    }
+
+    /**
+     * Retrieves the value of the key of the filter and applies its manipulations.
+     *
+     * @param evaluator  the evaluator of the keys, not null
+     * @return  the manipulated value
+     * @throws TaskHandlerException if there were problems while retrieving the value
+     */
+    Object getValue(KeyEvaluator evaluator) throws TaskHandlerException {
+        Object value = evaluator.getValue(key);
+
+        if (!manipulations.isEmpty()) {
+            value = evaluator.manipulateValue(manipulations, value != null ? value.toString() : "");
+        }
+
+        return value;
+    }
+
+    /**
+     * Checks whether the given value of the key passes the filter.
+     *
+     * @param value  the value of the key, null if it could not be retrieved
+     * @return  the result of the filter
+     */
+    boolean check(Object value) {
+        boolean result = value != null && condition.matches(value);
+
+        // the filters store whether their operator is used as it is, not whether it is negated
+        return negationOperator ? result : !result;
+    }
+
+    private static Condition createCondition(ParameterType type, String operator, String expression) {
+        OperatorType operatorType = OperatorType.fromString(operator);
+        Condition condition;
+
+        if (type.isString()) {
+            condition = createStringCondition(operatorType, expression);
+        } else if (type.isNumber()) {
+            condition = createNumberCondition(operatorType, expression);
+        } else if (type == ParameterType.DATE) {
+            condition = createDateCondition(operatorType, expression);
+        } else {
+            condition = NEVER;
+        }
+
+        return condition;
+    }
+
+    private static Condition createStringCondition(OperatorType operatorType, final String expression) {
+        if (operatorType == null) {
+            return NEVER;
+        }
+
+        switch (operatorType) {
+            case EQUALS:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.equals(expression);
+                    }
+                };
+            case CONTAINS:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.contains(expression);
+                    }
+                };
+            case EXIST:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return true;
+                    }
+                };
+            case STARTSWITH:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.startsWith(expression);
+                    }
+                };
+            case ENDSWITH:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.endsWith(expression);
+                    }
+                };
+            case EQUALS_IGNORE_CASE:
+                return new StringCondition() {
+                    @Override
+                    boolean matches(String value) {
+                        return value.equalsIgnoreCase(expression);
+                    }
+                };
+            default:
+                return NEVER;
+        }
+    }
+
+    private static Condition createNumberCondition(OperatorType operatorType, String expression) {
+        final BigDecimal expected = operatorType == null || operatorType == OperatorType.EXIST
+                ? null
+                : new BigDecimal(expression);
+
+        if (operatorType == null) {
+            return new NumberCondition() {
+                @Override
+                boolean matches(BigDecimal value) {
+                    return false;
+                }
+            };
+        }
+
+        switch (operatorType) {
+            case EQ_NUMBER:
+                return new NumberCondition() {
+                    @Override
+                    boolean matches(BigDecimal value) {
+                        return value.compareTo(expected) == 0;
+                    }
+                };
+            case GT:
+                return new NumberCondition() {
+                    @Override
+                    boolean matches(BigDecimal value) {
+                        return value.compareTo(expected) > 0;
+                    }
+                };
+            case LT:
+                return new NumberCondition() {
+                    @Override
+                    boolean matches(BigDecimal value) {
+                        return value.compareTo(expected) < 0;
+                    }
+                };
+            case EXIST:
+                return new NumberCondition() {
+                    @Override
+                    boolean matches(BigDecimal value) {
+                        return true;
+                    }
+                };
+            default:
+                return new NumberCondition() {
+                    @Override
+                    boolean matches(BigDecimal value) {
+                        return false;
+                    }
+                };
+        }
+    }
+
+    private static Condition createDateCondition(OperatorType operatorType, String expression) {
+        if (operatorType == null) {
+            return new DateCondition() {
+                @Override
+                boolean matches(DateTime value) {
+                    return false;
+                }
+            };
+        }
+
+        switch (operatorType) {
+            case EXIST:
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return true;
+                    }
+                };
+            case AFTER_NOW:
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return value.isAfterNow();
+                    }
+                };
+            case BEFORE_NOW:
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return value.isBeforeNow();
+                    }
+                };
+            case EQUALS:
+                final DateTime equal = DateTime.parse(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return value.isEqual(equal);
+                    }
+                };
+            case AFTER:
+                final DateTime after = DateTime.parse(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return value.isAfter(after);
+                    }
+                };
+            case BEFORE:
+                final DateTime before = DateTime.parse(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return value.isBefore(before);
+                    }
+                };
+            case LESS_DAYS_FROM_NOW:
+                final int lessDays = Integer.parseInt(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return countNumberOfDays(value) < lessDays;
+                    }
+                };
+            case LESS_MONTHS_FROM_NOW:
+                final int lessMonths = Integer.parseInt(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return countNumberOfMonths(value) < lessMonths;
+                    }
+                };
+            case MORE_DAYS_FROM_NOW:
+                final int moreDays = Integer.parseInt(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return countNumberOfDays(value) > moreDays;
+                    }
+                };
+            case MORE_MONTHS_FROM_NOW:
+                final int moreMonths = Integer.parseInt(expression);
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return countNumberOfMonths(value) > moreMonths;
+                    }
+                };
+            default:
+                return new DateCondition() {
+                    @Override
+                    boolean matches(DateTime value) {
+                        return false;
+                    }
+                };
+        }
+    }
+
+    private static int countNumberOfDays(DateTime param) {
+        return param.isBeforeNow()
+                ? Days.daysBetween(param, DateUtil.now()).getDays()
+                : Days.daysBetween(DateUtil.now(), param).getDays();
+    }
+
+    private static int countNumberOfMonths(DateTime param) {
+        return param.isBeforeNow()
+                ? Months.monthsBetween(param, DateUtil.now()).getMonths()
+                : Months.monthsBetween(DateUtil.now(), param).getMonths();
+    }
+
+    /**
+     * A condition on the value of the key of a filter.
+     */
+    private abstract static class Condition {
+        abstract boolean matches(Object value);
+    }
+
+    /**
+     * A condition on the string form of the value.
+     */
+    private abstract static class StringCondition extends Condition {
+        @Override
+        boolean matches(Object value) {
+            return matches(value.toString());
+        }
+
+        abstract boolean matches(String value);
+    }
+
+    /**
+     * A condition on the value converted to a number. The value is converted for every operator, so a value which
+     * is not a number is reported as an error.
+     */
+    private abstract static class NumberCondition extends Condition {
+        @Override
+        boolean matches(Object value) {
+            return matches(new BigDecimal(value.toString()));
+        }
+
+        abstract boolean matches(BigDecimal value);
+    }
+
+    /**
+     * A condition on the value converted to a date. The value is converted for every operator, so a value which
+     * is not a date is reported as an error.
+     */
+    private abstract static class DateCondition extends Condition {
+        @Override
+        boolean matches(Object value) {
+            return matches(DateTime.parse(value.toString()));
+        }
+
+        abstract boolean matches(DateTime value);
+    }
+}
@@ -0,0 +1,43 @@
+package org.motechproject.tasks.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of compiled parts of tasks, such as templates, filters and manipulations, shared between the task
+ * executions. The compiled forms are immutable, so a form compiled concurrently by two threads can be cached by
+ * either of them. The number of cached forms is bounded, when it is reached the cache is cleared, so that the forms
+ * of changed or deleted tasks do not accumulate.
+ *
+ * @param <K> the type of the definitions the forms are compiled from
+ * @param <V> the type of the compiled forms
+ */
+final class CompiledFormCache<K, V> {
+
+    private static final int MAX_CACHED_FORMS = 10000;
+
+    private final ConcurrentMap<K, V> forms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached form compiled from the given definition.
+     *
+     * @param definition  the definition, not null
+     * @return  the compiled form, or null if it is not cached
+     */
+    V get(K definition) {
+        return forms.get(definition);
+    }
+
+    /**
+     * Caches the form compiled from the given definition, clearing the cache first if it is full.
+     *
+     * @param definition  the definition, not null
+     * @param form  the compiled form, not null
+     */
+    void put(K definition, V form) {
+        if (forms.size() >= MAX_CACHED_FORMS) {
+            forms.clear();
+        }
+        forms.put(definition, form);
+    }
+}
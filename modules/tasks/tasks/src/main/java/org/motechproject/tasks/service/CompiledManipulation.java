@@ -0,0 +1,431 @@
+package org.motechproject.tasks.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.WordUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * A manipulation of a value, such as <code>toUpper</code> or <code>dateTime(yyyy-MM-dd)</code>, with its arguments
+ * parsed once. Formatters and regular expressions used by the manipulation are built when it is compiled, so that
+ * applying it to a value does not parse the manipulation again. Compiled manipulations are cached by their text.
+ * <p>
+ * If the arguments of a manipulation are invalid, the error is reported each time the manipulation is applied, the
+ * same way as if it was parsed at that time.
+ */
+abstract class CompiledManipulation {
+
+    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
+    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
+    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
+    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
+    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
+    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
+    private static final int MINUS_DAYS_PATTERN_BEGIN_INDEX = 10;
+    private static final int PLUS_HOURS_PATTERN_BEGIN_INDEX = 10;
+    private static final int MINUS_HOURS_PATTERN_BEGIN_INDEX = 11;
+    private static final int PLUS_MINUTES_PATTERN_BEGIN_INDEX = 12;
+    private static final int MINUS_MINUTES_PATTERN_BEGIN_INDEX = 13;
+    private static final int PARSE_DATE_PATTERN_BEGIN_INDEX = 10;
+
+    private static final CompiledFormCache<String, CompiledManipulation> CACHE = new CompiledFormCache<>();
+
+    private final String manipulation;
+
+    CompiledManipulation(String manipulation) {
+        this.manipulation = manipulation;
+    }
+
+    /**
+     * Returns the compiled form of the given manipulation of a key value. Unlike {@link #compile(String)}, this
+     * also handles the <code>format</code> manipulation, whose arguments can refer to other keys.
+     *
+     * @param manipulation  the manipulation, not null
+     * @return  the compiled manipulation
+     */
+    static CompiledManipulation forKey(String manipulation) {
+        CompiledManipulation compiled = CACHE.get(manipulation);
+
+        if (compiled == null) {
+            compiled = manipulation.contains("format") ? compileFormat(manipulation) : compile(manipulation);
+            CACHE.put(manipulation, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compiles the given manipulation.
+     *
+     * @param manipulation  the manipulation, not null
+     * @return  the compiled manipulation
+     */
+    static CompiledManipulation compile(final String manipulation) {
+        try {
+            return create(manipulation);
+        } catch (RuntimeException e) {
+            // report the error when the manipulation is applied
+            return new CompiledManipulation(manipulation) {
+                @Override
+                String apply(String value) {
+                    return create(manipulation).apply(value);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the manipulation in the form in which it was defined in the task.
+     *
+     * @return  the manipulation
+     */
+    String getManipulation() {
+        return manipulation;
+    }
+
+    /**
+     * Applies the manipulation to the given value.
+     *
+     * @param value  the value, not null
+     * @return  the manipulated value
+     */
+    abstract String apply(String value);
+
+    /**
+     * Applies the manipulation to the given value, evaluating the keys referred to by the manipulation.
+     *
+     * @param value  the value, not null
+     * @param evaluator  the evaluator of the keys referred to by the manipulation
+     * @return  the manipulated value
+     * @throws TaskHandlerException if a key referred to by the manipulation could not be evaluated
+     */
+    String apply(String value, KeyEvaluator evaluator) throws TaskHandlerException {
+        return apply(value);
+    }
+
+    private static CompiledManipulation create(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        CompiledManipulation compiled;
+
+        if (lowerCase.contains("join")) {
+            compiled = new Join(manipulation, argument(manipulation, JOIN_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("datetime")) {
+            try {
+                compiled = new FormatDate(manipulation,
+                        DateTimeFormat.forPattern(argument(manipulation, DATETIME_PATTERN_BEGIN_INDEX)));
+            } catch (IllegalArgumentException e) {
+                throw new MotechException("error.date.format", e);
+            }
+        } else if (lowerCase.contains("substring")) {
+            compiled = createSubstring(manipulation);
+        } else if (lowerCase.contains("split")) {
+            String[] arguments = argument(manipulation, SPLIT_PATTERN_BEGIN_INDEX).split(",");
+            compiled = new Split(manipulation, Pattern.compile(arguments[0]), Integer.parseInt(arguments[1]));
+        } else if (lowerCase.contains("parsedate")) {
+            compiled = new ParseDate(manipulation,
+                    DateTimeFormat.forPattern(argument(manipulation, PARSE_DATE_PATTERN_BEGIN_INDEX)));
+        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
+            compiled = createDateTimeChange(manipulation, lowerCase);
+        } else {
+            compiled = createSimple(manipulation, lowerCase.replace("()", ""));
+        }
+
+        return compiled;
+    }
+
+    private static CompiledManipulation createSubstring(String manipulation) {
+        String pattern = argument(manipulation, SUBSTRING_PATTERN_BEGIN_INDEX);
+        String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
+        int[] indexes = new int[splitValue.length];
+
+        for (int i = 0; i < splitValue.length; ++i) {
+            indexes[i] = Integer.parseInt(splitValue[i]);
+        }
+
+        if (indexes.length != 1 && indexes.length != 2) {
+            throw new IllegalArgumentException("Incorrect pattern for substring manipulation");
+        }
+
+        return new Substring(manipulation, indexes);
+    }
+
+    private static CompiledManipulation createDateTimeChange(String manipulation, String lowerCase) {
+        CompiledManipulation compiled;
+
+        if (lowerCase.contains("plusdays")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.DAYS,
+                    amount(lowerCase, PLUS_DAYS_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("minusdays")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.DAYS,
+                    -amount(lowerCase, MINUS_DAYS_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("plushours")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.HOURS,
+                    amount(lowerCase, PLUS_HOURS_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("minushours")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.HOURS,
+                    -amount(lowerCase, MINUS_HOURS_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("plusminutes")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.MINUTES,
+                    amount(lowerCase, PLUS_MINUTES_PATTERN_BEGIN_INDEX));
+        } else if (lowerCase.contains("minusminutes")) {
+            compiled = new DateTimeChange(manipulation, DateTimeChange.Unit.MINUTES,
+                    -amount(lowerCase, MINUS_MINUTES_PATTERN_BEGIN_INDEX));
+        } else {
+            compiled = new Unknown(manipulation);
+        }
+
+        return compiled;
+    }
+
+    private static CompiledManipulation createSimple(String manipulation, String name) {
+        switch (name) {
+            case "toupper":
+                return new CompiledManipulation(manipulation) {
+                    @Override
+                    String apply(String value) {
+                        return value.toUpperCase();
+                    }
+                };
+            case "tolower":
+                return new CompiledManipulation(manipulation) {
+                    @Override
+                    String apply(String value) {
+                        return value.toLowerCase();
+                    }
+                };
+            case "capitalize":
+                return new CompiledManipulation(manipulation) {
+                    @Override
+                    String apply(String value) {
+                        return WordUtils.capitalize(value);
+                    }
+                };
+            case "urlencode":
+                return new CompiledManipulation(manipulation) {
+                    @Override
+                    String apply(String value) {
+                        try {
+                            return URLEncoder.encode(value, "UTF-8");
+                        } catch (UnsupportedEncodingException e) {
+                            throw new MotechException("URLEncode manipulator error.", e);
+                        }
+                    }
+                };
+            default:
+                return new Unknown(manipulation);
+        }
+    }
+
+    private static CompiledManipulation compileFormat(final String manipulation) {
+        try {
+            return createFormat(manipulation);
+        } catch (RuntimeException e) {
+            return new CompiledManipulation(manipulation) {
+                @Override
+                String apply(String value) {
+                    return createFormat(manipulation).apply(value);
+                }
+
+                @Override
+                String apply(String value, KeyEvaluator evaluator) throws TaskHandlerException {
+                    return createFormat(manipulation).apply(value, evaluator);
+                }
+            };
+        }
+    }
+
+    private static CompiledManipulation createFormat(String manipulation) {
+        String formatElements = argument(manipulation, FORMAT_PATTERN_BEGIN_INDEX);
+
+        if (isBlank(formatElements)) {
+            return new CompiledManipulation(manipulation) {
+                @Override
+                String apply(String value) {
+                    return value;
+                }
+            };
+        }
+
+        String[] items = formatElements.split(",");
+        KeyInformation[] keys = new KeyInformation[items.length];
+
+        for (int i = 0; i < items.length; ++i) {
+            String item = items[i];
+
+            if (item.startsWith("{{") && item.endsWith("}}")) {
+                keys[i] = KeyInformation.parse(item.substring(2, item.length() - 2));
+            }
+        }
+
+        return new Format(manipulation, items, keys);
+    }
+
+    private static String argument(String manipulation, int beginIndex) {
+        return manipulation.substring(beginIndex, manipulation.length() - 1);
+    }
+
+    private static int amount(String manipulation, int beginIndex) {
+        return Integer.parseInt(argument(manipulation, beginIndex));
+    }
+
+    /**
+     * A manipulation which is not recognized, applying it results in a warning.
+     */
+    private static final class Unknown extends CompiledManipulation {
+
+        private Unknown(String manipulation) {
+            super(manipulation);
+        }
+
+        @Override
+        String apply(String value) {
+            throw new MotechException("task.warning.manipulation");
+        }
+    }
+
+    private static final class Join extends CompiledManipulation {
+        private final String separator;
+
+        private Join(String manipulation, String separator) {
+            super(manipulation);
+            this.separator = separator;
+        }
+
+        @Override
+        String apply(String value) {
+            return StringUtils.join(value.split(" "), separator);
+        }
+    }
+
+    private static final class FormatDate extends CompiledManipulation {
+        private final DateTimeFormatter formatter;
+
+        private FormatDate(String manipulation, DateTimeFormatter formatter) {
+            super(manipulation);
+            this.formatter = formatter;
+        }
+
+        @Override
+        String apply(String value) {
+            try {
+                return formatter.print(new DateTime(value));
+            } catch (IllegalArgumentException e) {
+                throw new MotechException("error.date.format", e);
+            }
+        }
+    }
+
+    private static final class Substring extends CompiledManipulation {
+        private final int[] indexes;
+
+        private Substring(String manipulation, int[] indexes) {
+            super(manipulation);
+            this.indexes = indexes;
+        }
+
+        @Override
+        String apply(String value) {
+            return indexes.length == 1 ? value.substring(indexes[0]) : value.substring(indexes[0], indexes[1]);
+        }
+    }
+
+    private static final class Split extends CompiledManipulation {
+        private final Pattern pattern;
+        private final int index;
+
+        private Split(String manipulation, Pattern pattern, int index) {
+            super(manipulation);
+            this.pattern = pattern;
+            this.index = index;
+        }
+
+        @Override
+        String apply(String value) {
+            return pattern.split(value)[index];
+        }
+    }
+
+    private static final class ParseDate extends CompiledManipulation {
+        private final DateTimeFormatter formatter;
+
+        private ParseDate(String manipulation, DateTimeFormatter formatter) {
+            super(manipulation);
+            this.formatter = formatter;
+        }
+
+        @Override
+        String apply(String value) {
+            return formatter.parseDateTime(value).toString("yyyy-MM-dd HH:mm Z");
+        }
+    }
+
+    private static final class DateTimeChange extends CompiledManipulation {
+
+        private enum Unit { DAYS, HOURS, MINUTES }
+
+        private final Unit unit;
+        private final int amount;
+
+        private DateTimeChange(String manipulation, Unit unit, int amount) {
+            super(manipulation);
+            this.unit = unit;
+            this.amount = amount;
+        }
+
+        @Override
+        String apply(String value) {
+            DateTime dateTime = new DateTime(value);
+
+            switch (unit) {
+                case DAYS:
+                    return dateTime.plusDays(amount).toString();
+                case HOURS:
+                    return dateTime.plusHours(amount).toString();
+                default:
+                    return dateTime.plusMinutes(amount).toString();
+            }
+        }
+    }
+
+    private static final class Format extends CompiledManipulation {
+        private final String[] items;
+        private final KeyInformation[] keys;
+
+        private Format(String manipulation, String[] items, KeyInformation[] keys) {
+            super(manipulation);
+            this.items = items;
+            this.keys = keys;
+        }
+
+        @Override
+        String apply(String value) {
+            throw new IllegalStateException("The format manipulation requires a key evaluator");
+        }
+
+        @Override
+        String apply(String value, KeyEvaluator evaluator) throws TaskHandlerException {
+            Object[] arguments = new Object[items.length];
+
+            for (int i = 0; i < items.length; ++i) {
+                if (keys[i] == null) {
+                    arguments[i] = items[i];
+                } else {
+                    Object keyValue = evaluator.getValue(keys[i]);
+                    arguments[i] = keyValue != null ? keyValue.toString() : "";
+                }
+            }
+
+            return String.format(value, arguments);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template from a task, such as the value of an action parameter or a lookup, split into literal text and
+ * the keys that have to be replaced by their values. The keys are parsed and their manipulations are compiled once,
+ * so evaluating the template for a task execution only retrieves and manipulates the values of the keys.
+ * <p>
+ * Compiled templates are cached by their text, so a task that was changed gets its templates compiled again on its
+ * first execution.
+ */
+public final class CompiledTemplate {
+
+    /**
+     * The same expression as used by {@link KeyInformation#parseAll(String)}.
+     */
+    private static final Pattern KEY_PATTERN = Pattern.compile("\\{\\{((.*?))(\\}\\})(?![^(]*\\))");
+
+    private static final CompiledFormCache<String, CompiledTemplate> CACHE = new CompiledFormCache<>();
+
+    private final Segment[] segments;
+
+    private CompiledTemplate(Segment[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the compiled form of the given template, compiling it if it was not compiled before.
+     *
+     * @param template  the template, not null
+     * @return  the compiled template
+     * @throws IllegalArgumentException if the template contains an invalid key
+     */
+    public static CompiledTemplate of(String template) {
+        CompiledTemplate compiled = CACHE.get(template);
+
+        if (compiled == null) {
+            compiled = compile(template);
+            CACHE.put(template, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compiles the given template, without caching it.
+     *
+     * @param template  the template, not null
+     * @return  the compiled template
+     * @throws IllegalArgumentException if the template contains an invalid key
+     */
+    public static CompiledTemplate compile(String template) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = KEY_PATTERN.matcher(template);
+        int position = 0;
+
+        while (matcher.find()) {
+            if (matcher.start() > position) {
+                segments.add(new Segment(template.substring(position, matcher.start())));
+            }
+            segments.add(new Segment(KeyInformation.parse(matcher.group(1))));
+            position = matcher.end();
+        }
+
+        if (position < template.length()) {
+            segments.add(new Segment(template.substring(position)));
+        }
+
+        return new CompiledTemplate(segments.toArray(new Segment[segments.size()]));
+    }
+
+    /**
+     * Evaluates the template by replacing the keys with their manipulated values.
+     *
+     * @param evaluator  the evaluator of the keys, not null
+     * @return  the evaluated template
+     * @throws TaskHandlerException if there was a problem while retrieving or manipulating a value
+     */
+    public String evaluate(KeyEvaluator evaluator) throws TaskHandlerException {
+        if (segments.length == 1 && segments[0].key == null) {
+            return segments[0].text;
+        }
+
+        StringBuilder result = new StringBuilder();
+
+        for (Segment segment : segments) {
+            if (segment.key == null) {
+                result.append(segment.text);
+            } else {
+                Object value = evaluator.getValue(segment.key);
+                String stringValue = value != null ? value.toString() : "";
+
+                result.append(evaluator.manipulateValue(segment.manipulations, stringValue));
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * A literal text or a key of the template.
+     */
+    private static final class Segment {
+        private final String text;
+        private final KeyInformation key;
+        private final List<CompiledManipulation> manipulations;
+
+        private Segment(String text) {
+            this.text = text;
+            this.key = null;
+            this.manipulations = null;
+        }
+
+        private Segment(KeyInformation key) {
+            this.text = null;
+            this.key = key;
+            this.manipulations = new ArrayList<>(key.getManipulations().size());
+
+            for (String manipulation : key.getManipulations()) {
+                manipulations.add(CompiledManipulation.forKey(manipulation));
+            }
+        }
+    }
+}
@@ -13,14 +13,12 @@ import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -35,6 +33,7 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
 
 /**
  * Builds action parameters from  {@link TaskContext} and executes the action by invoking its service or raising its event.
+ * The services and their methods are resolved once and cached, see {@link ActionServiceInvokers}.
  */
 @Component
 public class TaskActionExecutor {
@@ -42,10 +41,10 @@ public class TaskActionExecutor {
 
     private BundleContext bundleContext;
     private EventRelay eventRelay;
+    private final ActionServiceInvokers serviceInvokers = new ActionServiceInvokers();
 
     private TaskService taskService;
     private TaskActivityService activityService;
-    private KeyEvaluator keyEvaluator;
 
     @Autowired
     public TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
@@ -65,9 +64,10 @@ public class TaskActionExecutor {
      */
     public void execute(Task task, TaskActionInformation actionInformation, TaskContext taskContext) throws TaskHandlerException {
         LOGGER.info("Executing task action: {} from task: {}", actionInformation.getName(), task.getName());
-        this.keyEvaluator = new KeyEvaluator(taskContext);
+        // the actions of a task can be executed concurrently, so the evaluator is not shared between them
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         ActionEvent action = getActionEvent(actionInformation);
-        Map<String, Object> parameters = createParameters(actionInformation, action);
+        Map<String, Object> parameters = createParameters(actionInformation, action, keyEvaluator);
         LOGGER.debug("Parameters created: {} for task action: {}", parameters.toString(), action.getName());
 
         if (action.hasService() && bundleContext != null) {
@@ -100,8 +100,8 @@ public class TaskActionExecutor {
         return action;
     }
 
-    private Map<String, Object> createParameters(TaskActionInformation info,
-                                         ActionEvent action) throws TaskHandlerException {
+    private Map<String, Object> createParameters(TaskActionInformation info, ActionEvent action,
+                                                 KeyEvaluator keyEvaluator) throws TaskHandlerException {
         SortedSet<ActionParameter> actionParameters = action.getActionParameters();
         Map<String, Object> parameters = new HashMap<>(actionParameters.size());
 
@@ -119,10 +119,10 @@ public class TaskActionExecutor {
 
                 switch (actionParameter.getType()) {
                     case LIST:
-                        parameters.put(key, convertToList((List<String>) LIST.parse(template)));
+                        parameters.put(key, convertToList((List<String>) LIST.parse(template), keyEvaluator));
                         break;
                     case MAP:
-                        parameters.put(key, convertToMap(template));
+                        parameters.put(key, convertToMap(template, keyEvaluator));
                         break;
                     default:
                         try {
@@ -152,7 +152,7 @@ public class TaskActionExecutor {
         return parameters;
     }
 
-    private Map<Object, Object> convertToMap(String template) throws TaskHandlerException {
+    private Map<Object, Object> convertToMap(String template, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         String[] rows = template.split("(\\r)?\\n");
         Map<Object, Object> tempMap = new HashMap<>(rows.length);
 
@@ -164,8 +164,8 @@ public class TaskActionExecutor {
             switch (array.length) {
                 case 2:
                     array[1] = array[1].trim();
-                    mapKey = getValue(array[0]);
-                    mapValue = getValue(array[1]);
+                    mapKey = getValue(array[0], keyEvaluator);
+                    mapValue = getValue(array[1], keyEvaluator);
 
                     tempMap.put(
                         ParameterType.getType(mapKey.getClass()).parse(keyEvaluator.evaluateTemplateString(array[0])),
@@ -173,7 +173,7 @@ public class TaskActionExecutor {
                     );
                     break;
                 case 1:
-                    mapValue = getValue(array[0]);
+                    mapValue = getValue(array[0], keyEvaluator);
                     if (mapValue instanceof Multimap) {
                         tempMap.putAll(((Multimap) mapValue).asMap());
                     } else {
@@ -186,11 +186,11 @@ public class TaskActionExecutor {
         return tempMap;
     }
 
-    private List<Object> convertToList(List<String> templates) throws TaskHandlerException {
+    private List<Object> convertToList(List<String> templates, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         List<Object> tempList = new ArrayList<>();
 
         for (String template : templates) {
-            Object value = getValue(template.trim());
+            Object value = getValue(template.trim(), keyEvaluator);
 
             if (value instanceof Collection) {
                 tempList.addAll((Collection) value);
@@ -202,7 +202,7 @@ public class TaskActionExecutor {
         return tempList;
     }
 
-    private Object getValue(String row) throws TaskHandlerException {
+    private Object getValue(String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         List<KeyInformation> keys = KeyInformation.parseAll(row);
 
         Object result;
@@ -218,32 +218,25 @@ public class TaskActionExecutor {
 
     private boolean callActionServiceMethod(ActionEvent action, Map<String, Object> parameters)
             throws TaskHandlerException {
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+        ActionServiceInvokers.ServiceInvoker invoker = serviceInvokers.get(action.getServiceInterface());
+        boolean serviceAvailable = invoker != null;
 
         if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
             String serviceMethod = action.getServiceMethod();
             MethodHandler methodHandler = new MethodHandler(action, parameters);
 
             try {
-                Method method = service.getClass().getMethod(serviceMethod, methodHandler.getClasses());
-
-                try {
-                    method.invoke(service, methodHandler.getObjects());
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw new TaskHandlerException(
-                            ACTION, "task.error.serviceMethodInvokeError", e,
-                            serviceMethod, action.getServiceInterface()
-                    );
-                }
+                invoker.invoke(serviceMethod, methodHandler.getClasses(), methodHandler.getObjects());
             } catch (NoSuchMethodException e) {
                 throw new TaskHandlerException(
                         ACTION, "task.error.notFoundMethodForService", e,
                         serviceMethod, action.getServiceInterface()
                 );
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new TaskHandlerException(
+                        ACTION, "task.error.serviceMethodInvokeError", e,
+                        serviceMethod, action.getServiceInterface()
+                );
             }
         }
 
@@ -252,5 +245,6 @@ public class TaskActionExecutor {
 
     void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
+        serviceInvokers.setBundleContext(bundleContext);
     }
 }
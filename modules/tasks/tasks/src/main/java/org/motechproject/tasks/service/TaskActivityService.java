@@ -3,6 +3,8 @@ package org.motechproject.tasks.service;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 
@@ -24,6 +26,16 @@ public interface TaskActivityService {
      */
     void addError(Task task, TaskHandlerException e, Map<String, Object> parameters);
 
+    /**
+     * Logs an execution error for the given task, together with the times of the executed steps.
+     *
+     * @param task  the failed task, not null
+     * @param e  the cause of the error, not null
+     * @param parameters the parameters used by the task when it failed
+     * @param stepTimes  the times of the steps executed before the failure in milliseconds, mapped by the step names
+     */
+    void addError(Task task, TaskHandlerException e, Map<String, Object> parameters, Map<String, Long> stepTimes);
+
     /**
      * Logs an execution success for the given task.
      *
@@ -31,6 +43,14 @@ public interface TaskActivityService {
      */
     void addSuccess(Task task);
 
+    /**
+     * Logs an execution success for the given task, together with the times of the executed steps.
+     *
+     * @param task  the succeeded task, not null
+     * @param stepTimes  the times of the steps in milliseconds, mapped by the step names
+     */
+    void addSuccess(Task task, Map<String, Long> stepTimes);
+
     /**
      * Logs a warning for the given task.
      *
@@ -99,11 +119,22 @@ public interface TaskActivityService {
     long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes);
 
     /**
-     * Returns the count of all activities for the given task, of the specified type.
+     * Returns the count of all activities for the given task, of the specified type. The count is read from the
+     * activity counters, so it includes the activities that were already purged.
      *
      * @param taskId the task ID
      * @param type the type of activity to include in count
      * @return the count of matching activities
      */
     long getTaskActivitiesCount(Long taskId, TaskActivityType type);
+
+    /**
+     * Returns the most recent hourly or daily activity counters of the task with the given ID.
+     *
+     * @param taskId the task ID
+     * @param period the period of the counters
+     * @param limit the maximal number of returned counters
+     * @return the counters, the most recent first
+     */
+    List<TaskActivityCounter> getTaskActivityCounters(Long taskId, TaskActivityCounterPeriod period, int limit);
 }
@@ -10,7 +10,9 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,6 +27,7 @@ public class TaskContext {
     private Map<String, Object> parameters;
     private TaskActivityService activityService;
     private Set<DataSourceObject> dataSourceObjects;
+    private Map<String, Long> stepTimes;
 
     /**
      * Class constructor.
@@ -38,6 +41,7 @@ public class TaskContext {
         this.parameters = parameters;
         this.activityService = activityService;
         this.dataSourceObjects = new HashSet<>();
+        this.stepTimes = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
     }
 
     /**
@@ -51,6 +55,27 @@ public class TaskContext {
         dataSourceObjects.add(new DataSourceObject(objectId, dataSourceObject, failIfDataNotFound));
     }
 
+    /**
+     * Records the execution time of a step of this task. The steps can be executed concurrently.
+     *
+     * @param step  the name of the step, not null
+     * @param millis  the execution time of the step, in milliseconds
+     */
+    public void addStepTime(String step, long millis) {
+        stepTimes.put(step, millis);
+    }
+
+    /**
+     * Returns the execution times of the steps of this task, in milliseconds.
+     *
+     * @return  the map of step names to their execution times, in the order of the step completion
+     */
+    public Map<String, Long> getStepTimes() {
+        synchronized (stepTimes) {
+            return new LinkedHashMap<>(stepTimes);
+        }
+    }
+
     /**
      * Returns the value of the trigger with the given key.
      *
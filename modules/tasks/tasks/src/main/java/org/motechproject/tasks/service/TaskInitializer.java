@@ -9,9 +9,15 @@ import org.motechproject.tasks.ex.TaskHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.motechproject.tasks.events.constants.TaskFailureCause.DATA_SOURCE;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.FILTER;
@@ -23,6 +29,11 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.FILTER;
  * <ul>
  * <li><b>evalConfigSteps</b> - executes all config steps (load data sources, check filters) defined in the task,</li>
  * </ul>
+ * <p/>
+ * The data sources between two filter sets are loaded concurrently, except for the data sources which lookups use
+ * the fields of other data sources - these are loaded after the data sources they depend on. A filter set is
+ * checked after all data sources that precede it are loaded and the data sources that follow a failed filter set
+ * are not loaded.
  *
  * @see TaskTriggerHandler
  * @see TaskActionExecutor
@@ -32,6 +43,9 @@ class TaskInitializer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskInitializer.class);
 
+    // matches the data source keys, also the ones used in the manipulations of other keys
+    private static final Pattern DATA_SOURCE_KEY_PATTERN = Pattern.compile("\\{\\{ad\\.[^}#]*#(\\d+)\\.");
+
     private TaskContext taskContext;
 
     /**
@@ -47,12 +61,15 @@ class TaskInitializer {
      * Executes all config steps (loading data from data sources, checking filters) defined for this task.
      *
      * @param dataProviders  the map of data providers, not null or empty
+     * @param stepRunner  the runner used for loading the data sources, not null
      * @return  true if all steps were executed, false otherwise
      * @throws TaskHandlerException if there were error while handling task
      */
-    public boolean evalConfigSteps(Map<String, DataProvider> dataProviders) throws TaskHandlerException {
+    public boolean evalConfigSteps(Map<String, DataProvider> dataProviders, TaskStepRunner stepRunner)
+            throws TaskHandlerException {
         LOGGER.info("Executing all config steps for task: {}", taskContext.getTask().getName());
         Iterator<TaskConfigStep> iterator = taskContext.getTask().getTaskConfig().getSteps().iterator();
+        List<DataSource> dataSources = new ArrayList<>();
         boolean result = true;
 
         TaskFilterExecutor taskFilterExecutor = new TaskFilterExecutor();
@@ -61,22 +78,105 @@ class TaskInitializer {
             TaskConfigStep step = iterator.next();
 
             if (step instanceof DataSource) {
-                DataSource ds = (DataSource) step;
-                taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(ds, dataProviders), ds.isFailIfDataNotFound());
-                LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
+                dataSources.add((DataSource) step);
             } else if (step instanceof FilterSet) {
+                // the filters can use any of the preceding data sources
+                loadDataSources(dataSources, dataProviders, stepRunner);
+                dataSources.clear();
+
                 try {
                     FilterSet filterSet = (FilterSet) step;
 
+                    long start = System.nanoTime();
                     result = taskFilterExecutor.checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
+                    taskContext.addStepTime("filterSet." + filterSet.getOrder(), (System.nanoTime() - start) / 1000000);
                 } catch (RuntimeException e) {
                     throw new TaskHandlerException(FILTER, "task.error.filterError", e);
                 }
             }
         }
+
+        if (result) {
+            loadDataSources(dataSources, dataProviders, stepRunner);
+        }
+
         return result;
     }
 
+    private void loadDataSources(List<DataSource> dataSources, final Map<String, DataProvider> dataProviders,
+                                 TaskStepRunner stepRunner) throws TaskHandlerException {
+        List<DataSource> pending = new ArrayList<>(dataSources);
+
+        while (!pending.isEmpty()) {
+            List<DataSource> ready = getIndependentDataSources(pending);
+
+            List<TaskStepRunner.Step<Object>> lookups = new ArrayList<>(ready.size());
+            for (final DataSource dataSource : ready) {
+                lookups.add(new TaskStepRunner.Step<Object>() {
+                    @Override
+                    public String getName() {
+                        return "dataSource." + dataSource.getObjectId() + "." + dataSource.getType();
+                    }
+
+                    @Override
+                    public Object execute() throws TaskHandlerException {
+                        return getDataSourceObject(dataSource, dataProviders);
+                    }
+                });
+            }
+
+            List<Object> objects = stepRunner.runAll(lookups, taskContext);
+
+            for (int i = 0; i < ready.size(); ++i) {
+                DataSource ds = ready.get(i);
+                taskContext.addDataSourceObject(ds.getObjectId().toString(), objects.get(i), ds.isFailIfDataNotFound());
+                LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
+            }
+
+            pending.removeAll(ready);
+        }
+    }
+
+    private List<DataSource> getIndependentDataSources(List<DataSource> pending) {
+        Set<String> pendingIds = new HashSet<>();
+        for (DataSource dataSource : pending) {
+            pendingIds.add(dataSource.getObjectId().toString());
+        }
+
+        List<DataSource> independent = new ArrayList<>();
+        for (DataSource dataSource : pending) {
+            Set<String> dependencies = getDependencies(dataSource);
+            dependencies.remove(dataSource.getObjectId().toString());
+            dependencies.retainAll(pendingIds);
+
+            if (dependencies.isEmpty()) {
+                independent.add(dataSource);
+            }
+        }
+
+        // the dependencies are circular, the data sources are loaded one by one in their order
+        if (independent.isEmpty()) {
+            independent.add(pending.get(0));
+        }
+
+        return independent;
+    }
+
+    private Set<String> getDependencies(DataSource dataSource) {
+        Set<String> dependencies = new HashSet<>();
+
+        for (Lookup lookup : dataSource.getLookup()) {
+            if (lookup.getValue() != null) {
+                Matcher matcher = DATA_SOURCE_KEY_PATTERN.matcher(lookup.getValue());
+                while (matcher.find()) {
+                    dependencies.add(matcher.group(1));
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
     private Object getDataSourceObject(DataSource dataSource, Map<String, DataProvider> providers)
             throws TaskHandlerException {
         if (providers == null || providers.isEmpty()) {
@@ -0,0 +1,201 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.motechproject.tasks.events.constants.TaskFailureCause.TRIGGER;
+
+/**
+ * The <code>TaskStepRunner</code> runs independent steps of a task execution, like the data source lookups or
+ * the actions, concurrently on a bounded pool of threads. The caller waits until all given steps are finished.
+ * If some of them failed, the failure of the first failed step, in the order of the steps, is rethrown. The
+ * execution time of every step is recorded in the task context.
+ * <p/>
+ * A runner created with a single thread runs the steps one by one in the calling thread and stops at the first
+ * failure, like the task steps were executed before. The steps are run the same way if the caller runs in
+ * a transaction, like a retry of a task, since the transaction is bound to the calling thread and the steps must
+ * take part in it. The steps run on the pool get the class loader and the security context of the caller.
+ *
+ * @see TaskTriggerHandler
+ * @see TaskInitializer
+ */
+class TaskStepRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskStepRunner.class);
+
+    private final ExecutorService executorService;
+
+    /**
+     * Class constructor.
+     *
+     * @param threads  the maximal number of steps executed at once, 1 or less to execute the steps sequentially
+     */
+    TaskStepRunner(int threads) {
+        this.executorService = threads > 1 ? Executors.newFixedThreadPool(threads, new StepThreadFactory()) : null;
+    }
+
+    /**
+     * Runs the given steps and returns their results.
+     *
+     * @param steps  the steps to run, not null
+     * @param taskContext  the context of the task execution, in which the times of the steps are recorded
+     * @param <T>  the type of the results
+     * @return  the results of the steps, in the order of the steps
+     * @throws TaskHandlerException if one of the steps failed
+     */
+    <T> List<T> runAll(List<? extends Step<T>> steps, TaskContext taskContext) throws TaskHandlerException {
+        if (executorService == null || steps.size() < 2
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<T> results = new ArrayList<>(steps.size());
+            for (Step<T> step : steps) {
+                results.add(run(step, taskContext));
+            }
+            return results;
+        }
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        List<Callable<T>> callables = new ArrayList<>(steps.size());
+        for (Step<T> step : steps) {
+            callables.add(new StepCallable<>(step, taskContext, contextClassLoader, securityContext));
+        }
+
+        List<Future<T>> futures;
+        try {
+            futures = executorService.invokeAll(callables);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e);
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(getResult(future));
+        }
+        return results;
+    }
+
+    /**
+     * Stops the threads of this runner.
+     */
+    void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    boolean isParallel() {
+        return executorService != null;
+    }
+
+    private <T> T getResult(Future<T> future) throws TaskHandlerException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof TaskHandlerException) {
+                throw (TaskHandlerException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", cause);
+            }
+        }
+    }
+
+    private static <T> T run(Step<T> step, TaskContext taskContext) throws TaskHandlerException {
+        long start = System.nanoTime();
+
+        try {
+            return step.execute();
+        } finally {
+            long time = (System.nanoTime() - start) / 1000000;
+            taskContext.addStepTime(step.getName(), time);
+            LOGGER.debug("Task step: {} of task: {} took {} ms", step.getName(), taskContext.getTask().getName(), time);
+        }
+    }
+
+    /**
+     * A single step of a task execution.
+     *
+     * @param <T>  the type of the result of the step
+     */
+    interface Step<T> {
+
+        /**
+         * @return  the name of the step, under which its time is recorded
+         */
+        String getName();
+
+        /**
+         * Executes the step.
+         *
+         * @return  the result of the step
+         * @throws TaskHandlerException if the step failed
+         */
+        T execute() throws TaskHandlerException;
+    }
+
+    private static final class StepCallable<T> implements Callable<T> {
+        private final Step<T> step;
+        private final TaskContext taskContext;
+        private final ClassLoader contextClassLoader;
+        private final SecurityContext securityContext;
+
+        private StepCallable(Step<T> step, TaskContext taskContext, ClassLoader contextClassLoader,
+                             SecurityContext securityContext) {
+            this.step = step;
+            this.taskContext = taskContext;
+            this.contextClassLoader = contextClassLoader;
+            this.securityContext = securityContext;
+        }
+
+        @Override
+        public T call() throws TaskHandlerException {
+            // the steps may load classes of other bundles and access secured entities, like the calling thread does
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+            thread.setContextClassLoader(contextClassLoader);
+            SecurityContextHolder.setContext(securityContext);
+
+            try {
+                return run(step, taskContext);
+            } finally {
+                SecurityContextHolder.setContext(previousSecurityContext);
+                thread.setContextClassLoader(previous);
+            }
+        }
+    }
+
+    private static final class StepThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "task-step-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -28,7 +28,10 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.ReflectionUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,11 +52,19 @@ import static org.motechproject.tasks.service.HandlerPredicates.withServiceName;
 /**
  * The <code>TaskTriggerHandler</code> receives events and executes tasks for which the trigger
  * event subject is the same as the received event subject.
+ * <p/>
+ * The independent data source lookups of a task are executed concurrently, on at most
+ * <code>task.step.threads</code> threads. The actions of a task are executed concurrently only if the
+ * <code>task.actions.parallel</code> setting is true, since they can depend on each other's side effects.
  */
 @Service
 public class TaskTriggerHandler implements TriggerHandler {
 
     private static final String TASK_POSSIBLE_ERRORS_KEY = "task.possible.errors";
+    private static final String TASK_STEP_THREADS_KEY = "task.step.threads";
+    private static final String TASK_ACTIONS_PARALLEL_KEY = "task.actions.parallel";
+
+    private static final int DEFAULT_STEP_THREADS = 4;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskTriggerHandler.class);
 
@@ -78,13 +89,26 @@ public class TaskTriggerHandler implements TriggerHandler {
 
     private Map<String, DataProvider> dataProviders;
 
+    private TaskStepRunner stepRunner;
+    private boolean parallelActions;
+
     @PostConstruct
     public void init() {
+        stepRunner = new TaskStepRunner(getStepThreadsNumber());
+        parallelActions = Boolean.parseBoolean(settings.getProperty(TASK_ACTIONS_PARALLEL_KEY));
+
         for (Task task : taskService.getAllTasks()) {
             registerHandlerFor(task.getTrigger().getEffectiveListenerSubject());
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (stepRunner != null) {
+            stepRunner.shutdown();
+        }
+    }
+
     @Override
     public void registerHandlerFor(String subject) {
         LOGGER.info("Registering handler for {}", subject);
@@ -148,24 +172,54 @@ public class TaskTriggerHandler implements TriggerHandler {
 
         try {
             LOGGER.info("Executing all actions from task: {}", task.getName());
-            if (initializer.evalConfigSteps(dataProviders)) {
-                for (TaskActionInformation action : task.getActions()) {
-                    executor.execute(task, action, taskContext);
-                }
-                handleSuccess(parameters, task);
+            if (initializer.evalConfigSteps(dataProviders, stepRunner)) {
+                executeActions(task, taskContext);
+                handleSuccess(parameters, task, taskContext);
             }
             LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
         } catch (TaskHandlerException e) {
-            handleError(parameters, task, e);
+            handleError(parameters, task, e, taskContext);
         } catch (RuntimeException e) {
-            handleError(parameters, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
+            handleError(parameters, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e),
+                    taskContext);
         }
     }
 
-    private void handleError(Map<String, Object> params, Task task, TaskHandlerException e) {
+    private void executeActions(final Task task, final TaskContext taskContext) throws TaskHandlerException {
+        List<TaskStepRunner.Step<Void>> steps = new ArrayList<>(task.getActions().size());
+
+        for (int i = 0; i < task.getActions().size(); ++i) {
+            final int index = i;
+            final TaskActionInformation action = task.getActions().get(i);
+
+            steps.add(new TaskStepRunner.Step<Void>() {
+                @Override
+                public String getName() {
+                    return "action." + index + "." + action.getName();
+                }
+
+                @Override
+                public Void execute() throws TaskHandlerException {
+                    executor.execute(task, action, taskContext);
+                    return null;
+                }
+            });
+        }
+
+        if (parallelActions) {
+            stepRunner.runAll(steps, taskContext);
+        } else {
+            // the actions are executed one by one, in their order
+            for (TaskStepRunner.Step<Void> step : steps) {
+                stepRunner.runAll(Collections.singletonList(step), taskContext);
+            }
+        }
+    }
+
+    private void handleError(Map<String, Object> params, Task task, TaskHandlerException e, TaskContext taskContext) {
         LOGGER.warn("Omitted task: {} with ID: {} because: {}", task.getName(), task.getId(), e);
 
-        activityService.addError(task, e, params);
+        activityService.addError(task, e, params, taskContext.getStepTimes());
         task.incrementFailuresInRow();
 
         LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), task.getFailuresInRow());
@@ -201,12 +255,16 @@ public class TaskTriggerHandler implements TriggerHandler {
         ));
     }
 
-    private void handleSuccess(Map<String, Object> params, Task task) {
+    private void handleSuccess(Map<String, Object> params, Task task, TaskContext taskContext) {
         LOGGER.debug("All actions from task: {} with ID: {} were successfully executed", task.getName(), task.getId());
 
-        activityService.addSuccess(task);
-        task.resetFailuresInRow();
-        taskService.save(task);
+        activityService.addSuccess(task, taskContext.getStepTimes());
+
+        // saving the task clears the cached active tasks, so only do it if there is something to reset
+        if (task.getFailuresInRow() > 0) {
+            task.resetFailuresInRow();
+            taskService.save(task);
+        }
 
         eventRelay.sendEventMessage(new MotechEvent(
             createHandlerSuccessSubject(task.getName()),
@@ -261,6 +319,24 @@ public class TaskTriggerHandler implements TriggerHandler {
         return number;
     }
 
+    private int getStepThreadsNumber() {
+        String property = settings.getProperty(TASK_STEP_THREADS_KEY);
+        int number = DEFAULT_STEP_THREADS;
+
+        if (property != null) {
+            try {
+                number = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error(String.format(
+                        "The value of key: %s is not a number. The number of task step threads is set to %d.",
+                        TASK_STEP_THREADS_KEY, DEFAULT_STEP_THREADS
+                ));
+            }
+        }
+
+        return number;
+    }
+
     @Autowired(required = false)
     public void setBundleContext(BundleContext bundleContext) {
         this.executor.setBundleContext(bundleContext);
@@ -0,0 +1,182 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.tasks.domain.Task;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.motechproject.tasks.events.constants.EventSubjects.ACTIVE_TASKS_INVALIDATE_SUBJECT;
+import static org.motechproject.tasks.events.constants.EventSubjects.TASK_CRUD_SUBJECTS;
+
+/**
+ * Keeps the active tasks of each trigger subject in memory. The cache is read without locking and replaced as a
+ * whole when a subject is added, so it is meant for data that is read much more often than it is changed.
+ * <p>
+ * The cache is cleared when a task is created, updated or deleted. The instance receiving the MDS event about the
+ * change broadcasts {@link org.motechproject.tasks.events.constants.EventSubjects#ACTIVE_TASKS_INVALIDATE_SUBJECT},
+ * so that the caches of all instances are cleared. Since the tasks are only active while the modules of their
+ * channels are installed, the cache is also cleared when a module is installed, updated or uninstalled.
+ * <p>
+ * The task handler changes the tasks it executes, for example it counts their failures, so the cache keeps its own
+ * copies of the tasks and returns new copies on every call.
+ */
+@Component
+public class ActiveTasksCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActiveTasksCache.class);
+
+    private final Object lock = new Object();
+    private volatile Map<String, List<Task>> tasksBySubject = Collections.emptyMap();
+    private long version;
+
+    private EventRelay eventRelay;
+    private BundleContext bundleContext;
+
+    private final BundleListener bundleListener = new BundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            switch (event.getType()) {
+                case BundleEvent.INSTALLED:
+                case BundleEvent.UPDATED:
+                case BundleEvent.UNINSTALLED:
+                    invalidate();
+                    break;
+                default:
+                    break;
+            }
+        }
+    };
+
+    /**
+     * Returns copies of the cached active tasks for the given trigger subject.
+     *
+     * @param subject  the subject of the trigger
+     * @return  the list of tasks, null if the tasks for the subject are not cached
+     */
+    public List<Task> get(String subject) {
+        List<Task> tasks = tasksBySubject.get(subject);
+        return tasks == null ? null : copy(tasks);
+    }
+
+    /**
+     * Returns the current version of the cache. The version has to be retrieved before the tasks are loaded and
+     * passed to {@link #put(String, java.util.List, long)}, so that tasks loaded before an invalidation are not
+     * cached.
+     *
+     * @return  the version of the cache
+     */
+    public long getVersion() {
+        synchronized (lock) {
+            return version;
+        }
+    }
+
+    /**
+     * Caches the active tasks for the given trigger subject, unless the cache was cleared since the given version
+     * was retrieved.
+     *
+     * @param subject  the subject of the trigger
+     * @param tasks  the active tasks for the subject
+     * @param loadedVersion  the version of the cache from before the tasks were loaded
+     */
+    public void put(String subject, List<Task> tasks, long loadedVersion) {
+        synchronized (lock) {
+            if (loadedVersion == version) {
+                Map<String, List<Task>> copy = new HashMap<>(tasksBySubject);
+                copy.put(subject, Collections.unmodifiableList(copy(tasks)));
+                tasksBySubject = copy;
+            }
+        }
+    }
+
+    /**
+     * Clears the cache of this instance.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            ++version;
+            tasksBySubject = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Handles the MDS events sent after a task was created, updated or deleted, by clearing the cache of this
+     * instance and broadcasting the invalidation to all other instances.
+     *
+     * @param event  the MDS CRUD event
+     */
+    @MotechListener(subjects = TASK_CRUD_SUBJECTS)
+    public void handleTaskChange(MotechEvent event) {
+        LOGGER.debug("Task changed ({}), invalidating active tasks on all instances", event.getSubject());
+
+        invalidate();
+        eventRelay.broadcastEventMessage(new MotechEvent(ACTIVE_TASKS_INVALIDATE_SUBJECT));
+    }
+
+    /**
+     * Clears the cache of this instance after the invalidation was broadcast.
+     *
+     * @param event  the invalidation event
+     */
+    @MotechListener(subjects = ACTIVE_TASKS_INVALIDATE_SUBJECT)
+    public void handleInvalidation(MotechEvent event) {
+        invalidate();
+    }
+
+    private static List<Task> copy(List<Task> tasks) {
+        List<Task> copies = new ArrayList<>(tasks.size());
+
+        for (Task task : tasks) {
+            Task copy = new Task(task.getName(), task.getTrigger(), new ArrayList<>(task.getActions()),
+                    task.getTaskConfig(), task.isEnabled(), task.hasRegisteredChannel());
+            copy.setId(task.getId());
+            copy.setDescription(task.getDescription());
+            copy.setFailuresInRow(task.getFailuresInRow());
+            copy.setValidationErrors(new HashSet<>(task.getValidationErrors()));
+
+            copies.add(copy);
+        }
+
+        return copies;
+    }
+
+    @PostConstruct
+    public void registerBundleListener() {
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(bundleListener);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterBundleListener() {
+        if (bundleContext != null) {
+            bundleContext.removeBundleListener(bundleListener);
+        }
+    }
+
+    @Autowired
+    public void setEventRelay(EventRelay eventRelay) {
+        this.eventRelay = eventRelay;
+    }
+
+    @Autowired(required = false)
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+}
@@ -13,6 +13,7 @@ import org.motechproject.tasks.contract.ActionEventRequest;
 import org.motechproject.tasks.contract.ChannelRequest;
 import org.motechproject.tasks.domain.Channel;
 import org.motechproject.tasks.domain.TaskError;
+import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.ValidationException;
 import org.motechproject.tasks.json.ActionEventRequestDeserializer;
 import org.motechproject.tasks.repository.ChannelsDataService;
@@ -20,6 +21,8 @@ import org.motechproject.tasks.service.ChannelService;
 import org.motechproject.tasks.validation.ChannelValidator;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +31,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,6 +41,7 @@ import java.lang.reflect.Type;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -64,6 +70,26 @@ public class ChannelServiceImpl implements ChannelService {
     private BundleContext bundleContext;
     private IconLoader iconLoader;
 
+    private final Object triggersLock = new Object();
+    private volatile Map<String, TriggerEvent> triggersBySubject;
+    private long triggersVersion;
+
+    private final BundleListener bundleListener = new BundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            // the channels of a module are only available while the module is installed
+            switch (event.getType()) {
+                case BundleEvent.INSTALLED:
+                case BundleEvent.UPDATED:
+                case BundleEvent.UNINSTALLED:
+                    invalidateTriggers();
+                    break;
+                default:
+                    break;
+            }
+        }
+    };
+
     static {
         typeAdapters.put(ActionEventRequest.class, new ActionEventRequestDeserializer());
     }
@@ -140,6 +166,7 @@ public class ChannelServiceImpl implements ChannelService {
                 }
             }
         });
+        invalidateTriggers();
         LOGGER.info(String.format("Saved channel: %s", channel.getDisplayName()));
     }
 
@@ -160,6 +187,7 @@ public class ChannelServiceImpl implements ChannelService {
                 }
             }
         });
+        invalidateTriggers();
     }
 
     @Override
@@ -186,6 +214,20 @@ public class ChannelServiceImpl implements ChannelService {
                 : null;
     }
 
+    @Override
+    public TriggerEvent getTrigger(String subject) {
+        if (subject == null) {
+            return null;
+        }
+
+        Map<String, TriggerEvent> triggers = triggersBySubject;
+        if (triggers == null) {
+            triggers = loadTriggers();
+        }
+
+        return triggers.get(subject.toLowerCase(Locale.ENGLISH));
+    }
+
     @Override
     public BundleIcon getChannelIcon(String moduleName) throws IOException {
         Bundle bundle = getModule(moduleName);
@@ -216,6 +258,53 @@ public class ChannelServiceImpl implements ChannelService {
         this.bundleContext = bundleContext;
     }
 
+    @PostConstruct
+    public void registerBundleListener() {
+        if (bundleContext != null) {
+            bundleContext.addBundleListener(bundleListener);
+        }
+    }
+
+    @PreDestroy
+    public void unregisterBundleListener() {
+        if (bundleContext != null) {
+            bundleContext.removeBundleListener(bundleListener);
+        }
+    }
+
+    private Map<String, TriggerEvent> loadTriggers() {
+        long version;
+        synchronized (triggersLock) {
+            version = triggersVersion;
+        }
+
+        Map<String, TriggerEvent> triggers = new HashMap<>();
+        for (Channel channel : getAllChannels()) {
+            for (TriggerEvent trigger : channel.getTriggerTaskEvents()) {
+                String key = trigger.getSubject().toLowerCase(Locale.ENGLISH);
+                if (!triggers.containsKey(key)) {
+                    triggers.put(key, trigger);
+                }
+            }
+        }
+
+        synchronized (triggersLock) {
+            // don't publish the triggers if the channels were changed while they were being loaded
+            if (version == triggersVersion) {
+                triggersBySubject = triggers;
+            }
+        }
+
+        return triggers;
+    }
+
+    private void invalidateTriggers() {
+        synchronized (triggersLock) {
+            ++triggersVersion;
+            triggersBySubject = null;
+        }
+    }
+
     private Bundle getModule(String moduleSymbolicName) {
         if (bundleContext == null) {
             throw new IllegalArgumentException("Bundle context not set");
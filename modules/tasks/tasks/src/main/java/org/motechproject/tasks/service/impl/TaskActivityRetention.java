@@ -0,0 +1,155 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the task activities which are older than the retention period of their type. The activities are deleted
+ * in the background, in batches of the given size. A single run deletes at most the given number of batches of
+ * every type, the remaining activities are deleted by the following runs, so that the purge never holds the
+ * activities table for long. The hourly activity counters are purged the same way, the daily counters are kept.
+ */
+class TaskActivityRetention {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityRetention.class);
+
+    private final TaskActivitiesDataService taskActivitiesDataService;
+    private final TaskActivityRollups rollups;
+    private final Map<TaskActivityType, Integer> retentionDays;
+    private final int hourlyCountersDays;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private ScheduledExecutorService purgeExecutor;
+
+    /**
+     * @param taskActivitiesDataService the data service of the activities
+     * @param rollups the activity counters, null if they are not kept
+     * @param retentionDays the number of days the activities of each type are kept, 0 or less to keep them forever
+     * @param hourlyCountersDays the number of days the hourly counters are kept, 0 or less to keep them forever
+     * @param batchSize the number of activities deleted at once
+     * @param maxBatches the maximal number of batches of every type deleted by a single run
+     */
+    TaskActivityRetention(TaskActivitiesDataService taskActivitiesDataService, TaskActivityRollups rollups,
+                          Map<TaskActivityType, Integer> retentionDays, int hourlyCountersDays, int batchSize,
+                          int maxBatches) {
+        this.taskActivitiesDataService = taskActivitiesDataService;
+        this.rollups = rollups;
+        this.retentionDays = new EnumMap<>(retentionDays);
+        this.hourlyCountersDays = hourlyCountersDays;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxBatches = Math.max(maxBatches, 1);
+    }
+
+    /**
+     * Starts purging the activities in the background.
+     *
+     * @param interval the number of minutes between the runs
+     */
+    void start(long interval) {
+        if (interval > 0 && isEnabled()) {
+            purgeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "task-activity-purge");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            purgeExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        purge();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Unable to purge the task activities", e);
+                    }
+                }
+            }, interval, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Stops purging the activities. The run in progress is not interrupted.
+     */
+    void stop() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdown();
+            purgeExecutor = null;
+        }
+    }
+
+    /**
+     * Deletes the expired activities and hourly counters, at most the maximal number of batches of each.
+     *
+     * @return the number of deleted activities
+     */
+    int purge() {
+        DateTime now = DateTime.now();
+        int deleted = 0;
+
+        for (Map.Entry<TaskActivityType, Integer> entry : retentionDays.entrySet()) {
+            if (entry.getValue() > 0) {
+                deleted += purge(entry.getKey(), now.minusDays(entry.getValue()));
+            }
+        }
+
+        if (rollups != null && hourlyCountersDays > 0) {
+            DateTime before = now.minusDays(hourlyCountersDays);
+            for (int i = 0; i < maxBatches; ++i) {
+                if (rollups.purge(TaskActivityCounterPeriod.HOUR, before, batchSize) < batchSize) {
+                    break;
+                }
+            }
+        }
+
+        if (deleted > 0) {
+            LOGGER.info("Purged {} expired task activities", deleted);
+        }
+
+        return deleted;
+    }
+
+    private int purge(TaskActivityType type, DateTime before) {
+        int deleted = 0;
+
+        for (int i = 0; i < maxBatches; ++i) {
+            List<TaskActivity> activities = taskActivitiesDataService.byActivityTypeAndDateBefore(type, before,
+                    new QueryParams(1, batchSize));
+
+            if (!activities.isEmpty()) {
+                taskActivitiesDataService.deleteAll(activities, batchSize);
+                deleted += activities.size();
+            }
+
+            if (activities.size() < batchSize) {
+                break;
+            }
+        }
+
+        return deleted;
+    }
+
+    private boolean isEnabled() {
+        for (Integer days : retentionDays.values()) {
+            if (days > 0) {
+                return true;
+            }
+        }
+        return rollups != null && hourlyCountersDays > 0;
+    }
+}
@@ -0,0 +1,262 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.InstanceSecurityRestriction;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityCountersDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the hourly and daily counters of the task activities, see {@link TaskActivityCounter}. The counters of a
+ * batch of activities are updated in a single transaction, with one update per task, activity type and period.
+ * The totals are incremented by the database with a single UPDATE statement, so the increments from other instances
+ * of the server are not lost. If two instances create the counter of a period at the same time, the period gets two
+ * counters, which are added up when the counters are read.
+ */
+class TaskActivityRollups {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityRollups.class);
+
+    private static final String INCREMENT_QUERY = "UPDATE %s SET %s = %s + :increment WHERE %s = :task AND " +
+            "%s = :activityType AND %s = :period AND %s = :periodStart";
+
+    private final TaskActivityCountersDataService countersDataService;
+
+    /**
+     * @param countersDataService the data service used for storing the counters
+     */
+    TaskActivityRollups(TaskActivityCountersDataService countersDataService) {
+        this.countersDataService = countersDataService;
+    }
+
+    /**
+     * Adds the given activities to the counters.
+     *
+     * @param activities the written activities
+     */
+    void add(Collection<TaskActivity> activities) {
+        Map<TaskActivityCounter, Long> increments = new LinkedHashMap<>();
+
+        for (TaskActivity activity : activities) {
+            for (TaskActivityCounterPeriod period : TaskActivityCounterPeriod.values()) {
+                TaskActivityCounter key = new TaskActivityCounter(activity.getTask(), activity.getActivityType(),
+                        period, period.getStart(activity.getDate()), null);
+
+                Long increment = increments.get(key);
+                increments.put(key, increment == null ? 1L : increment + 1);
+            }
+        }
+
+        increment(increments);
+    }
+
+    /**
+     * Returns the number of activities of the given type, which were recorded for the given task.
+     *
+     * @param task the task ID
+     * @param activityType the type of the activities
+     * @return the number of activities
+     */
+    long count(Long task, TaskActivityType activityType) {
+        long count = 0;
+
+        for (TaskActivityCounter counter : countersDataService.byTaskActivityTypeAndPeriod(task, activityType,
+                TaskActivityCounterPeriod.DAY)) {
+            count += counter.getTotal();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the counters of the given period for the given task, the most recent ones first. The counters of
+     * the same activity type and period, which were created by two instances at the same time, are returned as one.
+     *
+     * @param task the task ID
+     * @param period the period of the counters
+     * @param limit the maximal number of returned counters
+     * @return the counters
+     */
+    List<TaskActivityCounter> getCounters(Long task, TaskActivityCounterPeriod period, int limit) {
+        Map<List<Object>, TaskActivityCounter> merged = new LinkedHashMap<>();
+
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int page = 1;
+        List<TaskActivityCounter> counters;
+        do {
+            counters = countersDataService.byTaskAndPeriod(task, period, new QueryParams(page++, limit,
+                    new Order(TaskActivityCountersDataService.PERIOD_START, Order.Direction.DESC)));
+
+            for (TaskActivityCounter counter : counters) {
+                List<Object> key = Arrays.<Object>asList(counter.getActivityType(), counter.getPeriodStart());
+                TaskActivityCounter previous = merged.get(key);
+
+                merged.put(key, previous == null
+                        ? counter
+                        : new TaskActivityCounter(task, counter.getActivityType(), period, counter.getPeriodStart(),
+                                previous.getTotal() + counter.getTotal()));
+            }
+        } while (counters.size() == limit && !isComplete(merged.values(), counters, limit));
+
+        List<TaskActivityCounter> result = new ArrayList<>(merged.values());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /**
+     * Deletes all counters of the given task.
+     *
+     * @param task the task ID
+     */
+    synchronized void deleteForTask(Long task) {
+        countersDataService.deleteAll(countersDataService.byTask(task));
+    }
+
+    /**
+     * Deletes at most the given number of counters of the given period, which started before the given time.
+     *
+     * @param period the period of the counters
+     * @param before the time before which the periods started
+     * @param batchSize the maximal number of deleted counters
+     * @return the number of deleted counters
+     */
+    synchronized int purge(TaskActivityCounterPeriod period, DateTime before, int batchSize) {
+        List<TaskActivityCounter> counters = countersDataService.byPeriodAndPeriodStartBefore(period, before,
+                new QueryParams(1, batchSize));
+        countersDataService.deleteAll(counters, batchSize);
+        return counters.size();
+    }
+
+    /**
+     * Checks whether the counters should be created for the activities recorded before the counters were introduced,
+     * that is whether there are activities, but no counters yet.
+     *
+     * @param activitiesDataService the data service of the activities
+     * @return true if the activities should be counted, false otherwise
+     */
+    boolean isBackfillNeeded(TaskActivitiesDataService activitiesDataService) {
+        return countersDataService.count() == 0 && activitiesDataService.count() > 0;
+    }
+
+    /**
+     * Counts the activities recorded before the counters were introduced. The activities of every task are counted
+     * with a single query for each activity type and added to the counters of the period in which the counters
+     * were introduced. The activities recorded later are counted when they are written, so this can run while
+     * the activities are written.
+     *
+     * @param tasksDataService the data service of the tasks
+     * @param activitiesDataService the data service of the activities
+     * @param before the time at which the counters were introduced
+     */
+    void backfill(TasksDataService tasksDataService, TaskActivitiesDataService activitiesDataService,
+                  DateTime before) {
+        List<Task> tasks = tasksDataService.retrieveAll();
+        LOGGER.info("Counting the task activities of {} tasks", tasks.size());
+
+        for (Task task : tasks) {
+            Map<TaskActivityCounter, Long> increments = new LinkedHashMap<>();
+
+            for (TaskActivityType type : TaskActivityType.values()) {
+                long count = activitiesDataService.countByTaskActivityTypeAndDateBefore(task.getId(), type, before);
+
+                if (count > 0) {
+                    for (TaskActivityCounterPeriod period : TaskActivityCounterPeriod.values()) {
+                        increments.put(new TaskActivityCounter(task.getId(), type, period, period.getStart(before),
+                                null), count);
+                    }
+                }
+            }
+
+            increment(increments);
+        }
+
+        LOGGER.info("Counted the task activities of {} tasks", tasks.size());
+    }
+
+    private static boolean isComplete(Collection<TaskActivityCounter> merged, List<TaskActivityCounter> lastPage,
+                                      int limit) {
+        if (merged.size() < limit) {
+            return false;
+        }
+
+        // the counters of the last returned period could be continued on the next page
+        DateTime lastReturned = new ArrayList<>(merged).get(limit - 1).getPeriodStart();
+        return lastPage.get(lastPage.size() - 1).getPeriodStart().isBefore(lastReturned);
+    }
+
+    private synchronized void increment(final Map<TaskActivityCounter, Long> increments) {
+        if (!increments.isEmpty()) {
+            countersDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (Map.Entry<TaskActivityCounter, Long> entry : increments.entrySet()) {
+                        increment(entry.getKey(), entry.getValue());
+                    }
+                }
+            });
+        }
+    }
+
+    private void increment(TaskActivityCounter key, Long increment) {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("increment", increment);
+        params.put("task", key.getTask());
+        params.put("activityType", key.getActivityType().name());
+        params.put("period", key.getPeriod().name());
+        params.put("periodStart", new Timestamp(key.getPeriodStart().getMillis()));
+
+        Number updated = countersDataService.executeQuery(new QueryExecution<Number>() {
+            @Override
+            public Number execute(Query query, InstanceSecurityRestriction restriction) {
+                PersistenceManagerFactory factory = query.getPersistenceManager().getPersistenceManagerFactory();
+                String sql = String.format(INCREMENT_QUERY, enquoteIfPostgres(factory, TaskActivityCounter.TABLE_NAME),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.TOTAL),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.TOTAL),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.TASK),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.ACTIVITY_TYPE),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.PERIOD),
+                        enquoteIfPostgres(factory, TaskActivityCountersDataService.PERIOD_START));
+
+                return (Number) query.getPersistenceManager().newQuery(Constants.Util.SQL_QUERY, sql)
+                        .executeWithMap(params);
+            }
+        });
+
+        if (updated == null || updated.longValue() == 0) {
+            countersDataService.create(new TaskActivityCounter(key.getTask(), key.getActivityType(), key.getPeriod(),
+                    key.getPeriodStart(), increment));
+        }
+    }
+
+    private static String enquoteIfPostgres(PersistenceManagerFactory factory, String identifier) {
+        return Constants.Config.MYSQL_DRIVER_CLASSNAME.equals(factory.getConnectionDriverName())
+                ? identifier
+                : "\"" + identifier + "\"";
+    }
+}
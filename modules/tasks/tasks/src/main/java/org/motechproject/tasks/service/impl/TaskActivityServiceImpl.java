@@ -1,93 +1,298 @@
 package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.joda.time.DateTime;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
+import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityCountersDataService;
+import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Implementation of the {@link TaskActivityService}. The activities are written in batches in the background, see
+ * {@link TaskActivityWriter}, the batch size and the flush interval are configured with the
+ * <code>task.activity.batch.size</code> and <code>task.activity.flush.interval</code> settings. The buffered
+ * activities are written before the activities are read, so that the reads return all added activities. A batch
+ * size of 1 or less turns the buffering off.
+ * <p/>
+ * The written activities are counted per hour and day, see {@link TaskActivityRollups}, and the activities older
+ * than the <code>task.activity.retention.&lt;type&gt;.days</code> settings are purged in the background, see
+ * {@link TaskActivityRetention}. The activities written before the counters were introduced are counted once,
+ * in the background as well.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
+
+    private static final String BATCH_SIZE_KEY = "task.activity.batch.size";
+    private static final String FLUSH_INTERVAL_KEY = "task.activity.flush.interval";
+    private static final String RETENTION_DAYS_KEY = "task.activity.retention.%s.days";
+    private static final String HOURLY_COUNTERS_DAYS_KEY = "task.activity.counters.hourly.days";
+    private static final String PURGE_INTERVAL_KEY = "task.activity.purge.interval";
+    private static final String PURGE_BATCH_SIZE_KEY = "task.activity.purge.batch.size";
+    private static final String PURGE_MAX_BATCHES_KEY = "task.activity.purge.max.batches";
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_HOURLY_COUNTERS_DAYS = 7;
+    private static final int DEFAULT_PURGE_INTERVAL = 60;
+    private static final int DEFAULT_PURGE_BATCH_SIZE = 500;
+    private static final int DEFAULT_PURGE_MAX_BATCHES = 20;
+
     private TaskActivitiesDataService taskActivitiesDataService;
+    private TaskActivityCountersDataService countersDataService;
+    private TasksDataService tasksDataService;
+    private SettingsFacade settings;
+    private TaskActivityWriter writer;
+    private TaskActivityRollups rollups;
+    private TaskActivityRetention retention;
+    private ExecutorService backfillExecutor;
 
-    @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
+        this(taskActivitiesDataService, null, null, null);
+    }
+
+    @Autowired
+    public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService,
+                                   TaskActivityCountersDataService countersDataService,
+                                   TasksDataService tasksDataService,
+                                   @Qualifier("tasksSettings") SettingsFacade settings) {
         this.taskActivitiesDataService = taskActivitiesDataService;
+        this.countersDataService = countersDataService;
+        this.tasksDataService = tasksDataService;
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (countersDataService != null) {
+            rollups = new TaskActivityRollups(countersDataService);
+
+            if (rollups.isBackfillNeeded(taskActivitiesDataService)) {
+                startBackfill();
+            }
+        }
+
+        int batchSize = getSetting(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        if (batchSize > 1) {
+            writer = new TaskActivityWriter(taskActivitiesDataService, rollups, batchSize,
+                    getSetting(FLUSH_INTERVAL_KEY, DEFAULT_FLUSH_INTERVAL));
+            writer.start();
+        }
+
+        Map<TaskActivityType, Integer> retentionDays = new EnumMap<>(TaskActivityType.class);
+        for (TaskActivityType type : TaskActivityType.values()) {
+            retentionDays.put(type, getSetting(String.format(RETENTION_DAYS_KEY, type.getValue().toLowerCase()), 0));
+        }
+
+        retention = new TaskActivityRetention(taskActivitiesDataService, rollups, retentionDays,
+                getSetting(HOURLY_COUNTERS_DAYS_KEY, DEFAULT_HOURLY_COUNTERS_DAYS),
+                getSetting(PURGE_BATCH_SIZE_KEY, DEFAULT_PURGE_BATCH_SIZE),
+                getSetting(PURGE_MAX_BATCHES_KEY, DEFAULT_PURGE_MAX_BATCHES));
+        retention.start(getSetting(PURGE_INTERVAL_KEY, DEFAULT_PURGE_INTERVAL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+            backfillExecutor = null;
+        }
+        if (retention != null) {
+            retention.stop();
+            retention = null;
+        }
+        if (writer != null) {
+            writer.stop();
+            writer = null;
+        }
     }
 
     @Override
     public void addError(Task task, TaskHandlerException e, Map<String, Object> parameters) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
-                TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e), parameters));
+        addError(task, e, parameters, null);
+    }
+
+    @Override
+    public void addError(Task task, TaskHandlerException e, Map<String, Object> parameters,
+                         Map<String, Long> stepTimes) {
+        TaskActivity activity = new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
+                TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e), parameters);
+        activity.setStepTimes(stepTimes);
+
+        add(activity);
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
-                TaskActivityType.SUCCESS));
+        addSuccess(task, null);
+    }
+
+    @Override
+    public void addSuccess(Task task, Map<String, Long> stepTimes) {
+        TaskActivity activity = new TaskActivity("task.success.ok", task.getId(), TaskActivityType.SUCCESS);
+        activity.setStepTimes(stepTimes);
+
+        add(activity);
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
+        add(new TaskActivity("task.warning.taskDisabled", task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
+        add(new TaskActivity(key, field, task.getId(),
                 TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
+        add(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
                 task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
     }
 
     @Override
     public void deleteActivitiesForTask(Long taskId) {
+        flush();
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
+
+        if (rollups != null) {
+            rollups.deleteForTask(taskId);
+        }
     }
 
     @Override
     public TaskActivity getTaskActivityById(Long activityId) {
+        flush();
         return taskActivitiesDataService.findById(activityId);
     }
 
     @Override
     public List<TaskActivity> getLatestActivities() {
+        flush();
         return taskActivitiesDataService.retrieveAll(new QueryParams(1, 10, new Order("date", Order.Direction.DESC)));
     }
 
     @Override
     public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypes, QueryParams queryParams) {
+        flush();
         return taskActivitiesDataService.byTaskAndActivityTypes(taskId, activityTypes, queryParams);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes) {
+        flush();
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, activityTypes);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
+        flush();
+
+        if (rollups != null) {
+            return rollups.count(taskId, type);
+        }
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<TaskActivityCounter> getTaskActivityCounters(Long taskId, TaskActivityCounterPeriod period, int limit) {
+        flush();
+
+        if (rollups != null) {
+            return rollups.getCounters(taskId, period, limit);
+        }
+        return new ArrayList<>();
+    }
+
+    private void startBackfill() {
+        // the activities written from now on are counted by the rollups
+        final DateTime before = DateTime.now();
+
+        backfillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "task-activity-backfill");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        backfillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rollups.backfill(tasksDataService, taskActivitiesDataService, before);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to count the task activities written before the counters were introduced", e);
+                }
+            }
+        });
+        backfillExecutor.shutdown();
+    }
+
+    private void add(TaskActivity activity) {
+        if (writer == null) {
+            taskActivitiesDataService.create(activity);
+
+            if (rollups != null) {
+                rollups.add(Collections.singletonList(activity));
+            }
+        } else {
+            writer.add(activity);
+        }
+    }
+
+    private void flush() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private int getSetting(String key, int defaultValue) {
+        String property = settings == null ? null : settings.getProperty(key);
+        int value = defaultValue;
+
+        if (property != null) {
+            try {
+                value = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error(String.format("The value of key: %s is not a number. It is set to %d.", key, defaultValue));
+            }
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,181 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes task activities to the database in batches. The activities are kept in an in-memory buffer and created
+ * with a single {@link TaskActivitiesDataService#createAll(java.util.Collection, int)} call once the buffer reaches
+ * the batch size, or when the flush interval has passed, whichever comes first. The buffer is drained when the
+ * writer is stopped. The activity counters are updated after every written batch.
+ * <p>
+ * If the activities can't be written, they are returned to the buffer and written with the next batch. The buffer
+ * holds at most ten batches, the oldest activities are dropped when it is full.
+ */
+class TaskActivityWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityWriter.class);
+
+    private static final int MAX_BUFFERED_BATCHES = 10;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private List<TaskActivity> buffer = new ArrayList<>();
+
+    private final TaskActivitiesDataService taskActivitiesDataService;
+    private final TaskActivityRollups rollups;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private volatile ScheduledExecutorService flushExecutor;
+
+    /**
+     * @param taskActivitiesDataService the data service used for creating the activities
+     * @param rollups the activity counters, null if they are not kept
+     * @param batchSize the number of activities created at once
+     * @param flushInterval the maximal number of milliseconds the activities are kept in the buffer
+     */
+    TaskActivityWriter(TaskActivitiesDataService taskActivitiesDataService, TaskActivityRollups rollups,
+                       int batchSize, long flushInterval) {
+        this.taskActivitiesDataService = taskActivitiesDataService;
+        this.rollups = rollups;
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Starts the background flushing of the buffer.
+     */
+    void start() {
+        if (flushInterval > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "task-activity-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            flushExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Unable to flush the task activities", e);
+                    }
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background flushing and writes all activities that are still buffered.
+     */
+    void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushExecutor = null;
+        }
+        flush();
+    }
+
+    /**
+     * Adds the given activity to the buffer. If the buffer reaches the batch size, it is written in the calling
+     * thread.
+     *
+     * @param activity the activity to write
+     */
+    void add(TaskActivity activity) {
+        boolean full;
+
+        synchronized (lock) {
+            buffer.add(activity);
+            full = buffer.size() >= batchSize || flushExecutor == null;
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered activities. When this method returns, all activities added before it was called are
+     * written, also the ones that were being written by other threads, unless writing them failed.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            List<TaskActivity> batch;
+            synchronized (lock) {
+                batch = buffer;
+                buffer = new ArrayList<>();
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of activities waiting in the buffer.
+     *
+     * @return the number of buffered activities
+     */
+    int getBufferedCount() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    private void write(List<TaskActivity> batch) {
+        try {
+            taskActivitiesDataService.createAll(batch, batchSize);
+            LOGGER.debug("Written a batch of {} task activities", batch.size());
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Unable to write %d task activities, they will be written with the next batch",
+                    batch.size()), e);
+            requeue(batch);
+            return;
+        }
+
+        if (rollups != null) {
+            try {
+                rollups.add(batch);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Unable to update the counters of %d task activities", batch.size()), e);
+            }
+        }
+    }
+
+    private void requeue(List<TaskActivity> batch) {
+        synchronized (lock) {
+            List<TaskActivity> requeued = new ArrayList<>(batch.size() + buffer.size());
+            requeued.addAll(batch);
+            requeued.addAll(buffer);
+
+            int maxBuffered = batchSize * MAX_BUFFERED_BATCHES;
+            if (requeued.size() > maxBuffered) {
+                int dropped = requeued.size() - maxBuffered;
+                LOGGER.error("The task activity buffer is full, dropping {} oldest activities", dropped);
+                requeued = new ArrayList<>(requeued.subList(dropped, requeued.size()));
+            }
+
+            buffer = requeued;
+        }
+    }
+}
@@ -40,7 +40,6 @@ import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +51,6 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -86,7 +84,8 @@ public class TaskServiceImpl implements TaskService {
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
     private BundleContext bundleContext;
-
+    private TasksEventParserRegistry parserRegistry;
+    private ActiveTasksCache activeTasksCache;
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -183,6 +182,12 @@ public class TaskServiceImpl implements TaskService {
         List<Task> list = null;
 
         if (isNotBlank(subject)) {
+            List<Task> cached = activeTasksCache.get(subject);
+            if (cached != null) {
+                return cached;
+            }
+
+            long cacheVersion = activeTasksCache.getVersion();
             List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
                 @Override
                 public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
@@ -201,6 +206,8 @@ public class TaskServiceImpl implements TaskService {
                 checkChannelAvailableInTasks(enabledTasks);
                 list = new ArrayList<>(enabledTasks);
                 CollectionUtils.filter(list, tasksWithRegisteredChannel());
+                // the cache keeps its own copies, so the returned tasks can be changed by the caller
+                activeTasksCache.put(subject, list, cacheVersion);
             }
         }
 
@@ -209,21 +216,7 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public TriggerEvent findTrigger(String subject) throws TriggerNotFoundException {
-        List<Channel> channels = channelService.getAllChannels();
-        TriggerEvent trigger = null;
-
-        for (Channel c : channels) {
-            for (TriggerEvent t : c.getTriggerTaskEvents()) {
-                if (t.getSubject().equalsIgnoreCase(subject)) {
-                    trigger = t;
-                    break;
-                }
-            }
-
-            if (trigger != null) {
-                break;
-            }
-        }
+        TriggerEvent trigger = channelService.getTrigger(subject);
 
         if (trigger == null) {
             throw new TriggerNotFoundException(format(
@@ -240,23 +233,15 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
-        try {
-            Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
-
-            for (ServiceReference<TasksEventParser> ref : references) {
-                TasksEventParser parser = bundleContext.getService(ref);
-                if (parser.getName().equals(name)) {
-                    return parser;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.");
-        }
+        TasksEventParser parser = parserRegistry.getParser(name);
 
         // If a non-null parser name has been found in the event parameter, yet it cannot be found in
         // the running context, this indicates an error
-        throw new CustomParserNotFoundException(name);
+        if (parser == null) {
+            throw new CustomParserNotFoundException(name);
+        }
+
+        return parser;
     }
 
     @Override
@@ -276,6 +261,7 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        activeTasksCache.invalidate();
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
@@ -657,6 +643,17 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
+        try {
+            doAddOrUpdate(task);
+        } finally {
+            // even a failed save could have changed the task
+            activeTasksCache.invalidate();
+        }
+
+        LOGGER.info("Saved task: {}", task.getName());
+    }
+
+    private void doAddOrUpdate(final Task task) {
         tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -690,8 +687,6 @@ public class TaskServiceImpl implements TaskService {
                 }
             }
         });
-
-        LOGGER.info("Saved task: {}", task.getName());
     }
 
     private void registerHandler(String effectiveListenerSubject) {
@@ -755,4 +750,14 @@ public class TaskServiceImpl implements TaskService {
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
     }
+
+    @Autowired
+    public void setParserRegistry(TasksEventParserRegistry parserRegistry) {
+        this.parserRegistry = parserRegistry;
+    }
+
+    @Autowired
+    public void setActiveTasksCache(ActiveTasksCache activeTasksCache) {
+        this.activeTasksCache = activeTasksCache;
+    }
 }
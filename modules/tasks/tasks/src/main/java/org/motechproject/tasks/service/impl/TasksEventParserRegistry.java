@@ -0,0 +1,86 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.api.TasksEventParser;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks the {@link TasksEventParser} implementations exposed as OSGi services and indexes them by the names
+ * returned by their <code>getName()</code> method, so that a parser can be found without enumerating the
+ * service registry.
+ */
+@Component
+public class TasksEventParserRegistry extends ServiceTracker<TasksEventParser, TasksEventParser> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TasksEventParserRegistry.class);
+
+    private final ConcurrentMap<String, TasksEventParser> parsers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TasksEventParserRegistry(BundleContext bundleContext) {
+        super(bundleContext, TasksEventParser.class, null);
+    }
+
+    @PostConstruct
+    public void start() {
+        open();
+    }
+
+    @PreDestroy
+    public void stop() {
+        close();
+    }
+
+    /**
+     * Returns the parser with the given name.
+     *
+     * @param name  the name of the parser
+     * @return  the parser, null if no parser with the given name is registered
+     */
+    public TasksEventParser getParser(String name) {
+        return parsers.get(name);
+    }
+
+    @Override
+    public TasksEventParser addingService(ServiceReference<TasksEventParser> reference) {
+        TasksEventParser parser = super.addingService(reference);
+
+        if (parser != null) {
+            LOGGER.debug("Registering tasks event parser: {}", parser.getName());
+            parsers.putIfAbsent(parser.getName(), parser);
+        }
+
+        return parser;
+    }
+
+    @Override
+    public void removedService(ServiceReference<TasksEventParser> reference, TasksEventParser parser) {
+        LOGGER.debug("Unregistering tasks event parser: {}", parser.getName());
+
+        if (parsers.remove(parser.getName(), parser)) {
+            // another service may still provide a parser with the same name
+            ServiceReference<TasksEventParser>[] references = getServiceReferences();
+            if (references != null) {
+                for (ServiceReference<TasksEventParser> other : references) {
+                    TasksEventParser otherParser = getService(other);
+                    if (otherParser != null && otherParser != parser && parser.getName().equals(otherParser.getName())) {
+                        parsers.putIfAbsent(otherParser.getName(), otherParser);
+                        break;
+                    }
+                }
+            }
+        }
+
+        super.removedService(reference, parser);
+    }
+}
@@ -3,18 +3,23 @@ package org.motechproject.tasks.web;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -82,10 +87,30 @@ public class ActivityController {
     @RequestMapping(value = "/activity/{taskId}/{activityType}", method = RequestMethod.GET)
     @ResponseBody
     public long getTaskActivityCount(@PathVariable Long taskId, @PathVariable String activityType) {
-        TaskActivityType type = TaskActivityType.valueOf(activityType);
+        TaskActivityType type;
+        try {
+            type = TaskActivityType.valueOf(activityType);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown activity type: " + activityType, e);
+        }
         return activityService.getTaskActivitiesCount(taskId, type);
     }
 
+    /**
+     * Returns the most recent hourly or daily activity counters for the task with the given ID.
+     *
+     * @param taskId  the ID of the task
+     * @param period  the period of the counters; HOUR or DAY only
+     * @param limit  the maximal number of returned counters
+     * @return  the list of counters, the most recent first
+     */
+    @RequestMapping(value = "/activity/{taskId}/counters/{period}", method = RequestMethod.GET)
+    @ResponseBody
+    public List<TaskActivityCounter> getTaskActivityCounters(@PathVariable Long taskId, @PathVariable String period,
+                                                             @RequestParam(defaultValue = "24") int limit) {
+        return activityService.getTaskActivityCounters(taskId, parsePeriod(period), limit);
+    }
+
     /**
      * Deletes all activities for task with the given ID.
      *
@@ -116,4 +141,20 @@ public class ActivityController {
         });
         retryThread.start();
     }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ResponseBody
+    public String handleIllegalArgumentException(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    private TaskActivityCounterPeriod parsePeriod(String period) {
+        try {
+            return TaskActivityCounterPeriod.valueOf(period);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown counter period: " + period + ", expected one of: " +
+                    Arrays.toString(TaskActivityCounterPeriod.values()), e);
+        }
+    }
 }
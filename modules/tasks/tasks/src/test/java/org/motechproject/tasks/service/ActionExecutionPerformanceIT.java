@@ -0,0 +1,137 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.tasks.domain.ActionEvent;
+import org.motechproject.tasks.domain.ActionEventBuilder;
+import org.motechproject.tasks.domain.ActionParameter;
+import org.motechproject.tasks.domain.ActionParameterBuilder;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskBuilder;
+import org.motechproject.tasks.ex.ActionNotFoundException;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.motechproject.tasks.domain.ParameterType.INTEGER;
+import static org.motechproject.tasks.domain.ParameterType.UNICODE;
+
+/**
+ * Measures the number of actions per second the {@link TaskActionExecutor} executes through an OSGi service call,
+ * including the evaluation of the action parameters. The number of executed actions is set with the
+ * <code>tasks.performance.quantity</code> property, the time and the throughput are logged.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ActionExecutionPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionExecutionPerformanceIT.class);
+
+    private static final String SERVICE_INTERFACE = "org.motechproject.sms.SmsService";
+
+    private static final int ACTIONS = Integer.getInteger("tasks.performance.quantity", 50000);
+    private static final int WARM_UP_ACTIONS = 5000;
+
+    @Mock
+    private TaskService taskService;
+    @Mock
+    private TaskActivityService activityService;
+    @Mock
+    private EventRelay eventRelay;
+    @Mock
+    private BundleContext bundleContext;
+
+    private SmsService smsService = new SmsService();
+
+    private TaskActionExecutor executor;
+    private TaskActionInformation actionInformation;
+    private Task task;
+    private TaskContext taskContext;
+
+    @Before
+    public void setUp() throws ActionNotFoundException {
+        TreeSet<ActionParameter> actionParameters = new TreeSet<>();
+        actionParameters.add(new ActionParameterBuilder().setDisplayName("Recipient").setKey("recipient")
+                .setType(UNICODE).setOrder(0).createActionParameter());
+        actionParameters.add(new ActionParameterBuilder().setDisplayName("Message").setKey("message")
+                .setType(UNICODE).setOrder(1).createActionParameter());
+        actionParameters.add(new ActionParameterBuilder().setDisplayName("Retries").setKey("retries")
+                .setType(INTEGER).setOrder(2).createActionParameter());
+
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Send SMS").setDescription("")
+                .setServiceInterface(SERVICE_INTERFACE).setServiceMethod("send")
+                .setActionParameters(actionParameters).createActionEvent();
+
+        Map<String, String> values = new HashMap<>();
+        values.put("recipient", "{{trigger.phone}}");
+        values.put("message", "Hello {{trigger.externalId}}, you have an appointment on {{trigger.startDate?dateTime(yyyy-MM-dd)}}");
+        values.put("retries", "{{trigger.retries}}");
+
+        actionInformation = new TaskActionInformation(null, "Send SMS", "sms", "sms", "0.1", null,
+                SERVICE_INTERFACE, "send", values);
+        task = new TaskBuilder().addAction(actionInformation).build();
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("phone", "48600700800");
+        parameters.put("externalId", "123abc");
+        parameters.put("startDate", "2015-05-15T10:30:00.000+02:00");
+        parameters.put("retries", "3");
+        taskContext = new TaskContext(task, parameters, activityService);
+
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+
+        ServiceReference serviceReference = mock(ServiceReference.class);
+        when(bundleContext.getServiceReference(SERVICE_INTERFACE)).thenReturn(serviceReference);
+        when(bundleContext.getService(serviceReference)).thenReturn(smsService);
+
+        executor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        executor.setBundleContext(bundleContext);
+    }
+
+    @Test
+    public void testActionExecution() throws TaskHandlerException {
+        execute(WARM_UP_ACTIONS);
+
+        long startTime = System.nanoTime();
+        execute(ACTIONS);
+        long time = Math.max((System.nanoTime() - startTime) / 1000000, 1);
+
+        assertEquals(WARM_UP_ACTIONS + ACTIONS, smsService.getSent());
+
+        LOGGER.info("Tasks: Executing {} actions through a service call took {} ms, {} actions/sec",
+                ACTIONS, time, ACTIONS * 1000L / time);
+    }
+
+    private void execute(int actions) throws TaskHandlerException {
+        for (int i = 0; i < actions; ++i) {
+            executor.execute(task, actionInformation, taskContext);
+        }
+    }
+
+    public static class SmsService {
+
+        private int sent;
+
+        public void send(String recipient, String message, Integer retries) {
+            if (recipient != null && message != null && retries != null) {
+                ++sent;
+            }
+        }
+
+        private int getSent() {
+            return sent;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActionServiceInvokersTest {
+
+    private static final String SERVICE_INTERFACE = "org.motechproject.sms.SmsService";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference serviceReference;
+
+    private TestService testService = new TestService();
+
+    private ActionServiceInvokers invokers;
+
+    @Before
+    public void setUp() {
+        when(bundleContext.getServiceReference(SERVICE_INTERFACE)).thenReturn(serviceReference);
+        when(bundleContext.getService(serviceReference)).thenReturn(testService);
+        when(serviceReference.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[]{SERVICE_INTERFACE});
+
+        invokers = new ActionServiceInvokers();
+        invokers.setBundleContext(bundleContext);
+
+        verify(bundleContext).addServiceListener(invokers);
+    }
+
+    @Test
+    public void shouldRetrieveServiceOnce() throws Exception {
+        invokers.get(SERVICE_INTERFACE).invoke("send", new Class[]{String.class, Integer.class}, new Object[]{"hi", 2});
+        invokers.get(SERVICE_INTERFACE).invoke("send", new Class[]{String.class, Integer.class}, new Object[]{"hi", 3});
+
+        assertEquals(5, testService.sent);
+        verify(bundleContext, times(1)).getServiceReference(SERVICE_INTERFACE);
+        verify(bundleContext, times(1)).getService(serviceReference);
+    }
+
+    @Test
+    public void shouldReleaseServiceWhenItChanges() throws Exception {
+        ActionServiceInvokers.ServiceInvoker invoker = invokers.get(SERVICE_INTERFACE);
+        assertSame(invoker, invokers.get(SERVICE_INTERFACE));
+
+        invokers.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, serviceReference));
+
+        verify(bundleContext).ungetService(serviceReference);
+        assertTrue(invoker != invokers.get(SERVICE_INTERFACE));
+        verify(bundleContext, times(2)).getService(serviceReference);
+    }
+
+    @Test
+    public void shouldReturnNullIfServiceIsNotAvailable() {
+        assertNull(invokers.get("org.motechproject.UnknownService"));
+
+        invokers.setBundleContext(null);
+        assertNull(invokers.get(SERVICE_INTERFACE));
+    }
+
+    @Test
+    public void shouldWrapExceptionsThrownByMethod() throws Exception {
+        try {
+            invokers.get(SERVICE_INTERFACE).invoke("fail", new Class[0], new Object[0]);
+            fail("Expected InvocationTargetException");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void shouldThrowExceptionIfMethodDoesNotExist() throws Exception {
+        invokers.get(SERVICE_INTERFACE).invoke("send", new Class[]{String.class}, new Object[]{"hi"});
+    }
+
+    @Test
+    public void shouldNotCacheServiceThatChangedWhileItWasRetrieved() {
+        final TestService newService = new TestService();
+        when(bundleContext.getService(serviceReference)).thenAnswer(new Answer<Object>() {
+            private boolean unregistered;
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (unregistered) {
+                    return newService;
+                }
+                // the service is replaced after it was retrieved, but before it was cached
+                unregistered = true;
+                invokers.serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, serviceReference));
+                return testService;
+            }
+        });
+
+        ActionServiceInvokers.ServiceInvoker invoker = invokers.get(SERVICE_INTERFACE);
+
+        assertSame(invoker, invokers.get(SERVICE_INTERFACE));
+        verify(bundleContext, times(2)).getService(serviceReference);
+        verify(bundleContext).ungetService(serviceReference);
+    }
+
+    @Test
+    public void shouldResolveOverloadedMethodsSeparately() throws Exception {
+        ActionServiceInvokers.ServiceInvoker invoker = invokers.get(SERVICE_INTERFACE);
+
+        invoker.invoke("send", new Class[]{String.class, Integer.class}, new Object[]{"hi", 2});
+        invoker.invoke("send", new Class[]{Integer.class}, new Object[]{4});
+        invoker.invoke("send", new Class[]{String.class, Integer.class}, new Object[]{"hi", 3});
+
+        assertEquals(9, testService.sent);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void shouldNotWrapErrorsThrownByMethod() throws Exception {
+        invokers.get(SERVICE_INTERFACE).invoke("crash", new Class[0], new Object[0]);
+    }
+
+    private class TestService {
+        private int sent;
+
+        public void send(String message, Integer count) {
+            sent += count;
+        }
+
+        public void send(Integer count) {
+            sent += count;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        public void crash() {
+            throw new AssertionError("crashed");
+        }
+    }
+}
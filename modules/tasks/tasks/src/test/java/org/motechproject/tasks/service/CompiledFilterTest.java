@@ -0,0 +1,95 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.tasks.domain.Filter;
+import org.motechproject.tasks.domain.ParameterType;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.OperatorType.AFTER;
+import static org.motechproject.tasks.domain.OperatorType.CONTAINS;
+import static org.motechproject.tasks.domain.OperatorType.EXIST;
+import static org.motechproject.tasks.domain.OperatorType.GT;
+import static org.motechproject.tasks.domain.OperatorType.LT;
+import static org.motechproject.tasks.domain.OperatorType.STARTSWITH;
+
+public class CompiledFilterTest {
+
+    @Mock
+    private TaskContext taskContext;
+
+    private KeyEvaluator keyEvaluator;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(taskContext.getTriggerValue("name")).thenReturn("john smith");
+
+        keyEvaluator = new KeyEvaluator(taskContext);
+    }
+
+    @Test
+    public void shouldCheckValuesAgainstConvertedExpression() {
+        assertTrue(filter(ParameterType.INTEGER, GT.getValue(), "10").check(11));
+        assertFalse(filter(ParameterType.INTEGER, GT.getValue(), "10").check("10.0"));
+        assertTrue(filter(ParameterType.DOUBLE, LT.getValue(), "10.5").check(10.25));
+        assertTrue(filter(ParameterType.UNICODE, STARTSWITH.getValue(), "jo").check("john"));
+        assertFalse(filter(ParameterType.UNICODE, CONTAINS.getValue(), "x").check("john"));
+        assertTrue(filter(ParameterType.DATE, AFTER.getValue(), "2015-01-01T00:00:00.000Z")
+                .check("2015-01-02T00:00:00.000Z"));
+        assertFalse(filter(ParameterType.UNICODE, "task.unknown", "x").check("x"));
+    }
+
+    @Test
+    public void shouldNotPassMissingValues() {
+        assertFalse(filter(ParameterType.UNICODE, EXIST.getValue(), "").check(null));
+    }
+
+    @Test
+    public void shouldApplyNegation() {
+        Filter filter = new Filter("name", "trigger.name", ParameterType.UNICODE, false, EXIST.getValue(), "");
+
+        assertFalse(CompiledFilter.compile(filter).check("john"));
+        assertTrue(CompiledFilter.compile(filter).check(null));
+    }
+
+    @Test
+    public void shouldRetrieveManipulatedValue() throws TaskHandlerException {
+        Filter filter = new Filter("name", "trigger.name?toUpper", ParameterType.UNICODE, true,
+                STARTSWITH.getValue(), "JOHN");
+
+        assertEquals("JOHN SMITH", CompiledFilter.compile(filter).getValue(keyEvaluator));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldReportInvalidExpressionWhenChecked() {
+        CompiledFilter filter = filter(ParameterType.INTEGER, GT.getValue(), "ten");
+
+        filter.check(5);
+    }
+
+    @Test
+    public void shouldCacheFiltersByTheirDefinition() {
+        Filter filter = new Filter("name", "trigger.name", ParameterType.UNICODE, true, CONTAINS.getValue(), "a");
+        CompiledFilter compiled = CompiledFilter.of(filter);
+
+        assertSame(compiled, CompiledFilter.of(new Filter("other name", "trigger.name", ParameterType.UNICODE, true,
+                CONTAINS.getValue(), "a")));
+
+        filter.setExpression("b");
+        assertNotSame(compiled, CompiledFilter.of(filter));
+    }
+
+    private CompiledFilter filter(ParameterType type, String operator, String expression) {
+        return CompiledFilter.compile(new Filter("value", "trigger.value", type, true, operator, expression));
+    }
+}
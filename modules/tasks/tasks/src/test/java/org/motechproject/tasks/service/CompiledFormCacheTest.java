@@ -0,0 +1,34 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompiledFormCacheTest {
+
+    @Test
+    public void shouldReturnCachedForms() {
+        CompiledFormCache<String, Integer> cache = new CompiledFormCache<>();
+
+        cache.put("one", 1);
+
+        assertEquals(Integer.valueOf(1), cache.get("one"));
+        assertNull(cache.get("two"));
+    }
+
+    @Test
+    public void shouldClearCacheWhenFull() {
+        CompiledFormCache<Integer, Integer> cache = new CompiledFormCache<>();
+
+        int i = 0;
+        do {
+            cache.put(i, i);
+            ++i;
+        } while (cache.get(0) != null);
+
+        // the form which did not fit is the only one cached
+        assertEquals(Integer.valueOf(i - 1), cache.get(i - 1));
+        assertNull(cache.get(i - 2));
+    }
+}
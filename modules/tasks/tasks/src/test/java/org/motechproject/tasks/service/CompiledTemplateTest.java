@@ -0,0 +1,69 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.tasks.ex.TaskHandlerException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CompiledTemplateTest {
+
+    @Mock
+    private TaskContext taskContext;
+
+    private KeyEvaluator keyEvaluator;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(taskContext.getTriggerValue("name")).thenReturn("john smith");
+        when(taskContext.getTriggerValue("greeting")).thenReturn("Hello %s, you are %s");
+        when(taskContext.getTriggerValue("age")).thenReturn(30);
+        when(taskContext.getTriggerValue("empty")).thenReturn(null);
+
+        keyEvaluator = new KeyEvaluator(taskContext);
+    }
+
+    @Test
+    public void shouldEvaluateLiteralsAndKeys() throws TaskHandlerException {
+        assertEquals("Name: john smith, age: 30.",
+                CompiledTemplate.compile("Name: {{trigger.name}}, age: {{trigger.age}}.").evaluate(keyEvaluator));
+        assertEquals("john smith", CompiledTemplate.compile("{{trigger.name}}").evaluate(keyEvaluator));
+        assertEquals("no keys", CompiledTemplate.compile("no keys").evaluate(keyEvaluator));
+        assertEquals("", CompiledTemplate.compile("").evaluate(keyEvaluator));
+        assertEquals("[]", CompiledTemplate.compile("[{{trigger.empty}}]").evaluate(keyEvaluator));
+    }
+
+    @Test
+    public void shouldApplyManipulations() throws TaskHandlerException {
+        assertEquals("JOHN-SMITH", CompiledTemplate.compile("{{trigger.name?toUpper?join(-)}}").evaluate(keyEvaluator));
+        assertEquals("smith", CompiledTemplate.compile("{{trigger.name?split( ,1)}}").evaluate(keyEvaluator));
+        assertEquals("Hello Ala, you are 30",
+                CompiledTemplate.compile("{{trigger.greeting?format(Ala,{{trigger.age}})}}").evaluate(keyEvaluator));
+    }
+
+    @Test
+    public void shouldPublishWarningForUnknownManipulation() throws TaskHandlerException {
+        assertEquals("john smith", CompiledTemplate.compile("{{trigger.name?unknown}}").evaluate(keyEvaluator));
+
+        verify(taskContext).publishWarningActivity("task.warning.manipulation", "unknown");
+    }
+
+    @Test(expected = TaskHandlerException.class)
+    public void shouldReportInvalidManipulationWhenEvaluated() throws TaskHandlerException {
+        CompiledTemplate template = CompiledTemplate.compile("{{trigger.name?datetime(yyyy-MM-dd)}}");
+
+        template.evaluate(keyEvaluator);
+    }
+
+    @Test
+    public void shouldCacheCompiledTemplates() {
+        assertSame(CompiledTemplate.of("{{trigger.name}}"), CompiledTemplate.of("{{trigger.name}}"));
+    }
+}
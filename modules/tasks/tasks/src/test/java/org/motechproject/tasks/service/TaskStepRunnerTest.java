@@ -0,0 +1,197 @@
+package org.motechproject.tasks.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActionInformation;
+import org.motechproject.tasks.domain.TaskBuilder;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.motechproject.tasks.events.constants.TaskFailureCause.ACTION;
+import static org.motechproject.tasks.events.constants.TaskFailureCause.DATA_SOURCE;
+
+public class TaskStepRunnerTest {
+
+    private TaskStepRunner runner;
+    private TaskContext taskContext;
+
+    @Before
+    public void setUp() {
+        runner = new TaskStepRunner(2);
+
+        Task task = new TaskBuilder().withName("task").addAction(new TaskActionInformation()).build();
+        taskContext = new TaskContext(task, null, mock(TaskActivityService.class));
+    }
+
+    @After
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    public void shouldRunStepsConcurrently() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        List<TaskStepRunner.Step<Boolean>> steps = new ArrayList<>();
+        for (String name : asList("first", "second")) {
+            steps.add(new TestStep<Boolean>(name) {
+                @Override
+                public Boolean execute() throws TaskHandlerException {
+                    // both steps must be running at the same time to pass the latch
+                    latch.countDown();
+                    try {
+                        return latch.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new TaskHandlerException(DATA_SOURCE, "task.error.unrecognizedError", e);
+                    }
+                }
+            });
+        }
+
+        assertEquals(asList(true, true), runner.runAll(steps, taskContext));
+        assertEquals(2, taskContext.getStepTimes().size());
+        assertTrue(taskContext.getStepTimes().containsKey("first"));
+        assertTrue(taskContext.getStepTimes().containsKey("second"));
+    }
+
+    @Test
+    public void shouldRunStepsWithSecurityContextOfCaller() throws Exception {
+        SecurityContext securityContext = new SecurityContextImpl();
+        securityContext.setAuthentication(new TestingAuthenticationToken("admin", "password"));
+        SecurityContextHolder.setContext(securityContext);
+
+        try {
+            List<TaskStepRunner.Step<String>> steps = new ArrayList<>();
+            for (String name : asList("first", "second")) {
+                steps.add(new TestStep<String>(name) {
+                    @Override
+                    public String execute() {
+                        return SecurityContextHolder.getContext().getAuthentication().getName();
+                    }
+                });
+            }
+
+            assertEquals(asList("admin", "admin"), runner.runAll(steps, taskContext));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    public void shouldRunStepsInCallingThreadWithinTransaction() throws Exception {
+        final Thread caller = Thread.currentThread();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        try {
+            List<TaskStepRunner.Step<Boolean>> steps = new ArrayList<>();
+            for (String name : asList("first", "second")) {
+                steps.add(new TestStep<Boolean>(name) {
+                    @Override
+                    public Boolean execute() {
+                        return Thread.currentThread() == caller;
+                    }
+                });
+            }
+
+            assertEquals(asList(true, true), runner.runAll(steps, taskContext));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    public void shouldRethrowTheFailureOfTheFirstFailedStep() {
+        final TaskHandlerException first = new TaskHandlerException(DATA_SOURCE, "task.error.notFoundObjectForType");
+        final TaskHandlerException second = new TaskHandlerException(ACTION, "task.error.cantExecuteAction");
+
+        List<TaskStepRunner.Step<Object>> steps = new ArrayList<>();
+        steps.add(new TestStep<Object>("succeeded") {
+            @Override
+            public Object execute() {
+                return new Object();
+            }
+        });
+        steps.add(failingStep("first", first));
+        steps.add(failingStep("second", second));
+
+        try {
+            runner.runAll(steps, taskContext);
+            fail("Expected TaskHandlerException");
+        } catch (TaskHandlerException e) {
+            assertEquals(first, e);
+        }
+
+        // the times of the failed steps are recorded too
+        assertEquals(3, taskContext.getStepTimes().size());
+    }
+
+    @Test
+    public void shouldRunStepsSequentiallyWithSingleThread() throws Exception {
+        TaskStepRunner sequentialRunner = new TaskStepRunner(1);
+        final List<String> executed = new ArrayList<>();
+
+        List<TaskStepRunner.Step<Object>> steps = new ArrayList<>();
+        steps.add(new TestStep<Object>("first") {
+            @Override
+            public Object execute() {
+                executed.add(Thread.currentThread().getName());
+                return null;
+            }
+        });
+        steps.add(failingStep("second", new TaskHandlerException(ACTION, "task.error.cantExecuteAction")));
+        steps.add(new TestStep<Object>("third") {
+            @Override
+            public Object execute() {
+                executed.add(Thread.currentThread().getName());
+                return null;
+            }
+        });
+
+        try {
+            sequentialRunner.runAll(steps, taskContext);
+            fail("Expected TaskHandlerException");
+        } catch (TaskHandlerException e) {
+            assertEquals(asList(Thread.currentThread().getName()), executed);
+        } finally {
+            sequentialRunner.shutdown();
+        }
+    }
+
+    private TaskStepRunner.Step<Object> failingStep(String name, final TaskHandlerException exception) {
+        return new TestStep<Object>(name) {
+            @Override
+            public Object execute() throws TaskHandlerException {
+                throw exception;
+            }
+        };
+    }
+
+    private abstract static class TestStep<T> implements TaskStepRunner.Step<T> {
+        private final String name;
+
+        private TestStep(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
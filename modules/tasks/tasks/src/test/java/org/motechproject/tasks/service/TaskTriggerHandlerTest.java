@@ -259,10 +259,10 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.actionNotFound", exceptionCaptor.getValue().getMessage());
@@ -285,11 +285,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.taskActionNotContainsField", exceptionCaptor.getValue().getMessage());
@@ -312,11 +312,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.templateNull", exceptionCaptor.getValue().getMessage());
@@ -339,11 +339,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToInteger", exceptionCaptor.getValue().getMessage());
@@ -367,11 +367,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToLong", exceptionCaptor.getValue().getMessage());
@@ -395,11 +395,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToDouble", exceptionCaptor.getValue().getMessage());
@@ -423,11 +423,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToBoolean", exceptionCaptor.getValue().getMessage());
@@ -451,11 +451,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToTime", exceptionCaptor.getValue().getMessage());
@@ -479,11 +479,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("task.error.convertToDate", exceptionCaptor.getValue().getMessage());
@@ -507,11 +507,11 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addSuccess(eq(task));
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
@@ -564,13 +564,13 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
         verify(taskService).save(task);
         verify(taskActivityService).addWarning(task);
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> capturedEvents = captorEvent.getAllValues();
 
@@ -690,7 +690,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
         verify(taskService).save(task);
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
     }
 
     @Test
@@ -785,7 +785,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
         verify(taskService).save(task);
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
     }
 
     @Test
@@ -809,13 +809,13 @@ public class TaskTriggerHandlerTest {
         verify(taskService).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         verify(dataProvider, never()).supports(anyString());
         verify(dataProvider, never()).lookup(anyString(), anyString(), anyMap());
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> capturedEvents = captorEvent.getAllValues();
 
@@ -846,13 +846,13 @@ public class TaskTriggerHandlerTest {
         verify(taskService).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         verify(dataProvider, never()).supports(anyString());
         verify(dataProvider, never()).lookup(anyString(), anyString(), anyMap());
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> capturedEvents = captorEvent.getAllValues();
 
@@ -891,11 +891,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(dataProvider).lookup("TestObjectField", "id", lookupFields);
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> capturedEvents = captorEvent.getAllValues();
 
@@ -935,11 +935,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(dataProvider).lookup("TestObjectField", "id", lookupFields);
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> capturedEvents = captorEvent.getAllValues();
 
@@ -970,11 +970,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
         assertEquals("error.date.format", exceptionCaptor.getValue().getMessage());
@@ -1018,12 +1018,12 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(any(MotechEvent.class));
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
     }
 
     @Test
@@ -1094,12 +1094,12 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> events = captor.getAllValues();
 
@@ -1154,11 +1154,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), ACTION), captorEvent.getValue().getSubject());
         assertEquals("task.error.cantExecuteAction", exceptionCaptor.getValue().getMessage());
@@ -1188,11 +1188,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", "TestService");
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), ACTION), captorEvent.getValue().getSubject());
         assertEquals("task.error.cantExecuteAction", exceptionCaptor.getValue().getMessage());
@@ -1223,11 +1223,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), ACTION), captorEvent.getValue().getSubject());
         assertEquals("task.error.serviceMethodInvokeError", exceptionCaptor.getValue().getMessage());
@@ -1258,11 +1258,11 @@ public class TaskTriggerHandlerTest {
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()));
+        verify(taskActivityService).addError(eq(task), exceptionCaptor.capture(), eq(createEventParameters()), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), ACTION), captorEvent.getValue().getSubject());
         assertEquals("task.error.notFoundMethodForService", exceptionCaptor.getValue().getMessage());
@@ -1289,11 +1289,11 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
@@ -1320,13 +1320,13 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
         verify(taskActivityService, times(2)).addWarning(task, "task.warning.notFoundObjectForType", "TestObjectField");
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
@@ -1353,12 +1353,12 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskActivityService).addWarning(task, "task.warning.serviceUnavailable", actionEvent.getServiceInterface());
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         ArgumentCaptor<MotechEvent> captorEvent = ArgumentCaptor.forClass(MotechEvent.class);
         verify(eventRelay, times(2)).sendEventMessage(captorEvent.capture());
@@ -1387,7 +1387,7 @@ public class TaskTriggerHandlerTest {
 
         verify(taskService).save(task);
         verify(eventRelay).sendEventMessage(captorEvent.capture());
-        verify(taskActivityService, never()).addSuccess(task);
+        verify(taskActivityService, never()).addSuccess(eq(task), anyMap());
 
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
     }
@@ -1408,13 +1408,13 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
         verify(taskService).getActionEventFor(task.getActions().get(1));
         verify(eventRelay, times(3)).sendEventMessage(captor.capture());
-        verify(taskActivityService).addSuccess(task);
+        verify(taskActivityService).addSuccess(eq(task), anyMap());
 
         List<MotechEvent> events = captor.getAllValues();
 
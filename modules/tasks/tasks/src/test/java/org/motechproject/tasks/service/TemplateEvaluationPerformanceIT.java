@@ -0,0 +1,81 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.ex.TaskHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares evaluating representative task templates with and without reusing the compiled templates. Compiling
+ * the template for every evaluation corresponds to parsing its keys on every task execution (the compiled
+ * manipulations are reused in both cases, so the difference is a lower bound). The number of evaluations is set
+ * with the <code>tasks.performance.quantity</code> property, the time of both approaches is logged.
+ */
+public class TemplateEvaluationPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateEvaluationPerformanceIT.class);
+
+    private static final String[] TEMPLATES = {
+            "Hello {{trigger.externalId}}, You have an appointment on {{trigger.startDate}}",
+            "{{trigger.eventName?toUpper?join(-)}}",
+            "{{trigger.startDate?dateTime(yyyy-MM-dd)}} at {{trigger.startDate?plusHours(2)?dateTime(HH:mm)}}",
+            "{{trigger.phone?split(-,1)?substring(0,3)}}",
+            "{{trigger.message?format({{trigger.externalId}},{{trigger.eventName}})?capitalize}}",
+            "A constant value without keys"
+    };
+
+    private static final int ITERATIONS = Integer.getInteger("tasks.performance.quantity", 200000);
+    private static final int WARM_UP_ITERATIONS = 20000;
+
+    private KeyEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("externalId", "123abc");
+        parameters.put("startDate", "2015-05-15T10:30:00.000+02:00");
+        parameters.put("eventName", "appointment reminder");
+        parameters.put("phone", "48-600-700-800");
+        parameters.put("message", "patient %s, event %s");
+
+        evaluator = new KeyEvaluator(new TaskContext(new Task(), parameters, null));
+    }
+
+    @Test
+    public void testTemplateEvaluation() throws TaskHandlerException {
+        evaluate(false, WARM_UP_ITERATIONS);
+        evaluate(true, WARM_UP_ITERATIONS);
+
+        long startTime = System.nanoTime();
+        long parsedLength = evaluate(false, ITERATIONS);
+        long parsedTime = (System.nanoTime() - startTime) / 1000000;
+
+        startTime = System.nanoTime();
+        long compiledLength = evaluate(true, ITERATIONS);
+        long compiledTime = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(parsedLength, compiledLength);
+
+        LOGGER.info("Tasks: Evaluating {} templates took {} ms when parsed on every evaluation, {} ms when compiled once",
+                ITERATIONS * TEMPLATES.length, parsedTime, compiledTime);
+    }
+
+    private long evaluate(boolean reuseCompiled, int iterations) throws TaskHandlerException {
+        long length = 0;
+
+        for (int i = 0; i < iterations; ++i) {
+            for (String template : TEMPLATES) {
+                CompiledTemplate compiled = reuseCompiled ? CompiledTemplate.of(template) : CompiledTemplate.compile(template);
+                length += compiled.evaluate(evaluator).length();
+            }
+        }
+
+        return length;
+    }
+}
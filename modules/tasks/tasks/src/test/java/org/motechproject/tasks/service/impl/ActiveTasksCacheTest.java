@@ -0,0 +1,117 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.tasks.domain.Task;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.events.constants.EventSubjects.ACTIVE_TASKS_INVALIDATE_SUBJECT;
+
+public class ActiveTasksCacheTest {
+    private static final String SUBJECT = "subject";
+
+    @Mock
+    private EventRelay eventRelay;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Bundle bundle;
+
+    private ActiveTasksCache cache;
+
+    private Task task = new Task();
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        cache = new ActiveTasksCache();
+        cache.setEventRelay(eventRelay);
+        cache.setBundleContext(bundleContext);
+    }
+
+    @Test
+    public void shouldCacheTasks() {
+        cache.put(SUBJECT, asList(task), cache.getVersion());
+
+        assertEquals(asList(task), cache.get(SUBJECT));
+        assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void shouldReturnCopiesOfCachedTasks() {
+        cache.put(SUBJECT, asList(task), cache.getVersion());
+        task.incrementFailuresInRow();
+
+        Task cached = cache.get(SUBJECT).get(0);
+        assertNotSame(task, cached);
+        assertEquals(0, cached.getFailuresInRow());
+
+        cached.incrementFailuresInRow();
+        cached.setEnabled(false);
+
+        assertEquals(0, cache.get(SUBJECT).get(0).getFailuresInRow());
+        assertTrue(cache.get(SUBJECT).get(0).isEnabled());
+    }
+
+    @Test
+    public void shouldNotCacheTasksLoadedBeforeInvalidation() {
+        long version = cache.getVersion();
+        cache.invalidate();
+        cache.put(SUBJECT, asList(task), version);
+
+        assertNull(cache.get(SUBJECT));
+    }
+
+    @Test
+    public void shouldBroadcastInvalidationWhenTaskChanged() {
+        cache.put(SUBJECT, asList(task), cache.getVersion());
+
+        cache.handleTaskChange(new MotechEvent("mds.crud.tasks.Task.UPDATE"));
+
+        assertNull(cache.get(SUBJECT));
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(ACTIVE_TASKS_INVALIDATE_SUBJECT, captor.getValue().getSubject());
+    }
+
+    @Test
+    public void shouldInvalidateWhenInvalidationIsBroadcast() {
+        cache.put(SUBJECT, asList(task), cache.getVersion());
+
+        cache.handleInvalidation(new MotechEvent(ACTIVE_TASKS_INVALIDATE_SUBJECT));
+
+        assertNull(cache.get(SUBJECT));
+    }
+
+    @Test
+    public void shouldInvalidateWhenBundleWasUninstalled() {
+        ArgumentCaptor<BundleListener> captor = ArgumentCaptor.forClass(BundleListener.class);
+        cache.registerBundleListener();
+        verify(bundleContext).addBundleListener(captor.capture());
+
+        cache.put(SUBJECT, asList(task), cache.getVersion());
+        captor.getValue().bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+        assertEquals(asList(task), cache.get(SUBJECT));
+
+        captor.getValue().bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+        assertNull(cache.get(SUBJECT));
+    }
+}
@@ -28,6 +28,8 @@ import org.motechproject.tasks.service.ChannelService;
 import org.motechproject.tasks.service.TaskService;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Version;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.ClassPathResource;
@@ -49,9 +51,11 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -272,6 +276,57 @@ public class ChannelServiceImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldFindTriggerIgnoringCase() {
+        TriggerEvent triggerEvent = new TriggerEvent("displayName", "Subject", null, new ArrayList<EventParameter>(), "");
+        Channel channel = new Channel("displayName", BUNDLE_SYMBOLIC_NAME, VERSION);
+        channel.getTriggerTaskEvents().add(triggerEvent);
+
+        when(channelsDataService.executeQuery(any(QueryExecution.class))).thenReturn(asList(channel));
+
+        assertEquals(triggerEvent, channelService.getTrigger("subject"));
+        assertEquals(triggerEvent, channelService.getTrigger("SUBJECT"));
+        assertNull(channelService.getTrigger("other"));
+        assertNull(channelService.getTrigger(null));
+
+        verify(channelsDataService, times(1)).executeQuery(any(QueryExecution.class));
+    }
+
+    @Test
+    public void shouldReloadTriggersAfterChannelWasDeleted() {
+        TriggerEvent triggerEvent = new TriggerEvent("displayName", "subject", null, new ArrayList<EventParameter>(), "");
+        Channel channel = new Channel("displayName", BUNDLE_SYMBOLIC_NAME, VERSION);
+        channel.getTriggerTaskEvents().add(triggerEvent);
+
+        when(channelsDataService.executeQuery(any(QueryExecution.class))).thenReturn(asList(channel));
+        assertEquals(triggerEvent, channelService.getTrigger("subject"));
+
+        channelService.delete(BUNDLE_SYMBOLIC_NAME);
+        when(channelsDataService.executeQuery(any(QueryExecution.class))).thenReturn(new ArrayList<Channel>());
+
+        assertNull(channelService.getTrigger("subject"));
+        verify(channelsDataService, times(2)).executeQuery(any(QueryExecution.class));
+    }
+
+    @Test
+    public void shouldReloadTriggersAfterBundleWasUninstalled() {
+        ArgumentCaptor<BundleListener> listenerCaptor = ArgumentCaptor.forClass(BundleListener.class);
+        ((ChannelServiceImpl) channelService).registerBundleListener();
+        verify(bundleContext).addBundleListener(listenerCaptor.capture());
+
+        when(channelsDataService.executeQuery(any(QueryExecution.class))).thenReturn(new ArrayList<Channel>());
+        channelService.getTrigger("subject");
+        channelService.getTrigger("subject");
+
+        listenerCaptor.getValue().bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+        channelService.getTrigger("subject");
+        verify(channelsDataService, times(1)).executeQuery(any(QueryExecution.class));
+
+        listenerCaptor.getValue().bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+        channelService.getTrigger("subject");
+        verify(channelsDataService, times(2)).executeQuery(any(QueryExecution.class));
+    }
+
     @Test
     public void shouldGetChannelByChannelInfo() {
         String displayName = "Test";
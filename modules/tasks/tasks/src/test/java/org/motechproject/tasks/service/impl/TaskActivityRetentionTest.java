@@ -0,0 +1,89 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+import static org.motechproject.tasks.domain.TaskActivityType.WARNING;
+
+public class TaskActivityRetentionTest {
+
+    @Mock
+    private TaskActivitiesDataService taskActivitiesDataService;
+
+    private Map<TaskActivityType, Integer> retentionDays;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        retentionDays = new EnumMap<>(TaskActivityType.class);
+        retentionDays.put(SUCCESS, 30);
+        retentionDays.put(WARNING, 0);
+        retentionDays.put(ERROR, 90);
+    }
+
+    @Test
+    public void shouldPurgeExpiredActivitiesInBoundedBatches() {
+        when(taskActivitiesDataService.byActivityTypeAndDateBefore(eq(SUCCESS), any(DateTime.class),
+                any(QueryParams.class))).thenReturn(activities(2));
+        when(taskActivitiesDataService.byActivityTypeAndDateBefore(eq(ERROR), any(DateTime.class),
+                any(QueryParams.class))).thenReturn(activities(1));
+
+        TaskActivityRetention retention = new TaskActivityRetention(taskActivitiesDataService, null, retentionDays,
+                0, 2, 3);
+
+        // the success activities fill every batch, so only the maximal number of batches is deleted
+        assertEquals(7, retention.purge());
+
+        verify(taskActivitiesDataService, times(3)).byActivityTypeAndDateBefore(eq(SUCCESS), any(DateTime.class),
+                any(QueryParams.class));
+        verify(taskActivitiesDataService).byActivityTypeAndDateBefore(eq(ERROR), any(DateTime.class),
+                any(QueryParams.class));
+        verify(taskActivitiesDataService, never()).byActivityTypeAndDateBefore(eq(WARNING), any(DateTime.class),
+                any(QueryParams.class));
+        verify(taskActivitiesDataService, times(4)).deleteAll(anyCollection(), eq(2));
+    }
+
+    @Test
+    public void shouldNotDeleteAnythingIfThereAreNoExpiredActivities() {
+        when(taskActivitiesDataService.byActivityTypeAndDateBefore(any(TaskActivityType.class), any(DateTime.class),
+                any(QueryParams.class))).thenReturn(new ArrayList<TaskActivity>());
+
+        TaskActivityRetention retention = new TaskActivityRetention(taskActivitiesDataService, null, retentionDays,
+                0, 100, 10);
+
+        assertEquals(0, retention.purge());
+        verify(taskActivitiesDataService, never()).deleteAll(anyCollection(), anyInt());
+    }
+
+    private List<TaskActivity> activities(int count) {
+        List<TaskActivity> activities = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            activities.add(new TaskActivity("task.success.ok", 1L, SUCCESS));
+        }
+        return activities;
+    }
+}
@@ -0,0 +1,228 @@
+package org.motechproject.tasks.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounter;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityCountersDataService;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.springframework.transaction.support.TransactionCallback;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.tasks.domain.TaskActivityCounterPeriod.DAY;
+import static org.motechproject.tasks.domain.TaskActivityCounterPeriod.HOUR;
+import static org.motechproject.tasks.domain.TaskActivityType.ERROR;
+import static org.motechproject.tasks.domain.TaskActivityType.SUCCESS;
+
+public class TaskActivityRollupsTest {
+
+    private static final Long TASK_ID = 12L;
+    private static final DateTime DATE = new DateTime(2015, 3, 10, 14, 25, 30);
+
+    @Mock
+    private TaskActivityCountersDataService countersDataService;
+
+    @Mock
+    private TasksDataService tasksDataService;
+
+    @Mock
+    private TaskActivitiesDataService activitiesDataService;
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private Query incrementQuery;
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    private TaskActivityRollups rollups;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(countersDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+
+        when(countersDataService.executeQuery(any(QueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((QueryExecution) invocation.getArguments()[0]).execute(query, null);
+            }
+        });
+        when(query.getPersistenceManager()).thenReturn(persistenceManager);
+        when(persistenceManager.getPersistenceManagerFactory()).thenReturn(persistenceManagerFactory);
+        when(persistenceManagerFactory.getConnectionDriverName()).thenReturn(Constants.Config.MYSQL_DRIVER_CLASSNAME);
+        when(persistenceManager.newQuery(eq(Constants.Util.SQL_QUERY), anyString())).thenReturn(incrementQuery);
+        when(incrementQuery.executeWithMap(anyMap())).thenReturn(0L);
+
+        rollups = new TaskActivityRollups(countersDataService);
+    }
+
+    @Test
+    public void shouldCreateOneCounterPerTaskTypeAndPeriod() {
+        rollups.add(asList(activity(SUCCESS, DATE), activity(SUCCESS, DATE.plusMinutes(20)),
+                activity(ERROR, DATE)));
+
+        ArgumentCaptor<TaskActivityCounter> captor = ArgumentCaptor.forClass(TaskActivityCounter.class);
+        verify(countersDataService, times(4)).create(captor.capture());
+
+        DateTime hour = new DateTime(2015, 3, 10, 14, 0);
+        DateTime day = new DateTime(2015, 3, 10, 0, 0);
+
+        assertEquals(asList(new TaskActivityCounter(TASK_ID, SUCCESS, HOUR, hour, 2L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 2L),
+                new TaskActivityCounter(TASK_ID, ERROR, HOUR, hour, 1L),
+                new TaskActivityCounter(TASK_ID, ERROR, DAY, day, 1L)), captor.getAllValues());
+    }
+
+    @Test
+    public void shouldIncrementExistingCountersInDatabase() {
+        DateTime hour = new DateTime(2015, 3, 10, 14, 0);
+        when(incrementQuery.executeWithMap(argThat(new ArgumentMatcher<Map>() {
+            @Override
+            public boolean matches(Object argument) {
+                return HOUR.name().equals(((Map) argument).get("period"));
+            }
+        }))).thenReturn(1L);
+
+        rollups.add(asList(activity(SUCCESS, DATE), activity(SUCCESS, DATE.plusMinutes(20))));
+
+        verify(persistenceManager, times(2)).newQuery(Constants.Util.SQL_QUERY, "UPDATE " +
+                "MOTECH_TASKS_TASKACTIVITYCOUNTER SET total = total + :increment WHERE task = :task AND " +
+                "activityType = :activityType AND period = :period AND periodStart = :periodStart");
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(incrementQuery, times(2)).executeWithMap(captor.capture());
+        Map params = captor.getAllValues().get(0);
+        assertEquals(2L, params.get("increment"));
+        assertEquals(TASK_ID, params.get("task"));
+        assertEquals(SUCCESS.name(), params.get("activityType"));
+        assertEquals(HOUR.name(), params.get("period"));
+        assertEquals(new Timestamp(hour.getMillis()), params.get("periodStart"));
+
+        verify(countersDataService, never()).create(new TaskActivityCounter(TASK_ID, SUCCESS, HOUR, hour, 2L));
+        verify(countersDataService).create(new TaskActivityCounter(TASK_ID, SUCCESS, DAY,
+                new DateTime(2015, 3, 10, 0, 0), 2L));
+    }
+
+    @Test
+    public void shouldQuoteIdentifiersForPostgres() {
+        when(persistenceManagerFactory.getConnectionDriverName()).thenReturn("org.postgresql.Driver");
+
+        rollups.add(asList(activity(ERROR, DATE)));
+
+        verify(persistenceManager, times(2)).newQuery(Constants.Util.SQL_QUERY, "UPDATE " +
+                "\"MOTECH_TASKS_TASKACTIVITYCOUNTER\" SET \"total\" = \"total\" + :increment WHERE \"task\" = :task AND " +
+                "\"activityType\" = :activityType AND \"period\" = :period AND \"periodStart\" = :periodStart");
+    }
+
+    @Test
+    public void shouldAddUpCountersOfTheSamePeriod() {
+        DateTime day = DATE.withTimeAtStartOfDay();
+        when(countersDataService.byTaskAndPeriod(eq(TASK_ID), eq(DAY), any(QueryParams.class))).thenReturn(asList(
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 4L),
+                new TaskActivityCounter(TASK_ID, ERROR, DAY, day, 1L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 3L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day.minusDays(1), 2L)));
+
+        assertEquals(asList(new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 7L),
+                new TaskActivityCounter(TASK_ID, ERROR, DAY, day, 1L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day.minusDays(1), 2L)),
+                rollups.getCounters(TASK_ID, DAY, 10));
+    }
+
+    @Test
+    public void shouldReturnRequestedNumberOfCountersAfterMergingThem() {
+        DateTime day = DATE.withTimeAtStartOfDay();
+        when(countersDataService.byTaskAndPeriod(eq(TASK_ID), eq(DAY), argThat(new ArgumentMatcher<QueryParams>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((QueryParams) argument).getPage() == 1;
+            }
+        }))).thenReturn(asList(
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 4L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 3L)));
+        when(countersDataService.byTaskAndPeriod(eq(TASK_ID), eq(DAY), argThat(new ArgumentMatcher<QueryParams>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((QueryParams) argument).getPage() == 2;
+            }
+        }))).thenReturn(asList(
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day.minusDays(1), 2L),
+                new TaskActivityCounter(TASK_ID, ERROR, DAY, day.minusDays(1), 1L)));
+
+        assertEquals(asList(new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day, 7L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, day.minusDays(1), 2L)),
+                rollups.getCounters(TASK_ID, DAY, 2));
+    }
+
+    @Test
+    public void shouldCountActivitiesFromDailyCounters() {
+        when(countersDataService.byTaskActivityTypeAndPeriod(TASK_ID, SUCCESS, DAY)).thenReturn(asList(
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, DATE.withTimeAtStartOfDay(), 7L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, DATE.withTimeAtStartOfDay().minusDays(1), 3L)));
+
+        assertEquals(10, rollups.count(TASK_ID, SUCCESS));
+    }
+
+    @Test
+    public void shouldCountActivitiesRecordedBeforeCountersWereIntroduced() {
+        Task task = new Task();
+        task.setId(TASK_ID);
+        when(tasksDataService.retrieveAll()).thenReturn(asList(task));
+        when(activitiesDataService.countByTaskActivityTypeAndDateBefore(TASK_ID, SUCCESS, DATE)).thenReturn(8L);
+
+        rollups.backfill(tasksDataService, activitiesDataService, DATE);
+
+        ArgumentCaptor<TaskActivityCounter> captor = ArgumentCaptor.forClass(TaskActivityCounter.class);
+        verify(countersDataService, times(2)).create(captor.capture());
+        assertEquals(asList(new TaskActivityCounter(TASK_ID, SUCCESS, HOUR, new DateTime(2015, 3, 10, 14, 0), 8L),
+                new TaskActivityCounter(TASK_ID, SUCCESS, DAY, new DateTime(2015, 3, 10, 0, 0), 8L)),
+                captor.getAllValues());
+    }
+
+    private TaskActivity activity(TaskActivityType type, DateTime date) {
+        TaskActivity activity = new TaskActivity("message", TASK_ID, type);
+        activity.setDate(date);
+        return activity;
+    }
+}
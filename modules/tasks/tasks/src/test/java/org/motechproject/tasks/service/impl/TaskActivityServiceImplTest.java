@@ -3,30 +3,45 @@ package org.motechproject.tasks.service.impl;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
+import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.motechproject.tasks.repository.TaskActivityCountersDataService;
+import org.motechproject.tasks.repository.TasksDataService;
 import org.motechproject.tasks.service.TaskActivityService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -93,6 +108,23 @@ public class TaskActivityServiceImplTest {
                 TaskActivityType.SUCCESS, null, null, captor.getValue());
     }
 
+    @Test
+    public void shouldAddTaskSuccessActivityWithStepTimes() {
+        Map<String, Long> stepTimes = new HashMap<>();
+        stepTimes.put("dataSource.1.Patient", 12L);
+        stepTimes.put("action.0.sendSms", 3L);
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+
+        activityService.addSuccess(task, stepTimes);
+
+        verify(taskActivitiesDataService).create(captor.capture());
+
+        assertActivity("task.success.ok", Collections.<String>emptyList(), TASK_ID,
+                TaskActivityType.SUCCESS, null, null, captor.getValue());
+        assertEquals(stepTimes, captor.getValue().getStepTimes());
+    }
+
     @Test
     public void shouldAddTaskWarningActivity() {
         String messageKey = "task.warning.taskDisabled";
@@ -165,6 +197,81 @@ public class TaskActivityServiceImplTest {
         assertEquals(activities, actual);
     }
 
+    @Test
+    public void shouldWriteBufferedActivitiesBeforeReadingThem() {
+        SettingsFacade settings = mock(SettingsFacade.class);
+        when(settings.getProperty("task.activity.batch.size")).thenReturn("10");
+        when(settings.getProperty("task.activity.flush.interval")).thenReturn("60000");
+
+        TaskActivityServiceImpl bufferedService = new TaskActivityServiceImpl(taskActivitiesDataService, null, null,
+                settings);
+        bufferedService.init();
+
+        try {
+            bufferedService.addSuccess(task);
+            verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+            verify(taskActivitiesDataService, never()).createAll(anyCollection(), anyInt());
+
+            bufferedService.getTaskActivitiesCount(TASK_ID, SUCCESS);
+
+            ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+            InOrder inOrder = inOrder(taskActivitiesDataService);
+            inOrder.verify(taskActivitiesDataService).createAll(captor.capture(), eq(10));
+            inOrder.verify(taskActivitiesDataService).countByTaskAndActivityTypes(TASK_ID,
+                    new HashSet<>(asList(SUCCESS)));
+
+            assertEquals(1, captor.getValue().size());
+        } finally {
+            bufferedService.destroy();
+        }
+    }
+
+    @Test
+    public void shouldCountOldActivitiesInBackground() throws Exception {
+        TaskActivityCountersDataService countersDataService = mock(TaskActivityCountersDataService.class);
+        TasksDataService tasksDataService = mock(TasksDataService.class);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        when(countersDataService.count()).thenReturn(0L);
+        when(taskActivitiesDataService.count()).thenReturn(5L);
+        when(tasksDataService.retrieveAll()).thenAnswer(new Answer<List<Task>>() {
+            @Override
+            public List<Task> answer(InvocationOnMock invocation) throws InterruptedException {
+                started.countDown();
+                released.await();
+                return new ArrayList<>();
+            }
+        });
+
+        TaskActivityServiceImpl service = new TaskActivityServiceImpl(taskActivitiesDataService, countersDataService,
+                tasksDataService, null);
+
+        try {
+            // the initialization does not wait for the activities to be counted
+            service.init();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        } finally {
+            released.countDown();
+            service.destroy();
+        }
+    }
+
+    @Test
+    public void shouldNotCountOldActivitiesIfCountersExist() {
+        TaskActivityCountersDataService countersDataService = mock(TaskActivityCountersDataService.class);
+        TasksDataService tasksDataService = mock(TasksDataService.class);
+        when(countersDataService.count()).thenReturn(3L);
+        when(taskActivitiesDataService.count()).thenReturn(5L);
+
+        TaskActivityServiceImpl service = new TaskActivityServiceImpl(taskActivitiesDataService, countersDataService,
+                tasksDataService, null);
+        service.init();
+        service.destroy();
+
+        verify(tasksDataService, never()).retrieveAll();
+    }
+
     private void assertActivity(String messageKey, List<String> field, Long taskId, TaskActivityType activityType,
                                 String stackTraceElement, Map<String, Object> errorParams, TaskActivity activity) {
         assertNotNull(activity);
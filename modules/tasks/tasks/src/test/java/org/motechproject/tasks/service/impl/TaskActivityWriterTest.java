@@ -0,0 +1,114 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityType;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskActivityWriterTest {
+
+    @Mock
+    private TaskActivitiesDataService taskActivitiesDataService;
+
+    private TaskActivityWriter writer;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        // the interval is long enough for the background flushing not to interfere with the tests
+        writer = new TaskActivityWriter(taskActivitiesDataService, null, 2, 60000);
+    }
+
+    @Test
+    public void shouldWriteActivitiesWhenBatchIsFull() {
+        writer.start();
+
+        try {
+            TaskActivity first = activity(1L);
+            TaskActivity second = activity(2L);
+
+            writer.add(first);
+            verify(taskActivitiesDataService, never()).createAll(anyCollection(), anyInt());
+            assertEquals(1, writer.getBufferedCount());
+
+            writer.add(second);
+            verify(taskActivitiesDataService).createAll(asList(first, second), 2);
+            assertEquals(0, writer.getBufferedCount());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void shouldWriteBufferedActivitiesWhenFlushed() {
+        writer.start();
+        TaskActivity activity = activity(1L);
+
+        writer.add(activity);
+        writer.flush();
+
+        verify(taskActivitiesDataService).createAll(asList(activity), 2);
+
+        writer.flush();
+        writer.stop();
+
+        verify(taskActivitiesDataService).createAll(anyCollection(), anyInt());
+    }
+
+    @Test
+    public void shouldDrainBufferWhenStopped() {
+        writer.start();
+        TaskActivity activity = activity(1L);
+
+        writer.add(activity);
+        writer.stop();
+
+        verify(taskActivitiesDataService).createAll(asList(activity), 2);
+    }
+
+    @Test
+    public void shouldWriteFailedActivitiesWithNextBatch() {
+        writer.start();
+        TaskActivity first = activity(1L);
+        TaskActivity second = activity(2L);
+
+        doThrow(new IllegalStateException("connection refused"))
+                .when(taskActivitiesDataService).createAll(asList(first), 2);
+
+        writer.add(first);
+        writer.flush();
+        assertEquals(1, writer.getBufferedCount());
+
+        writer.add(second);
+        writer.stop();
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(taskActivitiesDataService, times(2)).createAll(captor.capture(), eq(2));
+
+        List<Collection> batches = captor.getAllValues();
+        assertEquals(asList(first), batches.get(0));
+        assertEquals(asList(first, second), batches.get(1));
+    }
+
+    private TaskActivity activity(Long task) {
+        return new TaskActivity("task.success.ok", task, TaskActivityType.SUCCESS);
+    }
+}
@@ -14,6 +14,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.verification.VerificationMode;
+import org.motechproject.commons.api.TasksEventParser;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.mds.query.QueryExecution;
@@ -41,6 +42,7 @@ import org.motechproject.tasks.domain.TaskEventInformation;
 import org.motechproject.tasks.domain.TaskTriggerInformation;
 import org.motechproject.tasks.domain.TriggerEvent;
 import org.motechproject.tasks.ex.ActionNotFoundException;
+import org.motechproject.tasks.ex.CustomParserNotFoundException;
 import org.motechproject.tasks.ex.TaskNameAlreadyExistsException;
 import org.motechproject.tasks.ex.TaskNotFoundException;
 import org.motechproject.tasks.ex.TriggerNotFoundException;
@@ -69,6 +71,7 @@ import static org.hamcrest.Matchers.hasProperty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -117,6 +120,12 @@ public class TaskServiceImplTest {
     @Mock
     TriggerHandler triggerHandler;
 
+    @Mock
+    TasksEventParserRegistry parserRegistry;
+
+    @Mock
+    TasksEventParser parser;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
@@ -132,6 +141,8 @@ public class TaskServiceImplTest {
         taskService.setEventRelay(eventRelay);
         taskService.setProviderService(providerService);
         taskService.setTasksDataService(tasksDataService);
+        taskService.setParserRegistry(parserRegistry);
+        taskService.setActiveTasksCache(new ActiveTasksCache());
 
         when(bundleContext.getBundles()).thenReturn(new Bundle[]{bundleTrigger, bundleAction});
         when(bundleTrigger.getSymbolicName()).thenReturn("test-trigger");
@@ -359,32 +370,27 @@ public class TaskServiceImplTest {
         assertEquals(asList(t), tasks);
     }
 
-    @Test(expected = TriggerNotFoundException.class)
-    public void shouldThrowTriggerNotFoundExceptionWhenChannelListIsEmpty() throws TriggerNotFoundException {
-        when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>());
+    @Test
+    public void shouldCacheActiveTasksUntilTaskIsSaved() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(1L);
 
-        taskService.findTrigger(trigger.getSubject());
-    }
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(1L)).thenReturn(t);
 
-    @Test(expected = TriggerNotFoundException.class)
-    public void shouldThrowTriggerNotFoundExceptionWhenChannelContainsEmptyTriggerList() throws TriggerNotFoundException {
-        Channel c = new Channel();
-        c.setTriggerTaskEvents(new ArrayList<TriggerEvent>());
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+        assertEquals(asList(t), taskService.findActiveTasksForTriggerSubject(trigger.getSubject()));
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
 
-        when(channelService.getAllChannels()).thenReturn(asList(c));
+        taskService.deleteTask(t.getId());
 
-        taskService.findTrigger(trigger.getSubject());
+        taskService.findActiveTasksForTriggerSubject(trigger.getSubject());
+        verify(tasksDataService, times(2)).executeQuery(Matchers.<QueryExecution<Object>>any());
     }
 
     @Test(expected = TriggerNotFoundException.class)
     public void shouldThrowTriggerNotFoundException() throws TriggerNotFoundException {
-        TriggerEvent triggerEvent = new TriggerEvent();
-        triggerEvent.setSubject(action.getSubject());
-
-        Channel c = new Channel();
-        c.setTriggerTaskEvents(asList(triggerEvent));
-
-        when(channelService.getAllChannels()).thenReturn(asList(c));
+        when(channelService.getTrigger(trigger.getSubject())).thenReturn(null);
 
         taskService.findTrigger(trigger.getSubject());
     }
@@ -394,16 +400,28 @@ public class TaskServiceImplTest {
         TriggerEvent triggerEvent = new TriggerEvent();
         triggerEvent.setSubject("RECEIVE");
 
-        Channel c = new Channel();
-        c.setTriggerTaskEvents(asList(triggerEvent));
-
-        when(channelService.getAllChannels()).thenReturn(asList(c));
+        when(channelService.getTrigger("RECEIVE")).thenReturn(triggerEvent);
 
         TaskEvent actual = taskService.findTrigger("RECEIVE");
 
         assertEquals(triggerEvent, actual);
     }
 
+    @Test
+    public void shouldFindCustomParserByName() {
+        when(parserRegistry.getParser("parser")).thenReturn(parser);
+
+        assertEquals(parser, taskService.findCustomParser("parser"));
+        assertNull(taskService.findCustomParser(""));
+    }
+
+    @Test(expected = CustomParserNotFoundException.class)
+    public void shouldThrowCustomParserNotFoundException() {
+        when(parserRegistry.getParser("parser")).thenReturn(null);
+
+        taskService.findCustomParser("parser");
+    }
+
     @Test
     public void shouldGetTaskById() {
         long taskId = 12345L;
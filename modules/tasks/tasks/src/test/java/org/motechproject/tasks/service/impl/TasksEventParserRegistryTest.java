@@ -0,0 +1,53 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.commons.api.TasksEventParser;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TasksEventParserRegistryTest {
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference<TasksEventParser> reference;
+
+    @Mock
+    private TasksEventParser parser;
+
+    private TasksEventParserRegistry registry;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(bundleContext.getService(reference)).thenReturn(parser);
+        when(parser.getName()).thenReturn("parser");
+
+        registry = new TasksEventParserRegistry(bundleContext);
+    }
+
+    @Test
+    public void shouldIndexParsersByName() {
+        registry.addingService(reference);
+
+        assertEquals(parser, registry.getParser("parser"));
+        assertNull(registry.getParser("other"));
+    }
+
+    @Test
+    public void shouldRemoveUnregisteredParser() {
+        registry.addingService(reference);
+        registry.removedService(reference, parser);
+
+        assertNull(registry.getParser("parser"));
+    }
+}
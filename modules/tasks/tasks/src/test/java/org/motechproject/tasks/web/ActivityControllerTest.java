@@ -6,6 +6,7 @@ import org.mockito.Mock;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
+import org.motechproject.tasks.domain.TaskActivityCounterPeriod;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.TaskTriggerHandler;
@@ -19,9 +20,13 @@ import java.util.Map;
 import java.util.Set;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anySet;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -112,4 +117,23 @@ public class ActivityControllerTest {
         Thread.sleep(1000);
         verify(taskTriggerHandler).retryTask(ACTIVITY_ID);
     }
+
+    @Test
+    public void shouldRejectUnknownCounterPeriod() {
+        try {
+            controller.getTaskActivityCounters(TASK_ID, "WEEK", 10);
+            fail("The period should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown counter period: WEEK, expected one of: [HOUR, DAY]",
+                    controller.handleIllegalArgumentException(e));
+        }
+
+        verify(activityService, never()).getTaskActivityCounters(anyLong(), any(TaskActivityCounterPeriod.class),
+                anyInt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownActivityType() {
+        controller.getTaskActivityCount(TASK_ID, "UNKNOWN");
+    }
 }
@@ -25,6 +25,7 @@ public class MotechEvent implements Serializable {
     private String subject;
     private String messageDestination;
     private Map<String, Object> parameters;
+    private long publishTime;
 
     public MotechEvent() {
     }
@@ -151,6 +152,25 @@ public class MotechEvent implements Serializable {
         messageDestination = value;
     }
 
+    /**
+     * Returns the time at which the event was last published to the broker, in milliseconds since the epoch.
+     * It is not a part of the identity of the event.
+     *
+     * @return the publish time, or 0 if the event was not published yet
+     */
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    /**
+     * Sets the time at which the event was last published to the broker.
+     *
+     * @param publishTime the publish time, in milliseconds since the epoch
+     */
+    public void setPublishTime(long publishTime) {
+        this.publishTime = publishTime;
+    }
+
     /**
      * Returns the parameters, if null returns
      * empty <code>HashMap</code>.
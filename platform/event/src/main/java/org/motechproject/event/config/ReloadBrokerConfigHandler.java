@@ -1,5 +1,7 @@
 package org.motechproject.event.config;
 
+import org.motechproject.event.listener.impl.EventLaneConsumers;
+import org.motechproject.event.messaging.EventLanes;
 import org.motechproject.event.messaging.MotechCachingConnectionFactory;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
@@ -8,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.jms.JMSException;
+import java.util.Properties;
 
 /**
  * Handles changes in the ActiveMQ config.
@@ -16,17 +19,24 @@ public class ReloadBrokerConfigHandler implements EventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ReloadBrokerConfigHandler.class);
 
     private MotechCachingConnectionFactory connectionFactory;
+    private EventLanes eventLanes;
+    private EventLaneConsumers laneConsumers;
 
     /**
      * @param connectionFactory the factory which inits connection to ActiveMQ.
+     * @param eventLanes the configured lanes of the event queue
+     * @param laneConsumers the consumers of the event lanes
      */
     @Autowired
-    public ReloadBrokerConfigHandler(MotechCachingConnectionFactory connectionFactory) {
+    public ReloadBrokerConfigHandler(MotechCachingConnectionFactory connectionFactory, EventLanes eventLanes,
+                                     EventLaneConsumers laneConsumers) {
         this.connectionFactory = connectionFactory;
+        this.eventLanes = eventLanes;
+        this.laneConsumers = laneConsumers;
     }
 
     /**
-     * Handles changes in the ActiveMQ broker.url variable.
+     * Handles changes in the ActiveMQ broker.url variable and in the configuration of the event lanes.
      *
      * @param event the event that occurred.
      */
@@ -42,5 +52,21 @@ public class ReloadBrokerConfigHandler implements EventHandler {
         } catch (JMSException e) {
             LOGGER.error("Cannot init ActiveMQ connection.", e);
         }
+
+        if (event.getProperty(EventLanes.LANES_PROPERTY) != null) {
+            eventLanes.reload(toProperties(event));
+            laneConsumers.restart();
+        }
+    }
+
+    private Properties toProperties(Event event) {
+        Properties properties = new Properties();
+        for (String name : event.getPropertyNames()) {
+            Object value = event.getProperty(name);
+            if (value != null) {
+                properties.setProperty(name, value.toString());
+            }
+        }
+        return properties;
     }
 }
@@ -1,5 +1,6 @@
 package org.motechproject.event.listener;
 
+import org.motechproject.event.listener.impl.EventLaneConsumers;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.motechproject.server.osgi.util.PlatformConstants;
 import org.osgi.service.event.Event;
@@ -18,6 +19,7 @@ public class EventConsumerStarter implements EventHandler {
 
     private JmsMessageDrivenEndpoint queue;
     private JmsMessageDrivenEndpoint topic;
+    private EventLaneConsumers laneConsumers;
 
     /**
      * Receives an OSGi event with the proxy topic.
@@ -47,6 +49,7 @@ public class EventConsumerStarter implements EventHandler {
             if (!topic.isRunning()) {
                 topic.start();
             }
+            laneConsumers.start();
         }finally {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
         }
@@ -63,4 +66,9 @@ public class EventConsumerStarter implements EventHandler {
     public void setTopic(JmsMessageDrivenEndpoint topic) {
         this.topic = topic;
     }
+
+    @Autowired
+    public void setLaneConsumers(EventLaneConsumers laneConsumers) {
+        this.laneConsumers = laneConsumers;
+    }
 }
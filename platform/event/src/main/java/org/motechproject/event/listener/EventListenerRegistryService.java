@@ -29,7 +29,7 @@ public interface EventListenerRegistryService {
 
     /**
      * Returns all the event listeners registered for the event with the given subject.
-     * If there are no listeners, an empty list is returned.
+     * If there are no listeners, an empty set is returned. The returned set can not be modified.
      *
      * @param subject the subject of the event
      * @return the matching event listeners
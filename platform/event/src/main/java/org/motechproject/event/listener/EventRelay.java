@@ -2,6 +2,8 @@ package org.motechproject.event.listener;
 
 import org.motechproject.event.MotechEvent;
 
+import java.util.Collection;
+
 /**
  * The <code>EventRelay</code> interface provides methods that allow sending {@link org.motechproject.event.MotechEvent}
  * via ActiveMQ, either to the queue (ActiveMQ selects the subscriber that will handle the event) or to the topic (event
@@ -18,11 +20,25 @@ public interface EventRelay {
      * {@link org.motechproject.event.listener.impl.ServerEventRelay#relayQueueEvent(MotechEvent)} service method.
      * The message will only go to ActiveMQ if there are listeners registered for the subject (in this instance),
      * meaning if you have clustered Motech instances, you must ensure they all have the listeners registered.
+     * If <code>motech.message.local.dispatch.enabled</code> is set on a non-clustered instance, the event is handed
+     * directly to the listeners of this instance and only goes to ActiveMQ when the local dispatch queue is full.
      *
      * @param motechEvent the event to be sent
      */
     void sendEventMessage(MotechEvent motechEvent);
 
+    /**
+     * Publishes the given event messages in a queue, the same way {@link #sendEventMessage(MotechEvent)} does.
+     * Instead of sending every message separately, the messages are buffered and sent to ActiveMQ in batches,
+     * each batch in a single transacted session. The size of a batch and the maximum time a message can wait in
+     * the buffer are controlled by the <code>motech.message.batch.size</code> and
+     * <code>motech.message.batch.flush.interval</code> settings. This is the method to use when a large number of
+     * events is sent at once, for example by the scheduler.
+     *
+     * @param motechEvents the events to be sent
+     */
+    void sendEventMessages(Collection<MotechEvent> motechEvents);
+
     /**
      * Publishes the event message in a topic. The message goes to a JMS topic, so if you have multiple Motech instances, they will
      * all receive the event. This allows broadcasting administration-type events that should be handled by each node separately.
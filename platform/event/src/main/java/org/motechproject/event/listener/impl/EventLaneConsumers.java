@@ -0,0 +1,113 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.EventLane;
+import org.motechproject.event.messaging.EventLanes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manages the consumers of the event lanes. Every lane gets its own listener container, with the number of
+ * consumers configured for the lane, so that a burst of events in one lane does not starve the others.
+ * The consumers are started together with the consumers of the event queue.
+ */
+@Component
+public class EventLaneConsumers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneConsumers.class);
+
+    private ConnectionFactory connectionFactory;
+    private EventLanes eventLanes;
+    private MessageConverter messageConverter;
+    private ServerEventRelay eventRelay;
+
+    private final List<DefaultMessageListenerContainer> containers = new ArrayList<>();
+    private boolean started;
+
+    @Autowired
+    public EventLaneConsumers(@Qualifier("connectionFactory") ConnectionFactory connectionFactory, EventLanes eventLanes,
+                              @Qualifier("eventMessageConverter") MessageConverter messageConverter,
+                              ServerEventRelay eventRelay) {
+        this.connectionFactory = connectionFactory;
+        this.eventLanes = eventLanes;
+        this.messageConverter = messageConverter;
+        this.eventRelay = eventRelay;
+    }
+
+    /**
+     * Starts the consumers of all configured lanes. Does nothing if the consumers are already running.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+
+        for (EventLane lane : eventLanes.getLanes()) {
+            DefaultMessageListenerContainer container = createContainer(lane);
+            container.afterPropertiesSet();
+            container.start();
+            containers.add(container);
+
+            LOGGER.info("Started {} consumers of event lane {}", lane.getConcurrentConsumers(), lane.getName());
+        }
+        started = true;
+    }
+
+    /**
+     * Stops the consumers and starts new ones for the current lane configuration. If the consumers were not
+     * running yet, they are not started.
+     */
+    public synchronized void restart() {
+        boolean wasStarted = started;
+        destroy();
+        if (wasStarted) {
+            start();
+        }
+    }
+
+    /**
+     * Stops the consumers of all lanes.
+     */
+    @PreDestroy
+    public synchronized void destroy() {
+        for (DefaultMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        containers.clear();
+        started = false;
+    }
+
+    private DefaultMessageListenerContainer createContainer(EventLane lane) {
+        DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setDestination(lane.getDestination());
+        container.setSessionTransacted(true);
+        container.setConcurrentConsumers(lane.getConcurrentConsumers());
+        container.setMaxConcurrentConsumers(lane.getMaxConcurrentConsumers());
+        container.setBeanName("eventLane-" + lane.getName());
+        container.setMessageListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                try {
+                    eventRelay.relayQueueEvent((MotechEvent) messageConverter.fromMessage(message));
+                } catch (JMSException e) {
+                    throw new IllegalStateException("Unable to read the event from message " + message, e);
+                }
+            }
+        });
+        return container;
+    }
+}
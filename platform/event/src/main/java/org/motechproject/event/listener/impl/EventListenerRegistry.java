@@ -4,7 +4,8 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
- import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Set;
@@ -19,6 +20,8 @@ public class EventListenerRegistry implements EventListenerRegistryService {
 
     private EventListenerTree listenerTree = new EventListenerTree();
 
+    private TopicEventDispatcher topicEventDispatcher;
+
     public void registerListener(EventListener listener, List<String> subjects) {
 
         if (listener == null) {
@@ -55,6 +58,17 @@ public class EventListenerRegistry implements EventListenerRegistryService {
         return listenerTree.getListeners(subject);
     }
 
+    /**
+     * Returns the listener with the given identifier, registered for the given subject.
+     *
+     * @param subject the subject of the event
+     * @param identifier the identifier of the listener
+     * @return the matching listener, or null if there is no such listener
+     */
+    public EventListener getListener(String subject, String identifier) {
+        return listenerTree.getListener(subject, identifier);
+    }
+
     public boolean hasListener(String subject) {
         return listenerTree.hasListener(subject);
     }
@@ -66,5 +80,14 @@ public class EventListenerRegistry implements EventListenerRegistryService {
     public void clearListenersForBean(String beanName) {
         LOGGER.debug("Clearing listeners for bean: {}", beanName);
         listenerTree.removeAllListeners(beanName);
+
+        if (topicEventDispatcher != null) {
+            topicEventDispatcher.removeQueue(beanName);
+        }
+    }
+
+    @Autowired(required = false)
+    public void setTopicEventDispatcher(TopicEventDispatcher topicEventDispatcher) {
+        this.topicEventDispatcher = topicEventDispatcher;
     }
 }
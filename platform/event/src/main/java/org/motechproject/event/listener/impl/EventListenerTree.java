@@ -5,65 +5,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
-import static org.springframework.util.CollectionUtils.isEmpty;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of the {@link org.motechproject.event.listener.impl.EventListenerRegistry} interface.
- * Listeners are stored as a tree.
+ * Listeners are stored as a trie keyed by the path elements of the subject. The trie is immutable - every
+ * registration or removal builds a new version of the modified path, while lookups read the current version
+ * without locking. The listeners resolved for a subject, including wildcard matches, are cached for each
+ * version of the trie, so repeated lookups for the same subject do not walk the trie again.
  */
 public class EventListenerTree {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerTree.class);
 
-    private static final String SPLIT_REGEX = "\\.";
-
-    private List<EventListenerTree> children = new ArrayList<EventListenerTree>();
-    private EventListenerTree parent;
+    private static final String WILDCARD = "*";
+    private static final char SEPARATOR = '.';
 
-    private String pathElement;
-    private Set<EventListener> listeners;
-    private Set<EventListener> wildcardListeners;
-
-    public EventListenerTree() {
-        this("*", null);
-    }
+    /**
+     * The maximum number of subjects for which resolved listeners are cached. Subjects resolved after
+     * this limit is reached are still served correctly, but not cached.
+     */
+    private static final int MAX_CACHED_SUBJECTS = 10000;
 
-    public EventListenerTree(String pathElement, EventListenerTree parent) {
-        this.pathElement = pathElement;
-        this.parent = parent;
-    }
+    private volatile Snapshot snapshot = new Snapshot(Node.EMPTY);
 
     /**
-     * Returns the name of the pathElement in a tree, which is created
-     * by splitting the subject.
+     * Returns the name of the path element of the root of the tree.
      *
-     * @return the name of the pathElement
+     * @return the name of the root path element
      */
     public String getPathElement() {
-        return pathElement;
+        return WILDCARD;
     }
 
     /**
-     * Returns the subject, which listener subscribes to. It is built by walk up the tree
-     * appending names of pathElements.
+     * Returns the subject of the root of the tree, which is always empty.
      *
-     * @return the subject the listener subscribes to
+     * @return the subject of the root
      */
     public String getSubject() {
-        if (parent == null) {
-            return "";
-        }
-
-        String parentSubject = parent.getSubject();
-        if ("".equals(parentSubject)) {
-            return pathElement;
-        } else {
-            return parentSubject + "." + pathElement;
-        }
+        return "";
     }
 
     /**
@@ -84,296 +72,268 @@ public class EventListenerTree {
         }
 
         // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
+        String[] path = split(subject);
 
-        if (path[path.length - 1].contains("*") && path[path.length - 1].length() > 1) {
+        if (path[path.length - 1].contains(WILDCARD) && path[path.length - 1].length() > 1) {
             throw new IllegalArgumentException("Wildcard can not be mixed with characters");
         }
 
-        if ("*".equals(subject)) {
-            addListener(listener);
-            return;
-        }
-
-        EventListenerTree child = getChild(path[0]);
-        if (child == null) {
-            child = new EventListenerTree(path[0], this);
-            addChild(child);
-        }
-
-        child.addListener(listener, path, 0);
-    }
-
-    private void addListener(EventListener listener, String[] path, int pathLevel) {
-        // I've walked to the end of the path. Assign this listener to this node
-        if ((pathLevel + 1) == path.length) {
-            addListener(listener);
-            return;
-        }
+        synchronized (this) {
+            Node root = snapshot.root;
+            Node newRoot;
 
-        // If the next step is the end of the path and it's a wildcard save listener here
-        if ((pathLevel + 2) == path.length && "*".equals(path[path.length - 1])) {
-            addWildcardListener(listener);
-            return;
-        }
+            if (WILDCARD.equals(subject)) {
+                newRoot = addListener(root, path, 0, 0, listener, false, subject);
+            } else if (WILDCARD.equals(path[path.length - 1])) {
+                newRoot = addListener(root, path, 0, path.length - 1, listener, true, subject);
+            } else {
+                newRoot = addListener(root, path, 0, path.length, listener, false, subject);
+            }
 
-        EventListenerTree child = getChild(path[pathLevel + 1]);
-        if (child == null) {
-            child = new EventListenerTree(path[pathLevel + 1], this);
-            addChild(child);
+            if (newRoot != root) {
+                snapshot = new Snapshot(newRoot);
+            }
         }
-
-        child.addListener(listener, path, (pathLevel + 1));
     }
 
     /**
      * @see org.motechproject.event.listener.EventListenerRegistryService#getListeners(String)
      */
     public Set<EventListener> getListeners(String subject) {
-        // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
-
-        Set<EventListener> allListeners = new HashSet<>();
-        if (isRootNode() && listeners != null) {
-            allListeners.addAll(listeners);
-        }
-        EventListenerTree child = getChild(path[0]);
-        if (child == null) {
-            return allListeners;
-        }
-
-        allListeners.addAll(child.getListeners(path, 0));
-        return allListeners;
-    }
-
-    private boolean isRootNode() {
-        return "*".equals(pathElement);
+        return resolve(subject).listeners;
     }
 
-    private Set<EventListener> getListeners(String[] path, int pathLevel) {
-        Set<EventListener> ret;
-
-        if ((pathLevel + 1) == path.length) {
-            return getAllListeners();
-        }
-
-        EventListenerTree child = getChild(path[pathLevel + 1]);
-        if (child == null) {
-            return getWildcardListeners();
-        }
-
-        ret = child.getListeners(path, (pathLevel + 1));
-        ret.addAll(getWildcardListeners());
-
-        return ret;
+    /**
+     * Returns the listener with the given identifier, registered for the given subject.
+     *
+     * @param subject the subject of the event
+     * @param identifier the identifier of the listener
+     * @return the matching listener, or null if there is no such listener
+     */
+    public EventListener getListener(String subject, String identifier) {
+        return resolve(subject).listenersByIdentifier.get(identifier);
     }
 
     /**
      * @see org.motechproject.event.listener.EventListenerRegistryService#hasListener(String)
      */
     public boolean hasListener(String subject) {
-        // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
-
-        if (isRootNode() && listeners != null && !listeners.isEmpty()) {
-            return true;
-        }
-        EventListenerTree child = getChild(path[0]);
-        return child != null && child.hasListener(path, 0);
-
-    }
-
-    private boolean hasListener(String[] path, int pathLevel) {
-        if (hasWildcardListeners()) {
-            return true;
-        }
-
-        if ((pathLevel + 1) == path.length) {
-            return listeners != null && !listeners.isEmpty();
-        }
-
-        EventListenerTree child = getChild(path[pathLevel + 1]);
-        return child != null && child.hasListener(path, (pathLevel + 1));
-
+        return !resolve(subject).listeners.isEmpty();
     }
 
     /**
      * @see org.motechproject.event.listener.EventListenerRegistryService#getListenerCount(String)
      */
     public int getListenerCount(String subject) {
-        // Split the subject into it's path components
-        String[] path = subject.split(SPLIT_REGEX);
+        return resolve(subject).listeners.size();
+    }
 
-        EventListenerTree child = getChild(path[0]);
-        if (child == null) {
-            return 0;
-        }
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#clearListenersForBean(String)
+     */
+    public void removeAllListeners(String beanName) {
+        synchronized (this) {
+            Node root = snapshot.root;
+            Node newRoot = removeListeners(root, beanName);
 
-        return child.getListenerCount(path, 0);
+            if (newRoot != root) {
+                snapshot = new Snapshot(newRoot == null ? Node.EMPTY : newRoot);
+            }
+        }
     }
 
-    private int getListenerCount(String[] path, int pathLevel) {
-        int ret = 0;
+    private Resolution resolve(String subject) {
+        Snapshot current = snapshot;
 
-        if ((pathLevel + 1) == path.length) {
-            return getAllListeners().size();
+        Resolution resolution = current.resolutions.get(subject);
+        if (resolution == null) {
+            resolution = new Resolution(collectListeners(current.root, split(subject)));
+            if (current.resolutions.size() < MAX_CACHED_SUBJECTS) {
+                current.resolutions.putIfAbsent(subject, resolution);
+            }
         }
 
-        EventListenerTree child = getChild(path[pathLevel + 1]);
-        if (child == null) {
-            return getWildcardListeners().size();
-        }
+        return resolution;
+    }
 
-        ret = getWildcardListeners().size();
+    private Set<EventListener> collectListeners(Node root, String[] path) {
+        Set<EventListener> result = new LinkedHashSet<>(root.listeners);
 
-        return ret + child.getListeners(path, (pathLevel + 1)).size();
-    }
+        Node node = root.children.get(path[0]);
+        for (int level = 0; node != null; ++level) {
+            // wildcard listeners of a node match the subject of the node and every subject below it
+            result.addAll(node.wildcardListeners);
 
-    private Set<EventListener> getListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
+            if (level + 1 == path.length) {
+                result.addAll(node.listeners);
+                break;
+            }
 
-        if (listeners == null) {
-            listeners = new HashSet<EventListener>();
+            node = node.children.get(path[level + 1]);
         }
 
-        ret.addAll(listeners);
-
-        return ret;
+        return result;
     }
 
-    private Set<EventListener> getAllListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
+    private Node addListener(Node node, String[] path, int level, int targetLevel, EventListener listener,
+                             boolean wildcard, String subject) {
+        if (level == targetLevel) {
+            Set<EventListener> current = wildcard ? node.wildcardListeners : node.listeners;
 
-        ret.addAll(getListeners());
-        ret.addAll(getWildcardListeners());
+            // Don't allow duplicate listener registrations
+            if (current.contains(listener)) {
+                LOGGER.info(String.format("Ignoring second request to register listener %s for subject %s",
+                        listener.getIdentifier(), subject));
+                return node;
+            }
 
-        return ret;
-    }
+            Set<EventListener> updated = new LinkedHashSet<>(current);
+            updated.add(listener);
 
-    private Set<EventListener> getWildcardListeners() {
-        Set<EventListener> ret = new HashSet<EventListener>();
+            return wildcard ? node.withWildcardListeners(updated) : node.withListeners(updated);
+        }
 
-        if (wildcardListeners == null) {
-            wildcardListeners = new HashSet<EventListener>();
+        Node child = node.children.get(path[level]);
+        if (child == null) {
+            child = Node.EMPTY;
         }
 
-        ret.addAll(wildcardListeners);
+        Node newChild = addListener(child, path, level + 1, targetLevel, listener, wildcard, subject);
 
-        return ret;
+        return newChild == child ? node : node.withChild(path[level], newChild);
     }
 
-    private void addListener(EventListener listener) {
-        if (listeners == null) {
-            listeners = new HashSet<EventListener>();
-        }
+    /**
+     * Removes the listeners with the given identifier from the node and all nodes below it.
+     * Returns the same node if nothing was removed, or null if the node became empty.
+     */
+    private Node removeListeners(Node node, String beanName) {
+        Set<EventListener> listeners = withoutBean(node.listeners, beanName);
+        Set<EventListener> wildcardListeners = withoutBean(node.wildcardListeners, beanName);
 
-        // Don't allow duplicate listener registrations Set will handle this for me, but then I can't log it
-        if (!listeners.contains(listener)) {
-            listeners.add(listener); // Add the listener to the list
-        } else {
-            LOGGER.info(String.format("Ignoring second request to register listener %s for subject %s",
-                    listener.getIdentifier(), getSubject()));
-        }
-    }
+        Map<String, Node> children = node.children;
+        boolean childrenChanged = false;
+
+        for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+            Node newChild = removeListeners(entry.getValue(), beanName);
 
-    private void addWildcardListener(EventListener listener) {
-        if (wildcardListeners == null) {
-            wildcardListeners = new HashSet<EventListener>();
+            if (newChild != entry.getValue()) {
+                if (!childrenChanged) {
+                    children = new HashMap<>(node.children);
+                    childrenChanged = true;
+                }
+
+                if (newChild == null) {
+                    children.remove(entry.getKey());
+                } else {
+                    children.put(entry.getKey(), newChild);
+                }
+            }
         }
 
-        // Don't allow duplicate listener registrations Set will handle this for me, but then I can't log it
-        if (!wildcardListeners.contains(listener)) {
-            wildcardListeners.add(listener); // Add the listener to the list
-        } else {
-            LOGGER.info(String.format("Ignoring second request to register wildcardListeners %s for subject %s.*",
-                    listener.getIdentifier(), getSubject()));
+        if (listeners == node.listeners && wildcardListeners == node.wildcardListeners && !childrenChanged) {
+            return node;
         }
-    }
 
-    private boolean hasWildcardListeners() {
-        return wildcardListeners != null && !wildcardListeners.isEmpty();
+        Node newNode = new Node(children, listeners, wildcardListeners);
+        return newNode.isEmpty() ? null : newNode;
     }
 
-    private EventListenerTree getChild(String pathElement) {
-        EventListenerTree ret = null;
+    private Set<EventListener> withoutBean(Set<EventListener> listeners, String beanName) {
+        Set<EventListener> result = null;
 
-        if (children != null) {
-            for (EventListenerTree n : children) {
-                if (n.getPathElement().equals(pathElement)) {
-                    ret = n;
-                    break;
+        for (EventListener listener : listeners) {
+            if (listener.getIdentifier().equals(beanName)) {
+                if (result == null) {
+                    result = new LinkedHashSet<>(listeners);
                 }
+                result.remove(listener);
             }
         }
 
-        return ret;
+        return result == null ? listeners : result;
     }
 
-    private void addChild(EventListenerTree child) {
-        if (children == null) {
-            children = new ArrayList<EventListenerTree>();
+    private static String[] split(String subject) {
+        List<String> path = new ArrayList<>();
+
+        int start = 0;
+        int end = subject.indexOf(SEPARATOR);
+        while (end != -1) {
+            path.add(subject.substring(start, end));
+            start = end + 1;
+            end = subject.indexOf(SEPARATOR, start);
         }
+        path.add(subject.substring(start));
 
-        children.add(child);
+        return path.toArray(new String[path.size()]);
     }
 
     /**
-     * @see org.motechproject.event.listener.EventListenerRegistryService#clearListenersForBean(String)
+     * A single, immutable node of the trie.
      */
-    public void removeAllListeners(String beanName) {
+    private static final class Node {
+        private static final Node EMPTY = new Node(Collections.<String, Node>emptyMap(),
+                Collections.<EventListener>emptySet(), Collections.<EventListener>emptySet());
 
-        for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
-            EventListenerTree child = listenerIterator.next();
-            if (child.containsListenersForBeanName(beanName) && child.allListenersEmpty()) {
-                listenerIterator.remove();
-            }
+        private final Map<String, Node> children;
+        private final Set<EventListener> listeners;
+        private final Set<EventListener> wildcardListeners;
+
+        private Node(Map<String, Node> children, Set<EventListener> listeners, Set<EventListener> wildcardListeners) {
+            this.children = children;
+            this.listeners = listeners;
+            this.wildcardListeners = wildcardListeners;
         }
-    }
 
-    private boolean allListenersEmpty() {
+        private Node withChild(String pathElement, Node child) {
+            Map<String, Node> newChildren = new HashMap<>(children);
+            newChildren.put(pathElement, child);
+            return new Node(newChildren, listeners, wildcardListeners);
+        }
 
-        if (children.size() == 0) {
-            return this.getAllListeners().size() == 0;
-        } else {
-            for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
-                EventListenerTree child = listenerIterator.next();
-                if (!child.allListenersEmpty() || isEmpty(wildcardListeners)) {
-                    return false;
-                } else {
-                    listenerIterator.remove();
-                }
-            }
+        private Node withListeners(Set<EventListener> newListeners) {
+            return new Node(children, newListeners, wildcardListeners);
+        }
+
+        private Node withWildcardListeners(Set<EventListener> newWildcardListeners) {
+            return new Node(children, listeners, newWildcardListeners);
+        }
+
+        private boolean isEmpty() {
+            return children.isEmpty() && listeners.isEmpty() && wildcardListeners.isEmpty();
         }
-        return true;
     }
 
-    private boolean containsListenersForBeanName(String beanName) {
-        boolean removed = false;
+    /**
+     * A version of the trie, together with the lookup results cached for it.
+     */
+    private static final class Snapshot {
+        private final Node root;
+        private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
 
-        if (listeners != null) {
-            for (Iterator<EventListener> listenerIterator = listeners.iterator(); listenerIterator.hasNext();) {
-                EventListener nextListener = listenerIterator.next();
-                if (nextListener.getIdentifier().equals(beanName)) {
-                    listenerIterator.remove();
-                    removed = true;
-                }
-            }
+        private Snapshot(Node root) {
+            this.root = root;
         }
+    }
 
-        if (wildcardListeners != null) {
-            for (Iterator<EventListener> listenerIterator = wildcardListeners.iterator(); listenerIterator.hasNext();) {
-                EventListener nextListener = listenerIterator.next();
-                if (nextListener.getIdentifier().equals(beanName)) {
-                    listenerIterator.remove();
-                    removed = true;
+    /**
+     * The listeners matching a single subject.
+     */
+    private static final class Resolution {
+        private final Set<EventListener> listeners;
+        private final Map<String, EventListener> listenersByIdentifier;
+
+        private Resolution(Set<EventListener> listeners) {
+            Map<String, EventListener> byIdentifier = new LinkedHashMap<>();
+            for (EventListener listener : listeners) {
+                if (!byIdentifier.containsKey(listener.getIdentifier())) {
+                    byIdentifier.put(listener.getIdentifier(), listener);
                 }
             }
+
+            this.listeners = Collections.unmodifiableSet(listeners);
+            this.listenersByIdentifier = byIdentifier;
         }
-        for (EventListenerTree childTree : children) {
-            if (childTree.containsListenersForBeanName(beanName)) {
-                removed = true;
-            }
-        }
-        return removed;
     }
 }
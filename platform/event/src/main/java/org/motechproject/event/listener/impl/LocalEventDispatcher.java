@@ -0,0 +1,134 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.MotechEventTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles queue events in this instance, without sending them through ActiveMQ. Events are handled on a bounded
+ * pool of threads. If the pool is saturated, or if local dispatch is disabled or the instance is clustered,
+ * the event is not accepted and the caller is expected to send it through the broker instead.
+ */
+@Component
+public class LocalEventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private MotechEventConfig motechEventConfig;
+    private MotechEventTransformer eventTransformer;
+
+    private ThreadPoolExecutor executor;
+
+    @Autowired
+    public LocalEventDispatcher(MotechEventConfig motechEventConfig, MotechEventTransformer eventTransformer) {
+        this.motechEventConfig = motechEventConfig;
+        this.eventTransformer = eventTransformer;
+    }
+
+    /**
+     * Creates the dispatch thread pool, if local dispatch is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (isEnabled()) {
+            int threads = Math.max(motechEventConfig.getLocalDispatchThreads(), 1);
+            int queueSize = Math.max(motechEventConfig.getLocalDispatchQueueSize(), 1);
+
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize),
+                    new ThreadFactoryBuilder().setNameFormat("motech-event-local-dispatch-%d").setDaemon(true).build());
+
+            LOGGER.info("Local event dispatch enabled with {} threads", threads);
+        }
+    }
+
+    /**
+     * Stops accepting events and waits for the events that were already accepted to be handled.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("{} locally dispatched events were not handled before shutdown", executor.getQueue().size());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns whether events can be dispatched locally, that is local dispatch is enabled and the instance
+     * is not clustered.
+     *
+     * @return true if local dispatch should be used
+     */
+    public boolean isEnabled() {
+        return motechEventConfig.isLocalDispatchEnabled() && !motechEventConfig.isClustered();
+    }
+
+    /**
+     * Schedules the given handler for the event on the dispatch pool.
+     *
+     * @param event the event to dispatch, its id will be set if it is missing
+     * @param handler the handler that delivers the event to the listener
+     * @return true if the event was accepted, false if it should be sent through ActiveMQ
+     */
+    public boolean dispatch(final MotechEvent event, final Handler handler) {
+        ThreadPoolExecutor currentExecutor = executor;
+        if (currentExecutor == null) {
+            return false;
+        }
+
+        eventTransformer.transform(event);
+
+        try {
+            currentExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        handler.handle(event);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Locally dispatched event {} was discarded", event, e);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Local dispatch queue is full, event {} will be sent through the broker", event);
+            return false;
+        }
+    }
+
+    /**
+     * Delivers a locally dispatched event.
+     */
+    public interface Handler {
+
+        /**
+         * Delivers the event to its listener.
+         *
+         * @param event the event to deliver
+         */
+        void handle(MotechEvent event);
+    }
+}
@@ -3,8 +3,10 @@ package org.motechproject.event.listener.impl;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.messaging.BatchEventPublisher;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.metrics.EventMetricsService;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.osgi.service.event.Event;
@@ -15,9 +17,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles incoming scheduled events and relays those events to the appropriate event listeners.
@@ -28,19 +34,30 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerEventRelay.class);
 
     private static final String PROXY_IN_OSGI = "proxy-in-osgi";
+    private static final int MAX_BACKOFF_SHIFT = 16;
 
     private EventListenerRegistry eventListenerRegistry;
     private OutboundEventGateway outboundEventGateway;
+    private BatchEventPublisher batchEventPublisher;
+    private LocalEventDispatcher localEventDispatcher;
+    private TopicEventDispatcher topicEventDispatcher;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
+    private EventMetricsService eventMetrics;
 
     @Autowired
-    public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin) {
+    public ServerEventRelay(OutboundEventGateway outboundEventGateway, BatchEventPublisher batchEventPublisher,
+                            LocalEventDispatcher localEventDispatcher, TopicEventDispatcher topicEventDispatcher,
+                            EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
+                            EventAdmin osgiEventAdmin, EventMetricsService eventMetrics) {
         this.outboundEventGateway = outboundEventGateway;
+        this.batchEventPublisher = batchEventPublisher;
+        this.localEventDispatcher = localEventDispatcher;
+        this.topicEventDispatcher = topicEventDispatcher;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
+        this.eventMetrics = eventMetrics;
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
@@ -53,7 +70,33 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             // We need to split the message for each listener to ensure the work units
             // are completed individually. Therefore, if a message fails it will be
             // re-distributed to another server without being lost
-            splitEvent(event, listeners);
+            for (MotechEvent enrichedEvent : splitEvent(event, listeners)) {
+                if (!dispatchLocally(enrichedEvent)) {
+                    outboundEventGateway.sendEventMessage(enrichedEvent);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sendEventMessages(Collection<MotechEvent> events) {
+        if (events == null) {
+            throw new IllegalArgumentException("Invalid request to relay null events");
+        }
+
+        List<MotechEvent> enrichedEvents = new ArrayList<>();
+        for (MotechEvent event : events) {
+            verifyEventNotNull(event);
+            Set<EventListener> listeners = getEventListeners(event);
+            for (MotechEvent enrichedEvent : splitEvent(event, listeners)) {
+                if (!dispatchLocally(enrichedEvent)) {
+                    enrichedEvents.add(enrichedEvent);
+                }
+            }
+        }
+
+        if (!enrichedEvents.isEmpty()) {
+            batchEventPublisher.publish(enrichedEvents);
         }
     }
 
@@ -81,7 +124,10 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         if (null != messageDestination) {
             EventListener listener = getEventListener(event, messageDestination);
             if (null != listener) {
-                MotechEvent e = copyMotechEvent(event);
+                if (event.getMessageRedeliveryCount() == 0) {
+                    eventMetrics.recordDwellTime(event.getSubject(), messageDestination, event.getPublishTime());
+                }
+                MotechEvent e = copyMotechEvent(event, false);
                 handleQueueEvent(listener, e);
             } else {
                 LOGGER.warn("Event listener with identifier {} not present to handle the event: {}", messageDestination, event);
@@ -93,14 +139,23 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
     /**
      * Relays the event that were published in the message topic to all listeners of that event.
+     * If asynchronous topic dispatch is enabled, each listener receives its own copy of the event
+     * on the dispatch pool and this method returns without waiting for the listeners.
      *
      * @param event the event being relayed
      */
     public void relayTopicEvent(MotechEvent event) {
         verifyEventNotNull(event);
         Set<EventListener> listeners = getEventListeners(event);
+        if (!listeners.isEmpty()) {
+            eventMetrics.recordDwellTime(event.getSubject(), null, event.getPublishTime());
+        }
         for (EventListener listener : listeners) {
-            handleTopicEvent(listener, event);
+            if (topicEventDispatcher.isEnabled()) {
+                dispatchTopicEvent(listener, copyMotechEvent(event, true));
+            } else {
+                handleTopicEvent(listener, event);
+            }
         }
 
         // broadcast events can be also be additionally sent as OSGi events upon being received
@@ -146,13 +201,16 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
     private void handleQueueEvent(EventListener listener, MotechEvent event) {
         ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        long start = System.nanoTime();
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
             listener.handle(event);
+            eventMetrics.recordHandled(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
 
         } catch (RuntimeException e) {
             LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
+            eventMetrics.recordFailed(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
 
             event.setInvalid(true);
             event.setMessageDestination(listener.getIdentifier());
@@ -160,10 +218,12 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                 event.setDiscarded(true);
                 LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
+                eventMetrics.recordDiscarded(event.getSubject(), listener.getIdentifier());
                 throw e;
             }
 
             event.incrementMessageRedeliveryCount();
+            eventMetrics.recordRedelivered(event.getSubject(), listener.getIdentifier());
             outboundEventGateway.sendEventMessage(event);
         } finally {
             Thread.currentThread().setContextClassLoader(oldClassLoader);
@@ -173,27 +233,63 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     private void handleTopicEvent(EventListener listener, MotechEvent event) {
         int retryCount = 0;
         int maxRetryCount = motechEventConfig.getMessageMaxRedeliveryCount();
-        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 
-        do {
-            try {
-                Object target = MotechProxyUtils.getTargetIfProxied(listener);
-                Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-                listener.handle(event);
-                break;
-            } catch (RuntimeException e) {
-                if (retryCount < maxRetryCount) {
-                    LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
-                            event.toString(), listener.getIdentifier()), e);
-                } else {
-                    LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
-                            event.toString(), listener.getIdentifier()), e);
-                    break;
+        while (!tryHandleTopicEvent(listener, event, retryCount, maxRetryCount) && retryCount < maxRetryCount) {
+            retryCount++;
+        }
+    }
+
+    /**
+     * Queues the event for the listener on the topic dispatcher. If the listener fails, the event is retried after
+     * the redelivery delay, before the following events of that listener and without blocking the other listeners.
+     */
+    private void dispatchTopicEvent(final EventListener listener, final MotechEvent event) {
+        topicEventDispatcher.dispatch(listener.getIdentifier(), new TopicEventDispatcher.RetryableTask() {
+            private int retryCount;
+
+            @Override
+            public long attempt() {
+                int maxRetryCount = motechEventConfig.getMessageMaxRedeliveryCount();
+                if (tryHandleTopicEvent(listener, event, retryCount, maxRetryCount) || retryCount >= maxRetryCount) {
+                    return -1;
                 }
-            } finally {
-                Thread.currentThread().setContextClassLoader(contextClassLoader);
+                return getRedeliveryDelayMillis(retryCount++);
             }
-        } while (retryCount++ < maxRetryCount);
+        });
+    }
+
+    private boolean tryHandleTopicEvent(EventListener listener, MotechEvent event, int retryCount, int maxRetryCount) {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        long start = System.nanoTime();
+        try {
+            Object target = MotechProxyUtils.getTargetIfProxied(listener);
+            Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
+            listener.handle(event);
+            eventMetrics.recordHandled(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
+            return true;
+        } catch (RuntimeException e) {
+            eventMetrics.recordFailed(event.getSubject(), listener.getIdentifier(), System.nanoTime() - start);
+            if (retryCount < maxRetryCount) {
+                LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
+                        event.toString(), listener.getIdentifier()), e);
+                eventMetrics.recordRedelivered(event.getSubject(), listener.getIdentifier());
+            } else {
+                LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
+                        event.toString(), listener.getIdentifier()), e);
+                eventMetrics.recordDiscarded(event.getSubject(), listener.getIdentifier());
+            }
+            return false;
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Returns the delay before the given retry, doubling the configured redelivery delay with every retry.
+     */
+    private long getRedeliveryDelayMillis(int retryCount) {
+        long delay = TimeUnit.SECONDS.toMillis(motechEventConfig.getMessageRedeliveryDelay());
+        return delay << Math.min(retryCount, MAX_BACKOFF_SHIFT);
     }
 
     /**
@@ -203,8 +299,10 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      *
      * @param event     Event message to be split
      * @param listeners A list of listeners for this given message that will be used as message destinations
+     * @return the list of messages, one for each listener
      */
-    private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
+    private List<MotechEvent> splitEvent(MotechEvent event, Set<EventListener> listeners) {
+        List<MotechEvent> enrichedEvents = new ArrayList<>(listeners.size());
         MotechEvent enrichedEventMessage;
         Map<String, Object> parameters;
 
@@ -213,18 +311,33 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             parameters.putAll(event.getParameters());
             enrichedEventMessage = new MotechEvent(event.getSubject(), parameters);
             enrichedEventMessage.setMessageDestination(listener.getIdentifier());
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            enrichedEvents.add(enrichedEventMessage);
         }
+
+        return enrichedEvents;
     }
 
-    private EventListener getEventListener(MotechEvent event, String identifier) {
-        Set<EventListener> listeners = getEventListeners(event);
-        for (EventListener listener : listeners) {
-            if (listener.getIdentifier().equals(identifier)) {
-                return listener;
+    /**
+     * Hands the event over to the local dispatcher, which relays it the same way as an event received
+     * from the queue, including redelivery through the broker in case of failure.
+     *
+     * @param event the event with its message destination set
+     * @return true if the event was dispatched locally, false if it has to be sent to the broker
+     */
+    private boolean dispatchLocally(MotechEvent event) {
+        return localEventDispatcher.isEnabled() && localEventDispatcher.dispatch(event, new LocalEventDispatcher.Handler() {
+            @Override
+            public void handle(MotechEvent localEvent) {
+                relayQueueEvent(localEvent);
             }
+        });
+    }
+
+    private EventListener getEventListener(MotechEvent event, String identifier) {
+        if (eventListenerRegistry == null) {
+            throw new IllegalStateException("eventListenerRegistry is null");
         }
-        return null;
+        return eventListenerRegistry.getListener(event.getSubject(), identifier);
     }
 
     private Set<EventListener> getEventListeners(MotechEvent event) {
@@ -249,14 +362,17 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         osgiEventAdmin.postEvent(osgiEvent);
     }
 
-    private MotechEvent copyMotechEvent(MotechEvent event) {
-        MotechEvent copy = new MotechEvent(event.getSubject(), event.getParameters());
+    private MotechEvent copyMotechEvent(MotechEvent event, boolean copyParameters) {
+        // listeners handling the event concurrently must not share the parameter map
+        Map<String, Object> parameters = copyParameters ? new HashMap<>(event.getParameters()) : event.getParameters();
+        MotechEvent copy = new MotechEvent(event.getSubject(), parameters);
         copy.setId(event.getId());
         copy.setMessageRedeliveryCount(event.getMessageRedeliveryCount());
         copy.setInvalid(event.isInvalid());
         copy.setDiscarded(event.isDiscarded());
         copy.setBroadcast(event.isBroadcast());
         copy.setMessageDestination(event.getMessageDestination());
+        copy.setPublishTime(event.getPublishTime());
         return copy;
     }
 
@@ -0,0 +1,443 @@
+package org.motechproject.event.listener.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the handling of broadcast events on a bounded pool of threads. Every listener has its own queue of tasks,
+ * which is drained by at most one thread at a time, so a listener receives the events in the order in which they
+ * were dispatched, while different listeners are handled in parallel. A slow listener only delays its own events.
+ * <p>
+ * If the queue of a listener is full, the dispatching thread waits until there is room in it, which slows down the
+ * consumption of the topic. A task that has to be retried stays at the head of the queue of its listener, so the
+ * following events of that listener wait for the retry, while the other listeners are not affected. When the
+ * dispatcher is stopped, all queued tasks are run before {@link #stop()} returns. The queue of a listener which was
+ * removed is dropped once it is drained.
+ */
+@Component
+public class TopicEventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicEventDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final int MAX_TASKS_PER_RUN = 50;
+
+    /**
+     * Set while the current thread drains a queue, such a thread never waits for room in a queue.
+     */
+    private static final ThreadLocal<Boolean> DRAINING = new ThreadLocal<>();
+
+    private MotechEventConfig motechEventConfig;
+
+    private final ConcurrentMap<String, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService executor;
+    private volatile ScheduledExecutorService retryScheduler;
+
+    @Autowired
+    public TopicEventDispatcher(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Creates the dispatch thread pool, if asynchronous topic dispatch is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (motechEventConfig.isTopicDispatchEnabled()) {
+            int threads = Math.max(motechEventConfig.getTopicDispatchThreads(), 1);
+
+            executor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setNameFormat("motech-event-topic-dispatch-%d").setDaemon(true).build());
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("motech-event-topic-retry-%d").setDaemon(true).build());
+
+            LOGGER.info("Asynchronous topic dispatch enabled with {} threads", threads);
+        }
+    }
+
+    /**
+     * Stops accepting tasks and runs all the tasks that were already accepted. Tasks waiting for a retry are
+     * retried without the delay.
+     */
+    @PreDestroy
+    public void stop() {
+        ScheduledExecutorService currentScheduler = retryScheduler;
+        ExecutorService currentExecutor = executor;
+        retryScheduler = null;
+        executor = null;
+
+        if (currentScheduler != null) {
+            // resumes the queues waiting for a retry, they are drained by the pool or by this thread
+            for (Runnable resume : currentScheduler.shutdownNow()) {
+                resume.run();
+            }
+        }
+
+        if (currentExecutor != null) {
+            currentExecutor.shutdown();
+            try {
+                if (!currentExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Broadcast events for {} listeners were not handled before shutdown", getBacklog().size());
+                    currentExecutor.shutdownNow();
+                    return;
+                }
+            } catch (InterruptedException e) {
+                currentExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        // the tasks queued while the pool was shutting down
+        for (ListenerQueue queue : queues.values()) {
+            schedule(queue, null);
+        }
+    }
+
+    /**
+     * Returns whether broadcast events are dispatched asynchronously.
+     *
+     * @return true if the dispatch pool is running
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Adds the task to the queue of the given listener. If the queue of the listener is full, waits until there is
+     * room in it. If the dispatcher is not running, the task is run in the calling thread, after the tasks that
+     * are still queued for the listener.
+     *
+     * @param listenerId the identifier of the listener
+     * @param task the task handling an event by the listener
+     */
+    public void dispatch(String listenerId, final Runnable task) {
+        dispatch(listenerId, new RetryableTask() {
+            @Override
+            public long attempt() {
+                task.run();
+                return -1;
+            }
+        });
+    }
+
+    /**
+     * Adds the task to the queue of the given listener. If the task asks to be retried, it is retried after the
+     * delay it returned, before any other task of the listener. The retries do not block the dispatch threads.
+     * If the queue of the listener is full, waits until there is room in it. If the dispatcher is not running,
+     * the task is run in the calling thread, after the tasks that are still queued for the listener.
+     *
+     * @param listenerId the identifier of the listener
+     * @param task the task handling an event by the listener
+     */
+    public void dispatch(String listenerId, RetryableTask task) {
+        ExecutorService currentExecutor = executor;
+        ListenerQueue queue = currentExecutor == null ? queues.get(listenerId) : getQueue(listenerId);
+
+        if (queue == null) {
+            runInCallingThread(task);
+            return;
+        }
+
+        // the dispatch threads must not wait for the queues they may be draining themselves
+        boolean wait = currentExecutor != null && DRAINING.get() == null;
+        try {
+            queue.put(task, wait);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for the queue of listener {}, the event is queued anyway", listenerId);
+            queue.put(task);
+            Thread.currentThread().interrupt();
+        }
+
+        schedule(queue, currentExecutor);
+    }
+
+    /**
+     * Returns the number of broadcast events waiting to be handled by each listener. Listeners without waiting
+     * events are omitted.
+     *
+     * @return the map of listener identifiers to the number of waiting events
+     */
+    public Map<String, Integer> getBacklog() {
+        Map<String, Integer> backlog = new TreeMap<>();
+        for (Map.Entry<String, ListenerQueue> entry : queues.entrySet()) {
+            int size = entry.getValue().size();
+            if (size > 0) {
+                backlog.put(entry.getKey(), size);
+            }
+        }
+        return backlog;
+    }
+
+    /**
+     * Drops the queue of a listener which was removed. If tasks are still queued for the listener, they are run
+     * and the queue is dropped once it is drained.
+     *
+     * @param listenerId the identifier of the listener
+     */
+    public void removeQueue(String listenerId) {
+        ListenerQueue queue = queues.get(listenerId);
+        if (queue != null) {
+            queue.removed = true;
+            // otherwise the queue is dropped by the thread draining it
+            if (!queue.scheduled.get() && queue.size() == 0) {
+                queues.remove(listenerId, queue);
+            }
+        }
+    }
+
+    private ListenerQueue getQueue(String listenerId) {
+        ListenerQueue queue = queues.get(listenerId);
+        if (queue == null) {
+            ListenerQueue created = new ListenerQueue(listenerId,
+                    Math.max(motechEventConfig.getTopicDispatchQueueSize(), 1));
+            queue = queues.putIfAbsent(listenerId, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Makes sure that the queue is drained, by the pool or, if it is not running, by the calling thread.
+     */
+    private void schedule(final ListenerQueue queue, ExecutorService currentExecutor) {
+        if (!queue.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (currentExecutor != null) {
+            try {
+                currentExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        drain(queue);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("The dispatcher is stopping, handling the broadcast events in the calling thread");
+            }
+        }
+
+        drain(queue);
+    }
+
+    /**
+     * Runs the task in the calling thread, including its retries.
+     */
+    private void runInCallingThread(RetryableTask task) {
+        ListenerQueue queue = new ListenerQueue(null, 1);
+        queue.put(task);
+        schedule(queue, null);
+    }
+
+    /**
+     * Runs the tasks of the queue. Must be called only by the thread that set the scheduled flag of the queue.
+     * While the dispatcher is running, at most {@link #MAX_TASKS_PER_RUN} tasks are run before the queue is
+     * scheduled again, so that the other listeners get a chance to run. Once it is stopped, the queue is drained
+     * completely.
+     */
+    private void drain(final ListenerQueue queue) {
+        Boolean draining = DRAINING.get();
+        DRAINING.set(Boolean.TRUE);
+        try {
+            while (true) {
+                for (int i = 0; i < MAX_TASKS_PER_RUN || executor == null; ++i) {
+                    RetryableTask task = queue.peek();
+                    if (task == null) {
+                        break;
+                    }
+
+                    long delay = attempt(task);
+                    if (delay >= 0 && retryLater(queue, delay)) {
+                        // the queue stays scheduled until the retry
+                        return;
+                    } else if (delay < 0) {
+                        queue.remove();
+                    }
+                }
+
+                queue.scheduled.set(false);
+
+                ExecutorService currentExecutor = executor;
+                if (queue.size() == 0) {
+                    if (queue.removed) {
+                        queues.remove(queue.listenerId, queue);
+                    }
+                    return;
+                }
+                if (!queue.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                if (currentExecutor != null) {
+                    try {
+                        currentExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                drain(queue);
+                            }
+                        });
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        LOGGER.debug("The dispatcher is stopping, draining the queue in the current thread");
+                    }
+                }
+            }
+        } finally {
+            DRAINING.set(draining);
+        }
+    }
+
+    private long attempt(RetryableTask task) {
+        try {
+            return task.attempt();
+        } catch (RuntimeException e) {
+            LOGGER.error("Unexpected error when handling a broadcast event", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Resumes draining of the queue after the delay. Returns false if the dispatcher is stopping, in which case
+     * the task is retried right away.
+     */
+    private boolean retryLater(final ListenerQueue queue, long delayMillis) {
+        ScheduledExecutorService currentScheduler = retryScheduler;
+        if (currentScheduler == null) {
+            return false;
+        }
+
+        try {
+            currentScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ExecutorService currentExecutor = executor;
+                    if (currentExecutor != null) {
+                        try {
+                            currentExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    drain(queue);
+                                }
+                            });
+                            return;
+                        } catch (RejectedExecutionException e) {
+                            LOGGER.debug("The dispatcher is stopping, retrying the broadcast event in the calling thread");
+                        }
+                    }
+                    drain(queue);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The handling of an event by a listener, which can ask to be retried.
+     */
+    public interface RetryableTask {
+
+        /**
+         * Runs the task.
+         *
+         * @return the delay in milliseconds after which the task should be run again, or a negative value
+         * if it is finished
+         */
+        long attempt();
+    }
+
+    /**
+     * The tasks waiting for a single listener. The task at the head of the queue is removed only after it is
+     * finished, so that a task waiting for a retry keeps its place.
+     */
+    private static final class ListenerQueue {
+        private final Deque<RetryableTask> tasks = new ArrayDeque<>();
+        private final Lock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final String listenerId;
+        private final int capacity;
+        private volatile boolean removed;
+
+        private ListenerQueue(String listenerId, int capacity) {
+            this.listenerId = listenerId;
+            this.capacity = capacity;
+        }
+
+        private void put(RetryableTask task, boolean wait) throws InterruptedException {
+            lock.lock();
+            try {
+                while (wait && tasks.size() >= capacity) {
+                    notFull.await();
+                }
+                tasks.addLast(task);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(RetryableTask task) {
+            lock.lock();
+            try {
+                tasks.addLast(task);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private RetryableTask peek() {
+            lock.lock();
+            try {
+                return tasks.peekFirst();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove() {
+            lock.lock();
+            try {
+                tasks.pollFirst();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return tasks.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes <code>MotechEvent</code>s to the event queue in batches. Events are coalesced in an in-memory buffer
+ * and sent in a single transacted JMS session once the buffer reaches {@link MotechEventConfig#getMessageBatchSize()}
+ * messages, or when {@link MotechEventConfig#getMessageBatchFlushInterval()} milliseconds have passed, whichever
+ * comes first. This avoids the cost of a separate send and commit for every single message. The events are routed
+ * to their lanes by the {@link EventQueueSender}.
+ * <p>
+ * If a batch could not be sent, its events and the events following them are put back at the front of the buffer
+ * and sent with the next flush, so they are neither lost nor reordered. When the batches are not flushed in
+ * the background, the events are sent right away instead and the error is thrown to the publisher.
+ */
+public class BatchEventPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchEventPublisher.class);
+
+    private final Object lock = new Object();
+    private List<MotechEvent> buffer = new ArrayList<>();
+
+    private JmsTemplate jmsTemplate;
+    private EventQueueSender eventQueueSender;
+    private MotechEventTransformer eventTransformer;
+    private MotechEventConfig motechEventConfig;
+
+    private ScheduledExecutorService flushExecutor;
+
+    /**
+     * @param jmsTemplate the template used for sending messages, it should be configured to use transacted sessions
+     * @param eventQueueSender the sender routing the events to their queues
+     * @param eventTransformer the transformer applied to every event before it is sent
+     * @param motechEventConfig the event configuration, provides batch size and flush interval
+     */
+    public BatchEventPublisher(JmsTemplate jmsTemplate, EventQueueSender eventQueueSender,
+                               MotechEventTransformer eventTransformer, MotechEventConfig motechEventConfig) {
+        this.jmsTemplate = jmsTemplate;
+        this.eventQueueSender = eventQueueSender;
+        this.eventTransformer = eventTransformer;
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Starts the background flushing of the buffer.
+     */
+    @PostConstruct
+    public void start() {
+        long interval = motechEventConfig.getMessageBatchFlushInterval();
+        if (interval > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-event-batch-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            flushExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Unable to flush the event batch", e);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background flushing and sends all events that are still buffered.
+     */
+    @PreDestroy
+    public void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flushExecutor = null;
+        }
+        flush();
+    }
+
+    /**
+     * Adds the given events to the buffer. If the buffer reaches the configured batch size, it is sent
+     * to the broker in the calling thread. If the batches are not flushed in the background, the events are sent
+     * right away.
+     *
+     * @param events the events to be published
+     * @throws RuntimeException if the events could not be sent right away, because the batches are not flushed
+     *                          in the background
+     */
+    public void publish(Collection<MotechEvent> events) {
+        List<MotechEvent> batch = null;
+        boolean flushedInBackground;
+
+        synchronized (lock) {
+            buffer.addAll(events);
+            flushedInBackground = flushExecutor != null;
+            if (buffer.size() >= motechEventConfig.getMessageBatchSize() || !flushedInBackground) {
+                batch = drainBuffer();
+            }
+        }
+
+        if (batch == null) {
+            return;
+        }
+
+        if (flushedInBackground) {
+            try {
+                send(batch, true);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to send the event batch, its events will be sent with the next flush", e);
+            }
+        } else {
+            // nothing would send them later, so the publisher has to know
+            send(batch, false);
+        }
+    }
+
+    /**
+     * Sends all buffered events to the broker. The events which could not be sent are kept in the buffer.
+     *
+     * @throws RuntimeException if the events could not be sent
+     */
+    public void flush() {
+        List<MotechEvent> batch;
+        synchronized (lock) {
+            batch = drainBuffer();
+        }
+        send(batch, true);
+    }
+
+    /**
+     * Returns the number of events waiting in the buffer.
+     *
+     * @return the number of buffered events
+     */
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    private List<MotechEvent> drainBuffer() {
+        List<MotechEvent> batch = buffer;
+        buffer = new ArrayList<>();
+        return batch;
+    }
+
+    private void restoreUnsent(List<MotechEvent> unsent) {
+        synchronized (lock) {
+            // the events published in the meantime follow the unsent ones
+            List<MotechEvent> restored = new ArrayList<>(unsent.size() + buffer.size());
+            restored.addAll(unsent);
+            restored.addAll(buffer);
+            buffer = restored;
+        }
+    }
+
+    private void send(final List<MotechEvent> batch, boolean restoreOnFailure) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int batchSize = Math.max(motechEventConfig.getMessageBatchSize(), 1);
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            final List<MotechEvent> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+
+            try {
+                jmsTemplate.execute(new SessionCallback<Void>() {
+                    @Override
+                    public Void doInJms(Session session) throws JMSException {
+                        List<MotechEvent> transformed = new ArrayList<>(chunk.size());
+                        for (MotechEvent event : chunk) {
+                            transformed.add(eventTransformer.transform(event));
+                        }
+                        eventQueueSender.sendAll(session, transformed);
+
+                        if (!ConnectionFactoryUtils.isSessionTransactional(session, jmsTemplate.getConnectionFactory())) {
+                            JmsUtils.commitIfNecessary(session);
+                        }
+                        return null;
+                    }
+                }, true);
+            } catch (RuntimeException e) {
+                if (restoreOnFailure) {
+                    // the session of the failed chunk was rolled back, the following chunks were not sent yet
+                    restoreUnsent(batch.subList(from, batch.size()));
+                }
+                throw e;
+            }
+
+            LOGGER.debug("Sent a batch of {} events", chunk.size());
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encodes <code>MotechEvent</code>s in a compact, tagged binary format. The header contains the event flags,
+ * redelivery count, publish time, id, subject and message destination. It is followed by the parameters, each written as
+ * its key and a tagged value. Primitive wrappers, strings, dates, UUIDs, byte arrays and nested lists and maps
+ * are written natively, any other {@link Serializable} value falls back to Java serialization.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    private static final short MAGIC = 0x4D45;
+    private static final byte VERSION = 2;
+
+    private static final int FLAG_INVALID = 1;
+    private static final int FLAG_DISCARDED = 1 << 1;
+    private static final int FLAG_BROADCAST = 1 << 2;
+    private static final int FLAG_ID = 1 << 3;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    @Override
+    public byte[] encode(MotechEvent motechEvent) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(flags(motechEvent));
+            out.writeInt(motechEvent.getMessageRedeliveryCount());
+            out.writeLong(motechEvent.getPublishTime());
+
+            if (motechEvent.getId() != null) {
+                out.writeLong(motechEvent.getId().getMostSignificantBits());
+                out.writeLong(motechEvent.getId().getLeastSignificantBits());
+            }
+
+            writeString(out, motechEvent.getSubject());
+            writeString(out, motechEvent.getMessageDestination());
+
+            Map<String, Object> parameters = motechEvent.getParameters();
+            out.writeInt(parameters.size());
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new MotechException("Unable to encode event " + motechEvent, e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readShort() != MAGIC) {
+                throw new MotechException("The message is not an encoded Motech event");
+            }
+
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new MotechException("Unsupported version of the encoded Motech event: " + version);
+            }
+
+            int flags = in.readByte();
+            int redeliveryCount = in.readInt();
+            long publishTime = in.readLong();
+            UUID id = (flags & FLAG_ID) != 0 ? new UUID(in.readLong(), in.readLong()) : null;
+            String subject = readString(in);
+            String messageDestination = readString(in);
+
+            int size = in.readInt();
+            Map<String, Object> parameters = new HashMap<>(capacity(size));
+            for (int i = 0; i < size; ++i) {
+                String key = readString(in);
+                parameters.put(key, readValue(in));
+            }
+
+            MotechEvent motechEvent = new MotechEvent(subject, parameters);
+            motechEvent.setId(id);
+            motechEvent.setMessageRedeliveryCount(redeliveryCount);
+            motechEvent.setPublishTime(publishTime);
+            motechEvent.setMessageDestination(messageDestination);
+            motechEvent.setInvalid((flags & FLAG_INVALID) != 0);
+            motechEvent.setDiscarded((flags & FLAG_DISCARDED) != 0);
+            motechEvent.setBroadcast((flags & FLAG_BROADCAST) != 0);
+
+            return motechEvent;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MotechException("Unable to decode event", e);
+        }
+    }
+
+    private int flags(MotechEvent motechEvent) {
+        int flags = 0;
+        if (motechEvent.isInvalid()) {
+            flags |= FLAG_INVALID;
+        }
+        if (motechEvent.isDiscarded()) {
+            flags |= FLAG_DISCARDED;
+        }
+        if (motechEvent.isBroadcast()) {
+            flags |= FLAG_BROADCAST;
+        }
+        if (motechEvent.getId() != null) {
+            flags |= FLAG_ID;
+        }
+        return flags;
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        ValueType type = ValueType.of(value);
+        if (type == null) {
+            throw new MotechException("Parameter of type " + value.getClass().getName() + " is not serializable");
+        }
+
+        out.writeByte(type.ordinal());
+        type.write(out, value);
+    }
+
+    private static Object readValue(DataInput in) throws IOException, ClassNotFoundException {
+        int tag = in.readUnsignedByte();
+        if (tag >= ValueType.VALUES.length) {
+            throw new MotechException("Unknown parameter type tag: " + tag);
+        }
+
+        return ValueType.VALUES[tag].read(in);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int capacity(int size) {
+        return Math.max(size * 4 / 3 + 1, 16);
+    }
+
+    /**
+     * The types of values supported natively by the codec. The ordinal of each type is its tag in the
+     * encoded form, so new types must only be added at the end.
+     */
+    private enum ValueType {
+        NULL {
+            @Override
+            void write(DataOutput out, Object value) {
+                // only the tag is written
+            }
+
+            @Override
+            Object read(DataInput in) {
+                return null;
+            }
+        },
+        STRING {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                writeString(out, (String) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return readString(in);
+            }
+        },
+        INTEGER {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeInt((Integer) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+        },
+        LONG {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeLong((Long) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        },
+        DOUBLE {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeDouble((Double) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readDouble();
+            }
+        },
+        FLOAT {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeFloat((Float) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readFloat();
+            }
+        },
+        BOOLEAN {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readBoolean();
+            }
+        },
+        SHORT {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeShort((Short) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readShort();
+            }
+        },
+        BYTE {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readByte();
+            }
+        },
+        CHARACTER {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeChar((Character) value);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return in.readChar();
+            }
+        },
+        DATE_TIME {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                DateTime dateTime = (DateTime) value;
+                out.writeLong(dateTime.getMillis());
+                writeString(out, dateTime.getZone().getID());
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                long millis = in.readLong();
+                return new DateTime(millis, DateTimeZone.forID(readString(in)));
+            }
+        },
+        DATE {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                out.writeLong(((Date) value).getTime());
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return new Date(in.readLong());
+            }
+        },
+        UUID_VALUE {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                UUID uuid = (UUID) value;
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                return new UUID(in.readLong(), in.readLong());
+            }
+        },
+        BYTES {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                byte[] bytes = (byte[]) value;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            }
+        },
+        LIST {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                List<?> list = (List<?>) value;
+                out.writeInt(list.size());
+                for (Object item : list) {
+                    writeValue(out, item);
+                }
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException, ClassNotFoundException {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; ++i) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+        },
+        MAP {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException, ClassNotFoundException {
+                int size = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<>(capacity(size));
+                for (int i = 0; i < size; ++i) {
+                    Object key = readValue(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+        },
+        SERIALIZABLE {
+            @Override
+            void write(DataOutput out, Object value) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+                try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                    objectOut.writeObject(value);
+                }
+                BYTES.write(out, bytes.toByteArray());
+            }
+
+            @Override
+            Object read(DataInput in) throws IOException, ClassNotFoundException {
+                byte[] bytes = (byte[]) BYTES.read(in);
+                try (ObjectInputStream objectIn = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return objectIn.readObject();
+                }
+            }
+        };
+
+        private static final ValueType[] VALUES = values();
+        private static final Map<Class<?>, ValueType> BY_CLASS = new HashMap<>();
+
+        static {
+            BY_CLASS.put(String.class, STRING);
+            BY_CLASS.put(Integer.class, INTEGER);
+            BY_CLASS.put(Long.class, LONG);
+            BY_CLASS.put(Double.class, DOUBLE);
+            BY_CLASS.put(Float.class, FLOAT);
+            BY_CLASS.put(Boolean.class, BOOLEAN);
+            BY_CLASS.put(Short.class, SHORT);
+            BY_CLASS.put(Byte.class, BYTE);
+            BY_CLASS.put(Character.class, CHARACTER);
+            BY_CLASS.put(Date.class, DATE);
+            BY_CLASS.put(UUID.class, UUID_VALUE);
+            BY_CLASS.put(byte[].class, BYTES);
+            // the lists and maps are decoded as an ArrayList and a LinkedHashMap, so only the implementations
+            // which can be replaced by them are written natively, the other ones keep their type by being serialized
+            BY_CLASS.put(ArrayList.class, LIST);
+            BY_CLASS.put(HashMap.class, MAP);
+            BY_CLASS.put(LinkedHashMap.class, MAP);
+        }
+
+        abstract void write(DataOutput out, Object value) throws IOException;
+
+        abstract Object read(DataInput in) throws IOException, ClassNotFoundException;
+
+        static ValueType of(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+
+            ValueType type = BY_CLASS.get(value.getClass());
+            if (type != null) {
+                return type;
+            }
+
+            if (value instanceof DateTime && ((DateTime) value).getChronology() instanceof ISOChronology) {
+                return DATE_TIME;
+            } else if (value instanceof Serializable) {
+                return SERIALIZABLE;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Resolves serialized classes using the context class loader first, since the classes of parameters
+     * usually come from the bundle of the sender or receiver of the event, not from the event bundle.
+     */
+    private static class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) {
+                return super.resolveClass(desc);
+            }
+
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
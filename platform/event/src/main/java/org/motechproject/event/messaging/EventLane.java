@@ -0,0 +1,127 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+
+import javax.jms.Destination;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lane of the event queue. Events with subjects matching one of the subject patterns of the lane are sent
+ * to a separate destination, with their own JMS priority, and are consumed by a dedicated pool of consumers.
+ * Subject patterns use the same wildcard semantics as listener registrations - a pattern can either be an exact
+ * subject, end with <code>.*</code> to match the subject and every subject below it, or be a single <code>*</code>.
+ */
+public class EventLane {
+
+    private static final String WILDCARD = "*";
+    private static final String WILDCARD_SUFFIX = ".*";
+
+    private final String name;
+    private final List<String> subjectPatterns;
+    private final String queueName;
+    private final int priority;
+    private final int concurrentConsumers;
+    private final int maxConcurrentConsumers;
+    private final Destination destination;
+
+    /**
+     * @param name the name of the lane
+     * @param subjectPatterns the patterns of the subjects handled by this lane
+     * @param queueName the name of the queue used by this lane
+     * @param priority the JMS priority of the messages sent to this lane, between 0 and 9
+     * @param concurrentConsumers the number of consumers of this lane
+     * @param maxConcurrentConsumers the maximum number of consumers of this lane
+     * @throws IllegalArgumentException if any of the subject patterns or the priority are invalid
+     */
+    public EventLane(String name, List<String> subjectPatterns, String queueName, int priority,
+                     int concurrentConsumers, int maxConcurrentConsumers) {
+        for (String pattern : subjectPatterns) {
+            validatePattern(pattern);
+        }
+        if (priority < 0 || priority > 9) {
+            throw new IllegalArgumentException("Priority of lane " + name + " must be between 0 and 9: " + priority);
+        }
+
+        this.name = name;
+        this.subjectPatterns = Collections.unmodifiableList(new ArrayList<>(subjectPatterns));
+        this.queueName = queueName;
+        this.priority = priority;
+        this.concurrentConsumers = Math.max(concurrentConsumers, 1);
+        this.maxConcurrentConsumers = Math.max(maxConcurrentConsumers, this.concurrentConsumers);
+        this.destination = new ActiveMQQueue(queueName);
+    }
+
+    /**
+     * Checks whether the event with the given subject should be sent through this lane.
+     *
+     * @param subject the subject of the event
+     * @return true if the subject matches one of the patterns of the lane
+     */
+    public boolean matches(String subject) {
+        for (String pattern : subjectPatterns) {
+            if (matches(pattern, subject)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSubjectPatterns() {
+        return subjectPatterns;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public int getConcurrentConsumers() {
+        return concurrentConsumers;
+    }
+
+    public int getMaxConcurrentConsumers() {
+        return maxConcurrentConsumers;
+    }
+
+    public Destination getDestination() {
+        return destination;
+    }
+
+    private boolean matches(String pattern, String subject) {
+        if (WILDCARD.equals(pattern)) {
+            return true;
+        } else if (pattern.endsWith(WILDCARD_SUFFIX)) {
+            String prefix = pattern.substring(0, pattern.length() - WILDCARD_SUFFIX.length());
+            return subject.equals(prefix) ||
+                    (subject.startsWith(prefix) && subject.charAt(prefix.length()) == '.');
+        } else {
+            return subject.equals(pattern);
+        }
+    }
+
+    private void validatePattern(String pattern) {
+        int asteriskLocation = pattern.indexOf('*');
+        if (asteriskLocation != -1 && !WILDCARD.equals(pattern) &&
+                (asteriskLocation + 1 != pattern.length() || !pattern.endsWith(WILDCARD_SUFFIX))) {
+            throw new IllegalArgumentException("Wildcard must be the whole last element of subject: " + pattern);
+        }
+        if (pattern.isEmpty() || pattern.contains("..")) {
+            throw new IllegalArgumentException("Subject can not contain an empty path segment: " + pattern);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventLane{name=%s, subjects=%s, queue=%s, priority=%d, consumers=%d-%d}",
+                name, subjectPatterns, queueName, priority, concurrentConsumers, maxConcurrentConsumers);
+    }
+}
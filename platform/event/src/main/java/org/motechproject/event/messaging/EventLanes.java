@@ -0,0 +1,171 @@
+package org.motechproject.event.messaging;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.config.core.constants.ConfigurationConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the lanes of the event queue, configured in the ActiveMQ settings of the platform:
+ * <pre>
+ * motech.message.lanes=sms,bulk
+ * motech.message.lane.sms.subjects=org.motechproject.sms.*
+ * motech.message.lane.sms.priority=9
+ * motech.message.lane.sms.concurrentConsumers=2
+ * motech.message.lane.sms.maxConcurrentConsumers=5
+ * motech.message.lane.bulk.subjects=mds.crud.*,org.motechproject.csd.*
+ * motech.message.lane.bulk.priority=1
+ * </pre>
+ * Each lane uses the <code>motech.message.lane.&lt;name&gt;.queue</code> queue, by default named after the event queue
+ * and the lane. Events matching none of the lanes go to the event queue. If a subject matches more than one lane,
+ * the lane listed first is used. JMS priorities are only honored within a queue if the broker has prioritized
+ * messages enabled.
+ */
+public class EventLanes {
+
+    /**
+     * The property listing the names of the configured lanes.
+     */
+    public static final String LANES_PROPERTY = "motech.message.lanes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLanes.class);
+
+    private static final String LANE_PREFIX = "motech.message.lane.";
+    private static final String DEFAULT_QUEUE_FOR_EVENTS = "QueueForEvents";
+    private static final int DEFAULT_PRIORITY = 4;
+    private static final int MAX_CACHED_SUBJECTS = 10000;
+
+    private volatile List<EventLane> lanes = Collections.emptyList();
+    private volatile ConcurrentMap<String, LaneHolder> lanesBySubject = new ConcurrentHashMap<>();
+
+    /**
+     * @param properties the ActiveMQ properties containing the lane configuration
+     */
+    public EventLanes(Properties properties) {
+        reload(properties);
+    }
+
+    /**
+     * Replaces the configured lanes with the ones defined in the given properties. Lanes with invalid
+     * configuration are skipped.
+     *
+     * @param properties the ActiveMQ properties containing the lane configuration
+     */
+    public final synchronized void reload(Properties properties) {
+        List<EventLane> newLanes = new ArrayList<>();
+
+        String defaultQueue = properties.getProperty(ConfigurationConstants.AMQ_QUEUE_EVENTS, DEFAULT_QUEUE_FOR_EVENTS);
+        for (String name : split(properties.getProperty(LANES_PROPERTY))) {
+            try {
+                newLanes.add(parseLane(name, properties, defaultQueue));
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Invalid configuration of event lane {}, the lane will not be used", name, e);
+            }
+        }
+
+        lanes = Collections.unmodifiableList(newLanes);
+        lanesBySubject = new ConcurrentHashMap<>();
+
+        LOGGER.info("Configured event lanes: {}", lanes);
+    }
+
+    /**
+     * Returns the lane through which events with the given subject should be sent.
+     *
+     * @param subject the subject of the event
+     * @return the matching lane, or null if the event should be sent to the event queue
+     */
+    public EventLane getLane(String subject) {
+        ConcurrentMap<String, LaneHolder> cache = lanesBySubject;
+
+        LaneHolder holder = cache.get(subject);
+        if (holder == null) {
+            holder = new LaneHolder(findLane(subject));
+            if (cache.size() < MAX_CACHED_SUBJECTS) {
+                cache.putIfAbsent(subject, holder);
+            }
+        }
+
+        return holder.lane;
+    }
+
+    /**
+     * Returns all configured lanes.
+     *
+     * @return the list of lanes
+     */
+    public List<EventLane> getLanes() {
+        return lanes;
+    }
+
+    private EventLane findLane(String subject) {
+        for (EventLane lane : lanes) {
+            if (lane.matches(subject)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private EventLane parseLane(String name, Properties properties, String defaultQueue) {
+        String prefix = LANE_PREFIX + name + '.';
+
+        List<String> subjects = split(properties.getProperty(prefix + "subjects"));
+        if (subjects.isEmpty()) {
+            throw new IllegalArgumentException("No subjects defined for lane " + name);
+        }
+
+        String queueName = properties.getProperty(prefix + "queue", defaultQueue + '.' + name);
+        int priority = getInt(properties, prefix + "priority", DEFAULT_PRIORITY);
+        int concurrentConsumers = getInt(properties, prefix + "concurrentConsumers", 1);
+        int maxConcurrentConsumers = getInt(properties, prefix + "maxConcurrentConsumers", concurrentConsumers);
+
+        return new EventLane(name, subjects, queueName, priority, concurrentConsumers, maxConcurrentConsumers);
+    }
+
+    private int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of " + key + ": " + value, e);
+        }
+    }
+
+    private List<String> split(String value) {
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String element : Arrays.asList(StringUtils.split(value, ','))) {
+            if (StringUtils.isNotBlank(element)) {
+                result.add(element.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Allows caching subjects which do not belong to any lane.
+     */
+    private static final class LaneHolder {
+        private final EventLane lane;
+
+        private LaneHolder(EventLane lane) {
+            this.lane = lane;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends queue events to the broker. Events whose subjects belong to one of the configured {@link EventLanes} are
+ * sent to the queue of that lane with the priority of the lane, all other events are sent to the event queue
+ * with the default JMS priority.
+ */
+public class EventQueueSender {
+
+    private JmsTemplate jmsTemplate;
+    private Destination eventQueue;
+    private EventLanes eventLanes;
+    private MessageConverter messageConverter;
+
+    /**
+     * @param jmsTemplate the template used for sending single events
+     * @param eventQueue the queue for events which do not belong to any lane
+     * @param eventLanes the configured lanes
+     * @param messageConverter the converter creating messages from events
+     */
+    public EventQueueSender(JmsTemplate jmsTemplate, Destination eventQueue, EventLanes eventLanes,
+                            MessageConverter messageConverter) {
+        this.jmsTemplate = jmsTemplate;
+        this.eventQueue = eventQueue;
+        this.eventLanes = eventLanes;
+        this.messageConverter = messageConverter;
+    }
+
+    /**
+     * Sends the given event to the queue of its lane.
+     *
+     * @param event the event to be sent
+     */
+    public void send(final MotechEvent event) {
+        jmsTemplate.execute(new SessionCallback<Void>() {
+            @Override
+            public Void doInJms(Session session) throws JMSException {
+                sendAll(session, Collections.singletonList(event));
+                return null;
+            }
+        }, true);
+    }
+
+    /**
+     * Sends the given events to the queues of their lanes using the given session. The session is neither
+     * committed nor closed, this is left to the caller.
+     *
+     * @param session the session used for sending the events
+     * @param events the events to be sent
+     * @throws JMSException if the events could not be sent
+     */
+    public void sendAll(Session session, List<MotechEvent> events) throws JMSException {
+        Map<Destination, MessageProducer> producers = new HashMap<>();
+        try {
+            for (MotechEvent event : events) {
+                EventLane lane = eventLanes.getLane(event.getSubject());
+                Destination destination = (lane == null) ? eventQueue : lane.getDestination();
+                int priority = (lane == null) ? Message.DEFAULT_PRIORITY : lane.getPriority();
+
+                MessageProducer producer = producers.get(destination);
+                if (producer == null) {
+                    producer = session.createProducer(destination);
+                    producers.put(destination, producer);
+                }
+
+                Message message = messageConverter.toMessage(event, session);
+                producer.send(message, producer.getDeliveryMode(), priority, producer.getTimeToLive());
+            }
+        } finally {
+            for (MessageProducer producer : producers.values()) {
+                JmsUtils.closeMessageProducer(producer);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Encodes <code>MotechEvent</code>s into the binary form in which they are sent through ActiveMQ, and decodes
+ * them back. The codec used by the event module can be replaced by redefining the <code>eventCodec</code> bean.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Encodes the event, including its subject, id, redelivery metadata and parameters.
+     *
+     * @param motechEvent the event to encode
+     * @return the encoded event
+     * @throws org.motechproject.commons.api.MotechException if the event can not be encoded
+     */
+    byte[] encode(MotechEvent motechEvent);
+
+    /**
+     * Decodes an event encoded by {@link #encode(MotechEvent)}.
+     *
+     * @param bytes the encoded event
+     * @return the decoded event
+     * @throws org.motechproject.commons.api.MotechException if the bytes do not represent a valid event
+     */
+    MotechEvent decode(byte[] bytes);
+}
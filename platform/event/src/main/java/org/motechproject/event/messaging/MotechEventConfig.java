@@ -15,6 +15,33 @@ public class MotechEventConfig {
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.message.batch.size:100}")
+    private int messageBatchSize;
+
+    @Value("${motech.message.batch.flush.interval:100}")
+    private long messageBatchFlushInterval;
+
+    @Value("${motech.message.local.dispatch.enabled:false}")
+    private boolean localDispatchEnabled;
+
+    @Value("${motech.message.local.dispatch.threads:4}")
+    private int localDispatchThreads;
+
+    @Value("${motech.message.local.dispatch.queue.size:1000}")
+    private int localDispatchQueueSize;
+
+    @Value("${motech.message.clustered:false}")
+    private boolean clustered;
+
+    @Value("${motech.message.topic.dispatch.enabled:false}")
+    private boolean topicDispatchEnabled;
+
+    @Value("${motech.message.topic.dispatch.threads:8}")
+    private int topicDispatchThreads;
+
+    @Value("${motech.message.topic.dispatch.queue.size:1000}")
+    private int topicDispatchQueueSize;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +63,95 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns the maximum number of messages that will be buffered by the batch publisher before they are
+     * sent to the broker in a single transacted session.
+     *
+     * @return the maximum size of a message batch
+     */
+    public int getMessageBatchSize() {
+        return messageBatchSize;
+    }
+
+    /**
+     * Returns the interval (in milliseconds) after which buffered messages are sent to the broker,
+     * even if the batch size has not been reached.
+     *
+     * @return the batch flush interval
+     */
+    public long getMessageBatchFlushInterval() {
+        return messageBatchFlushInterval;
+    }
+
+    /**
+     * Returns whether events sent to the queue should be handed directly to the listeners registered in
+     * this instance, instead of going through ActiveMQ. Local dispatch is never used in clustered mode.
+     *
+     * @return true if local dispatch is enabled, false otherwise
+     */
+    public boolean isLocalDispatchEnabled() {
+        return localDispatchEnabled;
+    }
+
+    /**
+     * Returns the number of threads used for handling locally dispatched events.
+     *
+     * @return the number of local dispatch threads
+     */
+    public int getLocalDispatchThreads() {
+        return localDispatchThreads;
+    }
+
+    /**
+     * Returns the maximum number of locally dispatched events waiting for a thread. Once this
+     * number is reached, events are sent through ActiveMQ.
+     *
+     * @return the size of the local dispatch queue
+     */
+    public int getLocalDispatchQueueSize() {
+        return localDispatchQueueSize;
+    }
+
+    /**
+     * Returns whether this instance is a part of a cluster. In clustered mode all events go through
+     * ActiveMQ, so that the load is shared between the nodes.
+     *
+     * @return true if the instance is clustered, false otherwise
+     */
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    /**
+     * Returns whether broadcast events should be handed to their listeners asynchronously, in parallel for
+     * different listeners. Each listener still receives the broadcast events in order. The delivery guarantee is
+     * weaker than with the synchronous handling: the message is acknowledged to the broker once it is queued for
+     * the listeners, so the events not yet handled when the instance crashes are not redelivered. Disabled
+     * by default.
+     *
+     * @return true if asynchronous topic dispatch is enabled, false otherwise
+     */
+    public boolean isTopicDispatchEnabled() {
+        return topicDispatchEnabled;
+    }
+
+    /**
+     * Returns the number of threads used for handling broadcast events.
+     *
+     * @return the number of topic dispatch threads
+     */
+    public int getTopicDispatchThreads() {
+        return topicDispatchThreads;
+    }
+
+    /**
+     * Returns the maximum number of broadcast events waiting for a single listener. Once this number is reached,
+     * the topic consumer waits until the listener catches up, which slows down the consumption of the topic.
+     *
+     * @return the size of the queue of a single listener
+     */
+    public int getTopicDispatchQueueSize() {
+        return topicDispatchQueueSize;
+    }
 }
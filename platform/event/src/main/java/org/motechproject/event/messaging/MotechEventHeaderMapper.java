@@ -1,7 +1,6 @@
 package org.motechproject.event.messaging;
 
 import org.apache.activemq.ScheduledMessage;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.log4j.Logger;
 import org.motechproject.event.MotechEvent;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +9,7 @@ import org.springframework.integration.jms.DefaultJmsHeaderMapper;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.ObjectMessage;
 
 /**
  * Sets the <code>AMQ_SCHEDULED_DELAY</code> header of the JMS message being sent based on the <code>MotechEventConfig</code>.
@@ -32,17 +32,31 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
         try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
-
-            if (motechEvent.isInvalid()) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
-                Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
-                        ((Math.pow(2, redeliveryCount - 1)));
-                LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
-                message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
+            // bytes messages get their delay set by the MotechEventMessageConverter, which has access to the event
+            if (message instanceof ObjectMessage) {
+                MotechEvent motechEvent = (MotechEvent) ((ObjectMessage) message).getObject();
+                setRedeliveryDelay(motechEvent, message);
             }
         } catch (JMSException e) {
             LOGGER.error("Failed to set header", e);
         }
     }
+
+    /**
+     * Sets <code>AMQ_SCHEDULED_DELAY</code> on the given message if the event is being redelivered.
+     * The delay grows exponentially with the redelivery count of the event.
+     *
+     * @param motechEvent the event carried by the message
+     * @param message the message that will be sent to the broker
+     * @throws JMSException if the property could not be set
+     */
+    public void setRedeliveryDelay(MotechEvent motechEvent, Message message) throws JMSException {
+        if (motechEvent.isInvalid()) {
+            long redeliveryCount = motechEvent.getMessageRedeliveryCount();
+            Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
+                    ((Math.pow(2, redeliveryCount - 1)));
+            LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
+            message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+
+/**
+ * Converts <code>MotechEvent</code>s to JMS <code>BytesMessage</code>s using the configured
+ * {@link MotechEventCodec}, and back. Object messages carrying a serialized event, sent by previous
+ * versions of the event module, are still accepted when receiving.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    private MotechEventCodec eventCodec;
+    private MotechEventHeaderMapper eventHeaderMapper;
+
+    /**
+     * @param eventCodec the codec used for encoding and decoding events
+     * @param eventHeaderMapper the mapper used for setting the redelivery delay of the messages
+     */
+    public MotechEventMessageConverter(MotechEventCodec eventCodec, MotechEventHeaderMapper eventHeaderMapper) {
+        this.eventCodec = eventCodec;
+        this.eventHeaderMapper = eventHeaderMapper;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (!(object instanceof MotechEvent)) {
+            throw new MessageConversionException("Cannot convert object of type " +
+                    (object == null ? null : object.getClass().getName()) + " to a Motech event message");
+        }
+
+        MotechEvent motechEvent = (MotechEvent) object;
+
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(eventCodec.encode(motechEvent));
+        eventHeaderMapper.setRedeliveryDelay(motechEvent, message);
+
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+            return eventCodec.decode(bytes);
+        } else if (message instanceof ObjectMessage) {
+            return ((ObjectMessage) message).getObject();
+        }
+
+        throw new MessageConversionException("Unsupported message type: " + message.getClass().getName());
+    }
+}
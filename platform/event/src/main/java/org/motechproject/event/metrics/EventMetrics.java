@@ -0,0 +1,101 @@
+package org.motechproject.event.metrics;
+
+/**
+ * Metrics of the events handled for a single subject or by a single listener.
+ */
+public class EventMetrics {
+
+    private String name;
+    private long handled;
+    private long failed;
+    private long redelivered;
+    private long discarded;
+    private LatencyStatistics handlingTime;
+    private LatencyStatistics dwellTime;
+
+    public EventMetrics() {
+    }
+
+    /**
+     * @param name the subject or the listener identifier
+     * @param handled the number of events handled successfully
+     * @param failed the number of failed handling attempts
+     * @param redelivered the number of events scheduled for redelivery after a failure
+     * @param discarded the number of events discarded after reaching the maximum redelivery count
+     * @param handlingTime the time spent in the listeners
+     * @param dwellTime the time between publishing the events and the start of their handling
+     */
+    public EventMetrics(String name, long handled, long failed, long redelivered, long discarded,
+                        LatencyStatistics handlingTime, LatencyStatistics dwellTime) {
+        this.name = name;
+        this.handled = handled;
+        this.failed = failed;
+        this.redelivered = redelivered;
+        this.discarded = discarded;
+        this.handlingTime = handlingTime;
+        this.dwellTime = dwellTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getHandled() {
+        return handled;
+    }
+
+    public void setHandled(long handled) {
+        this.handled = handled;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRedelivered() {
+        return redelivered;
+    }
+
+    public void setRedelivered(long redelivered) {
+        this.redelivered = redelivered;
+    }
+
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    public void setDiscarded(long discarded) {
+        this.discarded = discarded;
+    }
+
+    public LatencyStatistics getHandlingTime() {
+        return handlingTime;
+    }
+
+    public void setHandlingTime(LatencyStatistics handlingTime) {
+        this.handlingTime = handlingTime;
+    }
+
+    public LatencyStatistics getDwellTime() {
+        return dwellTime;
+    }
+
+    public void setDwellTime(LatencyStatistics dwellTime) {
+        this.dwellTime = dwellTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventMetrics{name=%s, handled=%d, failed=%d, redelivered=%d, discarded=%d, " +
+                "handlingTime=%s, dwellTime=%s}", name, handled, failed, redelivered, discarded, handlingTime,
+                dwellTime);
+    }
+}
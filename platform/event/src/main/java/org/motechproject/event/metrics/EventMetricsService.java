@@ -0,0 +1,82 @@
+package org.motechproject.event.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records and provides metrics of the events relayed by this instance: the number of handled, failed, redelivered and
+ * discarded events, the time spent by the listeners and the time the events waited before being handled.
+ * The metrics are kept in memory since the start of the event bundle, or since the last reset.
+ */
+public interface EventMetricsService {
+
+    /**
+     * Records the time an event waited between being published and the start of its handling.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener the event was sent to, or null for broadcast events
+     * @param publishTime the time the event was published, in milliseconds since the epoch
+     */
+    void recordDwellTime(String subject, String listener, long publishTime);
+
+    /**
+     * Records a successful handling of an event.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which handled the event
+     * @param nanos the time spent by the listener, in nanoseconds
+     */
+    void recordHandled(String subject, String listener, long nanos);
+
+    /**
+     * Records a failed handling of an event.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which failed to handle the event
+     * @param nanos the time spent by the listener, in nanoseconds
+     */
+    void recordFailed(String subject, String listener, long nanos);
+
+    /**
+     * Records that an event will be redelivered after a failure.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which failed to handle the event
+     */
+    void recordRedelivered(String subject, String listener);
+
+    /**
+     * Records that an event was discarded after reaching the maximum redelivery count.
+     *
+     * @param subject the subject of the event
+     * @param listener the identifier of the listener which failed to handle the event
+     */
+    void recordDiscarded(String subject, String listener);
+
+    /**
+     * Returns the metrics of all subjects for which events were handled.
+     *
+     * @return the list of metrics, one for each subject, sorted by subject
+     */
+    List<EventMetrics> getSubjectMetrics();
+
+    /**
+     * Returns the metrics of all listeners which handled events.
+     *
+     * @return the list of metrics, one for each listener identifier, sorted by identifier
+     */
+    List<EventMetrics> getListenerMetrics();
+
+    /**
+     * Returns the number of broadcast events waiting to be handled by each listener. Listeners without
+     * waiting events are omitted.
+     *
+     * @return the map of listener identifiers to the number of waiting events, sorted by identifier
+     */
+    Map<String, Integer> getTopicBacklog();
+
+    /**
+     * Clears all collected metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,103 @@
+package org.motechproject.event.metrics;
+
+/**
+ * A snapshot of a latency distribution. All values are expressed in milliseconds. Percentiles are accurate
+ * to about 3% of the value.
+ */
+public class LatencyStatistics {
+
+    private long count;
+    private double min;
+    private double max;
+    private double mean;
+    private double median;
+    private double percentile90;
+    private double percentile99;
+    private double percentile999;
+
+    public LatencyStatistics() {
+    }
+
+    public LatencyStatistics(long count, double min, double max, double mean, double median, double percentile90,
+                             double percentile99, double percentile999) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.median = median;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.percentile999 = percentile999;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public void setMedian(double median) {
+        this.median = median;
+    }
+
+    public double getPercentile90() {
+        return percentile90;
+    }
+
+    public void setPercentile90(double percentile90) {
+        this.percentile90 = percentile90;
+    }
+
+    public double getPercentile99() {
+        return percentile99;
+    }
+
+    public void setPercentile99(double percentile99) {
+        this.percentile99 = percentile99;
+    }
+
+    public double getPercentile999() {
+        return percentile999;
+    }
+
+    public void setPercentile999(double percentile999) {
+        this.percentile999 = percentile999;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyStatistics{count=%d, min=%.3f, max=%.3f, mean=%.3f, median=%.3f, " +
+                "p90=%.3f, p99=%.3f, p999=%.3f}", count, min, max, mean, median, percentile90, percentile99,
+                percentile999);
+    }
+}
@@ -0,0 +1,161 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.listener.impl.TopicEventDispatcher;
+import org.motechproject.event.metrics.EventMetrics;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of the events relayed by the {@link org.motechproject.event.listener.impl.ServerEventRelay}.
+ * All recording methods are lock-free. The number of tracked subjects and listeners is limited, metrics of any
+ * further subjects or listeners are aggregated under {@link #OTHER}.
+ */
+@Service("eventMetricsService")
+public class EventMetricsServiceImpl implements EventMetricsService {
+
+    /**
+     * The name under which the metrics are aggregated once the limit of tracked names is reached.
+     */
+    public static final String OTHER = "other";
+
+    private static final int MAX_TRACKED_NAMES = 2000;
+
+    private static final Comparator<EventMetrics> BY_NAME = new Comparator<EventMetrics>() {
+        @Override
+        public int compare(EventMetrics first, EventMetrics second) {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    private volatile ConcurrentMap<String, Counters> subjects = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, Counters> listeners = new ConcurrentHashMap<>();
+
+    private TopicEventDispatcher topicEventDispatcher;
+
+    @Override
+    public void recordDwellTime(String subject, String listener, long publishTime) {
+        if (publishTime <= 0) {
+            return;
+        }
+
+        long micros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - publishTime);
+        counters(subjects, subject).dwellTime.record(micros);
+        if (listener != null) {
+            counters(listeners, listener).dwellTime.record(micros);
+        }
+    }
+
+    @Override
+    public void recordHandled(String subject, String listener, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        for (Counters counters : counters(subject, listener)) {
+            counters.handled.increment();
+            counters.handlingTime.record(micros);
+        }
+    }
+
+    @Override
+    public void recordFailed(String subject, String listener, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        for (Counters counters : counters(subject, listener)) {
+            counters.failed.increment();
+            counters.handlingTime.record(micros);
+        }
+    }
+
+    @Override
+    public void recordRedelivered(String subject, String listener) {
+        for (Counters counters : counters(subject, listener)) {
+            counters.redelivered.increment();
+        }
+    }
+
+    @Override
+    public void recordDiscarded(String subject, String listener) {
+        for (Counters counters : counters(subject, listener)) {
+            counters.discarded.increment();
+        }
+    }
+
+    @Override
+    public List<EventMetrics> getSubjectMetrics() {
+        return toMetrics(subjects);
+    }
+
+    @Override
+    public List<EventMetrics> getListenerMetrics() {
+        return toMetrics(listeners);
+    }
+
+    @Override
+    public Map<String, Integer> getTopicBacklog() {
+        return (topicEventDispatcher == null) ? Collections.<String, Integer>emptyMap() :
+                topicEventDispatcher.getBacklog();
+    }
+
+    @Override
+    public void reset() {
+        subjects = new ConcurrentHashMap<>();
+        listeners = new ConcurrentHashMap<>();
+    }
+
+    @Autowired
+    public void setTopicEventDispatcher(TopicEventDispatcher topicEventDispatcher) {
+        this.topicEventDispatcher = topicEventDispatcher;
+    }
+
+    private Counters[] counters(String subject, String listener) {
+        return new Counters[] { counters(subjects, subject), counters(listeners, listener) };
+    }
+
+    private Counters counters(ConcurrentMap<String, Counters> map, String name) {
+        Counters counters = map.get(name);
+        if (counters == null) {
+            String key = (map.size() < MAX_TRACKED_NAMES) ? name : OTHER;
+            counters = map.get(key);
+            if (counters == null) {
+                Counters created = new Counters();
+                counters = map.putIfAbsent(key, created);
+                if (counters == null) {
+                    counters = created;
+                }
+            }
+        }
+        return counters;
+    }
+
+    private List<EventMetrics> toMetrics(Map<String, Counters> map) {
+        List<EventMetrics> metrics = new ArrayList<>(map.size());
+        for (Map.Entry<String, Counters> entry : map.entrySet()) {
+            Counters counters = entry.getValue();
+            metrics.add(new EventMetrics(entry.getKey(), counters.handled.sum(), counters.failed.sum(),
+                    counters.redelivered.sum(), counters.discarded.sum(), counters.handlingTime.toStatistics(),
+                    counters.dwellTime.toStatistics()));
+        }
+        Collections.sort(metrics, BY_NAME);
+        return metrics;
+    }
+
+    /**
+     * The metrics of a single subject or listener.
+     */
+    private static final class Counters {
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder redelivered = new LongAdder();
+        private final LongAdder discarded = new LongAdder();
+        private final LatencyHistogram handlingTime = new LatencyHistogram();
+        private final LatencyHistogram dwellTime = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,124 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.LatencyStatistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies, recorded in microseconds. Values are counted in log-linear buckets, in the
+ * same way as HdrHistogram does it - every power of two is split into 32 equal sub-buckets, which keeps the
+ * relative error of the reported percentiles below about 3% with a fixed memory footprint. Values larger than
+ * about twelve days are counted in the last bucket.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private static final double MICROS_IN_MILLI = 1000.0;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Records a single value.
+     *
+     * @param micros the value in microseconds, negative values are recorded as 0
+     */
+    void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        total.add(value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * Creates a snapshot of the recorded values. Values recorded concurrently with the snapshot may or may not
+     * be included in it.
+     *
+     * @return the statistics of the recorded values, in milliseconds
+     */
+    LatencyStatistics toStatistics() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long snapshotCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            snapshot[i] = counts.get(i);
+            snapshotCount += snapshot[i];
+        }
+
+        if (snapshotCount == 0) {
+            return new LatencyStatistics();
+        }
+
+        long minValue = min.get();
+        long maxValue = max.get();
+
+        return new LatencyStatistics(snapshotCount, toMillis(minValue), toMillis(maxValue),
+                total.sum() / (double) count.sum() / MICROS_IN_MILLI,
+                toMillis(percentile(snapshot, snapshotCount, 0.5, maxValue)),
+                toMillis(percentile(snapshot, snapshotCount, 0.9, maxValue)),
+                toMillis(percentile(snapshot, snapshotCount, 0.99, maxValue)),
+                toMillis(percentile(snapshot, snapshotCount, 0.999, maxValue)));
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private long percentile(long[] snapshot, long snapshotCount, double percentile, long maxValue) {
+        long rank = Math.max((long) Math.ceil(percentile * snapshotCount), 1);
+
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; ++i) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    private void updateMin(long value) {
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static double toMillis(long micros) {
+        return micros / MICROS_IN_MILLI;
+    }
+}
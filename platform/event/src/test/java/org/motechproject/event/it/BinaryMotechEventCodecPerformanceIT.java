@@ -0,0 +1,111 @@
+package org.motechproject.event.it;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.BinaryMotechEventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares round trips of an event with typical parameters through the {@link BinaryMotechEventCodec} and through
+ * Java serialization. The number of round trips is set with the <code>event.performance.quantity</code> property,
+ * the sizes of the encoded event and the time of both approaches are logged.
+ */
+public class BinaryMotechEventCodecPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryMotechEventCodecPerformanceIT.class);
+
+    private static final int ROUND_TRIPS = Integer.getInteger("event.performance.quantity", 100000);
+    private static final int WARM_UP_ROUND_TRIPS = 10000;
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void testRoundTrips() throws IOException, ClassNotFoundException {
+        MotechEvent event = createEvent();
+
+        roundTripBinary(event, WARM_UP_ROUND_TRIPS);
+        roundTripSerialized(event, WARM_UP_ROUND_TRIPS);
+
+        long startTime = System.nanoTime();
+        MotechEvent binary = roundTripBinary(event, ROUND_TRIPS);
+        long binaryTime = (System.nanoTime() - startTime) / 1000000;
+
+        startTime = System.nanoTime();
+        MotechEvent serialized = roundTripSerialized(event, ROUND_TRIPS);
+        long serializationTime = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(serialized, binary);
+
+        LOGGER.info("Event size: {} bytes binary, {} bytes serialized. {} round trips took {} ms binary, {} ms serialized",
+                codec.encode(event).length, serialize(event).length, ROUND_TRIPS, binaryTime, serializationTime);
+    }
+
+    private MotechEvent roundTripBinary(MotechEvent event, int roundTrips) {
+        MotechEvent decoded = null;
+        for (int i = 0; i < roundTrips; ++i) {
+            decoded = codec.decode(codec.encode(event));
+        }
+        return decoded;
+    }
+
+    private MotechEvent roundTripSerialized(MotechEvent event, int roundTrips) throws IOException, ClassNotFoundException {
+        MotechEvent decoded = null;
+        for (int i = 0; i < roundTrips; ++i) {
+            decoded = deserialize(serialize(event));
+        }
+        return decoded;
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("key", "value");
+        nested.put("number", 7L);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "some string value");
+        parameters.put("integer", 42);
+        parameters.put("long", 42L);
+        parameters.put("double", 4.2);
+        parameters.put("boolean", true);
+        parameters.put("null", null);
+        parameters.put("dateTime", new DateTime(2015, 3, 4, 10, 30, DateTimeZone.forID("Europe/Warsaw")));
+        parameters.put("date", new Date(1425461400000L));
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("list", Arrays.asList("a", 1, null));
+        parameters.put("map", nested);
+
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject", parameters);
+        event.setId(UUID.randomUUID());
+        event.setMessageDestination("listener");
+        return event;
+    }
+
+    private byte[] serialize(MotechEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        return bytes.toByteArray();
+    }
+
+    private MotechEvent deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (MotechEvent) in.readObject();
+        }
+    }
+}
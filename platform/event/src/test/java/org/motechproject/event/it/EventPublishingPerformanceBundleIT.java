@@ -0,0 +1,105 @@
+package org.motechproject.event.it;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.testing.osgi.BasePaxIT;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the throughput of publishing events one by one and in batches, against the broker used by the
+ * test container. This is a benchmark rather than a regular test, so it is not a part of {@link EventIntegrationTests}.
+ * The number of events can be changed using the <code>event.performance.quantity</code> system property.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class EventPublishingPerformanceBundleIT extends BasePaxIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventPublishingPerformanceBundleIT.class);
+
+    private static final int EVENTS = Integer.getInteger("event.performance.quantity", 10000);
+    private static final long TIMEOUT_MINUTES = 10;
+
+    @Inject
+    private EventRelay eventRelay;
+
+    @Inject
+    private EventListenerRegistryService eventListenerRegistry;
+
+    @Test
+    public void shouldPublishEventsFasterInBatches() throws InterruptedException {
+        CountingListener singleListener = new CountingListener("single-publishing-listener", EVENTS);
+        eventListenerRegistry.registerListener(singleListener, "performance.single");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            eventRelay.sendEventMessage(new MotechEvent("performance.single"));
+        }
+        assertTrue(singleListener.await());
+        double singleRate = rate(start);
+
+        CountingListener batchListener = new CountingListener("batch-publishing-listener", EVENTS);
+        eventListenerRegistry.registerListener(batchListener, "performance.batch");
+
+        List<MotechEvent> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(new MotechEvent("performance.batch"));
+        }
+
+        start = System.nanoTime();
+        eventRelay.sendEventMessages(events);
+        assertTrue(batchListener.await());
+        double batchRate = rate(start);
+
+        LOGGER.info("Published and handled {} events: {} msg/s one by one, {} msg/s in batches",
+                EVENTS, Math.round(singleRate), Math.round(batchRate));
+    }
+
+    private double rate(long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return EVENTS / seconds;
+    }
+
+    private static class CountingListener implements EventListener {
+
+        private final String identifier;
+        private final CountDownLatch latch;
+
+        CountingListener(String identifier, int expected) {
+            this.identifier = identifier;
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handle(MotechEvent event) {
+            latch.countDown();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -249,6 +249,17 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void shouldRemoveTopicQueueOfRemovedListener() {
+        TopicEventDispatcher topicEventDispatcher = mock(TopicEventDispatcher.class);
+        registry.setTopicEventDispatcher(topicEventDispatcher);
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.someevent");
+
+        registry.clearListenersForBean("TestEventListener");
+
+        verify(topicEventDispatcher).removeQueue("TestEventListener");
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
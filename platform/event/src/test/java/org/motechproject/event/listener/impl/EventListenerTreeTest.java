@@ -12,6 +12,8 @@ import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class EventListenerTreeTest {
@@ -172,6 +174,42 @@ public class EventListenerTreeTest {
         assertEquals(1, tree.getListenerCount(SUBJECT_2));
     }
 
+    @Test
+    public void shouldRefreshResolvedListenersAfterRegistration() {
+        tree.addListener(listener, SUBJECT_1);
+        assertEquals(1, tree.getListeners(SUBJECT_1).size());
+        assertEquals(0, tree.getListeners(SUBJECT_0).size());
+
+        tree.addListener(new FooEventListener(), WILDCARD_SUBJECT);
+
+        assertEquals(2, tree.getListeners(SUBJECT_1).size());
+        assertEquals(1, tree.getListeners(SUBJECT_0).size());
+
+        tree.removeAllListeners("FooEventListener");
+
+        assertEquals(1, tree.getListeners(SUBJECT_1).size());
+        assertEquals(0, tree.getListeners(SUBJECT_0).size());
+    }
+
+    @Test
+    public void shouldFindListenerByIdentifier() {
+        EventListener foo = new FooEventListener();
+        EventListener bar = new BarEventListener();
+        tree.addListener(foo, SUBJECT_1);
+        tree.addListener(bar, WILDCARD_SUBJECT);
+
+        assertSame(foo, tree.getListener(SUBJECT_1, "FooEventListener"));
+        assertSame(bar, tree.getListener(SUBJECT_1, "BarEventListener"));
+        assertSame(bar, tree.getListener(SUBJECT_2, "BarEventListener"));
+        assertNull(tree.getListener(SUBJECT_2, "FooEventListener"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowModifyingResolvedListeners() {
+        tree.addListener(listener, SUBJECT_1);
+        tree.getListeners(SUBJECT_1).clear();
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
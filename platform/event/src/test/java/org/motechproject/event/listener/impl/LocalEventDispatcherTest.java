@@ -0,0 +1,94 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.MotechEventTransformer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class LocalEventDispatcherTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private LocalEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.isLocalDispatchEnabled()).thenReturn(true);
+        when(motechEventConfig.getLocalDispatchThreads()).thenReturn(1);
+        when(motechEventConfig.getLocalDispatchQueueSize()).thenReturn(1);
+
+        dispatcher = new LocalEventDispatcher(motechEventConfig, new MotechEventTransformer());
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void shouldHandleEventOnDispatchThread() throws InterruptedException {
+        dispatcher.start();
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        MotechEvent event = new MotechEvent("subject");
+        assertTrue(dispatcher.dispatch(event, new LocalEventDispatcher.Handler() {
+            @Override
+            public void handle(MotechEvent event) {
+                handled.countDown();
+            }
+        }));
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertNotNull(event.getId());
+    }
+
+    @Test
+    public void shouldRejectEventsWhenSaturated() throws InterruptedException {
+        dispatcher.start();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        LocalEventDispatcher.Handler blockingHandler = new LocalEventDispatcher.Handler() {
+            @Override
+            public void handle(MotechEvent event) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        assertTrue(dispatcher.dispatch(new MotechEvent("subject"), blockingHandler));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch(new MotechEvent("subject"), blockingHandler));
+        assertFalse(dispatcher.dispatch(new MotechEvent("subject"), blockingHandler));
+
+        release.countDown();
+    }
+
+    @Test
+    public void shouldBeDisabledInClusteredMode() {
+        when(motechEventConfig.isClustered()).thenReturn(true);
+        dispatcher.start();
+
+        assertFalse(dispatcher.isEnabled());
+        assertFalse(dispatcher.dispatch(new MotechEvent("subject"), null));
+    }
+}
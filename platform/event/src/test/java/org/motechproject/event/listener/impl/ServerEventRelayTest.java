@@ -14,14 +14,18 @@ import org.motechproject.event.domain.BuggyListener;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.impl.EventListenerRegistry;
 import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.BatchEventPublisher;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.metrics.EventMetricsService;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.core.Is.is;
@@ -29,6 +33,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
@@ -47,6 +52,15 @@ public class ServerEventRelayTest {
     @Mock
     private OutboundEventGateway outboundEventGateway;
 
+    @Mock
+    private BatchEventPublisher batchEventPublisher;
+
+    @Mock
+    private LocalEventDispatcher localEventDispatcher;
+
+    @Mock
+    private TopicEventDispatcher topicEventDispatcher;
+
     @Mock
     private MotechEventConfig motechEventConfig;
 
@@ -62,11 +76,15 @@ public class ServerEventRelayTest {
     @Mock
     private EventListenerRegistry registry;
 
+    @Mock
+    private EventMetricsService eventMetrics;
+
     private ServerEventRelay eventRelay;
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin);
+        eventRelay = new ServerEventRelay(outboundEventGateway, batchEventPublisher, localEventDispatcher, topicEventDispatcher,
+                registry, motechEventConfig, eventAdmin, eventMetrics);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -105,6 +123,69 @@ public class ServerEventRelayTest {
         assertEquals(capturedEvent.getMessageDestination(), SECONDARY_LISTENER_IDENTIFIER);
     }
 
+    @Test
+    public void shouldPublishSplitEventsInBatch() {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        setUpListeners("other.subject");
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), createEvent(), new MotechEvent("other.subject")));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(batchEventPublisher).publish(captor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> published = (List<MotechEvent>) captor.getValue();
+        assertEquals(4, published.size());
+        assertEquals(LISTENER_IDENTIFIER, published.get(0).getMessageDestination());
+        assertEquals(SECONDARY_LISTENER_IDENTIFIER, published.get(1).getMessageDestination());
+        assertEquals(LISTENER_IDENTIFIER, published.get(2).getMessageDestination());
+        assertEquals(SECONDARY_LISTENER_IDENTIFIER, published.get(3).getMessageDestination());
+    }
+
+    @Test
+    public void shouldNotPublishBatchWithoutListeners() {
+        setUpListeners(SUBJECT);
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent()));
+
+        verify(batchEventPublisher, never()).publish(any(Collection.class));
+    }
+
+    @Test
+    public void shouldHandleEventLocallyWhenLocalDispatchIsEnabled() {
+        setUpListeners(SUBJECT, eventListener);
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(any(MotechEvent.class), any(LocalEventDispatcher.Handler.class)))
+                .thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                        MotechEvent event = (MotechEvent) invocation.getArguments()[0];
+                        ((LocalEventDispatcher.Handler) invocation.getArguments()[1]).handle(event);
+                        return true;
+                    }
+                });
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(captor.capture());
+        assertEquals(LISTENER_IDENTIFIER, captor.getValue().getMessageDestination());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldFallBackToBrokerWhenLocalDispatchIsSaturated() {
+        setUpListeners(SUBJECT, eventListener);
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(any(MotechEvent.class), any(LocalEventDispatcher.Handler.class)))
+                .thenReturn(false);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        verify(outboundEventGateway).sendEventMessage(any(MotechEvent.class));
+        verify(eventListener, never()).handle(any(MotechEvent.class));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRelayNullQueueEvent() throws Exception {
         eventRelay.relayQueueEvent(null);
@@ -184,6 +265,84 @@ public class ServerEventRelayTest {
         eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
         verify(eventListener, times(3)).handle(any(MotechEvent.class));
         assertFalse(handled.getValue());
+
+        verify(eventMetrics, times(3)).recordFailed(eq(SUBJECT), eq("retrying"), anyLong());
+        verify(eventMetrics, times(2)).recordRedelivered(SUBJECT, "retrying");
+        verify(eventMetrics).recordDiscarded(SUBJECT, "retrying");
+    }
+
+    @Test
+    public void shouldDispatchTopicEventToEachListenerAsynchronously() {
+        when(topicEventDispatcher.isEnabled()).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        MotechEvent motechEvent = createEvent();
+
+        eventRelay.relayTopicEvent(motechEvent);
+
+        verify(eventListener, never()).handle(any(MotechEvent.class));
+
+        ArgumentCaptor<TopicEventDispatcher.RetryableTask> captor =
+                ArgumentCaptor.forClass(TopicEventDispatcher.RetryableTask.class);
+        verify(topicEventDispatcher).dispatch(eq(LISTENER_IDENTIFIER), captor.capture());
+        verify(topicEventDispatcher).dispatch(eq(SECONDARY_LISTENER_IDENTIFIER),
+                any(TopicEventDispatcher.RetryableTask.class));
+
+        assertEquals(-1L, captor.getValue().attempt());
+
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(eventCaptor.capture());
+        assertEquals(motechEvent, eventCaptor.getValue());
+        assertFalse(motechEvent.getParameters() == eventCaptor.getValue().getParameters());
+    }
+
+    @Test
+    public void shouldRetryAsynchronousTopicEventWithBackoff() {
+        when(topicEventDispatcher.isEnabled()).thenReturn(true);
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(1L);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.relayTopicEvent(createEvent());
+
+        ArgumentCaptor<TopicEventDispatcher.RetryableTask> captor =
+                ArgumentCaptor.forClass(TopicEventDispatcher.RetryableTask.class);
+        verify(topicEventDispatcher).dispatch(eq(LISTENER_IDENTIFIER), captor.capture());
+
+        // the same task is retried by the dispatcher, ahead of the other events of the listener
+        assertEquals(1000L, captor.getValue().attempt());
+        assertEquals(2000L, captor.getValue().attempt());
+        assertEquals(-1L, captor.getValue().attempt());
+
+        verify(eventListener, times(3)).handle(any(MotechEvent.class));
+        verify(eventMetrics).recordDiscarded(SUBJECT, LISTENER_IDENTIFIER);
+    }
+
+    @Test
+    public void shouldRecordMetricsOfHandledQueueEvent() {
+        setUpListeners(SUBJECT, eventListener);
+        MotechEvent motechEvent = createEvent(LISTENER_IDENTIFIER);
+        motechEvent.setPublishTime(1000L);
+
+        eventRelay.relayQueueEvent(motechEvent);
+
+        verify(eventMetrics).recordDwellTime(SUBJECT, LISTENER_IDENTIFIER, 1000L);
+        verify(eventMetrics).recordHandled(eq(SUBJECT), eq(LISTENER_IDENTIFIER), anyLong());
+        verify(eventMetrics, never()).recordFailed(any(String.class), any(String.class), anyLong());
+    }
+
+    @Test
+    public void shouldRecordRedeliveryOfFailedQueueEvent() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        BuggyListener buggyListener = new BuggyListener(1);
+        setUpListeners(SUBJECT, buggyListener);
+        MotechEvent event = createEvent(buggyListener.getIdentifier());
+
+        eventRelay.relayQueueEvent(event);
+
+        verify(eventMetrics).recordFailed(eq(SUBJECT), eq(buggyListener.getIdentifier()), anyLong());
+        verify(eventMetrics).recordRedelivered(SUBJECT, buggyListener.getIdentifier());
+        verify(eventMetrics, never()).recordDiscarded(any(String.class), any(String.class));
     }
 
     @Test
@@ -214,6 +373,10 @@ public class ServerEventRelayTest {
 
     private void setUpListeners(String subject, EventListener... listeners) {
         when(registry.getListeners(eq(subject))).thenReturn(new LinkedHashSet<>(Arrays.asList(listeners)));
+        for (EventListener listener : listeners) {
+            String identifier = listener.getIdentifier();
+            when(registry.getListener(subject, identifier)).thenReturn(listener);
+        }
     }
 
     private class BooleanValue {
@@ -0,0 +1,291 @@
+package org.motechproject.event.listener.impl;
+
+import junitx.util.PrivateAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TopicEventDispatcherTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private TopicEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.isTopicDispatchEnabled()).thenReturn(true);
+        when(motechEventConfig.getTopicDispatchThreads()).thenReturn(4);
+        when(motechEventConfig.getTopicDispatchQueueSize()).thenReturn(100);
+
+        dispatcher = new TopicEventDispatcher(motechEventConfig);
+        dispatcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void shouldRunTasksOfListenerInOrder() throws InterruptedException {
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; ++i) {
+            final int number = i;
+            dispatcher.dispatch("listener", new Runnable() {
+                @Override
+                public void run() {
+                    handled.add(number);
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Integer.valueOf(i), handled.get(i));
+        }
+    }
+
+    @Test
+    public void shouldNotBlockListenersBehindSlowListener() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch fastHandled = new CountDownLatch(1);
+
+        dispatcher.dispatch("slow", new Runnable() {
+            @Override
+            public void run() {
+                slowStarted.countDown();
+                await(release);
+            }
+        });
+        assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+        dispatcher.dispatch("slow", new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        dispatcher.dispatch("fast", new Runnable() {
+            @Override
+            public void run() {
+                fastHandled.countDown();
+            }
+        });
+
+        assertTrue(fastHandled.await(10, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), dispatcher.getBacklog().get("slow"));
+        assertFalse(dispatcher.getBacklog().containsKey("fast"));
+
+        release.countDown();
+    }
+
+    @Test
+    public void shouldWaitForRoomInFullQueue() throws InterruptedException {
+        when(motechEventConfig.getTopicDispatchQueueSize()).thenReturn(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(release);
+                handled.add(1);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch dispatched = new CountDownLatch(1);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.dispatch("listener", new Runnable() {
+                    @Override
+                    public void run() {
+                        handled.add(2);
+                    }
+                });
+                dispatched.countDown();
+            }
+        });
+        consumer.start();
+
+        // the first task still occupies the only place in the queue
+        assertFalse(dispatched.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(dispatched.await(10, TimeUnit.SECONDS));
+        consumer.join(10000);
+        dispatcher.stop();
+
+        assertEquals(asList(1, 2), handled);
+    }
+
+    @Test
+    public void shouldRetryTaskBeforeFollowingTasksOfListener() throws InterruptedException {
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        dispatcher.dispatch("listener", new TopicEventDispatcher.RetryableTask() {
+            private int attempts;
+
+            @Override
+            public long attempt() {
+                handled.add("first-" + attempts);
+                return ++attempts < 3 ? 10 : -1;
+            }
+        });
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                handled.add("second");
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(asList("first-0", "first-1", "first-2", "second"), handled);
+    }
+
+    @Test
+    public void shouldRunAllQueuedTasksWhenStopped() {
+        final AtomicInteger handled = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+            }
+        });
+        // more tasks than a single run of the queue handles
+        for (int i = 0; i < 99; ++i) {
+            dispatcher.dispatch("listener", new Runnable() {
+                @Override
+                public void run() {
+                    handled.incrementAndGet();
+                }
+            });
+        }
+        dispatcher.dispatch("retried", new TopicEventDispatcher.RetryableTask() {
+            private boolean retried;
+
+            @Override
+            public long attempt() {
+                if (retried) {
+                    handled.incrementAndGet();
+                    return -1;
+                }
+                retried = true;
+                return TimeUnit.HOURS.toMillis(1);
+            }
+        });
+
+        release.countDown();
+        dispatcher.stop();
+
+        assertEquals(100, handled.get());
+        assertTrue(dispatcher.getBacklog().isEmpty());
+    }
+
+    @Test
+    public void shouldRunTasksInCallingThreadWhenDisabled() {
+        dispatcher.stop();
+
+        final List<Thread> threads = new ArrayList<>();
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        assertFalse(dispatcher.isEnabled());
+        assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void shouldDropQueueOfRemovedIdleListener() throws NoSuchFieldException, InterruptedException {
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                handled.countDown();
+            }
+        });
+        assertTrue(handled.await(10, TimeUnit.SECONDS));
+
+        dispatcher.removeQueue("listener");
+        dispatcher.stop();
+
+        assertTrue(getQueues().isEmpty());
+    }
+
+    @Test
+    public void shouldDropQueueOfRemovedListenerOnceDrained() throws NoSuchFieldException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(release);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        dispatcher.dispatch("listener", new Runnable() {
+            @Override
+            public void run() {
+                handled.countDown();
+            }
+        });
+
+        dispatcher.removeQueue("listener");
+        // the tasks queued before the removal are still run
+        assertEquals(Integer.valueOf(1), dispatcher.getBacklog().get("listener"));
+
+        release.countDown();
+        assertTrue(handled.await(10, TimeUnit.SECONDS));
+        dispatcher.stop();
+
+        assertTrue(getQueues().isEmpty());
+    }
+
+    private Map<?, ?> getQueues() throws NoSuchFieldException {
+        return (Map<?, ?>) PrivateAccessor.getField(dispatcher, "queues");
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.motechproject.event.messaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+
+import javax.jms.Session;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class BatchEventPublisherTest {
+
+    @Mock
+    private JmsTemplate jmsTemplate;
+
+    @Mock
+    private EventQueueSender eventQueueSender;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private Session session;
+
+    private BatchEventPublisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        when(motechEventConfig.getMessageBatchSize()).thenReturn(3);
+        when(motechEventConfig.getMessageBatchFlushInterval()).thenReturn(60000L);
+
+        when(session.getTransacted()).thenReturn(true);
+
+        when(jmsTemplate.execute(any(SessionCallback.class), eq(true))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((SessionCallback) invocation.getArguments()[0]).doInJms(session);
+            }
+        });
+
+        publisher = new BatchEventPublisher(jmsTemplate, eventQueueSender, new MotechEventTransformer(),
+                motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        publisher.stop();
+    }
+
+    @Test
+    public void shouldBufferEventsUntilBatchSizeIsReached() throws Exception {
+        publisher.start();
+
+        publisher.publish(Arrays.asList(new MotechEvent("subject"), new MotechEvent("subject")));
+
+        verify(jmsTemplate, never()).execute(any(SessionCallback.class), eq(true));
+        assertEquals(2, publisher.getBufferedCount());
+
+        publisher.publish(Arrays.asList(new MotechEvent("subject")));
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(jmsTemplate).execute(any(SessionCallback.class), eq(true));
+        verify(eventQueueSender).sendAll(eq(session), captor.capture());
+        verify(session).commit();
+        assertEquals(3, captor.getValue().size());
+        assertEquals(0, publisher.getBufferedCount());
+    }
+
+    @Test
+    public void shouldSendBufferedEventsOnFlush() throws Exception {
+        publisher.start();
+
+        MotechEvent event = new MotechEvent("subject");
+        publisher.publish(Arrays.asList(event));
+        publisher.flush();
+
+        verify(eventQueueSender).sendAll(session, Arrays.asList(event));
+        verify(session).commit();
+        assertNotNull(event.getId());
+    }
+
+    @Test
+    public void shouldSplitOversizedBufferIntoSeparateSessions() throws Exception {
+        publisher.publish(Arrays.asList(new MotechEvent("subject"), new MotechEvent("subject"),
+                new MotechEvent("subject"), new MotechEvent("subject")));
+
+        verify(jmsTemplate, times(2)).execute(any(SessionCallback.class), eq(true));
+        verify(eventQueueSender, times(2)).sendAll(eq(session), anyListOf(MotechEvent.class));
+        verify(session, times(2)).commit();
+    }
+
+    @Test
+    public void shouldKeepUnsentEventsInOrderWhenSendingFails() throws Exception {
+        publisher.start();
+
+        MotechEvent first = new MotechEvent("first");
+        MotechEvent second = new MotechEvent("second");
+        MotechEvent third = new MotechEvent("third");
+        MotechEvent fourth = new MotechEvent("fourth");
+
+        doThrow(new UncategorizedJmsException("broker unavailable")).doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((SessionCallback) invocation.getArguments()[0]).doInJms(session);
+            }
+        }).when(jmsTemplate).execute(any(SessionCallback.class), eq(true));
+
+        // the failure is not thrown to the publisher, the events are sent with the next flush
+        publisher.publish(Arrays.asList(first, second, third));
+        assertEquals(3, publisher.getBufferedCount());
+
+        publisher.publish(Arrays.asList(fourth));
+        publisher.flush();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventQueueSender, times(2)).sendAll(eq(session), captor.capture());
+        assertEquals(Arrays.asList(first, second, third), captor.getAllValues().get(0));
+        assertEquals(Arrays.asList(fourth), captor.getAllValues().get(1));
+        assertEquals(0, publisher.getBufferedCount());
+    }
+
+    @Test
+    public void shouldThrowFailureToPublisherWhenNotFlushingInBackground() {
+        doThrow(new UncategorizedJmsException("broker unavailable")).doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((SessionCallback) invocation.getArguments()[0]).doInJms(session);
+            }
+        }).when(jmsTemplate).execute(any(SessionCallback.class), eq(true));
+
+        try {
+            publisher.publish(Arrays.asList(new MotechEvent("subject")));
+            fail("The failure should be thrown to the publisher");
+        } catch (UncategorizedJmsException e) {
+            // the publisher knows that the event was not sent
+            assertEquals(0, publisher.getBufferedCount());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldRoundTripEventMetadata() {
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject");
+        event.setId(UUID.randomUUID());
+        event.setMessageDestination("listener");
+        event.setMessageRedeliveryCount(2);
+        event.setInvalid(true);
+        event.setBroadcast(true);
+        event.setPublishTime(1425461400000L);
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+        assertEquals(1425461400000L, decoded.getPublishTime());
+    }
+
+    @Test
+    public void shouldRoundTripEventWithoutIdAndDestination() {
+        MotechEvent event = new MotechEvent("subject");
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getId());
+        assertNull(decoded.getMessageDestination());
+    }
+
+    @Test
+    public void shouldRoundTripParameters() {
+        MotechEvent event = createEvent();
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        Map<String, Object> expected = new HashMap<>(event.getParameters());
+        Map<String, Object> parameters = new HashMap<>(decoded.getParameters());
+        // arrays are not compared by value by Map.equals
+        assertArrayEquals((byte[]) expected.remove("bytes"), (byte[]) parameters.remove("bytes"));
+        assertEquals(expected, parameters);
+        assertEquals(((DateTime) event.getParameters().get("dateTime")).getZone(),
+                ((DateTime) parameters.get("dateTime")).getZone());
+    }
+
+    @Test
+    public void shouldFallBackToSerializationForOtherTypes() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("decimal", new BigDecimal("12.50"));
+        parameters.put("linkedList", new LinkedList<>(Arrays.asList("a", "b")));
+        parameters.put("treeMap", new TreeMap<>(Collections.singletonMap("b", 1)));
+        parameters.put("unmodifiableList", Collections.unmodifiableList(Arrays.asList("a", "b")));
+
+        MotechEvent decoded = codec.decode(codec.encode(new MotechEvent("subject", parameters)));
+
+        assertEquals(new BigDecimal("12.50"), decoded.getParameters().get("decimal"));
+        assertEquals(LinkedList.class, decoded.getParameters().get("linkedList").getClass());
+        assertEquals(TreeMap.class, decoded.getParameters().get("treeMap").getClass());
+        assertEquals(Collections.unmodifiableList(new ArrayList<>()).getClass(),
+                decoded.getParameters().get("unmodifiableList").getClass());
+    }
+
+    @Test(expected = MotechException.class)
+    public void shouldRejectNonSerializableParameters() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("object", new Object());
+
+        codec.encode(new MotechEvent("subject", parameters));
+    }
+
+    @Test(expected = MotechException.class)
+    public void shouldRejectInvalidBytes() {
+        codec.decode(new byte[]{1, 2, 3, 4});
+    }
+
+    @Test
+    public void shouldBeMoreCompactThanJavaSerialization() throws IOException {
+        MotechEvent event = createEvent();
+
+        byte[] binary = codec.encode(event);
+        byte[] serialized = serialize(event);
+        assertTrue(binary.length < serialized.length);
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("key", "value");
+        nested.put("number", 7L);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "some string value");
+        parameters.put("integer", 42);
+        parameters.put("long", 42L);
+        parameters.put("double", 4.2);
+        parameters.put("float", 4.2f);
+        parameters.put("boolean", true);
+        parameters.put("short", (short) 4);
+        parameters.put("byte", (byte) 2);
+        parameters.put("char", 'c');
+        parameters.put("null", null);
+        parameters.put("dateTime", new DateTime(2015, 3, 4, 10, 30, DateTimeZone.forID("Europe/Warsaw")));
+        parameters.put("date", new Date(1425461400000L));
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("bytes", new byte[]{1, 2, 3});
+        parameters.put("list", Arrays.asList("a", 1, null));
+        parameters.put("map", nested);
+
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject", parameters);
+        event.setId(UUID.randomUUID());
+        event.setMessageDestination("listener");
+        return event;
+    }
+
+    private byte[] serialize(MotechEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        return bytes.toByteArray();
+    }
+}
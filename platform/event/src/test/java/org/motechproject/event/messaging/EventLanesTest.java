@@ -0,0 +1,109 @@
+package org.motechproject.event.messaging;
+
+import org.junit.Test;
+import org.motechproject.config.core.constants.ConfigurationConstants;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventLanesTest {
+
+    @Test
+    public void shouldMatchSubjectsUsingWildcards() {
+        EventLane lane = new EventLane("sms", Arrays.asList("org.motechproject.sms.*", "exact"), "queue", 9, 1, 1);
+
+        assertTrue(lane.matches("org.motechproject.sms"));
+        assertTrue(lane.matches("org.motechproject.sms.send"));
+        assertTrue(lane.matches("org.motechproject.sms.send.retry"));
+        assertTrue(lane.matches("exact"));
+        assertFalse(lane.matches("org.motechproject.smsc"));
+        assertFalse(lane.matches("exact.child"));
+        assertFalse(lane.matches("other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWildcardInTheMiddleOfPattern() {
+        new EventLane("lane", Arrays.asList("org.*.sms"), "queue", 4, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidPriority() {
+        new EventLane("lane", Arrays.asList("subject"), "queue", 10, 1, 1);
+    }
+
+    @Test
+    public void shouldReadLanesFromProperties() {
+        EventLanes eventLanes = new EventLanes(createProperties());
+
+        assertEquals(2, eventLanes.getLanes().size());
+
+        EventLane sms = eventLanes.getLane("org.motechproject.sms.send");
+        assertEquals("sms", sms.getName());
+        assertEquals(9, sms.getPriority());
+        assertEquals("QueueForEvents.sms", sms.getQueueName());
+        assertEquals(2, sms.getConcurrentConsumers());
+        assertEquals(5, sms.getMaxConcurrentConsumers());
+
+        EventLane bulk = eventLanes.getLane("mds.crud.serverconfig.Setting.CREATE");
+        assertEquals("bulk", bulk.getName());
+        assertEquals(1, bulk.getPriority());
+        assertEquals("BulkQueue", bulk.getQueueName());
+        assertEquals(1, bulk.getConcurrentConsumers());
+        assertEquals(1, bulk.getMaxConcurrentConsumers());
+
+        assertNull(eventLanes.getLane("org.motechproject.other"));
+    }
+
+    @Test
+    public void shouldPreferFirstMatchingLane() {
+        Properties properties = createProperties();
+        properties.setProperty("motech.message.lane.bulk.subjects", "*");
+
+        EventLanes eventLanes = new EventLanes(properties);
+
+        assertEquals("sms", eventLanes.getLane("org.motechproject.sms.send").getName());
+        assertEquals("bulk", eventLanes.getLane("org.motechproject.other").getName());
+    }
+
+    @Test
+    public void shouldSkipInvalidLanes() {
+        Properties properties = createProperties();
+        properties.setProperty("motech.message.lane.bulk.priority", "high");
+
+        EventLanes eventLanes = new EventLanes(properties);
+
+        assertEquals(1, eventLanes.getLanes().size());
+        assertNull(eventLanes.getLane("mds.crud.serverconfig.Setting.CREATE"));
+    }
+
+    @Test
+    public void shouldReloadLanes() {
+        EventLanes eventLanes = new EventLanes(new Properties());
+
+        assertTrue(eventLanes.getLanes().isEmpty());
+        assertNull(eventLanes.getLane("org.motechproject.sms.send"));
+
+        eventLanes.reload(createProperties());
+
+        assertEquals("sms", eventLanes.getLane("org.motechproject.sms.send").getName());
+    }
+
+    private Properties createProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(ConfigurationConstants.AMQ_QUEUE_EVENTS, "QueueForEvents");
+        properties.setProperty("motech.message.lanes", "sms, bulk");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        properties.setProperty("motech.message.lane.sms.priority", "9");
+        properties.setProperty("motech.message.lane.sms.concurrentConsumers", "2");
+        properties.setProperty("motech.message.lane.sms.maxConcurrentConsumers", "5");
+        properties.setProperty("motech.message.lane.bulk.subjects", "mds.crud.*");
+        properties.setProperty("motech.message.lane.bulk.priority", "1");
+        properties.setProperty("motech.message.lane.bulk.queue", "BulkQueue");
+        return properties;
+    }
+}
@@ -0,0 +1,82 @@
+package org.motechproject.event.messaging;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class EventQueueSenderTest {
+
+    @Mock
+    private JmsTemplate jmsTemplate;
+
+    @Mock
+    private Destination eventQueue;
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer queueProducer;
+
+    @Mock
+    private MessageProducer laneProducer;
+
+    @Mock
+    private Message message;
+
+    private EventLanes eventLanes;
+
+    private EventQueueSender sender;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        Properties properties = new Properties();
+        properties.setProperty("motech.message.lanes", "sms");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        properties.setProperty("motech.message.lane.sms.priority", "9");
+        eventLanes = new EventLanes(properties);
+
+        Destination laneQueue = eventLanes.getLanes().get(0).getDestination();
+        when(session.createProducer(eventQueue)).thenReturn(queueProducer);
+        when(session.createProducer(laneQueue)).thenReturn(laneProducer);
+        when(queueProducer.getDeliveryMode()).thenReturn(DeliveryMode.PERSISTENT);
+        when(laneProducer.getDeliveryMode()).thenReturn(DeliveryMode.PERSISTENT);
+        when(messageConverter.toMessage(any(MotechEvent.class), any(Session.class))).thenReturn(message);
+
+        sender = new EventQueueSender(jmsTemplate, eventQueue, eventLanes, messageConverter);
+    }
+
+    @Test
+    public void shouldRouteEventsToTheirLanes() throws Exception {
+        sender.sendAll(session, Arrays.asList(new MotechEvent("org.motechproject.sms.send"),
+                new MotechEvent("org.motechproject.other"), new MotechEvent("org.motechproject.sms.received")));
+
+        verify(laneProducer, times(2)).send(message, DeliveryMode.PERSISTENT, 9, 0L);
+        verify(queueProducer).send(message, DeliveryMode.PERSISTENT, Message.DEFAULT_PRIORITY, 0L);
+        verify(session, times(1)).createProducer(eventQueue);
+        verify(laneProducer).close();
+        verify(queueProducer).close();
+    }
+}
@@ -0,0 +1,70 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechEventMessageConverterTest {
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MotechEventHeaderMapper eventHeaderMapper;
+
+    private MotechEventMessageConverter converter;
+
+    @Before
+    public void setUp() throws JMSException {
+        initMocks(this);
+        when(session.createBytesMessage()).thenReturn(new ActiveMQBytesMessage());
+
+        converter = new MotechEventMessageConverter(new BinaryMotechEventCodec(), eventHeaderMapper);
+    }
+
+    @Test
+    public void shouldConvertEventToBytesMessageAndBack() throws JMSException {
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+        assertTrue(message instanceof ActiveMQBytesMessage);
+        verify(eventHeaderMapper).setRedeliveryDelay(event, message);
+
+        ((ActiveMQBytesMessage) message).reset();
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldAcceptObjectMessages() throws JMSException {
+        MotechEvent event = createEvent();
+        ActiveMQObjectMessage message = new ActiveMQObjectMessage();
+        message.setObject(event);
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("key", "value");
+
+        MotechEvent event = new MotechEvent("subject", parameters);
+        event.setMessageDestination("listener");
+        return event;
+    }
+}
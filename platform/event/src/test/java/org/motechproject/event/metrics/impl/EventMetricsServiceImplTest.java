@@ -0,0 +1,87 @@
+package org.motechproject.event.metrics.impl;
+
+import org.junit.Test;
+import org.motechproject.event.metrics.EventMetrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventMetricsServiceImplTest {
+
+    private static final String SUBJECT = "org.motechproject.test";
+    private static final String LISTENER = "listener";
+
+    private EventMetricsServiceImpl eventMetricsService = new EventMetricsServiceImpl();
+
+    @Test
+    public void shouldCountEventsPerSubjectAndListener() {
+        eventMetricsService.recordHandled(SUBJECT, LISTENER, TimeUnit.MILLISECONDS.toNanos(5));
+        eventMetricsService.recordHandled(SUBJECT, "other-listener", TimeUnit.MILLISECONDS.toNanos(10));
+        eventMetricsService.recordFailed(SUBJECT, LISTENER, TimeUnit.MILLISECONDS.toNanos(1));
+        eventMetricsService.recordRedelivered(SUBJECT, LISTENER);
+        eventMetricsService.recordDiscarded(SUBJECT, LISTENER);
+
+        List<EventMetrics> subjects = eventMetricsService.getSubjectMetrics();
+        assertEquals(1, subjects.size());
+
+        EventMetrics subject = subjects.get(0);
+        assertEquals(SUBJECT, subject.getName());
+        assertEquals(2, subject.getHandled());
+        assertEquals(1, subject.getFailed());
+        assertEquals(1, subject.getRedelivered());
+        assertEquals(1, subject.getDiscarded());
+        assertEquals(3, subject.getHandlingTime().getCount());
+        assertEquals(10.0, subject.getHandlingTime().getMax(), 0.0);
+
+        List<EventMetrics> listeners = eventMetricsService.getListenerMetrics();
+        assertEquals(2, listeners.size());
+        assertEquals(LISTENER, listeners.get(0).getName());
+        assertEquals(1, listeners.get(0).getHandled());
+        assertEquals(1, listeners.get(0).getFailed());
+        assertEquals("other-listener", listeners.get(1).getName());
+        assertEquals(0, listeners.get(1).getFailed());
+    }
+
+    @Test
+    public void shouldRecordDwellTime() {
+        eventMetricsService.recordDwellTime(SUBJECT, LISTENER, System.currentTimeMillis() - 200);
+        eventMetricsService.recordDwellTime(SUBJECT, null, System.currentTimeMillis() - 100);
+        eventMetricsService.recordDwellTime(SUBJECT, LISTENER, 0);
+
+        EventMetrics subject = eventMetricsService.getSubjectMetrics().get(0);
+        assertEquals(2, subject.getDwellTime().getCount());
+        assertTrue(subject.getDwellTime().getMax() >= 200.0 * 0.97);
+
+        EventMetrics listener = eventMetricsService.getListenerMetrics().get(0);
+        assertEquals(1, listener.getDwellTime().getCount());
+    }
+
+    @Test
+    public void shouldClearMetricsOnReset() {
+        eventMetricsService.recordHandled(SUBJECT, LISTENER, 1000);
+
+        eventMetricsService.reset();
+
+        assertTrue(eventMetricsService.getSubjectMetrics().isEmpty());
+        assertTrue(eventMetricsService.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldAggregateSubjectsOverTheLimit() {
+        for (int i = 0; i < 2100; ++i) {
+            eventMetricsService.recordHandled(SUBJECT + i, LISTENER, 1000);
+        }
+
+        List<EventMetrics> subjects = eventMetricsService.getSubjectMetrics();
+        assertEquals(2001, subjects.size());
+
+        long handled = 0;
+        for (EventMetrics metrics : subjects) {
+            handled += metrics.getHandled();
+        }
+        assertEquals(2100, handled);
+    }
+}
@@ -0,0 +1,82 @@
+package org.motechproject.event.metrics.impl;
+
+import org.junit.Test;
+import org.motechproject.event.metrics.LatencyStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldMapValuesToContinuousBuckets() {
+        int previous = -1;
+        for (long value = 0; value < 100000; ++value) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index == previous || index == previous + 1);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void shouldReturnEmptyStatisticsWithoutValues() {
+        LatencyStatistics statistics = new LatencyHistogram().toStatistics();
+
+        assertEquals(0, statistics.getCount());
+        assertEquals(0.0, statistics.getMax(), 0.0);
+    }
+
+    @Test
+    public void shouldComputePercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; ++micros) {
+            histogram.record(micros);
+        }
+
+        LatencyStatistics statistics = histogram.toStatistics();
+
+        assertEquals(100000, statistics.getCount());
+        assertEquals(0.001, statistics.getMin(), 0.0);
+        assertEquals(100.0, statistics.getMax(), 0.0);
+        assertEquals(50.0, statistics.getMean(), 0.01);
+        assertEquals(50.0, statistics.getMedian(), 50.0 * 0.04);
+        assertEquals(90.0, statistics.getPercentile90(), 90.0 * 0.04);
+        assertEquals(99.0, statistics.getPercentile99(), 99.0 * 0.04);
+        assertTrue(statistics.getPercentile999() <= statistics.getMax());
+    }
+
+    @Test
+    public void shouldRecordConcurrently() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < 10000; ++j) {
+                            histogram.record(j);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(40000, histogram.toStatistics().getCount());
+    }
+}
@@ -0,0 +1,132 @@
+package org.motechproject.mds.performance.osgi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.performance.domain.Sample;
+import org.motechproject.mds.performance.service.SampleService;
+import org.motechproject.mds.service.CsvImportExportService;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.motechproject.testing.osgi.helper.ServiceRetriever;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.motechproject.mds.util.Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME;
+
+/**
+ * Exports all instances of the {@link Sample} entity to CSV and logs the time it took and the peak heap usage
+ * during the export. Since the instances are exported page by page, the heap usage should not depend
+ * on the number of instances, which is set with the <code>mds.performance.quantity</code> property.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsCsvExportIT extends LoggingPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MdsCsvExportIT.class);
+
+    private static final int INSTANCES = Integer.parseInt(System.getProperty("mds.performance.quantity"));
+    private static final int CHUNK_SIZE = 10000;
+    private static final int MEMORY_SAMPLE_INTERVAL = 1000;
+
+    private SampleService sampleService;
+    private CsvImportExportService csvImportExportService;
+    @Inject
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() {
+        setUpSecurityContext("motech_bot", "motech", "mdsSchemaAccess");
+
+        WebApplicationContext context = ServiceRetriever.getWebAppContext(bundleContext, MDS_ENTITIES_SYMBOLIC_NAME);
+        sampleService = context.getBean(SampleService.class);
+        csvImportExportService = context.getBean(CsvImportExportService.class);
+
+        sampleService.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        sampleService.deleteAll();
+    }
+
+    @Test
+    public void testCsvExport() {
+        LOGGER.info("Creating {} instances of Sample", INSTANCES);
+        for (int created = 0; created < INSTANCES; created += CHUNK_SIZE) {
+            List<Sample> samples = new ArrayList<>();
+            for (int i = created; i < Math.min(created + CHUNK_SIZE, INSTANCES); i++) {
+                samples.add(new Sample(i, "sample " + i));
+            }
+            sampleService.createAll(samples);
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        MemorySamplingWriter writer = new MemorySamplingWriter();
+
+        Long startTime = System.nanoTime();
+        long exported = csvImportExportService.exportCsv(Sample.class.getName(), writer);
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(INSTANCES, exported);
+
+        long peakHeapGrowth = (writer.getPeakHeapUsage() - heapBefore) / 1024 / 1024;
+
+        LOGGER.info("MDS Service: Exporting {} instances to CSV took {} ms, wrote {} characters, heap grew by at most {} MB",
+                INSTANCES, endTime, writer.getCharacters(), peakHeapGrowth);
+        logToFile(endTime);
+        logToFile(peakHeapGrowth);
+    }
+
+    /**
+     * Discards the exported data, sampling the used heap every few lines.
+     */
+    private static class MemorySamplingWriter extends Writer {
+
+        private long characters;
+        private long lines;
+        private long peakHeapUsage;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (cbuf[i] == '\n' && ++lines % MEMORY_SAMPLE_INTERVAL == 0) {
+                    Runtime runtime = Runtime.getRuntime();
+                    peakHeapUsage = Math.max(peakHeapUsage, runtime.totalMemory() - runtime.freeMemory());
+                }
+            }
+            characters += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public long getCharacters() {
+            return characters;
+        }
+
+        public long getPeakHeapUsage() {
+            return peakHeapUsage;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.motechproject.mds.performance.osgi;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.performance.domain.Sample;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.motechproject.testing.osgi.helper.ServiceRetriever;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertEquals;
+import static org.motechproject.mds.util.Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME;
+
+/**
+ * Compares copying and comparing the properties of the {@link Sample} entity through {@link PropertyUtil}
+ * and through the accessor generated together with the entity. The number of copied instances is set with
+ * the <code>mds.performance.quantity</code> property, the time of both approaches is logged.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsPropertyAccessorIT extends LoggingPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MdsPropertyAccessorIT.class);
+
+    private static final int INSTANCES = Integer.parseInt(System.getProperty("mds.performance.quantity"));
+    private static final int WARM_UP_INSTANCES = 10000;
+
+    private PropertyAccessor accessor;
+    @Inject
+    private BundleContext bundleContext;
+
+    @Before
+    public void setUp() {
+        WebApplicationContext context = ServiceRetriever.getWebAppContext(bundleContext, MDS_ENTITIES_SYMBOLIC_NAME);
+        accessor = PropertyAccessors.forClass(Sample.class, context.getClassLoader());
+    }
+
+    @Test
+    public void testPropertyAccessor() {
+        assertEquals(ClassName.getAccessorClassName(Sample.class.getName()), accessor.getClass().getName());
+
+        copyWithPropertyUtil(WARM_UP_INSTANCES);
+        copyWithAccessor(WARM_UP_INSTANCES);
+
+        Long startTime = System.nanoTime();
+        int reflectionChanges = copyWithPropertyUtil(INSTANCES);
+        Long reflectionTime = (System.nanoTime() - startTime) / 1000000;
+
+        startTime = System.nanoTime();
+        int accessorChanges = copyWithAccessor(INSTANCES);
+        Long accessorTime = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(reflectionChanges, accessorChanges);
+
+        LOGGER.info("MDS Service: Copying and comparing {} instances took {} ms with PropertyUtil, {} ms with the accessor",
+                INSTANCES, reflectionTime, accessorTime);
+        logToFile(reflectionTime);
+        logToFile(accessorTime);
+    }
+
+    private int copyWithPropertyUtil(int instances) {
+        int changes = 0;
+
+        for (int i = 0; i < instances; i++) {
+            Sample source = new Sample(i, "sample " + i);
+            Sample target = new Sample();
+
+            changes += PropertyUtil.findChangedFields(source, target).size();
+            PropertyUtil.copyProperties(target, source);
+        }
+
+        return changes;
+    }
+
+    private int copyWithAccessor(int instances) {
+        int changes = 0;
+
+        for (int i = 0; i < instances; i++) {
+            Sample source = new Sample(i, "sample " + i);
+            Sample target = new Sample();
+
+            changes += accessor.findChangedFields(source, target, accessor, null).size();
+            accessor.copy(target, source, accessor, null, null);
+        }
+
+        return changes;
+    }
+}
@@ -7,6 +7,7 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 import org.motechproject.mds.dto.CsvImportResults;
 import org.motechproject.mds.dto.FieldInstanceDto;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
 import org.motechproject.mds.dto.SettingDto;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.ex.csv.CsvImportException;
@@ -28,6 +29,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -40,10 +42,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static org.apache.commons.lang.CharEncoding.UTF_8;
 
@@ -57,6 +61,8 @@ import static org.apache.commons.lang.CharEncoding.UTF_8;
 @Controller
 public class InstanceController extends MdsController {
 
+    private static final String GZIP = "gzip";
+
     @Autowired
     private InstanceService instanceService;
 
@@ -230,10 +236,17 @@ public class InstanceController extends MdsController {
         return entityRecord;
     }
 
+    @RequestMapping(value = "/entities/{entityId}/lookupCacheStatistics", method = RequestMethod.GET)
+    @ResponseBody
+    public LookupCacheStatisticsDto getLookupCacheStatistics(@PathVariable Long entityId) {
+        return instanceService.getLookupCacheStatistics(entityId);
+    }
+
     @RequestMapping(value = "/entities/{entityId}/exportInstances", method = RequestMethod.GET)
     public void exportEntityInstances(@PathVariable Long entityId, GridSettings settings,
                                       @RequestParam String exportRecords,
                                       @RequestParam String outputFormat,
+                                      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
                                       HttpServletResponse response) throws IOException {
         if (!Constants.ExportFormat.isValidFormat(outputFormat)) {
             throw new IllegalArgumentException("Invalid export format: " + outputFormat);
@@ -254,12 +267,26 @@ public class InstanceController extends MdsController {
 
         QueryParams queryParams = new QueryParams(1, pageSize, QueryParamsBuilder.buildOrderList(settings, fieldMap));
 
-        if (Constants.ExportFormat.PDF.equals(outputFormat)) {
-            csvImportExportService.exportPdf(entityId, response.getOutputStream(), settings.getLookup(), queryParams,
-                    settings.getSelectedFields(), fieldMap);
-        } else {
-            csvImportExportService.exportCsv(entityId, response.getWriter(), settings.getLookup(), queryParams,
-                    settings.getSelectedFields(), fieldMap);
+        // the export is streamed, so large exports are compressed on the fly if the client accepts it
+        OutputStream gzipStream = null;
+        response.setHeader("Vary", "Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP)) {
+            response.setHeader("Content-Encoding", GZIP);
+            gzipStream = new GZIPOutputStream(response.getOutputStream());
+        }
+
+        try {
+            if (Constants.ExportFormat.PDF.equals(outputFormat)) {
+                csvImportExportService.exportPdf(entityId, gzipStream == null ? response.getOutputStream() : gzipStream,
+                        settings.getLookup(), queryParams, settings.getSelectedFields(), fieldMap);
+            } else {
+                csvImportExportService.exportCsv(entityId, gzipStream == null ? response.getWriter() : new OutputStreamWriter(gzipStream, UTF_8),
+                        settings.getLookup(), queryParams, settings.getSelectedFields(), fieldMap);
+            }
+        } finally {
+            if (gzipStream != null) {
+                gzipStream.close();
+            }
         }
     }
 
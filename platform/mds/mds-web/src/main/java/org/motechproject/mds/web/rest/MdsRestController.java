@@ -5,6 +5,7 @@ import org.datanucleus.exceptions.NucleusOptimisticException;
 import org.datanucleus.exceptions.NucleusUserException;
 import org.motechproject.mds.ex.rest.RestBadBodyFormatException;
 import org.motechproject.mds.ex.rest.RestEntityNotFoundException;
+import org.motechproject.mds.ex.rest.RestInternalException;
 import org.motechproject.mds.ex.rest.RestLookupExecutionForbiddenException;
 import org.motechproject.mds.ex.rest.RestLookupNotFoundException;
 import org.motechproject.mds.ex.rest.RestNoLookupResultException;
@@ -12,6 +13,7 @@ import org.motechproject.mds.ex.rest.RestNotSupportedException;
 import org.motechproject.mds.ex.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
+import org.motechproject.mds.rest.StreamedRestResponse;
 import org.motechproject.mds.web.ex.InvalidParameterException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +23,7 @@ import org.springframework.orm.jdo.JdoOptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -29,10 +32,13 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.jdo.JDOUserException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The main entry point for the MDS Rest api. It delegates requests
@@ -44,53 +50,68 @@ public class MdsRestController  {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MdsRestController.class);
 
+    private static final String GZIP = "gzip";
+
     @Autowired
     private MdsRestFacadeRetriever restFacadeRetriever;
 
     @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String namespace,
-                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, null);
+                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                    @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                    HttpServletResponse response) {
+        return doGet(entityName, moduleName, namespace, requestParams, null, acceptEncoding, response);
     }
 
     @RequestMapping(value = "/{moduleName}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String entityName,
-                    @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, null);
+                    @RequestParam Map<String, String> requestParams,
+                    @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                    HttpServletResponse response) {
+        return doGet(entityName, moduleName, null, requestParams, null, acceptEncoding, response);
     }
 
     @RequestMapping(value = "/lookup/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String entityName, @PathVariable String lookupName,
-                      @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, lookupName);
+                      @RequestParam Map<String, String> requestParams,
+                      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                      HttpServletResponse response) {
+        return doGet(entityName, null, null, requestParams, lookupName, acceptEncoding, response);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String entityName,
-                      @PathVariable String lookupName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, lookupName);
+                      @PathVariable String lookupName, @RequestParam Map<String, String> requestParams,
+                      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                      HttpServletResponse response) {
+        return doGet(entityName, moduleName, null, requestParams, lookupName, acceptEncoding, response);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{namespace}/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String namespace,
                       @PathVariable String entityName, @PathVariable String lookupName,
-                      @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, lookupName);
+                      @RequestParam Map<String, String> requestParams,
+                      @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                      HttpServletResponse response) {
+        return doGet(entityName, moduleName, namespace, requestParams, lookupName, acceptEncoding, response);
     }
 
     @RequestMapping(value = "/{entityName}", method = RequestMethod.GET)
     @ResponseBody
-    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, null);
+    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                    @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                    HttpServletResponse response) {
+        return doGet(entityName, null, null, requestParams, null, acceptEncoding, response);
     }
 
     private Object doGet(String entityName, String moduleName, String namespace,
-                       Map<String, String> requestParams, String pathLookupName) {
+                       Map<String, String> requestParams, String pathLookupName,
+                       String acceptEncoding, HttpServletResponse response) {
         debugRequest("GET", entityName, moduleName, namespace);
 
         QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
@@ -103,7 +124,12 @@ public class MdsRestController  {
 
         Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
 
-        if (lookupName != null) {
+        if (id == null && ParamParser.getStream(requestParams)) {
+            stream(restFacade, lookupName, requestParams, queryParams, includeBlob != null && includeBlob,
+                    acceptEncoding, response);
+            // the response was already written
+            return null;
+        } else if (lookupName != null) {
             // lookup
             return restFacade.executeLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob);
         } else if (id != null) {
@@ -115,6 +141,37 @@ public class MdsRestController  {
         }
     }
 
+    private void stream(MdsRestFacade restFacade, String lookupName, Map<String, String> requestParams,
+                        QueryParams queryParams, boolean includeBlob, String acceptEncoding,
+                        HttpServletResponse response) {
+        // the request is validated before the response is started, so that the errors can still be reported
+        StreamedRestResponse streamedResponse = (lookupName != null)
+                ? restFacade.streamLookup(lookupName, requestParams, queryParams, includeBlob)
+                : restFacade.stream(queryParams, includeBlob);
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        // the encoding depends on the request, so caches must not serve a compressed response to other clients
+        response.setHeader("Vary", "Accept-Encoding");
+
+        try {
+            OutputStream output;
+            if (acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP)) {
+                response.setHeader("Content-Encoding", GZIP);
+                output = new GZIPOutputStream(response.getOutputStream());
+            } else {
+                output = response.getOutputStream();
+            }
+
+            streamedResponse.writeTo(output);
+
+            output.close();
+        } catch (IOException e) {
+            throw new RestInternalException("Unable to write the response", e);
+        }
+    }
+
     @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.POST)
     @ResponseBody
     public Object post(@PathVariable String moduleName, @PathVariable String namespace,
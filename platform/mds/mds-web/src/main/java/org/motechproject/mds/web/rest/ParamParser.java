@@ -5,6 +5,8 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.web.ex.InvalidParameterException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,6 +22,8 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String AFTER = "after";
+    public static final String STREAM = "stream";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -45,6 +49,15 @@ public final class ParamParser {
 
         order = buildOrder(sortBy, orderDir);
 
+        // keyset pagination is used if the cursor param is present, it is empty for the first page
+        if (requestParams.containsKey(AFTER)) {
+            List<Order> orderList = new ArrayList<>();
+            if (order != null) {
+                orderList.add(order);
+            }
+            return QueryParams.keyset(pageSize, orderList, StringUtils.trimToNull(requestParams.get(AFTER)));
+        }
+
         return new QueryParams(page, pageSize, order);
     }
 
@@ -85,6 +98,22 @@ public final class ParamParser {
         return includeBlob;
     }
 
+    public static boolean getStream(Map<String, String> requestParams) {
+        if (!requestParams.containsKey(STREAM)) {
+            return false;
+        }
+
+        String value = requestParams.get(STREAM).toLowerCase();
+
+        if ("true".equals(value)) {
+            return true;
+        } else if ("false".equals(value)) {
+            return false;
+        } else {
+            throw new InvalidParameterException("The \"stream\" is neither \"true\" nor \"false\"");
+        }
+    }
+
     private static Integer getInteger(Map<String, String> requestParams, String key, Integer defaultVal) {
         return requestParams.containsKey(key) ? Integer.valueOf(requestParams.get(key)) : defaultVal;
     }
@@ -2,6 +2,7 @@ package org.motechproject.mds.web.service;
 
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.FieldInstanceDto;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
 import org.motechproject.mds.ex.entity.EntityInstancesNonEditableException;
 import org.motechproject.mds.filter.Filters;
 import org.motechproject.mds.query.QueryParams;
@@ -262,6 +263,14 @@ public interface InstanceService {
      */
     long countTrashRecords(Long entityId);
 
+    /**
+     * Returns the statistics of the lookup cache of the given entity.
+     *
+     * @param entityId id of the entity
+     * @return the statistics of the lookup cache, disabled if the lookup results of the entity are not cached
+     */
+    LookupCacheStatisticsDto getLookupCacheStatistics(Long entityId);
+
     /**
      * Allows to retrieve a single instance, that has been moved to trash.
      *
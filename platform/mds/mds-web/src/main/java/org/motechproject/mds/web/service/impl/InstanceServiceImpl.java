@@ -14,6 +14,7 @@ import org.motechproject.mds.domain.EntityType;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.FieldInstanceDto;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.MetadataDto;
 import org.motechproject.mds.dto.TypeDto;
@@ -193,7 +194,7 @@ public class InstanceServiceImpl implements InstanceService {
         List<FieldDto> fields = entityService.getEntityFieldsForUI(entityId);
 
         MotechDataService service = getServiceForEntity(entity);
-        List instances = service.retrieveAll(queryParams);
+        List instances = service.retrieveAll(withGridProjection(queryParams, fields));
         updateGridSize(entityId, queryParams);
 
         return instancesToRecords(instances, entity, fields, service, EntityType.STANDARD);
@@ -226,6 +227,15 @@ public class InstanceServiceImpl implements InstanceService {
         return trashService.countTrashRecords(entity.getClassName());
     }
 
+    @Override
+    public LookupCacheStatisticsDto getLookupCacheStatistics(Long entityId) {
+        EntityDto entity = getEntity(entityId);
+        validateCredentialsForReading(entity);
+        MotechDataService service = getServiceForEntity(entity);
+
+        return service.getLookupCacheStatistics();
+    }
+
     @Override
     public EntityRecord getSingleTrashRecord(Long entityId, Long instanceId) {
         EntityDto entity = getEntity(entityId);
@@ -262,7 +272,7 @@ public class InstanceServiceImpl implements InstanceService {
         try {
             LookupExecutor lookupExecutor = new LookupExecutor(service, lookup, fieldMap);
 
-            Object result = lookupExecutor.execute(lookupMap, queryParams);
+            Object result = lookupExecutor.execute(lookupMap, withGridProjection(queryParams, fields));
 
             if (lookup.isSingleObjectReturn()) {
                 EntityRecord record = instanceToRecord(result, entity, fields, service, EntityType.STANDARD);
@@ -284,7 +294,7 @@ public class InstanceServiceImpl implements InstanceService {
         List<FieldDto> fields = entityService.getEntityFieldsForUI(entityId);
         MotechDataService service = getServiceForEntity(entity);
 
-        List instances = service.filter(filters, queryParams);
+        List instances = service.filter(filters, withGridProjection(queryParams, fields));
 
         return instancesToRecords(instances, entity, fields, service, EntityType.STANDARD);
     }
@@ -595,6 +605,26 @@ public class InstanceServiceImpl implements InstanceService {
         }
     }
 
+    private QueryParams withGridProjection(QueryParams queryParams, List<FieldDto> fields) {
+        if (queryParams == null) {
+            return null;
+        }
+
+        List<String> projection = new ArrayList<>(fields.size());
+        for (FieldDto field : fields) {
+            if (field.getType().isBlob()) {
+                // the grid does not display the blobs
+                continue;
+            } else if (!field.isProjectable()) {
+                // the values of such fields are not selected by queries, the instances are retrieved whole
+                return queryParams;
+            }
+            projection.add(field.getBasic().getName());
+        }
+
+        return queryParams.withProjection(projection);
+    }
+
     private List<EntityRecord> instancesToRecords(Collection instances, EntityDto entity, List<FieldDto> fields,
                                                   MotechDataService service, EntityType entityType) {
         List<EntityRecord> records = new ArrayList<>();
@@ -22,11 +22,17 @@ import org.motechproject.testing.utils.rest.RestTestUtil;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
@@ -34,7 +40,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.server.request.MockMvcRequestBuilders.get;
@@ -75,7 +83,7 @@ public class InstanceControllerTest {
         GridSettings gridSettings = new GridSettings();
         gridSettings.setLookup("lookup");
 
-        instanceController.exportEntityInstances(1L, gridSettings, "all", "csv", response);
+        instanceController.exportEntityInstances(1L, gridSettings, "all", "csv", null, response);
 
         verify(instanceService).verifyEntityAccess(1L);
         verify(csvImportExportService).exportCsv(eq(1L), eq(writer), eq("lookup"), captor.capture(), any(List.class), any(Map.class));
@@ -103,7 +111,7 @@ public class InstanceControllerTest {
         gridSettings.setSelectedFields(asList("id", "date"));
         gridSettings.setLookup("lookup");
 
-        instanceController.exportEntityInstances(1L, gridSettings, "50", "csv", response);
+        instanceController.exportEntityInstances(1L, gridSettings, "50", "csv", null, response);
 
         verify(instanceService).verifyEntityAccess(1L);
         verify(csvImportExportService).exportCsv(eq(1L), eq(writer), eq("lookup"), queryParamsCaptor.capture(), listCaptor.capture(), any(Map.class));
@@ -122,6 +130,27 @@ public class InstanceControllerTest {
         assertTrue(listCaptor.getValue().contains("date"));
     }
 
+    @Test
+    public void shouldCompressExportedInstancesIfAccepted() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStreamStub(output));
+
+        GridSettings gridSettings = new GridSettings();
+
+        instanceController.exportEntityInstances(1L, gridSettings, "all", "csv", "gzip, deflate", response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setHeader("Vary", "Accept-Encoding");
+        verify(response, never()).getWriter();
+        verify(csvImportExportService).exportCsv(eq(1L), any(OutputStreamWriter.class), anyString(), any(QueryParams.class),
+                any(List.class), any(Map.class));
+
+        // the stream is finished, even if the exporter did not close the writer
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(-1, input.read());
+        }
+    }
+
     @Test
     public void shouldRetrieveRelatedFieldValues() throws Exception {
         Records<EntityRecord> records = new Records<>(2, 5, 7, recordsList());
@@ -164,4 +193,18 @@ public class InstanceControllerTest {
 
         return new EntityRecord(id, 1L, asList(nameField, valField));
     }
+
+    private static class ServletOutputStreamStub extends ServletOutputStream {
+
+        private final ByteArrayOutputStream output;
+
+        ServletOutputStreamStub(ByteArrayOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            output.write(b);
+        }
+    }
 }
@@ -20,13 +20,17 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
 import org.motechproject.mds.rest.RestProjection;
 import org.motechproject.mds.rest.RestResponse;
+import org.motechproject.mds.rest.StreamedRestResponse;
 import org.motechproject.mds.util.Order;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.server.MockMvc;
 import org.springframework.test.web.server.request.DefaultRequestBuilder;
 import org.springframework.test.web.server.setup.MockMvcBuilders;
 
 import javax.validation.ConstraintViolationException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +39,7 @@ import java.util.Map;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
@@ -309,6 +314,60 @@ public class MdsRestControllerTest {
         testSingleReturnLookup(ENTITY_NAME, MODULE_NAME, NAMESPACE, true);
     }
 
+    @Test
+    public void shouldStreamRecords() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
+                .thenReturn(restFacade);
+        when(restFacade.stream(any(QueryParams.class), anyBoolean())).thenReturn(new EmptyStreamedResponse());
+        when(restFacade.streamLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+                .thenReturn(new EmptyStreamedResponse());
+
+        MockHttpServletResponse response = mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?stream=true&" + PAGINATION_STR)
+        ).andExpect(status().isOk())
+         .andExpect(content().string("{\"data\":[]}"))
+         .andReturn().getResponse();
+
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE, LOOKUP_NAME) + "?stream=true&" + LOOKUP_PAGINATION_STR)
+        ).andExpect(status().isOk())
+         .andExpect(content().string("{\"data\":[]}"));
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(restFacade).stream(captor.capture(), eq(false));
+        verifyQueryParams(captor.getValue());
+
+        verify(restFacade).streamLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), eq(false));
+    }
+
+    @Test
+    public void shouldReportStreamErrorsBeforeResponseIsStarted() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
+                .thenReturn(restFacade);
+        when(restFacade.streamLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+                .thenThrow(new RestLookupNotFoundException(LOOKUP_NAME));
+
+        MockHttpServletResponse response = mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE, LOOKUP_NAME) + "?stream=true")
+                        .header("Accept-Encoding", "gzip")
+        ).andExpect(status().isNotFound())
+         .andReturn().getResponse();
+
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void shouldReturn400ForInvalidStreamParam() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
+                .thenReturn(restFacade);
+
+        mockMvc.perform(
+                get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?stream=yes")
+        ).andExpect(status().isBadRequest());
+    }
+
     // lookup errors
 
     @Test
@@ -569,4 +628,11 @@ public class MdsRestControllerTest {
 
         return sb.toString();
     }
+
+    private static class EmptyStreamedResponse implements StreamedRestResponse {
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            output.write("{\"data\":[]}".getBytes(Charset.forName("UTF-8")));
+        }
+    }
 }
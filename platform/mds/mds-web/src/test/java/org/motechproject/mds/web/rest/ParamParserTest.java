@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -52,6 +53,29 @@ public class ParamParserTest {
         assertEquals(Order.Direction.ASC, queryParams.getOrderList().get(0).getDirection());
     }
 
+    @Test
+    public void shouldBuildKeysetQueryParams() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("pageSize", "50");
+        requestParams.put("sort", "someColumn");
+        requestParams.put("after", "");
+
+        QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isKeyset());
+        assertFalse(queryParams.isCursorSet());
+        assertEquals(Integer.valueOf(1), queryParams.getPage());
+        assertEquals(Integer.valueOf(50), queryParams.getPageSize());
+        assertEquals("someColumn", queryParams.getOrderList().get(0).getField());
+
+        requestParams.put("after", "c29tZUNvbHVtbj1h");
+
+        queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isCursorSet());
+        assertEquals("c29tZUNvbHVtbj1h", queryParams.getCursor());
+    }
+
     @Test
     public void shouldGetLookupName() {
         Map<String, String> requestParams = new HashMap<>();
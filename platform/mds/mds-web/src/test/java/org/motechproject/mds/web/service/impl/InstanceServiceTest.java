@@ -674,6 +674,21 @@ public class InstanceServiceTest {
         verify(userPreferencesService, never()).updateGridSize(anyLong(), anyString(), anyInt());
     }
 
+    @Test
+    public void shouldRetrieveOnlyTheFieldsDisplayedInTheGrid() {
+        mockSampleFields();
+        mockEntity();
+        mockDataService();
+
+        instanceService.getEntityRecords(ENTITY_ID, new QueryParams(1, 100));
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(motechDataService).retrieveAll(captor.capture());
+        assertEquals(asList("strField", "intField", "dtField", "timeField", "LongField"),
+                captor.getValue().getProjection());
+        assertEquals(Integer.valueOf(100), captor.getValue().getPageSize());
+    }
+
     @Test
     public void shouldUpdateGridSize() {
         setUpSecurityContext();
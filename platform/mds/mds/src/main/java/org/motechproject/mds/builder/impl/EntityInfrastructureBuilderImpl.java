@@ -79,9 +79,32 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
         );
         list.add(new ClassData(serviceClassName, serviceCode));
 
+        // create property accessors for the entity and its history and trash classes
+        addAccessorCode(list, className);
+        if (null == entity || entity.isRecordHistory()) {
+            addAccessorCode(list, ClassName.getHistoryClassName(className));
+        }
+        addAccessorCode(list, ClassName.getTrashClassName(className));
+
         return list;
     }
 
+    private void addAccessorCode(List<ClassData> list, String accessedClassName) {
+        CtClass accessedClass = classPool.getOrNull(accessedClassName);
+
+        // history and trash classes are not present for every entity
+        if (null != accessedClass) {
+            String accessorClassName = ClassName.getAccessorClassName(accessedClassName);
+
+            try {
+                byte[] accessorCode = new PropertyAccessorBuilder(classPool, accessedClass).build();
+                list.add(new ClassData(accessorClassName, accessorCode));
+            } catch (NotFoundException | CannotCompileException | IOException e) {
+                throw new EntityInfrastructureException(accessorClassName, e);
+            }
+        }
+    }
+
     private byte[] getRepositoryCode(String repositoryClassName, String typeName, Integer fetchDepth) {
         try {
             CtClass superClass = classPool.getCtClass(MotechDataRepository.class.getName());
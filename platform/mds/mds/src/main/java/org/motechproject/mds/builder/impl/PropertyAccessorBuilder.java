@@ -0,0 +1,208 @@
+package org.motechproject.mds.builder.impl;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.CtPrimitiveType;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.Descriptor;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.MemberUtil;
+import org.motechproject.mds.util.PropertyAccessor;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The <code>PropertyAccessorBuilder</code> class builds the {@link PropertyAccessor} for the given entity,
+ * history or trash class. The generated accessor calls the getters and setters of the class directly,
+ * selecting them with a switch on the property index.
+ */
+class PropertyAccessorBuilder {
+    private final ClassPool classPool;
+    private final CtClass declaring;
+
+    PropertyAccessorBuilder(ClassPool classPool, CtClass declaring) {
+        this.classPool = classPool;
+        this.declaring = declaring;
+    }
+
+    byte[] build() throws NotFoundException, CannotCompileException, IOException {
+        String accessorName = ClassName.getAccessorClassName(declaring.getName());
+        List<CtMethod[]> properties = findProperties();
+
+        CtClass accessor = classPool.getOrNull(accessorName);
+
+        if (accessor == null) {
+            accessor = classPool.makeClass(accessorName, classPool.getCtClass(PropertyAccessor.class.getName()));
+        } else {
+            // the accessor was built for a previous version of the class
+            accessor.defrost();
+
+            for (CtMethod method : accessor.getDeclaredMethods()) {
+                accessor.removeMethod(method);
+            }
+            for (CtConstructor constructor : accessor.getDeclaredConstructors()) {
+                accessor.removeConstructor(constructor);
+            }
+        }
+
+        accessor.addConstructor(CtNewConstructor.make(buildConstructor(accessor, properties), accessor));
+        accessor.addMethod(CtNewMethod.make(buildGetter(properties), accessor));
+        accessor.addMethod(CtNewMethod.make(buildSetter(properties), accessor));
+
+        return accessor.toBytecode();
+    }
+
+    private String buildConstructor(CtClass accessor, List<CtMethod[]> properties) {
+        List<String> names = new ArrayList<>(properties.size());
+
+        for (CtMethod[] property : properties) {
+            names.add(getPropertyName(property[0]));
+        }
+
+        return String.format("public %s() { super(%s.class, \"%s\"); }", accessor.getSimpleName(),
+                declaring.getName(), StringUtils.join(names, ','));
+    }
+
+    private String buildGetter(List<CtMethod[]> properties) throws NotFoundException {
+        StringBuilder body = new StringBuilder();
+
+        body.append("public Object get(Object instance, int index) {");
+
+        if (!properties.isEmpty()) {
+            body.append(String.format("%s bean = (%s) instance;", declaring.getName(), declaring.getName()));
+            body.append("switch (index) {");
+
+            for (int i = 0; i < properties.size(); ++i) {
+                CtMethod getter = properties.get(i)[0];
+                CtClass type = getter.getReturnType();
+                String call = String.format("bean.%s()", getter.getName());
+
+                if (type.isPrimitive()) {
+                    // the value has to be boxed
+                    call = String.format("%s.valueOf(%s)", ((CtPrimitiveType) type).getWrapperName(), call);
+                }
+
+                body.append(String.format("case %d: return %s;", i, call));
+            }
+
+            body.append('}');
+        }
+
+        body.append("throw new IndexOutOfBoundsException(\"No property with index \" + index);");
+        body.append('}');
+
+        return body.toString();
+    }
+
+    private String buildSetter(List<CtMethod[]> properties) throws NotFoundException {
+        StringBuilder body = new StringBuilder();
+
+        body.append("public void set(Object instance, int index, Object value) {");
+
+        if (!properties.isEmpty()) {
+            body.append(String.format("%s bean = (%s) instance;", declaring.getName(), declaring.getName()));
+            body.append("switch (index) {");
+
+            for (int i = 0; i < properties.size(); ++i) {
+                CtMethod setter = properties.get(i)[1];
+                CtClass type = setter.getParameterTypes()[0];
+
+                if (type.isPrimitive()) {
+                    // the value has to be unboxed, nulls are ignored
+                    CtPrimitiveType primitive = (CtPrimitiveType) type;
+                    body.append(String.format("case %d: if (value != null) { bean.%s(((%s) value).%s()); } return;",
+                            i, setter.getName(), primitive.getWrapperName(), primitive.getGetMethodName()));
+                } else {
+                    body.append(String.format("case %d: bean.%s((%s) value); return;",
+                            i, setter.getName(), type.getName()));
+                }
+            }
+
+            body.append('}');
+        }
+
+        body.append("throw new IndexOutOfBoundsException(\"No property with index \" + index);");
+        body.append('}');
+
+        return body.toString();
+    }
+
+    private List<CtMethod[]> findProperties() throws NotFoundException {
+        // the properties are sorted by name, so that the accessor does not depend on the order of methods
+        Map<String, CtMethod[]> properties = new TreeMap<>();
+
+        for (CtMethod getter : declaring.getMethods()) {
+            String propertyName = getPropertyName(getter);
+
+            if (propertyName == null || properties.containsKey(propertyName)) {
+                continue;
+            }
+
+            CtMethod setter = findSetter(propertyName, getter.getReturnType());
+
+            if (setter != null) {
+                properties.put(propertyName, new CtMethod[]{getter, setter});
+            }
+        }
+
+        return new ArrayList<>(properties.values());
+    }
+
+    private CtMethod findSetter(String propertyName, CtClass type) {
+        String setterName = MemberUtil.SETTER_PREFIX + StringUtils.capitalize(propertyName);
+        String descriptor = Descriptor.ofMethod(CtClass.voidType, new CtClass[]{type});
+
+        try {
+            CtMethod setter = declaring.getMethod(setterName, descriptor);
+            return isAccessible(setter) ? setter : null;
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private String getPropertyName(CtMethod method) {
+        if (!isAccessible(method)) {
+            return null;
+        }
+
+        String name = method.getName();
+        String signature = method.getSignature();
+
+        // only getters without parameters
+        if (!signature.startsWith("()") || signature.endsWith(")V")) {
+            return null;
+        }
+
+        String propertyName = null;
+
+        if (name.startsWith(MemberUtil.GETTER_PREFIX) && name.length() > MemberUtil.GET_OR_SET_END_INDEX) {
+            propertyName = name.substring(MemberUtil.GET_OR_SET_END_INDEX);
+        } else if (name.startsWith(MemberUtil.BOOLEAN_GETTER_PREFIX) && name.length() > MemberUtil.IS_END_INDEX
+                && signature.equals("()Z")) {
+            propertyName = name.substring(MemberUtil.IS_END_INDEX);
+        }
+
+        return null == propertyName ? null : Introspector.decapitalize(propertyName);
+    }
+
+    private boolean isAccessible(CtMethod method) {
+        int modifiers = method.getModifiers();
+        int accessFlags = method.getMethodInfo().getAccessFlags();
+
+        return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers) && !Modifier.isAbstract(modifiers)
+                && (accessFlags & (AccessFlag.BRIDGE | AccessFlag.SYNTHETIC)) == 0;
+    }
+}
@@ -15,6 +15,9 @@ public class ModuleSettings {
     public static final TimeUnit DEFAULT_TIME_UNIT = TimeUnit.HOURS;
     public static final Integer DEFAULT_GRID_SIZE = 50;
     public static final Boolean DEFAULT_BUNDLE_RESTART = false;
+    public static final Boolean DEFAULT_HISTORY_RETENTION = false;
+    public static final Integer DEFAULT_HISTORY_RETENTION_TIME_VALUE = 6;
+    public static final TimeUnit DEFAULT_HISTORY_RETENTION_TIME_UNIT = TimeUnit.MONTHS;
 
     private DeleteMode deleteMode;
     private Boolean emptyTrash;
@@ -22,6 +25,9 @@ public class ModuleSettings {
     private TimeUnit timeUnit;
     private Integer gridSize;
     private Boolean refreshModuleAfterTimeout;
+    private Boolean historyRetention;
+    private Integer historyRetentionTimeValue;
+    private TimeUnit historyRetentionTimeUnit;
 
     public ModuleSettings() {
     }
@@ -96,9 +102,52 @@ public class ModuleSettings {
         this.refreshModuleAfterTimeout = refreshModuleAfterTimeout == null ? DEFAULT_BUNDLE_RESTART : refreshModuleAfterTimeout;
     }
 
+    public Boolean isHistoryRetention() {
+        if (historyRetention == null) {
+            return DEFAULT_HISTORY_RETENTION;
+        }
+        return historyRetention;
+    }
+
+    public void setHistoryRetention(Boolean historyRetention) {
+        this.historyRetention = historyRetention == null ? DEFAULT_HISTORY_RETENTION : historyRetention;
+    }
+
+    public Integer getHistoryRetentionTimeValue() {
+        if (historyRetentionTimeValue == null) {
+            return DEFAULT_HISTORY_RETENTION_TIME_VALUE;
+        }
+        return historyRetentionTimeValue;
+    }
+
+    public void setHistoryRetentionTimeValue(Integer historyRetentionTimeValue) {
+        if (historyRetentionTimeValue == null) {
+            this.historyRetentionTimeValue = DEFAULT_HISTORY_RETENTION_TIME_VALUE;
+        } else {
+            this.historyRetentionTimeValue = historyRetentionTimeValue < 1
+                    ? DEFAULT_HISTORY_RETENTION_TIME_VALUE
+                    : historyRetentionTimeValue;
+        }
+    }
+
+    public TimeUnit getHistoryRetentionTimeUnit() {
+        if (historyRetentionTimeUnit == null) {
+            return DEFAULT_HISTORY_RETENTION_TIME_UNIT;
+        }
+        return historyRetentionTimeUnit;
+    }
+
+    public void setHistoryRetentionTimeUnit(TimeUnit historyRetentionTimeUnit) {
+        // an unknown unit would mean zero retention time, so it is not accepted
+        this.historyRetentionTimeUnit = historyRetentionTimeUnit == null || historyRetentionTimeUnit == TimeUnit.UNKNOWN
+                ? DEFAULT_HISTORY_RETENTION_TIME_UNIT
+                : historyRetentionTimeUnit;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(getDeleteMode(), isEmptyTrash(), getTimeValue(), getTimeUnit(), getGridSize(), isRestartModuleAfterTimeout());
+        return Objects.hash(getDeleteMode(), isEmptyTrash(), getTimeValue(), getTimeUnit(), getGridSize(), isRestartModuleAfterTimeout(),
+                isHistoryRetention(), getHistoryRetentionTimeValue(), getHistoryRetentionTimeUnit());
     }
 
     @Override
@@ -118,6 +167,9 @@ public class ModuleSettings {
                 && Objects.equals(this.getTimeValue(), other.getTimeValue())
                 && Objects.equals(this.getTimeUnit(), other.getTimeUnit())
                 && Objects.equals(this.getGridSize(), other.getGridSize())
-                && Objects.equals(this.isRestartModuleAfterTimeout(), other.isRestartModuleAfterTimeout());
+                && Objects.equals(this.isRestartModuleAfterTimeout(), other.isRestartModuleAfterTimeout())
+                && Objects.equals(this.isHistoryRetention(), other.isHistoryRetention())
+                && Objects.equals(this.getHistoryRetentionTimeValue(), other.getHistoryRetentionTimeValue())
+                && Objects.equals(this.getHistoryRetentionTimeUnit(), other.getHistoryRetentionTimeUnit());
     }
 }
@@ -35,6 +35,28 @@ public interface SettingsService {
      */
     TimeUnit getTimeUnit();
 
+    /**
+     * Returns current setting of the history retention, which informs whether old historical revisions should
+     * be removed automatically.
+     *
+     * @return true, if setting is enabled, false otherwise
+     */
+    Boolean isHistoryRetention();
+
+    /**
+     * Together with {@link #getHistoryRetentionTimeUnit()} specifies after what time historical revisions are removed.
+     *
+     * @return value as an integer
+     */
+    Integer getHistoryRetentionTimeValue();
+
+    /**
+     * Together with {@link #getHistoryRetentionTimeValue()} specifies after what time historical revisions are removed.
+     *
+     * @return selected unit of time
+     */
+    TimeUnit getHistoryRetentionTimeUnit();
+
     /**
      * Returns current setting of the grid size.
      *
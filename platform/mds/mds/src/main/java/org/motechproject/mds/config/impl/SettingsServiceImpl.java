@@ -19,6 +19,9 @@ import java.util.Properties;
 import static org.motechproject.mds.util.Constants.Config.MDS_DEFAULT_GRID_SIZE;
 import static org.motechproject.mds.util.Constants.Config.MDS_DELETE_MODE;
 import static org.motechproject.mds.util.Constants.Config.MDS_EMPTY_TRASH;
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_RETENTION;
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_RETENTION_TIME_UNIT;
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_RETENTION_TIME_VALUE;
 import static org.motechproject.mds.util.Constants.Config.MDS_RESTART_BUNDLE_AFTER_TIMEOUT;
 import static org.motechproject.mds.util.Constants.Config.MDS_TIME_UNIT;
 import static org.motechproject.mds.util.Constants.Config.MDS_TIME_VALUE;
@@ -54,6 +57,21 @@ public class SettingsServiceImpl implements SettingsService {
         return getModuleSettings().getTimeUnit();
     }
 
+    @Override
+    public Boolean isHistoryRetention() {
+        return getModuleSettings().isHistoryRetention();
+    }
+
+    @Override
+    public Integer getHistoryRetentionTimeValue() {
+        return getModuleSettings().getHistoryRetentionTimeValue();
+    }
+
+    @Override
+    public TimeUnit getHistoryRetentionTimeUnit() {
+        return getModuleSettings().getHistoryRetentionTimeUnit();
+    }
+
     @Override
     public Integer getGridSize() {
         return getModuleSettings().getGridSize();
@@ -96,6 +114,8 @@ public class SettingsServiceImpl implements SettingsService {
             moduleSettings.setTimeUnit(configSettings.getAfterTimeUnit());
             moduleSettings.setGridSize(configSettings.getDefaultGridSize());
             moduleSettings.setRestartModuleAfterTimeout(configSettings.isRefreshModuleAfterTimeout());
+            // the history retention is configured only in the module file
+            setHistoryRetentionFromFile(moduleSettings, mdsConfig.getProperties(MODULE_FILE));
         } else {
             moduleSettings = getSettingsFromFile();
         }
@@ -121,10 +141,17 @@ public class SettingsServiceImpl implements SettingsService {
         moduleSettings.setTimeUnit(StringUtils.isNotBlank(props.getProperty(MDS_TIME_UNIT)) ? TimeUnit.fromString(props.getProperty(MDS_TIME_UNIT)) : null);
         moduleSettings.setGridSize(StringUtils.isNotBlank(props.getProperty(MDS_DEFAULT_GRID_SIZE)) ? Integer.parseInt(props.getProperty(MDS_DEFAULT_GRID_SIZE)) : null);
         moduleSettings.setRestartModuleAfterTimeout(StringUtils.isNotBlank(props.getProperty(MDS_RESTART_BUNDLE_AFTER_TIMEOUT)) ? Boolean.parseBoolean(props.getProperty(MDS_RESTART_BUNDLE_AFTER_TIMEOUT)) : null);
+        setHistoryRetentionFromFile(moduleSettings, props);
 
         return moduleSettings;
     }
 
+    private void setHistoryRetentionFromFile(ModuleSettings moduleSettings, Properties props) {
+        moduleSettings.setHistoryRetention(StringUtils.isNotBlank(props.getProperty(MDS_HISTORY_RETENTION)) ? Boolean.parseBoolean(props.getProperty(MDS_HISTORY_RETENTION)) : null);
+        moduleSettings.setHistoryRetentionTimeValue(StringUtils.isNotBlank(props.getProperty(MDS_HISTORY_RETENTION_TIME_VALUE)) ? Integer.parseInt(props.getProperty(MDS_HISTORY_RETENTION_TIME_VALUE)) : null);
+        moduleSettings.setHistoryRetentionTimeUnit(StringUtils.isNotBlank(props.getProperty(MDS_HISTORY_RETENTION_TIME_UNIT)) ? TimeUnit.fromString(props.getProperty(MDS_HISTORY_RETENTION_TIME_UNIT)) : null);
+    }
+
     @Autowired
     public void setAllConfigSettings(AllConfigSettings allConfigSettings) {
         this.allConfigSettings = allConfigSettings;
@@ -13,7 +13,7 @@ import static org.motechproject.mds.util.Constants.Util;
 
 /**
  * The <code>Tracking</code> contains properties that describe the audit settings of an Entity,
- * such as whether to record history or publish CRUD events for a given Entity.
+ * such as whether to record history, publish CRUD events or cache lookup results for a given Entity.
  * This class is related with table in database with the same name.
  */
 @PersistenceCapable(identityType = IdentityType.DATASTORE, detachable = Util.TRUE)
@@ -44,6 +44,15 @@ public class Tracking {
     @Persistent
     private boolean nonEditable;
 
+    @Persistent
+    private boolean cacheLookups;
+
+    @Persistent
+    private int lookupCacheSize;
+
+    @Persistent
+    private int lookupCacheTimeToLive;
+
     public Tracking() {
         this(null);
     }
@@ -53,6 +62,8 @@ public class Tracking {
         this.allowCreateEvent = true;
         this.allowUpdateEvent = true;
         this.allowDeleteEvent = true;
+        this.lookupCacheSize = TrackingDto.DEFAULT_LOOKUP_CACHE_SIZE;
+        this.lookupCacheTimeToLive = TrackingDto.DEFAULT_LOOKUP_CACHE_TIME_TO_LIVE;
     }
 
     public TrackingDto toDto() {
@@ -64,6 +75,9 @@ public class Tracking {
         dto.setAllowDeleteEvent(allowDeleteEvent);
         dto.setModifiedByUser(modifiedByUser);
         dto.setNonEditable(nonEditable);
+        dto.setCacheLookups(cacheLookups);
+        dto.setLookupCacheSize(lookupCacheSize);
+        dto.setLookupCacheTimeToLive(lookupCacheTimeToLive);
 
         return dto;
     }
@@ -75,6 +89,9 @@ public class Tracking {
         recordHistory = trackingDto.isRecordHistory();
         modifiedByUser = trackingDto.isModifiedByUser();
         nonEditable = trackingDto.isNonEditable();
+        cacheLookups = trackingDto.isCacheLookups();
+        lookupCacheSize = trackingDto.getLookupCacheSize();
+        lookupCacheTimeToLive = trackingDto.getLookupCacheTimeToLive();
     }
 
     public Long getId() {
@@ -141,6 +158,30 @@ public class Tracking {
         this.nonEditable = nonEditable;
     }
 
+    public boolean isCacheLookups() {
+        return cacheLookups;
+    }
+
+    public void setCacheLookups(boolean cacheLookups) {
+        this.cacheLookups = cacheLookups;
+    }
+
+    public int getLookupCacheSize() {
+        return lookupCacheSize;
+    }
+
+    public void setLookupCacheSize(int lookupCacheSize) {
+        this.lookupCacheSize = lookupCacheSize;
+    }
+
+    public int getLookupCacheTimeToLive() {
+        return lookupCacheTimeToLive;
+    }
+
+    public void setLookupCacheTimeToLive(int lookupCacheTimeToLive) {
+        this.lookupCacheTimeToLive = lookupCacheTimeToLive;
+    }
+
     public Tracking copy() {
         Tracking copy = new Tracking();
 
@@ -150,13 +191,17 @@ public class Tracking {
         copy.setAllowDeleteEvent(allowDeleteEvent);
         copy.setModifiedByUser(modifiedByUser);
         copy.setNonEditable(nonEditable);
+        copy.setCacheLookups(cacheLookups);
+        copy.setLookupCacheSize(lookupCacheSize);
+        copy.setLookupCacheTimeToLive(lookupCacheTimeToLive);
 
         return copy;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, nonEditable);
+        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, nonEditable,
+                cacheLookups, lookupCacheSize, lookupCacheTimeToLive);
     }
 
     @Override
@@ -175,6 +220,9 @@ public class Tracking {
                 Objects.equals(this.allowCreateEvent, other.allowCreateEvent) &&
                 Objects.equals(this.allowUpdateEvent, other.allowUpdateEvent) &&
                 Objects.equals(this.allowDeleteEvent, other.allowDeleteEvent) &&
-                Objects.equals(this.nonEditable, other.nonEditable);
+                Objects.equals(this.nonEditable, other.nonEditable) &&
+                Objects.equals(this.cacheLookups, other.cacheLookups) &&
+                Objects.equals(this.lookupCacheSize, other.lookupCacheSize) &&
+                Objects.equals(this.lookupCacheTimeToLive, other.lookupCacheTimeToLive);
     }
 }
@@ -18,6 +18,7 @@ public class CsvImportResults implements Serializable {
     private final String entityModule;
     private final String entityNamespace;
     private final Map<Integer, String> rowErrors;
+    private final int committedRows;
 
     /**
      * @param entity entity for which this import was performed
@@ -27,6 +28,19 @@ public class CsvImportResults implements Serializable {
      */
     public CsvImportResults(EntityDto entity, List<Long> newInstanceIDs, List<Long> updatedInstanceIDs,
                             Map<Integer, String> rowErrors) {
+        this(entity, newInstanceIDs, updatedInstanceIDs, rowErrors,
+                newInstanceIDs.size() + updatedInstanceIDs.size() + (rowErrors == null ? 0 : rowErrors.size()));
+    }
+
+    /**
+     * @param entity entity for which this import was performed
+     * @param newInstanceIDs a list of IDs for instances that were newly created during import
+     * @param updatedInstanceIDs a list of IDs for instances that were updated during import
+     * @param rowErrors a list of errors thrown during import
+     * @param committedRows the number of rows, following the header row, which were processed and committed
+     */
+    public CsvImportResults(EntityDto entity, List<Long> newInstanceIDs, List<Long> updatedInstanceIDs,
+                            Map<Integer, String> rowErrors, int committedRows) {
         this.entityClassName = entity.getClassName();
         this.entityName = entity.getName();
         this.entityModule = entity.getModule();
@@ -34,6 +48,7 @@ public class CsvImportResults implements Serializable {
         this.newInstanceIDs = newInstanceIDs;
         this.updatedInstanceIDs = updatedInstanceIDs;
         this.rowErrors = rowErrors;
+        this.committedRows = committedRows;
     }
 
     /**
@@ -108,4 +123,13 @@ public class CsvImportResults implements Serializable {
     public Map<Integer, String> getRowErrors() {
         return rowErrors;
     }
+
+    /**
+     * Returns the number of rows, following the header row, which were processed and committed. Rows skipped
+     * when resuming an import are included. An interrupted chunked import can be resumed by skipping that many rows.
+     * @return the number of committed rows
+     */
+    public int getCommittedRows() {
+        return committedRows;
+    }
 }
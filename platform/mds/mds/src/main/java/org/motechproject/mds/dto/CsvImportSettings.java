@@ -0,0 +1,81 @@
+package org.motechproject.mds.dto;
+
+import java.io.Serializable;
+
+/**
+ * Settings of a chunked CSV import. The rows of the file are imported in chunks, each chunk in a separate
+ * transaction, so an import failing at a late row keeps the chunks committed before it. Such an import can be
+ * resumed by skipping the rows reported as committed in {@link CsvImportResults#getCommittedRows()}.
+ */
+public class CsvImportSettings implements Serializable {
+
+    private static final long serialVersionUID = -2786360452367316522L;
+
+    /**
+     * The default number of rows committed in one transaction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int skippedRows;
+    private boolean continueOnError;
+
+    public CsvImportSettings() {
+    }
+
+    /**
+     * @param chunkSize the number of rows committed in one transaction
+     * @param continueOnError if true, import will continue with next row if exception was encountered,
+     *                        if false, import process will stop after the last committed chunk
+     */
+    public CsvImportSettings(int chunkSize, boolean continueOnError) {
+        this.chunkSize = chunkSize;
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * @return the number of rows committed in one transaction
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the number of threads converting the rows to instances
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of rows, following the header row, which are not imported; used for resuming an import
+     */
+    public int getSkippedRows() {
+        return skippedRows;
+    }
+
+    public void setSkippedRows(int skippedRows) {
+        this.skippedRows = skippedRows;
+    }
+
+    /**
+     * @return true if the import continues with next row if exception was encountered, false if it stops
+     *         after the last committed chunk
+     */
+    public boolean isContinueOnError() {
+        return continueOnError;
+    }
+
+    public void setContinueOnError(boolean continueOnError) {
+        this.continueOnError = continueOnError;
+    }
+}
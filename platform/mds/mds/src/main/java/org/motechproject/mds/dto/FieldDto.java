@@ -226,6 +226,18 @@ public class FieldDto {
         return setting == null ? null : setting.getValueAsString();
     }
 
+    /**
+     * Returns whether the field can be selected in the result clause of a query, see
+     * {@link org.motechproject.mds.query.QueryParams#withProjection(java.util.Collection)}. The blobs, maps,
+     * comboboxes and relationships are not, since they are not stored in a single column of the entity table.
+     *
+     * @return true if the field can be projected, false otherwise
+     */
+    @JsonIgnore
+    public boolean isProjectable() {
+        return type != null && !type.isBlob() && !type.isMap() && !type.isCombobox() && !type.isRelationship();
+    }
+
     @JsonIgnore
     public boolean isVersionField() {
         MetadataDto md = getMetadata(Constants.MetadataKeys.VERSION_FIELD);
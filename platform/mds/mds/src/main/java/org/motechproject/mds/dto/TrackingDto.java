@@ -7,15 +7,29 @@ import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * The <code>TrackingDto</code> contains properties that describe the audit settings of an Entity,
- * such as whether to record history or publish CRUD events for a given Entity.
+ * such as whether to record history, publish CRUD events or cache lookup results for a given Entity.
  */
 public class TrackingDto {
+
+    /**
+     * The default maximal number of lookup results cached for an entity.
+     */
+    public static final int DEFAULT_LOOKUP_CACHE_SIZE = 1000;
+
+    /**
+     * The default number of seconds after which a cached lookup result expires.
+     */
+    public static final int DEFAULT_LOOKUP_CACHE_TIME_TO_LIVE = 300;
+
     private boolean recordHistory;
     private boolean allowCreateEvent;
     private boolean allowUpdateEvent;
     private boolean allowDeleteEvent;
     private boolean modifiedByUser;
     private boolean nonEditable;
+    private boolean cacheLookups;
+    private int lookupCacheSize = DEFAULT_LOOKUP_CACHE_SIZE;
+    private int lookupCacheTimeToLive = DEFAULT_LOOKUP_CACHE_TIME_TO_LIVE;
 
     public TrackingDto() {
         this(false, true, true, true, false, false);
@@ -84,6 +98,30 @@ public class TrackingDto {
         this.nonEditable = nonEditable;
     }
 
+    public boolean isCacheLookups() {
+        return cacheLookups;
+    }
+
+    public void setCacheLookups(boolean cacheLookups) {
+        this.cacheLookups = cacheLookups;
+    }
+
+    public int getLookupCacheSize() {
+        return lookupCacheSize;
+    }
+
+    public void setLookupCacheSize(int lookupCacheSize) {
+        this.lookupCacheSize = lookupCacheSize;
+    }
+
+    public int getLookupCacheTimeToLive() {
+        return lookupCacheTimeToLive;
+    }
+
+    public void setLookupCacheTimeToLive(int lookupCacheTimeToLive) {
+        this.lookupCacheTimeToLive = lookupCacheTimeToLive;
+    }
+
     /**
      * {@inheritDoc}
      */
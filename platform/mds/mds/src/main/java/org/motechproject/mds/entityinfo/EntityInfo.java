@@ -139,6 +139,21 @@ public class EntityInfo {
         return advancedSettings.getTracking().isAllowDeleteEvent();
     }
 
+    @JsonIgnore
+    public boolean isLookupCacheEnabled() {
+        return advancedSettings.getTracking().isCacheLookups();
+    }
+
+    @JsonIgnore
+    public int getLookupCacheSize() {
+        return advancedSettings.getTracking().getLookupCacheSize();
+    }
+
+    @JsonIgnore
+    public int getLookupCacheTimeToLive() {
+        return advancedSettings.getTracking().getLookupCacheTimeToLive();
+    }
+
     @JsonIgnore
     public boolean isRestCreateEnabled() {
         return advancedSettings.getRestOptions().isCreate();
@@ -5,6 +5,7 @@ import org.motechproject.mds.dto.FieldDto;
 
 import java.util.List;
 
+import static org.motechproject.mds.util.Constants.MetadataKeys.RELATED_CLASS;
 import static org.motechproject.mds.util.Constants.Util.AUTO_GENERATED;
 import static org.motechproject.mds.util.Constants.Util.TRUE;
 
@@ -81,6 +82,11 @@ public class FieldInfo {
         return field.isVersionField();
     }
 
+    @JsonIgnore
+    public String getRelatedClass() {
+        return field.getType().isRelationship() ? field.getMetadataValue(RELATED_CLASS) : null;
+    }
+
 
     public class TypeInfo {
         private boolean isCombobox;
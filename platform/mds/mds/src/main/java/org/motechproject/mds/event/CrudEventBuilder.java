@@ -3,16 +3,20 @@ package org.motechproject.mds.event;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.entityinfo.EntityInfo;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.motechproject.mds.util.ClassName.simplifiedModuleName;
 import static org.motechproject.mds.util.Constants.MDSEvents.BASE_SUBJECT;
+import static org.motechproject.mds.util.Constants.MDSEvents.BULK_SUFFIX;
 import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
 import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_NAME;
 import static org.motechproject.mds.util.Constants.MDSEvents.MODULE_NAME;
 import static org.motechproject.mds.util.Constants.MDSEvents.NAMESPACE;
 import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_IDS;
 
 /**
  * The <code>MDSCrudEvents</code> class is responsible for creating MDS CRUD events.
@@ -42,6 +46,27 @@ public final class CrudEventBuilder {
         return params;
     }
 
+    /**
+     * Builds parameters for a Motech CRUD event, that was sent once for a group of instances
+     * affected by a bulk operation.
+     *
+     * @param module module name of an entity
+     * @param namespace namespace of an entity
+     * @param entity entity name
+     * @param entityClassName entity class name
+     * @param ids ids of the affected instances
+     * @return constructed parameters for the events
+     */
+    public static Map<String, Object> buildEventParams(String module, String namespace, String entity, String entityClassName,
+                                                       List<Long> ids) {
+        Map<String, Object> params = new HashMap<>();
+
+        params.put(OBJECT_IDS, new ArrayList<>(ids));
+        setEntityData(params, module, namespace, entity, entityClassName);
+
+        return params;
+    }
+
     /**
      * Creates subject for a Motech event, sent upon encounter
      * of a CRUD event in MDS.
@@ -68,6 +93,20 @@ public final class CrudEventBuilder {
         return createSubject(module, namespace, entity, action.toString());
     }
 
+    /**
+     * Creates subject for a Motech Event, sent once for a group of instances
+     * affected by a bulk operation in MDS, for example <code>mds.crud.module.Entity.CREATE_BULK</code>.
+     *
+     * @param module module name of an entity
+     * @param namespace namespace of an entity
+     * @param entity entity name
+     * @param action CRUD event type
+     * @return Constructed subject for the Motech Event
+     */
+    public static String createBulkSubject(String module, String namespace, String entity, CrudEventType action) {
+        return createSubject(module, namespace, entity, action.toString() + BULK_SUFFIX);
+    }
+
     /**
      * Creates subject for a Motech Event, sent upon encounter
      * of a CRUD event in MDS.
@@ -0,0 +1,26 @@
+package org.motechproject.mds.ex.csv;
+
+import org.motechproject.mds.dto.CsvImportResults;
+
+/**
+ * Signals that a chunked CSV import was stopped because of an error. The chunks committed before the error
+ * are not rolled back, they are described by the partial results of the import.
+ */
+public class CsvImportInterruptedException extends CsvImportException {
+
+    private static final long serialVersionUID = 4815068542367201736L;
+
+    private final CsvImportResults results;
+
+    public CsvImportInterruptedException(String message, Throwable cause, CsvImportResults results) {
+        super(message, cause);
+        this.results = results;
+    }
+
+    /**
+     * @return the results of the chunks committed before the error
+     */
+    public CsvImportResults getResults() {
+        return results;
+    }
+}
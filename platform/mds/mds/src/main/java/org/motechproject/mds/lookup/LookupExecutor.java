@@ -15,8 +15,11 @@ import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.motechproject.mds.util.TypeHelper;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +30,9 @@ import java.util.Set;
  * by the REST api and the Databrowser UI for executing lookups based
  * on only metadata. The dataservice and metadata must be provided during
  * construction.
+ * <p>
+ * The lookup methods and the converters of the lookup arguments are resolved once, when the lookup is
+ * executed for the first time, so the executor should be reused for executing the same lookup many times.
  */
 public class LookupExecutor {
 
@@ -36,6 +42,11 @@ public class LookupExecutor {
     private final Class entityClass;
     private final ClassLoader classLoader;
 
+    private volatile List<ArgumentConverter> converters;
+    private volatile MethodHandle lookupMethod;
+    private volatile MethodHandle lookupMethodWithParams;
+    private volatile MethodHandle countMethod;
+
     public LookupExecutor(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
         this.dataService = dataService;
         this.lookup = lookup;
@@ -50,63 +61,110 @@ public class LookupExecutor {
 
     public Object execute(Map<String, ?> lookupMap, QueryParams queryParams) {
         List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
+        MethodHandle method;
 
         if (queryParams != null) {
             args.add(queryParams);
-            argTypes.add(QueryParams.class);
-        }
 
-        try {
-            return MethodUtils.invokeMethod(dataService, lookup.getMethodName(),
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(), e);
+            if (lookupMethodWithParams == null) {
+                lookupMethodWithParams = resolveMethod(lookup.getMethodName(), true);
+            }
+            method = lookupMethodWithParams;
+        } else {
+            if (lookupMethod == null) {
+                lookupMethod = resolveMethod(lookup.getMethodName(), false);
+            }
+            method = lookupMethod;
         }
+
+        return invoke(method, args, "Unable to execute lookup " + lookup.getLookupName());
     }
 
     public long executeCount(Map<String, ?> lookupMap) {
         List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
 
-        String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
+        if (countMethod == null) {
+            countMethod = resolveMethod(LookupName.lookupCountMethod(lookup.getMethodName()), false);
+        }
+
+        return (long) invoke(countMethod, args, "Unable to execute count lookup " + lookup.getLookupName());
+    }
+
+    public MotechDataService getDataService() {
+        return dataService;
+    }
+
+    public LookupDto getLookup() {
+        return lookup;
+    }
 
+    private Object invoke(MethodHandle method, List<Object> args, String errorMessage) {
         try {
-            return (long) MethodUtils.invokeMethod(dataService, countMethodName,
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName(), e);
+            return method.invokeExact((Object) dataService, args.toArray(new Object[args.size()]));
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new LookupExecutorException(errorMessage, t);
         }
     }
 
+    private MethodHandle resolveMethod(String methodName, boolean withQueryParams) {
+        List<Class> argTypes = new ArrayList<>();
+        for (ArgumentConverter converter : getConverters()) {
+            argTypes.add(converter.argType);
+        }
+
+        if (withQueryParams) {
+            argTypes.add(QueryParams.class);
+        }
+
+        Method method = MethodUtils.getMatchingAccessibleMethod(dataService.getClass(), methodName,
+                argTypes.toArray(new Class[argTypes.size()]));
+
+        if (method == null) {
+            throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(),
+                    new NoSuchMethodException("No such accessible method: " + methodName + "() on object: "
+                            + dataService.getClass().getName()));
+        }
+
+        try {
+            // the handle takes the data service and the array of arguments, the arguments are unboxed if needed
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+            return handle.asType(handle.type().generic()).asSpreader(Object[].class, argTypes.size());
+        } catch (IllegalAccessException e) {
+            throw new LookupExecutorException("Unable to execute lookup " + lookup.getLookupName(), e);
+        }
+    }
 
     private List<Object> getLookupArgs(Map<String, ?> paramMap) {
-        List<Object> args = new ArrayList<>();
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-            if (field == null) {
-                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-            }
+        List<ArgumentConverter> argumentConverters = getConverters();
+        // one more place for the query params
+        List<Object> args = new ArrayList<>(argumentConverters.size() + 1);
 
-            Object val = paramMap.get(lookupField.getLookupFieldName());
+        for (ArgumentConverter converter : argumentConverters) {
+            args.add(converter.convert(paramMap.get(converter.lookupFieldName)));
+        }
 
-            String typeClass = getTypeClass(field);
-            String genericType = getGenericTypeClass(field);
+        return args;
+    }
 
-            Object arg;
-            if (lookupField.getType() == LookupFieldType.RANGE) {
-                arg = TypeHelper.toRange(val, typeClass);
-            } else if (lookupField.getType() == LookupFieldType.SET) {
-                arg = TypeHelper.toSet(val, typeClass, classLoader);
-            } else {
-                arg = TypeHelper.parse(val, lookupField.isUseGenericParam() ? genericType : typeClass, classLoader);
+    private List<ArgumentConverter> getConverters() {
+        if (converters == null) {
+            List<ArgumentConverter> list = new ArrayList<>();
+
+            for (LookupFieldDto lookupField : lookup.getLookupFields()) {
+                FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
+                if (field == null) {
+                    throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
+                }
+
+                list.add(new ArgumentConverter(lookupField, field));
             }
 
-            args.add(arg);
+            converters = list;
         }
-        return args;
+
+        return converters;
     }
 
     private String getTypeClass(FieldDto field) {
@@ -136,39 +194,27 @@ public class LookupExecutor {
         return genericType;
     }
 
-    private List<Class> buildArgTypes() {
-        List<Class> argTypes = new ArrayList<>();
+    private Class getArgType(LookupFieldDto lookupField, FieldDto field) {
+        switch (lookupField.getType()) {
+            case RANGE:
+                return Range.class;
+            case SET:
+                return Set.class;
+            default:
+                return loadClass(getTypeClassName(lookupField, field));
+        }
+    }
 
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-
-            switch (lookupField.getType()) {
-                case RANGE:
-                    argTypes.add(Range.class);
-                    break;
-                case SET:
-                    argTypes.add(Set.class);
-                    break;
-                default:
-                    FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-                    if (field == null) {
-                        throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-                    }
-
-                    String typeClassName = getTypeClassName(lookupField, field);
-
-                    try {
-                        ClassLoader safeClassLoader = null == classLoader
-                                ? MDSClassLoader.getInstance()
-                                : classLoader;
-
-                        argTypes.add(safeClassLoader.loadClass(typeClassName));
-                    } catch (ClassNotFoundException e) {
-                        throw new IllegalStateException("Type not found " + typeClassName, e);
-                    }
-            }
+    private Class loadClass(String typeClassName) {
+        try {
+            return getSafeClassLoader().loadClass(typeClassName);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Type not found " + typeClassName, e);
         }
+    }
 
-        return argTypes;
+    private ClassLoader getSafeClassLoader() {
+        return null == classLoader ? MDSClassLoader.getInstance() : classLoader;
     }
 
     private String getTypeClassName(LookupFieldDto lookupField, FieldDto field) {
@@ -186,4 +232,52 @@ public class LookupExecutor {
 
         return typeClassName;
     }
+
+    /**
+     * Converts the value of a single lookup parameter to the argument of the lookup method.
+     */
+    private class ArgumentConverter {
+        private final String lookupFieldName;
+        private final LookupFieldType type;
+        private final String typeClass;
+        private final String parseTypeClass;
+        private final Class parseType;
+        private final Class argType;
+
+        ArgumentConverter(LookupFieldDto lookupField, FieldDto field) {
+            this.lookupFieldName = lookupField.getLookupFieldName();
+            this.type = lookupField.getType();
+            this.typeClass = getTypeClass(field);
+            this.parseTypeClass = lookupField.isUseGenericParam() ? getGenericTypeClass(field) : typeClass;
+            this.parseType = getParseType(parseTypeClass);
+            this.argType = getArgType(lookupField, field);
+        }
+
+        Object convert(Object val) {
+            if (type == LookupFieldType.RANGE) {
+                return TypeHelper.toRange(val, typeClass);
+            } else if (type == LookupFieldType.SET) {
+                return TypeHelper.toSet(val, typeClass, classLoader);
+            } else if (parseType != null && parseType.isInstance(val)) {
+                // values of the right type are not parsed
+                return val;
+            } else {
+                return TypeHelper.parse(val, parseTypeClass, classLoader);
+            }
+        }
+
+        private Class getParseType(String className) {
+            if (className == null) {
+                return null;
+            }
+
+            try {
+                Class clazz = getSafeClassLoader().loadClass(className);
+                // collections are still parsed, since their elements may have to be converted
+                return Collection.class.isAssignableFrom(clazz) ? null : clazz;
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The <code>KeysetCursor</code> class encodes and decodes the cursors used by keyset pagination. A cursor
+ * contains the values of the ordering fields of the last record of a page. For the client it is an opaque string.
+ */
+final class KeysetCursor {
+
+    private static final String UTF_8 = StandardCharsets.UTF_8.name();
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Builds the cursor pointing at the given instance.
+     *
+     * @param orderList the keyset order of the query
+     * @param instance the instance, not null
+     * @return the cursor
+     */
+    static String encode(List<Order> orderList, Object instance) {
+        if (instance == null) {
+            throw new IllegalArgumentException("Cannot build a cursor for a null instance");
+        }
+
+        List<String> entries = new ArrayList<>(orderList.size());
+
+        for (Order order : orderList) {
+            Object value = PropertyUtil.safeGetProperty(instance, order.getField());
+            String entry = encode(order.getField());
+
+            if (value != null) {
+                entry += "=" + encode(format(value));
+            }
+
+            entries.add(entry);
+        }
+
+        byte[] bytes = StringUtils.join(entries, '&').getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Returns the values from the given cursor, converted to the types of the ordering fields.
+     *
+     * @param cursor the cursor, not blank
+     * @param orderList the keyset order of the query
+     * @param types the class names of the ordering fields, in the order of the keyset order
+     * @return the values of the ordering fields, nulls included
+     * @throws IllegalArgumentException if the cursor is invalid or was not built for the given order
+     */
+    static List<Object> decode(String cursor, List<Order> orderList, List<String> types) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        String[] entries = StringUtils.splitPreserveAllTokens(decoded, '&');
+        if (entries.length != orderList.size()) {
+            throw new IllegalArgumentException("The cursor " + cursor + " does not match the order of the query");
+        }
+
+        List<Object> values = new ArrayList<>(entries.length);
+
+        for (int i = 0; i < entries.length; ++i) {
+            String field = decode(StringUtils.substringBefore(entries[i], "="));
+
+            if (!StringUtils.equals(field, orderList.get(i).getField())) {
+                throw new IllegalArgumentException("The cursor " + cursor + " does not match the order of the query");
+            }
+
+            values.add(entries[i].contains("=") ? parse(decode(StringUtils.substringAfter(entries[i], "=")), types.get(i)) : null);
+        }
+
+        return values;
+    }
+
+    private static String format(Object value) {
+        // dates are compared as instants, the time zone is irrelevant
+        if (value instanceof DateTime) {
+            return String.valueOf(((DateTime) value).getMillis());
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            return ((Enum) value).name();
+        } else {
+            return value.toString();
+        }
+    }
+
+    private static Object parse(String value, String type) {
+        try {
+            if (DateTime.class.getName().equals(type)) {
+                return new DateTime(Long.parseLong(value));
+            } else if (Date.class.getName().equals(type)) {
+                return new Date(Long.parseLong(value));
+            } else {
+                return TypeHelper.parseString(value, type);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value " + value + " for type " + type, e);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
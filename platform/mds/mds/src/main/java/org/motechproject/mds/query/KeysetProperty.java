@@ -0,0 +1,163 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>KeysetProperty</code> class represents the condition of keyset pagination in a JDO query: only the records
+ * which come after the record from the cursor, in the keyset order, are retrieved. For the order
+ * {@code a ascending, id ascending} the condition is {@code a > :a || (a == :a && id > :id)}.
+ * <p>
+ * Null values come before any other value in the ascending order. Databases differ in where they sort nulls
+ * (PostgreSQL puts them last in the ascending order, MySQL first), so the queries using keyset pagination have to be
+ * ordered with {@link #ordering(List)}, which states the place of the nulls explicitly.
+ */
+public class KeysetProperty extends Property<List<Object>> {
+
+    private final List<Order> orderList;
+    private final List<String> types;
+
+    /**
+     * Creates the condition for the given query parameters.
+     *
+     * @param queryParams query parameters using keyset pagination, with a cursor
+     * @param fieldTypeMap the class names of the entity fields, by their names
+     * @return the condition
+     * @throws IllegalArgumentException if the cursor is invalid or the records are ordered by an unknown field
+     */
+    public static KeysetProperty forCursor(QueryParams queryParams, Map<String, String> fieldTypeMap) {
+        List<Order> orderList = queryParams.getKeysetOrderList();
+        List<String> types = new ArrayList<>(orderList.size());
+
+        for (Order order : orderList) {
+            String type = (fieldTypeMap == null) ? null : fieldTypeMap.get(order.getField());
+
+            if (type == null && Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                type = Long.class.getName();
+            } else if (type == null) {
+                throw new IllegalArgumentException("Keyset pagination is not supported for the order on " + order.getField());
+            }
+
+            types.add(type);
+        }
+
+        List<Object> values = KeysetCursor.decode(queryParams.getCursor(), orderList, types);
+
+        return new KeysetProperty(orderList, types, values);
+    }
+
+    /**
+     * Builds the JDOQL ordering of a query using keyset pagination. The nulls are put first in the ascending order
+     * and last in the descending order, as expected by the condition. The id is never null, so it is ordered as it is.
+     *
+     * @param orderList the order used by keyset pagination
+     * @return the ordering of the query
+     */
+    public static String ordering(List<Order> orderList) {
+        List<String> orderings = new ArrayList<>(orderList.size());
+
+        for (Order order : orderList) {
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                orderings.add(order.toString());
+            } else if (order.getDirection() == Order.Direction.ASC) {
+                orderings.add(order + " NULLS FIRST");
+            } else {
+                orderings.add(order + " NULLS LAST");
+            }
+        }
+
+        return StringUtils.join(orderings, ", ");
+    }
+
+    public KeysetProperty(List<Order> orderList, List<String> types, List<Object> values) {
+        super(Constants.Util.ID_FIELD_NAME, values, Long.class.getName());
+        this.orderList = orderList;
+        this.types = types;
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        List<String> alternatives = new ArrayList<>(orderList.size());
+
+        for (int i = 0; i < orderList.size(); ++i) {
+            CharSequence comparison = comparison(idx, i);
+            if (comparison == null) {
+                // nothing comes after a null value in the descending order
+                continue;
+            }
+
+            List<CharSequence> conditions = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; ++j) {
+                conditions.add(equality(idx, j));
+            }
+            conditions.add(comparison);
+
+            alternatives.add(StringUtils.join(conditions, " && "));
+        }
+
+        return String.format("((%s))", StringUtils.join(alternatives, ") || ("));
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        List<String> declarations = new ArrayList<>();
+
+        for (int i = 0; i < orderList.size(); ++i) {
+            if (getValue().get(i) != null) {
+                declarations.add(String.format("%s %s", types.get(i), paramName(idx, i)));
+            }
+        }
+
+        return StringUtils.join(declarations, ", ");
+    }
+
+    @Override
+    public Collection unwrap() {
+        if (shouldIgnoreThisProperty()) {
+            return null;
+        }
+
+        List<Object> values = new ArrayList<>();
+
+        for (Object value : getValue()) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    protected boolean shouldIgnoreThisProperty() {
+        return getValue() == null;
+    }
+
+    private CharSequence equality(int idx, int i) {
+        String field = orderList.get(i).getField();
+        return getValue().get(i) == null ? field + " == null" : String.format("%s == %s", field, paramName(idx, i));
+    }
+
+    private CharSequence comparison(int idx, int i) {
+        String field = orderList.get(i).getField();
+        boolean ascending = orderList.get(i).getDirection() == Order.Direction.ASC;
+
+        if (getValue().get(i) == null) {
+            return ascending ? field + " != null" : null;
+        } else if (ascending) {
+            return String.format("%s > %s", field, paramName(idx, i));
+        } else {
+            return String.format("(%s < %s || %s == null)", field, paramName(idx, i), field);
+        }
+    }
+
+    private String paramName(int idx, int i) {
+        return String.format("param%d_%d", idx, i);
+    }
+}
@@ -0,0 +1,326 @@
+package org.motechproject.mds.query;
+
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>LookupCache</code> caches the results of the lookups of a single entity. The results are identified by
+ * the lookup properties and query parameters, see {@link #key(String, List, QueryParams)}. The cache holds at most
+ * the given number of results, the least recently used ones are evicted first, and the results expire after the
+ * given number of seconds.
+ * <p>
+ * The data services invalidate the caches when their instances are created, updated or deleted. For the deletes only
+ * the results containing the deleted instances are invalidated. Since the lookups can use the fields of related
+ * entities, the changes of an entity also invalidate the caches of the entities related with it, see
+ * {@link #invalidate(String, Collection)}. Once the changes are committed, an event with the
+ * {@link #INVALIDATE_TOPIC} subject is broadcast, so that the other instances invalidate their caches as well, see
+ * {@link #createInvalidationParams(String, Collection)}. Changes made with executeQuery/executeSQLQuery are not tracked.
+ */
+public class LookupCache {
+
+    /**
+     * Returned by {@link #get(Object)} if there is no valid result for the given key.
+     */
+    public static final Object MISS = new Object();
+
+    /**
+     * The subject of the broadcast events invalidating the caches of an entity on all instances. It is also used
+     * as the OSGi topic under which the events are received.
+     */
+    public static final String INVALIDATE_TOPIC = "org_motechproject_mds_lookup_cache_invalidate";
+
+    public static final String CLASS_NAME_PARAM = "entity_class";
+    public static final String DELETED_IDS_PARAM = "deleted_ids";
+    public static final String ORIGIN_PARAM = "origin";
+
+    /**
+     * Identifies the events sent by this instance, which already invalidated its caches.
+     */
+    private static final String ORIGIN = UUID.randomUUID().toString();
+
+    private static final ConcurrentMap<String, LookupCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private final String className;
+    private final Set<String> relatedClassNames;
+    private final int maxSize;
+    private final int timeToLive;
+    private final Map<Object, CachedResult> results;
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache for the lookups of the given entity.
+     *
+     * @param className the class name of the entity
+     * @param relatedClassNames the class names of the related entities, their changes invalidate the cache
+     * @param maxSize the maximal number of cached results
+     * @param timeToLive the number of seconds after which the cached results expire
+     */
+    public LookupCache(String className, Collection<String> relatedClassNames, int maxSize, int timeToLive) {
+        this.className = className;
+        this.relatedClassNames = new HashSet<>(relatedClassNames);
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.results = new LinkedHashMap<Object, CachedResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2418536441325493527L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest) {
+                boolean remove = size() > LookupCache.this.maxSize;
+                if (remove) {
+                    ++evictions;
+                }
+                return remove;
+            }
+        };
+    }
+
+    /**
+     * Registers the given cache, so that it is invalidated by the changes of the related entities. The cache
+     * registered previously for the same entity is replaced.
+     *
+     * @param cache the cache to register
+     */
+    public static void register(LookupCache cache) {
+        CACHES.put(cache.getClassName(), cache);
+    }
+
+    /**
+     * Unregisters the given cache, if it is still registered.
+     *
+     * @param cache the cache to unregister
+     */
+    public static void unregister(LookupCache cache) {
+        CACHES.remove(cache.getClassName(), cache);
+    }
+
+    /**
+     * Invalidates the cache of the given entity and the caches of the entities related with it.
+     *
+     * @param className the class name of the changed entity
+     * @param deletedIds the ids of the deleted instances, if null (the instances were created or updated)
+     *                   all results are invalidated
+     */
+    public static void invalidate(String className, Collection<Long> deletedIds) {
+        LookupCache cache = CACHES.get(className);
+        if (null != cache) {
+            cache.invalidate(deletedIds);
+        }
+
+        for (LookupCache dependent : CACHES.values()) {
+            if (dependent.relatedClassNames.contains(className)) {
+                dependent.invalidate(null);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the changes of the given entity invalidate any cache, either its own or the cache of a related
+     * entity. The instances share their settings, so if they do not invalidate any cache on this instance, there is
+     * no need to notify the other instances about them.
+     *
+     * @param className the class name of the entity
+     * @return true if the changes of the entity invalidate a cache
+     */
+    public static boolean isTracked(String className) {
+        if (CACHES.containsKey(className)) {
+            return true;
+        }
+
+        for (LookupCache cache : CACHES.values()) {
+            if (cache.relatedClassNames.contains(className)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds the parameters of the {@link #INVALIDATE_TOPIC} event notifying the other instances about the changes
+     * of the given entity.
+     *
+     * @param className the class name of the changed entity
+     * @param deletedIds the ids of the deleted instances, null if the instances were created or updated
+     * @return the parameters of the event
+     */
+    public static Map<String, Object> createInvalidationParams(String className, Collection<Long> deletedIds) {
+        Map<String, Object> params = new HashMap<>();
+
+        params.put(CLASS_NAME_PARAM, className);
+        params.put(ORIGIN_PARAM, ORIGIN);
+        if (null != deletedIds) {
+            params.put(DELETED_IDS_PARAM, new ArrayList<>(deletedIds));
+        }
+
+        return params;
+    }
+
+    /**
+     * Invalidates the caches affected by the changes described by the parameters of an {@link #INVALIDATE_TOPIC}
+     * event. The events sent by this instance are ignored, since it invalidated its caches when the changes were made.
+     *
+     * @param className the class name of the changed entity
+     * @param deletedIds the ids of the deleted instances, null if the instances were created or updated
+     * @param origin the identifier of the instance which sent the event
+     */
+    public static void handleInvalidation(String className, Collection<Long> deletedIds, String origin) {
+        if (!ORIGIN.equals(origin) && null != className) {
+            invalidate(className, deletedIds);
+        }
+    }
+
+    /**
+     * Builds the key identifying the result of a lookup.
+     *
+     * @param operation the name of the operation, the results of the same lookup retrieving and counting instances
+     *                  have different keys
+     * @param properties the properties of the lookup
+     * @param queryParams the query parameters, can be null
+     * @return the key of the result
+     */
+    public static Object key(String operation, List<Property> properties, QueryParams queryParams) {
+        List<Object> key = new ArrayList<>();
+
+        key.add(operation);
+
+        for (Property property : properties) {
+            key.add(Arrays.asList(property.getClass().getName(), property.getName(), property.getType(),
+                    property.getJdoVariableName(), property.getValue()));
+        }
+
+        if (null != queryParams) {
+            List<String> orders = new ArrayList<>();
+            for (Order order : queryParams.getOrderList()) {
+                orders.add(order.toString());
+            }
+
+            key.add(Arrays.asList(queryParams.getPage(), queryParams.getPageSize(), orders, queryParams.isKeyset(),
+                    queryParams.getCursor(), queryParams.getProjection()));
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the cached result for the given key.
+     *
+     * @param key the key of the result
+     * @return the cached result, or {@link #MISS} if there is no valid result
+     */
+    public synchronized Object get(Object key) {
+        CachedResult result = results.get(key);
+
+        if (null != result && result.isExpired(now())) {
+            results.remove(key);
+            result = null;
+        }
+
+        if (null == result) {
+            ++misses;
+            return MISS;
+        }
+
+        ++hits;
+        return result.value;
+    }
+
+    /**
+     * Returns the current generation of the cache, which changes with every invalidation. It should be read before
+     * executing the lookup which result will be cached.
+     *
+     * @return the generation of the cache
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the result of a lookup. The result is not cached if the cache was invalidated since the given
+     * generation, since the lookup could read the instances before they were changed.
+     *
+     * @param key the key of the result
+     * @param value the result
+     * @param ids the ids of the instances in the result, null if the result does not contain instances
+     * @param expectedGeneration the generation of the cache read before executing the lookup
+     */
+    public synchronized void put(Object key, Object value, Collection<Long> ids, long expectedGeneration) {
+        if (expectedGeneration == generation && maxSize > 0) {
+            results.put(key, new CachedResult(value, ids, now() + timeToLive * MILLIS_PER_SECOND));
+        }
+    }
+
+    /**
+     * Invalidates the cached results affected by the change of the instances.
+     *
+     * @param deletedIds the ids of the deleted instances, if null (the instances were created or updated)
+     *                   all results are invalidated
+     */
+    public synchronized void invalidate(Collection<Long> deletedIds) {
+        ++generation;
+        ++invalidations;
+
+        if (null == deletedIds) {
+            results.clear();
+        } else {
+            Iterator<CachedResult> it = results.values().iterator();
+            while (it.hasNext()) {
+                CachedResult result = it.next();
+                // counts are always invalidated
+                if (null == result.ids || !Collections.disjoint(result.ids, deletedIds)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized LookupCacheStatisticsDto getStatistics() {
+        return new LookupCacheStatisticsDto(true, results.size(), maxSize, timeToLive, hits, misses, evictions,
+                invalidations);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final Set<Long> ids;
+        private final long expirationTime;
+
+        private CachedResult(Object value, Collection<Long> ids, long expirationTime) {
+            this.value = value;
+            this.ids = null == ids ? null : new HashSet<>(ids);
+            this.expirationTime = expirationTime;
+        }
+
+        private boolean isExpired(long time) {
+            return time >= expirationTime;
+        }
+    }
+}
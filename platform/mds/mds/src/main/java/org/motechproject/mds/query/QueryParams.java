@@ -6,11 +6,24 @@ import org.motechproject.mds.util.Order;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Utility class containing parameters which control order and size of query results.
  * Used mainly for paging/ordering queries from the UI.
+ * <p>
+ * Query parameters created with {@link #keyset(Integer, List, String)} use keyset pagination: instead of skipping
+ * the records of the previous pages, the query returns the records that follow the record identified by the cursor,
+ * so retrieving a deep page costs the same as retrieving the first one. Keyset pagination is supported when
+ * retrieving all instances and by lookups. The records are always ordered by their id last, so that the order
+ * is total.
+ * <p>
+ * Query parameters created with {@link #withProjection(Collection)} retrieve only the given fields. The query selects
+ * the fields in its result clause and the data service returns new, transient instances with only these fields,
+ * the id and the fields used by keyset pagination set. Such instances are meant for reading and must not be
+ * updated through the data service.
  */
 public class QueryParams implements Serializable {
     private static final long serialVersionUID = 8635166802886633897L;
@@ -18,6 +31,9 @@ public class QueryParams implements Serializable {
     private final Integer page;
     private final Integer pageSize;
     private final List<Order> orderList;
+    private final boolean keyset;
+    private final String cursor;
+    private final List<String> projection;
 
     /**
      * Constant query parameter, that orders records ascending by ID.
@@ -66,6 +82,9 @@ public class QueryParams implements Serializable {
         if (order != null) {
             orderList.add(order);
         }
+        this.keyset = false;
+        this.cursor = null;
+        this.projection = null;
     }
 
     /**
@@ -76,9 +95,17 @@ public class QueryParams implements Serializable {
      * @param orderList the list of order instructions that will be applied to the query
      */
     public QueryParams(Integer page, Integer pageSize, List<Order> orderList) {
+        this(page, pageSize, orderList, false, null, null);
+    }
+
+    private QueryParams(Integer page, Integer pageSize, List<Order> orderList, boolean keyset, String cursor,
+                        List<String> projection) {
         this.page = page;
         this.pageSize = pageSize;
         this.orderList = (orderList == null) ? new ArrayList<Order>() : orderList;
+        this.keyset = keyset;
+        this.cursor = cursor;
+        this.projection = projection;
     }
 
     public Integer getPage() {
@@ -101,6 +128,92 @@ public class QueryParams implements Serializable {
         return page != null && pageSize != null;
     }
 
+    /**
+     * @return true if these parameters use keyset pagination, false otherwise
+     */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /**
+     * Returns the cursor after which the records should be retrieved. The cursor is only used
+     * with keyset pagination and is null for the first page.
+     *
+     * @return the cursor, as returned by {@link #cursorAfter(Object)}
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return true if these parameters use keyset pagination and a cursor was given, false otherwise
+     */
+    public boolean isCursorSet() {
+        return keyset && StringUtils.isNotBlank(cursor);
+    }
+
+    /**
+     * Returns the names of the fields retrieved by the query.
+     *
+     * @return the projected fields, or null if whole instances are retrieved
+     */
+    public List<String> getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return true if only the projected fields are retrieved, false otherwise
+     */
+    public boolean isProjectionSet() {
+        return projection != null && !projection.isEmpty();
+    }
+
+    /**
+     * Returns query parameters equal to these ones, which retrieve only the given fields.
+     *
+     * @param fields the names of the fields to retrieve, null or empty to retrieve whole instances
+     * @return the query parameters with the projection
+     */
+    public QueryParams withProjection(Collection<String> fields) {
+        List<String> fieldList = (fields == null) ? null : Collections.unmodifiableList(new ArrayList<>(fields));
+        return new QueryParams(page, pageSize, orderList, keyset, cursor, fieldList);
+    }
+
+    /**
+     * Returns the order used by keyset pagination, which is the order of these parameters followed by the ascending
+     * order by the id, unless these parameters already order the records by the id.
+     *
+     * @return the order list used by keyset pagination
+     */
+    public List<Order> getKeysetOrderList() {
+        List<Order> keysetOrderList = new ArrayList<>(orderList);
+        if (!containsOrderOnField(Constants.Util.ID_FIELD_NAME)) {
+            keysetOrderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+        return keysetOrderList;
+    }
+
+    /**
+     * Builds the cursor pointing at the given instance, which can be used to retrieve the page that follows
+     * the instance with keyset pagination.
+     *
+     * @param instance the last instance of a page
+     * @return the cursor for the next page
+     */
+    public String cursorAfter(Object instance) {
+        return KeysetCursor.encode(getKeysetOrderList(), instance);
+    }
+
+    /**
+     * Returns query parameters for the page that follows the given instance, with the same order and page size.
+     *
+     * @param instance the last instance of a page
+     * @return query parameters for the next page, using keyset pagination
+     */
+    public QueryParams nextKeysetPage(Object instance) {
+        return new QueryParams(1, pageSize, orderList, true, cursorAfter(instance), projection);
+    }
+
     public void addOrder(Order order) {
         orderList.add(order);
     }
@@ -114,6 +227,18 @@ public class QueryParams implements Serializable {
         return false;
     }
 
+    /**
+     * Creates query parameters which use keyset pagination.
+     *
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @param cursor the cursor of the last record of the previous page, or null for the first page
+     * @return query parameters using keyset pagination
+     */
+    public static QueryParams keyset(Integer pageSize, List<Order> orderList, String cursor) {
+        return new QueryParams(1, pageSize, orderList, true, cursor, null);
+    }
+
     /**
       * Creates query parameter that sorts records ascending, by the given field.
       *
@@ -3,11 +3,14 @@ package org.motechproject.mds.query;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -42,11 +45,39 @@ public final class QueryUtil {
 
                 query.setRange(fromIncl, toExcl);
             }
-            if (queryParams.isOrderSet()) {
+            if (queryParams.isKeyset()) {
+                // the keyset order is total, the records are compared with the cursor in this order
+                query.setOrdering(KeysetProperty.ordering(queryParams.getKeysetOrderList()));
+            } else if (queryParams.isOrderSet()) {
                 String order = StringUtils.join(queryParams.getOrderList(), ", ");
                 query.setOrdering(order);
             }
+            if (queryParams.isProjectionSet()) {
+                query.setResult(StringUtils.join(getProjectedFields(queryParams), ", "));
+            }
+        }
+    }
+
+    /**
+     * Returns the fields selected by a query using the given parameters. These are the id, the projected fields and
+     * the fields used by keyset pagination, so that a cursor can be built from the results.
+     *
+     * @param queryParams the query parameters with a projection
+     * @return the names of the selected fields, in the order of the result clause
+     */
+    public static List<String> getProjectedFields(QueryParams queryParams) {
+        Collection<String> fields = new LinkedHashSet<>();
+
+        fields.add(Constants.Util.ID_FIELD_NAME);
+        fields.addAll(queryParams.getProjection());
+
+        if (queryParams.isKeyset()) {
+            for (Order order : queryParams.getKeysetOrderList()) {
+                fields.add(order.getField());
+            }
         }
+
+        return new ArrayList<>(fields);
     }
 
     public static void useFilters(Query query, Filters filters) {
@@ -66,6 +97,10 @@ public final class QueryUtil {
 
     public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
                                  InstanceSecurityRestriction restriction) {
+        useFilter(query, createProperties(properties, values, fieldTypeMap), restriction);
+    }
+
+    public static List<Property> createProperties(String[] properties, Object[] values, Map<String, String> fieldTypeMap) {
         if (properties.length != values.length) {
             throw new IllegalArgumentException("properties length must equal to values length");
         }
@@ -84,7 +119,7 @@ public final class QueryUtil {
             }
         }
 
-        useFilter(query, list, restriction);
+        return list;
     }
 
     public static void useFilter(Query query, List<Property> properties) {
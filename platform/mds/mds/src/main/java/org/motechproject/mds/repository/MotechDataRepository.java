@@ -1,11 +1,16 @@
 package org.motechproject.mds.repository;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.KeysetProperty;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.motechproject.mds.util.PropertyUtil;
 import org.springframework.stereotype.Repository;
 
@@ -22,6 +27,9 @@ import java.util.Map;
  * <p/>
  * This class is also used as super class to create a repository related with the given entity
  * schema in {@link org.motechproject.mds.builder.EntityInfrastructureBuilder}.
+ * <p/>
+ * If the query parameters contain a projection, the retrieve methods return transient instances with only
+ * the selected fields set, see {@link QueryParams#withProjection(Collection)}.
  *
  * @param <T> the type of class
  */
@@ -87,6 +95,17 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> retrieveAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Query query = getPersistenceManager().newQuery(classType, ":ids.contains(" + Constants.Util.ID_FIELD_NAME + ")");
+        Collection collection = (Collection) query.execute(ids);
+
+        return new ArrayList<T>(collection);
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -112,20 +131,32 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
 
     public List<T> retrieveAll(String[] properties, Object[] values, QueryParams queryParams,
                                InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, values, restriction);
+        Query query;
+        Object[] queryValues;
+
+        if (queryParams != null && queryParams.isCursorSet()) {
+            // the keyset condition follows the other properties, its values are unwrapped from the property
+            KeysetProperty keysetProperty = KeysetProperty.forCursor(queryParams, fieldTypeMap);
+
+            List<Property> list = QueryUtil.createProperties(properties, values, fieldTypeMap);
+            list.add(keysetProperty);
+
+            query = createQuery(list, restriction);
+            queryValues = ArrayUtils.add(values, keysetProperty);
+        } else {
+            query = createQuery(properties, values, restriction);
+            queryValues = values;
+        }
+
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, values, restriction);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryValues, restriction);
 
-        return new ArrayList<T>(collection);
+        return asList(collection, queryParams);
     }
 
     public List<T> retrieveAll(QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(new String[0], new Object[0], restriction);
-        QueryUtil.setQueryParams(query, queryParams);
-        Collection collection = (Collection) QueryExecutor.execute(query, restriction);
-
-        return new ArrayList<T>(collection);
+        return retrieveAll(new String[0], new Object[0], queryParams, restriction);
     }
 
     public T retrieve(String property, Object value) {
@@ -163,6 +194,14 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
+    public void flush() {
+        getPersistenceManager().flush();
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -196,7 +235,7 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
 
         Collection collection = (Collection) QueryExecutor.executeWithFilters(query, filters, restriction);
 
-        return new ArrayList<T>(collection);
+        return asList(collection, queryParams);
     }
 
     public long countForFilters(Filters filters, InstanceSecurityRestriction restriction) {
@@ -237,12 +276,19 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> retrieveAll(List<Property> properties, QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, restriction);
+        List<Property> queryProperties = properties;
+
+        if (queryParams != null && queryParams.isCursorSet()) {
+            queryProperties = new ArrayList<>(properties);
+            queryProperties.add(KeysetProperty.forCursor(queryParams, fieldTypeMap));
+        }
+
+        Query query = createQuery(queryProperties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryProperties);
 
-        return new ArrayList<T>(collection);
+        return asList(collection, queryParams);
     }
 
     public T retrieveUnique(List<Property> properties, InstanceSecurityRestriction restriction) {
@@ -258,4 +304,46 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
 
         return (long) QueryExecutor.executeWithArray(query, properties);
     }
+
+    private List<T> asList(Collection collection, QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isProjectionSet()) {
+            return new ArrayList<T>(collection);
+        }
+
+        // the query returned the values of the selected fields, in the order of the result clause
+        List<String> fields = QueryUtil.getProjectedFields(queryParams);
+        PropertyAccessor accessor = PropertyAccessors.forClass(classType, getClass().getClassLoader());
+
+        int[] indexes = new int[fields.size()];
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = accessor.indexOf(fields.get(i));
+            if (indexes[i] < 0) {
+                throw new IllegalArgumentException("Cannot project the field " + fields.get(i) + " of "
+                        + classType.getName());
+            }
+        }
+
+        List<T> instances = new ArrayList<>(collection.size());
+
+        for (Object row : collection) {
+            Object[] values = indexes.length == 1 ? new Object[]{row} : (Object[]) row;
+            T instance = newInstance();
+
+            for (int i = 0; i < indexes.length; ++i) {
+                accessor.set(instance, indexes[i], values[i]);
+            }
+
+            instances.add(instance);
+        }
+
+        return instances;
+    }
+
+    private T newInstance() {
+        try {
+            return classType.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create an instance of " + classType.getName(), e);
+        }
+    }
 }
@@ -27,6 +27,20 @@ public interface MdsRestFacade<T> {
      */
     RestResponse get(QueryParams queryParams, boolean includeBlob);
 
+    /**
+     * Prepares a response with the entity instances for REST, which is written as JSON to a stream. The response
+     * contains the same data as the one returned by {@link #get(QueryParams, boolean)}, but the instances are
+     * retrieved in small chunks, each in its own transaction, and written as they are retrieved, so the memory
+     * used does not depend on the page size. The metadata is written after the data, since the cursor of the
+     * next page is known only after the last instance is written. The errors of the request are reported by this
+     * method, before anything is written.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @return the response, to be written to the stream
+     */
+    StreamedRestResponse stream(QueryParams queryParams, boolean includeBlob);
+
     /**
      * Retrieves a single instance for REST. This will only include fields that are visible for REST.
      * It throws {@link org.motechproject.mds.ex.rest.RestOperationNotSupportedException} if the entity settings
@@ -84,4 +98,20 @@ public interface MdsRestFacade<T> {
      * @return lookup result, that can be either a single instance or a collection of instances. Response contains also metadata.
      */
     Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob);
+
+    /**
+     * Prepares the response of a lookup for REST, which is written as JSON to a stream. The results of lookups
+     * returning collections are streamed like in {@link #stream(QueryParams, boolean)}, lookups returning
+     * a single instance write the same response as {@link #executeLookup(String, Map, QueryParams, boolean)}.
+     * The lookup is resolved and its parameters parsed by this method, before anything is written.
+     *
+     * @param lookupName name of the lookup
+     * @param lookupMap map containing field names and their respective values
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @return the response, to be written to the stream
+     * @throws RestLookupExecutionForbiddenException if the lookup is not exposed by REST
+     */
+    StreamedRestResponse streamLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams,
+                                      boolean includeBlob);
 }
@@ -1,6 +1,8 @@
 package org.motechproject.mds.rest;
 
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.module.SimpleModule;
@@ -25,11 +27,14 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -44,10 +49,18 @@ import java.util.Set;
  * retrieves REST related metadata on initialization. It uses an instance of
  * {@link org.motechproject.mds.service.MotechDataService} for operations and
  * the jackson JSON library for parsing InputStreams.
+ * The streamed responses are retrieved with keyset pagination in chunks of {@link #STREAM_CHUNK_SIZE} instances.
+ * If all non-blob fields exposed by REST can be projected, only these fields are retrieved, unless the blobs
+ * were requested.
  * @param <T>
  */
 public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
+    /**
+     * The number of instances retrieved at once when the response is streamed.
+     */
+    static final int STREAM_CHUNK_SIZE = 100;
+
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private MotechDataService<T> dataService;
@@ -63,6 +76,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private List<String> restFields;
     private List<String> blobFields;
+    private List<String> projectedFields;
 
     private RestOptionsDto restOptions;
 
@@ -88,6 +102,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         readLookups(entity);
         readFieldsExposedByRest(fieldMap);
         readBlobFieldsExposedByRest(fieldMap);
+        readProjectedFields(fieldMap);
     }
 
     @Override
@@ -96,15 +111,32 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         if (!restOptions.isRead()) {
             throw operationNotSupportedEx("READ");
         }
-        List<T> values = dataService.retrieveAll(queryParams);
+        List<T> values = dataService.retrieveAll(project(queryParams, includeBlob));
         if (includeBlob) {
             for (T value : values) {
                 getBlobs(value);
             }
         }
 
-        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(), queryParams,
-                RestProjection.createProjectionCollection(values, restFields, blobFields));
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(),
+                queryParams, RestProjection.createProjectionCollection(values, restFields, blobFields));
+        setNextCursor(response, queryParams, values);
+
+        return response;
+    }
+
+    @Override
+    public StreamedRestResponse stream(QueryParams queryParams, boolean includeBlob) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        return prepareStream(dataService.count(), queryParams, includeBlob, new ChunkRetriever<T>() {
+            @Override
+            public List<T> retrieve(QueryParams chunkParams) {
+                return dataService.retrieveAll(chunkParams);
+            }
+        });
     }
 
     @Override
@@ -181,15 +213,19 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
     public Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob) {
         if (lookupExecutors.containsKey(lookupName)) {
             LookupExecutor executor = lookupExecutors.get(lookupName);
-            Object result = executor.execute(lookupMap, queryParams);
+            Object result = executor.execute(lookupMap, project(queryParams, includeBlob));
             if (result instanceof Collection) {
                 if (includeBlob) {
                     for (T value : ((Collection<T>) result)) {
                         getBlobs(value);
                     }
                 }
-                return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, executor.executeCount(lookupMap),
-                        queryParams, RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                        executor.executeCount(lookupMap), queryParams,
+                        RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                setNextCursor(response, queryParams, (Collection) result);
+
+                return response;
             } else {
                 if (result == null) {
                     throw new RestNoLookupResultException("No result for lookup:" + lookupName);
@@ -207,6 +243,155 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    @Override
+    public StreamedRestResponse streamLookup(String lookupName, final Map<String, String> lookupMap,
+                                             QueryParams queryParams, boolean includeBlob) {
+        final LookupExecutor executor = lookupExecutors.get(lookupName);
+
+        if (executor == null || executor.getLookup().isSingleObjectReturn()) {
+            // there is nothing to stream, the lookup is executed and its errors are reported right away
+            final Object response = executeLookup(lookupName, lookupMap, queryParams, includeBlob);
+
+            return new StreamedRestResponse() {
+                @Override
+                public void writeTo(OutputStream output) throws IOException {
+                    JsonGenerator generator = OBJECT_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+                    // writing through the generator leaves the stream open
+                    OBJECT_MAPPER.writeValue(generator, response);
+                    generator.flush();
+                }
+            };
+        }
+
+        // the count parses the parameters of the lookup
+        return prepareStream(executor.executeCount(lookupMap), queryParams, includeBlob, new ChunkRetriever<T>() {
+            @Override
+            public List<T> retrieve(QueryParams chunkParams) {
+                return new ArrayList<>((Collection<T>) executor.execute(lookupMap, chunkParams));
+            }
+        });
+    }
+
+    private StreamedRestResponse prepareStream(final long totalCount, final QueryParams queryParams,
+                                               final boolean includeBlob, final ChunkRetriever<T> retriever) {
+        final String startCursor;
+        final boolean empty;
+
+        if (queryParams.isKeyset()) {
+            startCursor = queryParams.getCursor();
+            empty = false;
+        } else if (queryParams.getPage() != null && queryParams.getPage() > 1 && queryParams.getPageSize() != null) {
+            // the page is retrieved with keyset pagination too, starting after the last instance of the previous page
+            startCursor = getPreviousPageCursor(queryParams, includeBlob, retriever);
+            empty = startCursor == null;
+        } else {
+            startCursor = null;
+            empty = false;
+        }
+
+        return new StreamedRestResponse() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                writeStream(output, totalCount, queryParams, includeBlob, startCursor, empty, retriever);
+            }
+        };
+    }
+
+    private void writeStream(OutputStream output, long totalCount, QueryParams queryParams, boolean includeBlob,
+                             String startCursor, boolean empty, ChunkRetriever<T> retriever) throws IOException {
+        JsonGenerator generator = OBJECT_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("data");
+
+        int remaining = queryParams.getPageSize() == null ? Integer.MAX_VALUE : queryParams.getPageSize();
+        if (empty) {
+            // the requested page is after the last instance
+            remaining = 0;
+        }
+        int written = 0;
+        String cursor = startCursor;
+
+        while (remaining > 0) {
+            int chunkSize = Math.min(remaining, STREAM_CHUNK_SIZE);
+            QueryParams chunkParams = project(QueryParams.keyset(chunkSize, queryParams.getOrderList(), cursor),
+                    includeBlob);
+
+            StreamedChunk chunk = dataService.doInTransaction(
+                    new StreamChunkCallback(generator, retriever, queryParams, chunkParams, includeBlob));
+
+            written += chunk.getSize();
+            remaining -= chunk.getSize();
+
+            if (chunk.getNextCursor() != null) {
+                cursor = chunk.getNextCursor();
+            }
+
+            // a chunk which is not full is the last one
+            if (chunk.getSize() < chunkSize) {
+                break;
+            }
+        }
+
+        generator.writeEndArray();
+
+        RestMetadata metadata = new RestMetadata(entityName, entityClass.getName(), moduleName, namespace, totalCount,
+                queryParams);
+        if (queryParams.isKeyset() && queryParams.getPageSize() != null && written > 0
+                && written >= queryParams.getPageSize()) {
+            metadata.setNextCursor(cursor);
+        }
+
+        generator.writeFieldName("metadata");
+        generator.writeObject(metadata);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private String getPreviousPageCursor(final QueryParams queryParams, boolean includeBlob,
+                                         final ChunkRetriever<T> retriever) {
+        // the last instance of the previous page
+        final QueryParams previousParams = project(new QueryParams((queryParams.getPage() - 1) * queryParams.getPageSize(),
+                1, queryParams.getKeysetOrderList()), includeBlob);
+
+        return dataService.doInTransaction(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                List<T> previous = retriever.retrieve(previousParams);
+                return previous.isEmpty() ? null : queryParams.cursorAfter(previous.get(0));
+            }
+        });
+    }
+
+    private void writeProjection(JsonGenerator generator, T instance) throws IOException {
+        generator.writeStartObject();
+        for (String field : restFields) {
+            generator.writeFieldName(field);
+            generator.writeObject(RestProjection.getProjectedValue(instance, field, blobFields));
+        }
+        generator.writeEndObject();
+    }
+
+    private QueryParams project(QueryParams queryParams, boolean includeBlob) {
+        // the blobs are read from attached instances, so whole instances are retrieved when they are included
+        if (queryParams == null || includeBlob || projectedFields == null) {
+            return queryParams;
+        }
+        return queryParams.withProjection(projectedFields);
+    }
+
+    private void setNextCursor(RestResponse response, QueryParams queryParams, Collection values) {
+        // a page which is not full is the last one
+        if (queryParams.isKeyset() && queryParams.getPageSize() != null && !values.isEmpty()
+                && values.size() >= queryParams.getPageSize()) {
+            Object last = null;
+            for (Object value : values) {
+                last = value;
+            }
+            response.getMetadata().setNextCursor(queryParams.cursorAfter(last));
+        }
+    }
+
     private void getBlobs(T value) {
         for (String field : blobFields) {
             PropertyUtil.safeSetProperty(value, field, dataService.getDetachedField(value, field));
@@ -287,10 +472,95 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private void readProjectedFields(Map<String, FieldDto> fieldMap) {
+        projectedFields = new ArrayList<>(restFields.size());
+        for (String restField : restFields) {
+            FieldDto field = fieldMap.get(restField);
+            if (field.getType().isBlob()) {
+                continue;
+            } else if (!field.isProjectable()) {
+                // the instances are retrieved whole
+                projectedFields = null;
+                return;
+            }
+            projectedFields.add(restField);
+        }
+    }
+
     private Set<String> fieldsToUpdate() {
         // we don't want to be updating auto generated fields
         Set<String> fields = new HashSet<>(restFields);
         fields.removeAll(Arrays.asList(Constants.Util.GENERATED_FIELD_NAMES));
         return fields;
     }
+
+    /**
+     * Retrieves a single chunk of the streamed instances.
+     *
+     * @param <T> the entity class
+     */
+    private interface ChunkRetriever<T> {
+        List<T> retrieve(QueryParams chunkParams);
+    }
+
+    private static final class StreamedChunk {
+        private final int size;
+        private final String nextCursor;
+
+        private StreamedChunk(int size, String nextCursor) {
+            this.size = size;
+            this.nextCursor = nextCursor;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Retrieves and writes a single chunk, in its own transaction. The instances are released when the transaction
+     * ends, so only a single chunk is kept in memory.
+     */
+    private final class StreamChunkCallback implements TransactionCallback<StreamedChunk> {
+        private final JsonGenerator generator;
+        private final ChunkRetriever<T> retriever;
+        private final QueryParams queryParams;
+        private final QueryParams chunkParams;
+        private final boolean includeBlob;
+
+        private StreamChunkCallback(JsonGenerator generator, ChunkRetriever<T> retriever, QueryParams queryParams,
+                                    QueryParams chunkParams, boolean includeBlob) {
+            this.generator = generator;
+            this.retriever = retriever;
+            this.queryParams = queryParams;
+            this.chunkParams = chunkParams;
+            this.includeBlob = includeBlob;
+        }
+
+        @Override
+        public StreamedChunk doInTransaction(TransactionStatus status) {
+            List<T> instances = retriever.retrieve(chunkParams);
+            T last = null;
+
+            try {
+                for (T instance : instances) {
+                    if (includeBlob) {
+                        getBlobs(instance);
+                    }
+                    writeProjection(generator, instance);
+                    last = instance;
+                }
+                generator.flush();
+            } catch (IOException e) {
+                throw new RestInternalException("Unable to write the instances of " + entityClass.getName(), e);
+            }
+
+            // the cursor is built while the instance is still attached
+            return new StreamedChunk(instances.size(), last == null ? null : queryParams.cursorAfter(last));
+        }
+    }
 }
@@ -26,6 +26,8 @@ public class RestMetadata {
 
     private int pageSize;
 
+    private String nextCursor;
+
     /**
      * Default constructor.
      */
@@ -122,6 +124,21 @@ public class RestMetadata {
         this.totalCount = totalCount;
     }
 
+    /**
+     * @return the cursor which retrieves the next page with keyset pagination, null if keyset pagination
+     * was not used or there are no more pages
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor the cursor which retrieves the next page with keyset pagination
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     /**
      * @return the page number
      */
@@ -31,12 +31,26 @@ public class RestProjection extends LinkedHashMap<String, Object> {
     public static <T> RestProjection createProjection(T element, List<String> fields, List<String> blobFields) {
         RestProjection projection = new RestProjection();
         for (String field : fields) {
-            Object value = PropertyUtil.safeGetProperty(element, field);
-            if (blobFields.contains(field)) {
-                value = Base64.encodeBase64(ArrayUtils.toPrimitive((Byte[]) value));
-            }
-            projection.put(field, value);
+            projection.put(field, getProjectedValue(element, field, blobFields));
         }
         return projection;
     }
+
+    /**
+     * Returns the value of the given field, as it is included in the projection. The values of the blob fields
+     * are encoded in Base64.
+     *
+     * @param element the projected instance
+     * @param field the name of the field
+     * @param blobFields the names of the blob fields
+     * @param <T> the type of the instance
+     * @return the projected value of the field
+     */
+    public static <T> Object getProjectedValue(T element, String field, List<String> blobFields) {
+        Object value = PropertyUtil.safeGetProperty(element, field);
+        if (blobFields.contains(field)) {
+            value = Base64.encodeBase64(ArrayUtils.toPrimitive((Byte[]) value));
+        }
+        return value;
+    }
 }
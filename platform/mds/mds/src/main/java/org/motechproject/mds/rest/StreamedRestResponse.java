@@ -0,0 +1,23 @@
+package org.motechproject.mds.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The <code>StreamedRestResponse</code> represents a REST response which is written as JSON to a stream. It is
+ * prepared by the {@link org.motechproject.mds.rest.MdsRestFacade}, which validates the request and resolves the
+ * lookup when the response is prepared, so that the errors are reported before anything is written. The instances
+ * are retrieved while the response is written.
+ *
+ * @see org.motechproject.mds.rest.MdsRestFacade
+ */
+public interface StreamedRestResponse {
+
+    /**
+     * Writes the response as JSON to the given stream.
+     *
+     * @param output the stream to which the response is written, it is not closed
+     * @throws IOException if the response could not be written
+     */
+    void writeTo(OutputStream output) throws IOException;
+}
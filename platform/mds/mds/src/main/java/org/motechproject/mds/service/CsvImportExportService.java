@@ -1,6 +1,7 @@
 package org.motechproject.mds.service;
 
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.query.QueryParams;
 
 import java.io.OutputStream;
@@ -224,4 +225,33 @@ public interface CsvImportExportService {
      * @return IDs of instances updated/added during import
      */
     CsvImportResults importCsv(String entityClassName, Reader reader, String fileName, boolean continueOnError);
+
+    /**
+     * Import instances from a CSV file in chunks, each chunk committed in a separate transaction. The rows are
+     * converted to instances on a pool of worker threads and the related instances are retrieved for whole chunks.
+     * If the import is stopped because of an error, the chunks committed before it are not rolled back and the
+     * thrown {@link org.motechproject.mds.ex.csv.CsvImportInterruptedException} contains their results. Such an import
+     * can be resumed by skipping the committed rows.
+     * @param entityId id of the entity for which the instances will be imported
+     * @param reader the reader that will be used for reading the file contents
+     * @param fileName the name of the CSV file
+     * @param importCustomizer the customizer that will be used during import
+     * @param settings the chunk size, the number of worker threads, the rows to skip and the error handling mode
+     * @return IDs of instances updated/added during import
+     */
+    CsvImportResults importCsv(long entityId, Reader reader, String fileName, CsvImportCustomizer importCustomizer,
+                               CsvImportSettings settings);
+
+    /**
+     * Import instances from a CSV file in chunks, each chunk committed in a separate transaction.
+     * @param entityClassName class name of the entity for which the instances will be imported
+     * @param reader the reader that will be used for reading the file contents
+     * @param fileName the name of the CSV file
+     * @param importCustomizer the customizer that will be used during import
+     * @param settings the chunk size, the number of worker threads, the rows to skip and the error handling mode
+     * @return IDs of instances updated/added during import
+     * @see #importCsv(long, Reader, String, CsvImportCustomizer, CsvImportSettings)
+     */
+    CsvImportResults importCsv(String entityClassName, Reader reader, String fileName, CsvImportCustomizer importCustomizer,
+                               CsvImportSettings settings);
 }
@@ -1,8 +1,10 @@
 package org.motechproject.mds.service;
 
+import com.google.common.collect.Iterables;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.EntityType;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.entityinfo.FieldInfo;
@@ -14,6 +16,7 @@ import org.motechproject.mds.ex.object.ObjectNotFoundException;
 import org.motechproject.mds.ex.object.ObjectUpdateException;
 import org.motechproject.mds.ex.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.LookupCache;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
@@ -21,6 +24,8 @@ import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.mds.repository.MotechDataRepository;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.mds.util.StateManagerUtil;
@@ -40,16 +45,23 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jdo.JDOHelper;
 import javax.jdo.ObjectState;
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.lang.StringUtils.defaultIfBlank;
 import static org.motechproject.mds.event.CrudEventBuilder.buildEventParams;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
 import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
 import static org.motechproject.mds.event.CrudEventType.CREATE;
 import static org.motechproject.mds.event.CrudEventType.DELETE;
@@ -72,6 +84,11 @@ import static org.motechproject.mds.util.SecurityUtil.getUsername;
 @Service
 public abstract class DefaultMotechDataService<T> implements MotechDataService<T> {
 
+    /**
+     * The number of instances flushed at once by the bulk operations, if no chunk size was given.
+     */
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 500;
+
     private static final Logger MDS_LOGGER = LoggerFactory.getLogger(DefaultMotechDataService.class);
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -94,6 +111,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private String entityName;
     private String namespace;
     private String versionFieldName;
+    private LookupCache lookupCache;
 
     @PostConstruct
     public void init() {
@@ -113,24 +131,44 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         // we need the field types for handling lookups with null values
         Map<String, String> fieldTypeMap = new HashMap<>();
+        Set<String> relatedClassNames = new HashSet<>();
         for (FieldInfo field : entityInfo.getFieldsInfo()) {
             fieldTypeMap.put(field.getName(), field.getType());
             if (field.isVersionField()) {
                 versionFieldName = field.getName();
             }
+            if (field.getRelatedClass() != null) {
+                relatedClassNames.add(field.getRelatedClass());
+            }
         }
 
         repository.setFieldTypeMap(fieldTypeMap);
 
+        // the results of the lookups restricted by the owner or creator depend on the current user
+        if (entityInfo.isLookupCacheEnabled() && securityMode != SecurityMode.OWNER
+                && securityMode != SecurityMode.CREATOR) {
+            lookupCache = new LookupCache(getClassType().getName(), relatedClassNames,
+                    entityInfo.getLookupCacheSize(), entityInfo.getLookupCacheTimeToLive());
+            LookupCache.register(lookupCache);
+        }
+
         debug("{} ready", getClass().getName());
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (lookupCache != null) {
+            LookupCache.unregister(lookupCache);
+        }
+    }
+
     @Override
     @Transactional
     public T create(final T object) {
         validateCredentials();
 
         final T createdInstance = repository.create(object);
+        invalidateLookupCache(null);
 
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
             @Override
@@ -144,6 +182,40 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects) {
+        return createAll(objects, DEFAULT_BULK_CHUNK_SIZE);
+    }
+
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects, int chunkSize) {
+        validateCredentials();
+
+        List<T> created = new ArrayList<>(objects.size());
+
+        for (List<T> chunk : Iterables.partition(objects, chunkSize)) {
+            List<T> createdChunk = new ArrayList<>(chunk.size());
+
+            for (T object : chunk) {
+                createdChunk.add(repository.create(object));
+            }
+
+            // the inserts of the chunk (and of its history records) are sent in batches
+            repository.flush();
+            invalidateLookupCache(null);
+
+            if (allowCreateEvent) {
+                registerBulkEvent(getIds(createdChunk), CREATE);
+            }
+
+            created.addAll(createdChunk);
+        }
+
+        return created;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
@@ -177,6 +249,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
             updateModificationData(object);
             final T updatedInstance = repository.update(object);
+            invalidateLookupCache(null);
 
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
                 @Override
@@ -222,13 +295,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             // create will send the CRUD event
             result = create(transientObject);
         } else {
-            PropertyUtil.copyProperties(fromDbInstance, transientObject, null, fieldsToUpdate);
-
-            if (versionFieldName != null) {
-                StateManagerUtil.setTransactionVersion(fromDbInstance, versionFieldName);
-            }
-
-            updateModificationData(fromDbInstance);
+            copyFromTransient(fromDbInstance, transientObject, fieldsToUpdate);
+            invalidateLookupCache(null);
 
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
                 @Override
@@ -244,6 +312,89 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return result;
     }
 
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects) {
+        return updateAll(objects, DEFAULT_BULK_CHUNK_SIZE);
+    }
+
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects, int chunkSize) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        List<T> result = new ArrayList<>(objects.size());
+
+        for (List<T> chunk : Iterables.partition(objects, chunkSize)) {
+            // instances from the datastore are retrieved with one query for the whole chunk, the persistent
+            // instances already are the ones from the datastore, so they are not retrieved again
+            List<T> notPersistent = new ArrayList<>(chunk.size());
+            for (T object : chunk) {
+                if (!JDOHelper.isPersistent(object)) {
+                    notPersistent.add(object);
+                }
+            }
+
+            Map<Long, T> existing = new HashMap<>();
+            for (T instance : repository.retrieveAllById(getIds(notPersistent))) {
+                existing.put((Long) getId(instance), instance);
+            }
+
+            List<T> updatedChunk = new ArrayList<>(chunk.size());
+            List<T> createdChunk = new ArrayList<>();
+
+            for (T object : chunk) {
+                T fromDbInstance = JDOHelper.isPersistent(object) ? object : existing.get((Long) getId(object));
+
+                // new instances are created like with create(), only existing ones are restricted
+                if (!restriction.isEmpty() && fromDbInstance != null) {
+                    verifyInstanceAccess(fromDbInstance, restriction);
+                }
+
+                T instance;
+                if (JDOHelper.getObjectState(object) != ObjectState.TRANSIENT) {
+                    updateModificationData(object);
+                    instance = repository.update(object);
+                    updatedChunk.add(instance);
+                } else if (fromDbInstance == null) {
+                    instance = repository.create(object);
+                    createdChunk.add(instance);
+                } else {
+                    copyFromTransient(fromDbInstance, object, null);
+                    instance = fromDbInstance;
+                    updatedChunk.add(instance);
+                }
+
+                // the instances are returned in the order of the given objects
+                result.add(instance);
+            }
+
+            repository.flush();
+            invalidateLookupCache(null);
+
+            if (allowUpdateEvent) {
+                registerBulkEvent(getIds(updatedChunk), UPDATE);
+            }
+            if (allowCreateEvent) {
+                registerBulkEvent(getIds(createdChunk), CREATE);
+            }
+
+        }
+
+        return result;
+    }
+
+    private void copyFromTransient(T fromDbInstance, T transientObject, Set<String> fieldsToUpdate) {
+        getAccessor(transientObject).copy(fromDbInstance, transientObject, getAccessor(fromDbInstance), null,
+                fieldsToUpdate);
+
+        if (versionFieldName != null) {
+            StateManagerUtil.setTransactionVersion(fromDbInstance, versionFieldName);
+        }
+
+        updateModificationData(fromDbInstance);
+    }
+
     private void updateModificationData(Object obj) {
         safeSetProperty(obj, MODIFICATION_DATE_FIELD_NAME, DateUtil.now());
         safeSetProperty(obj, MODIFIED_BY_FIELD_NAME, defaultIfBlank(getUsername(), ""));
@@ -272,6 +423,8 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             }
         });
 
+        invalidateLookupCache(Collections.singletonList(deletedInstanceId));
+
         if (allowDeleteEvent) {
             sendEvent(deletedInstanceId, DELETE);
         }
@@ -375,6 +528,50 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void deleteAll() {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         repository.delete(new String[0], new Object[0], securityRestriction);
+        invalidateLookupCache(null);
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll(Collection<T> objects) {
+        deleteAll(objects, DEFAULT_BULK_CHUNK_SIZE);
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll(Collection<T> objects, int chunkSize) {
+        if (objects == null) {
+            throw new IllegalArgumentException("Unable to delete null collection");
+        }
+
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        for (List<T> chunk : Iterables.partition(objects, chunkSize)) {
+            // we retrieve the objects of the chunk using the current pm, with one query
+            List<T> existing = repository.retrieveAllById(getIds(chunk));
+
+            if (existing.size() < chunk.size()) {
+                logger.warn("Attempted to delete {} non-existing objects", chunk.size() - existing.size());
+            }
+
+            if (!restriction.isEmpty()) {
+                for (T instance : existing) {
+                    verifyInstanceAccess(instance, restriction);
+                }
+            }
+
+            // the ids cannot be read from the instances after they are deleted
+            List<Long> deletedIds = getIds(existing);
+
+            // the trash mode is handled for every instance, the trash records are flushed together with the deletes
+            repository.deleteAll(existing);
+            repository.flush();
+            invalidateLookupCache(deletedIds);
+
+            if (allowDeleteEvent) {
+                registerBulkEvent(deletedIds, DELETE);
+            }
+        }
     }
 
     @Override
@@ -398,6 +595,9 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     @Override
     public void evictAllCache() {
         repository.evictAll();
+        if (lookupCache != null) {
+            lookupCache.invalidate(null);
+        }
     }
 
     @Override
@@ -408,6 +608,14 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     @Override
     public void evictEntityCache(boolean withSubclasses) {
         repository.evictEntity(withSubclasses);
+        if (lookupCache != null) {
+            lookupCache.invalidate(null);
+        }
+    }
+
+    @Override
+    public LookupCacheStatisticsDto getLookupCacheStatistics() {
+        return lookupCache == null ? new LookupCacheStatisticsDto() : lookupCache.getStatistics();
     }
 
     @Override
@@ -419,6 +627,27 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return retrieve(Constants.Util.ID_FIELD_NAME, id);
     }
 
+    @Override
+    @Transactional
+    public List<T> findByIds(Collection<Long> ids) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+        List<T> instances = new ArrayList<>();
+
+        for (List<Long> chunk : Iterables.partition(new LinkedHashSet<>(ids), DEFAULT_BULK_CHUNK_SIZE)) {
+            List<T> found = repository.retrieveAllById(chunk);
+
+            if (!restriction.isEmpty()) {
+                for (T instance : found) {
+                    verifyInstanceAccess(instance, restriction);
+                }
+            }
+
+            instances.addAll(found);
+        }
+
+        return instances;
+    }
+
     @Override
     public <R> R doInTransaction(TransactionCallback<R> transactionCallback) {
         TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
@@ -446,8 +675,22 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         EntityInfo entityInfo = entityInfoReader.getEntityInfo(getClassType().getName());
         RevertConverter revertConverter = new RevertConverter(entityInfo, applicationContext);
 
-        PropertyUtil.copyProperties(target, record, revertConverter);
-        PropertyUtil.copyProperties(target, record, revertConverter, Constants.Util.RECORD_FIELDS_TO_COPY);
+        PropertyAccessor recordAccessor = getAccessor(record);
+        PropertyAccessor targetAccessor = getAccessor(target);
+
+        recordAccessor.copy(target, record, targetAccessor, revertConverter, null);
+        recordAccessor.copy(target, record, targetAccessor, revertConverter, Constants.Util.RECORD_FIELDS_TO_COPY);
+    }
+
+    /**
+     * Returns the property accessor of the class of the given instance. The generated services are defined
+     * in the entities bundle, together with the accessors of the entities, their history and trash classes.
+     *
+     * @param instance the instance, not null
+     * @return the accessor of the class of the instance
+     */
+    protected PropertyAccessor getAccessor(Object instance) {
+        return PropertyAccessors.forInstance(instance, getClass().getClassLoader());
     }
 
     protected List<T> retrieveAll(List<Property> properties) {
@@ -465,6 +708,50 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.count(properties, securityRestriction);
     }
 
+    /**
+     * Executes the given lookup through the lookup cache of the entity. The lookup is executed directly if the
+     * cache is disabled, if it retrieves only some of the fields or if the current transaction changed the instances
+     * of the entity. The result is cached only if it was retrieved outside of a transaction, so that it contains only
+     * the committed changes. Only the ids of the instances are cached, on a hit the instances are retrieved by their
+     * ids, so they are the same as the ones returned by the lookup itself and their changes do not affect the cache.
+     * If some of the instances no longer exist, the lookup is executed again.
+     *
+     * @param operation the name of the lookup operation
+     * @param properties the properties of the lookup
+     * @param queryParams the query parameters, can be null
+     * @param callback the callback executing the lookup
+     * @param <R> the type of the result
+     * @return the result of the lookup
+     */
+    protected <R> R doInLookupCache(String operation, List<Property> properties, QueryParams queryParams,
+                                    TransactionCallback<R> callback) {
+        if (lookupCache == null || TransactionSynchronizationManager.hasResource(this)
+                || (queryParams != null && queryParams.isProjectionSet())) {
+            return doInTransaction(callback);
+        }
+
+        Object key = LookupCache.key(operation, properties, queryParams);
+        Object cached = lookupCache.get(key);
+
+        if (cached != LookupCache.MISS) {
+            Object result = loadLookupResult(cached);
+            if (result != LookupCache.MISS) {
+                return (R) result;
+            }
+        }
+
+        boolean cacheable = !TransactionSynchronizationManager.isActualTransactionActive();
+        long generation = lookupCache.getGeneration();
+
+        R result = doInTransaction(callback);
+
+        if (cacheable) {
+            lookupCache.put(key, toCachedLookupResult(result), getLookupResultIds(result), generation);
+        }
+
+        return result;
+    }
+
     protected InstanceSecurityRestriction validateCredentials() {
         return validateCredentials(null);
     }
@@ -497,6 +784,12 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private InstanceSecurityRestriction checkInstanceAccess(T instance, InstanceSecurityRestriction restriction) {
         T fromDb = repository.retrieve(getId(instance));
 
+        verifyInstanceAccess(fromDb, restriction);
+
+        return restriction;
+    }
+
+    private void verifyInstanceAccess(T fromDb, InstanceSecurityRestriction restriction) {
         String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
         String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
 
@@ -513,8 +806,6 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         if (!authorized) {
             throw new SecurityException();
         }
-
-        return restriction;
     }
 
     private void sendEvent(Long id, CrudEventType action) {
@@ -523,8 +814,151 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         osgiEventProxy.sendEvent(subject, params);
     }
 
+    private void registerBulkEvent(final List<Long> ids, final CrudEventType action) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                // a distinct subject, the listeners of the events of single instances expect the object_id
+                String subject = createBulkSubject(module, namespace, entityName, action);
+                Map<String, Object> params = buildEventParams(module, namespace, entityName, getClassType().getName(), ids);
+                osgiEventProxy.sendEvent(subject, params);
+            }
+        });
+    }
+
+    private void invalidateLookupCache(Collection<Long> deletedIds) {
+        doInvalidateLookupCache(deletedIds);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            broadcastLookupCacheInvalidation(deletedIds);
+            return;
+        }
+
+        // the lookups executed in this transaction do not use the cache, the cache is invalidated again
+        // when the transaction completes, since other threads could cache the instances before the commit
+        PendingLookupCacheInvalidation pending =
+                (PendingLookupCacheInvalidation) TransactionSynchronizationManager.getResource(this);
+
+        if (pending == null) {
+            final PendingLookupCacheInvalidation registered = new PendingLookupCacheInvalidation();
+            TransactionSynchronizationManager.bindResource(this, registered);
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DefaultMotechDataService.this);
+                    doInvalidateLookupCache(registered.getDeletedIds());
+
+                    if (status == STATUS_COMMITTED) {
+                        broadcastLookupCacheInvalidation(registered.getDeletedIds());
+                    }
+                }
+            });
+
+            pending = registered;
+        }
+
+        pending.add(deletedIds);
+    }
+
+    private void doInvalidateLookupCache(Collection<Long> deletedIds) {
+        LookupCache.invalidate(getClassType().getName(), deletedIds);
+    }
+
+    private void broadcastLookupCacheInvalidation(Collection<Long> deletedIds) {
+        String className = getClassType().getName();
+
+        // the CRUD events are sent to a single instance and only if they are enabled for the entity
+        if (LookupCache.isTracked(className)) {
+            osgiEventProxy.broadcastEvent(LookupCache.INVALIDATE_TOPIC,
+                    LookupCache.createInvalidationParams(className, deletedIds), true);
+        }
+    }
+
+    private Object toCachedLookupResult(Object result) {
+        if (result instanceof List) {
+            return new CachedLookupResult(getIds((List<T>) result), false);
+        } else if (getClassType().isInstance(result)) {
+            return new CachedLookupResult(Collections.singletonList((Long) getId((T) result)), true);
+        } else {
+            return result;
+        }
+    }
+
+    private Object loadLookupResult(Object cached) {
+        if (!(cached instanceof CachedLookupResult)) {
+            return cached;
+        }
+
+        final CachedLookupResult lookupResult = (CachedLookupResult) cached;
+        List<T> instances = doInTransaction(new TransactionCallback<List<T>>() {
+            @Override
+            public List<T> doInTransaction(TransactionStatus status) {
+                return retrieveInOrder(lookupResult.getIds());
+            }
+        });
+
+        if (instances == null) {
+            return LookupCache.MISS;
+        }
+
+        return lookupResult.isUnique() ? instances.get(0) : instances;
+    }
+
+    private List<T> retrieveInOrder(List<Long> ids) {
+        Map<Object, T> instancesById = new HashMap<>();
+
+        for (List<Long> chunk : Iterables.partition(ids, DEFAULT_BULK_CHUNK_SIZE)) {
+            for (T instance : repository.retrieveAllById(chunk)) {
+                instancesById.put(getId(instance), instance);
+            }
+        }
+
+        List<T> instances = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T instance = instancesById.get(id);
+            if (instance == null) {
+                // the instance was deleted in a way the cache was not notified about
+                return null;
+            }
+            instances.add(instance);
+        }
+
+        return instances;
+    }
+
+    private Collection<Long> getLookupResultIds(Object result) {
+        if (result instanceof List) {
+            return getIds((List<T>) result);
+        } else if (getClassType().isInstance(result)) {
+            return Collections.singletonList((Long) getId((T) result));
+        } else if (result == null) {
+            return Collections.emptyList();
+        } else {
+            // counts are invalidated by every change
+            return null;
+        }
+    }
+
+    private List<Long> getIds(Collection<T> instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+
+        for (T instance : instances) {
+            Long id = (Long) getId(instance);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+
+        return ids;
+    }
+
     protected Object getId(T instance) {
-        return PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+        return null == instance ? null : getAccessor(instance).get(instance, Constants.Util.ID_FIELD_NAME);
     }
 
     protected Logger getLogger() {
@@ -577,4 +1011,45 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void setEntityInfoReader(EntityInfoReader entityInfoReader) {
         this.entityInfoReader = entityInfoReader;
     }
+
+    /**
+     * The invalidations of the lookup cache repeated after the current transaction completes.
+     */
+    /**
+     * The ids of the instances returned by a lookup, in the order they were returned.
+     */
+    private static final class CachedLookupResult {
+        private final List<Long> ids;
+        private final boolean unique;
+
+        private CachedLookupResult(List<Long> ids, boolean unique) {
+            this.ids = ids;
+            this.unique = unique;
+        }
+
+        private List<Long> getIds() {
+            return ids;
+        }
+
+        private boolean isUnique() {
+            return unique;
+        }
+    }
+
+    private static final class PendingLookupCacheInvalidation {
+        private boolean all;
+        private Set<Long> deletedIds = new HashSet<>();
+
+        private void add(Collection<Long> ids) {
+            if (ids == null) {
+                all = true;
+            } else {
+                deletedIds.addAll(ids);
+            }
+        }
+
+        private Collection<Long> getDeletedIds() {
+            return all ? null : deletedIds;
+        }
+    }
 }
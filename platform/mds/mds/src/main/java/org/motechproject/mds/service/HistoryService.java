@@ -1,7 +1,9 @@
 package org.motechproject.mds.service;
 
+import org.joda.time.DateTime;
 import org.motechproject.mds.query.QueryParams;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -48,4 +50,14 @@ public interface HistoryService {
      * @return a number of historical revisions of the instance
      */
     long countHistoryRecords(Object instance);
+
+    /**
+     * Removes the historical revisions of the given entities which were made before the given date. The latest
+     * revision of an instance is never removed. The revisions are removed by set-based deletes in bounded
+     * batches, each batch is committed in a separate transaction.
+     *
+     * @param entitiesClassNames the class names of the entities for which the history should be purged
+     * @param olderThan the revisions made before this date are removed
+     */
+    void purgeHistory(Collection<String> entitiesClassNames, DateTime olderThan);
 }
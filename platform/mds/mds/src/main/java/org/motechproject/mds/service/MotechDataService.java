@@ -1,11 +1,13 @@
 package org.motechproject.mds.service;
 
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
 import org.motechproject.mds.filter.Filters;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +29,29 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS, in one transaction. The instances are flushed to the datastore in chunks of
+     * the default size and a single CRUD event, with the ids of the created instances, is sent for every chunk. Its
+     * subject ends with <code>_BULK</code>, for example <code>mds.crud.module.Entity.CREATE_BULK</code>, the events of
+     * single instances are not sent.
+     *
+     * @param objects instances to create
+     * @return created instances
+     */
+    List<T> createAll(Collection<T> objects);
+
+    /**
+     * Creates the given instances in MDS, in one transaction. The instances are flushed to the datastore in chunks of
+     * the given size and a single CRUD event, with the ids of the created instances, is sent for every chunk. Its
+     * subject ends with <code>_BULK</code>, for example <code>mds.crud.module.Entity.CREATE_BULK</code>, the events of
+     * single instances are not sent.
+     *
+     * @param objects instances to create
+     * @param chunkSize the number of instances flushed at once
+     * @return created instances
+     */
+    List<T> createAll(Collection<T> objects, int chunkSize);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -89,6 +114,31 @@ public interface MotechDataService<T> {
      */
     T updateFromTransient(T transientObject, Set<String> fieldsToUpdate);
 
+    /**
+     * Updates the given instances in MDS, in one transaction. Transient instances are handled the same way as in
+     * {@link #updateFromTransient(Object)}. The instances are flushed to the datastore in chunks of the default size
+     * and a single CRUD event, with the ids of the updated instances, is sent for every chunk. Its subject ends with
+     * <code>_BULK</code>, for example <code>mds.crud.module.Entity.UPDATE_BULK</code>, the events of single instances
+     * are not sent.
+     *
+     * @param objects instances to update
+     * @return updated instances
+     */
+    List<T> updateAll(Collection<T> objects);
+
+    /**
+     * Updates the given instances in MDS, in one transaction. Transient instances are handled the same way as in
+     * {@link #updateFromTransient(Object)}. The instances are flushed to the datastore in chunks of the given size and
+     * a single CRUD event, with the ids of the updated instances, is sent for every chunk. Its subject ends with
+     * <code>_BULK</code>, for example <code>mds.crud.module.Entity.UPDATE_BULK</code>, the events of single instances
+     * are not sent.
+     *
+     * @param objects instances to update
+     * @param chunkSize the number of instances flushed at once
+     * @return updated instances
+     */
+    List<T> updateAll(Collection<T> objects, int chunkSize);
+
     /**
      * Deletes given instance from MDS.
      *
@@ -175,6 +225,27 @@ public interface MotechDataService<T> {
      */
     void deleteAll();
 
+    /**
+     * Deletes the given instances from MDS, in one transaction. The instances are deleted in chunks of the default
+     * size and a single CRUD event, with the ids of the deleted instances, is sent for every chunk. Its subject ends
+     * with <code>_BULK</code>, for example <code>mds.crud.module.Entity.DELETE_BULK</code>, the events of single
+     * instances are not sent.
+     *
+     * @param objects instances to delete
+     */
+    void deleteAll(Collection<T> objects);
+
+    /**
+     * Deletes the given instances from MDS, in one transaction. The instances are deleted in chunks of the given size
+     * and a single CRUD event, with the ids of the deleted instances, is sent for every chunk. Its subject ends with
+     * <code>_BULK</code>, for example <code>mds.crud.module.Entity.DELETE_BULK</code>, the events of single instances
+     * are not sent.
+     *
+     * @param objects instances to delete
+     * @param chunkSize the number of instances deleted at once
+     */
+    void deleteAll(Collection<T> objects, int chunkSize);
+
     /**
      * Allows to execute custom query in MDS. Users are supposed to implement the {@link QueryExecution}
      * interface and override its {@link QueryExecution#execute(javax.jdo.Query, org.motechproject.mds.util.InstanceSecurityRestriction)}
@@ -204,6 +275,14 @@ public interface MotechDataService<T> {
      */
     void evictEntityCache(boolean withSubclasses);
 
+    /**
+     * Returns the statistics of the lookup cache of the entity. The lookup results are cached only if it is enabled
+     * in the advanced settings of the entity.
+     *
+     * @return the statistics of the lookup cache
+     */
+    LookupCacheStatisticsDto getLookupCacheStatistics();
+
     /**
      * Retrieves instance of type {@value T} and given id from MDS.
      *
@@ -212,6 +291,16 @@ public interface MotechDataService<T> {
      */
     T findById(Long id);
 
+    /**
+     * Retrieves the instances of type {@value T} with the given ids from MDS, using a single query for every {@link
+     * org.motechproject.mds.service.DefaultMotechDataService#DEFAULT_BULK_CHUNK_SIZE} ids. Ids of instances which do
+     * not exist are ignored.
+     *
+     * @param ids ids of the instances
+     * @return instances with the given ids, in no particular order
+     */
+    List<T> findByIds(Collection<Long> ids);
+
     /**
      * Allows to wrap several instructions into a single transaction. Developers should implement
      * the {@link TransactionCallback} interface and override the
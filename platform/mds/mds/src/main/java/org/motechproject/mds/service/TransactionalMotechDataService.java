@@ -11,6 +11,7 @@ import java.util.List;
 /**
  * The main goal of the <code>TransactionalMotechDataService</code> class is to resolve problems
  * with transaction annotations not working for generated lookups. We use the traditional transaction callback instead.
+ * The lookups are executed through the lookup cache, if it is enabled for the entity.
  *
  * @param <T> the type of entity schema.
  */
@@ -18,7 +19,7 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
 
     @Override
     protected long count(final List<Property> properties) {
-        return doInTransaction(new TransactionCallback<Long>() {
+        return doInLookupCache("count", properties, null, new TransactionCallback<Long>() {
             @Override
             public Long doInTransaction(TransactionStatus status) {
                 InstanceSecurityRestriction securityRestriction = validateCredentials();
@@ -29,7 +30,7 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
 
     @Override
     protected List<T> retrieveAll(final List<Property> properties) {
-        return doInTransaction(new TransactionCallback<List<T>>() {
+        return doInLookupCache("retrieveAll", properties, null, new TransactionCallback<List<T>>() {
             @Override
             public List<T> doInTransaction(TransactionStatus status) {
                 InstanceSecurityRestriction securityRestriction = validateCredentials();
@@ -40,7 +41,7 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
 
     @Override
     protected List<T> retrieveAll(final List<Property> properties, final QueryParams queryParams) {
-        return doInTransaction(new TransactionCallback<List<T>>() {
+        return doInLookupCache("retrieveAll", properties, queryParams, new TransactionCallback<List<T>>() {
             @Override
             public List<T> doInTransaction(TransactionStatus status) {
                 InstanceSecurityRestriction securityRestriction = validateCredentials();
@@ -54,7 +55,7 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
     }
 
     protected T retrieveUnique(final List<Property> properties) {
-        return doInTransaction(new TransactionCallback<T>() {
+        return doInLookupCache("retrieveUnique", properties, null, new TransactionCallback<T>() {
             @Override
             public T doInTransaction(TransactionStatus status) {
                 InstanceSecurityRestriction securityRestriction = validateCredentials();
@@ -47,10 +47,19 @@ public interface TrashService {
      */
     void moveFromTrash(Object newInstance, Object trash, boolean recordHistory);
 
+    /**
+     * Checks if the module trash should be cleaned automatically, that is if trash mode is active and
+     * the {@link org.motechproject.mds.util.Constants.Config#MDS_EMPTY_TRASH} setting is enabled.
+     *
+     * @return true if the trash should be cleaned by the scheduled job; false otherwise
+     */
+    boolean isEmptyTrashEnabled();
+
     /**
      * Sets the repeating schedule job that will be executed from time to time. Execution time
      * depends on the value of time value and time unit (defined in
-     * {@link org.motechproject.mds.util.Constants.Config#MODULE_FILE}).
+     * {@link org.motechproject.mds.util.Constants.Config#MODULE_FILE}). The job is scheduled if
+     * the trash should be cleaned or if the history retention is enabled.
      * <p/>
      * Before scheduling new job, the old one should be unscheduled to prevent the errors.
      */
@@ -60,6 +69,9 @@ public interface TrashService {
      * Cleans the module trash. All instances in trash should be removed permanently and if they
      * contain any historical data they should also be removed permanently.
      * <p/>
+     * The instances are removed by set-based deletes in bounded batches, each batch is committed
+     * in a separate transaction.
+     * <p/>
      * This method should only be executed by the job created in the
      * {@link #scheduleEmptyTrashJob()} method.
      * @param entitiesClassNames the list of class names for which the trash should get cleared
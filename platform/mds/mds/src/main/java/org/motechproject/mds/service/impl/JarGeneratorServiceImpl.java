@@ -344,6 +344,15 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
                         }
                     }
 
+                    // insert the property accessors
+                    addClass(output, ClassName.getAccessorClassName(className));
+                    if (historyClassData != null) {
+                        addClass(output, ClassName.getAccessorClassName(historyClassData.getClassName()));
+                    }
+                    if (trashClassData != null) {
+                        addClass(output, ClassName.getAccessorClassName(trashClassData.getClassName()));
+                    }
+
                     information.add(info);
                 }
             }
@@ -0,0 +1,32 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.query.LookupCache;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * Invalidates the lookup caches of this instance when the instances of an entity are changed on another Motech
+ * instance. The data services broadcast the {@link LookupCache#INVALIDATE_TOPIC} events after their changes are
+ * committed, the events are proxied through OSGi events in order to avoid a dependency on the event module.
+ *
+ * @see org.motechproject.mds.query.LookupCache
+ */
+@Service
+public class LookupCacheInvalidationHandler implements EventHandler {
+
+    @Override
+    public void handleEvent(Event event) {
+        if (!LookupCache.INVALIDATE_TOPIC.equals(event.getTopic())) {
+            throw new IllegalStateException("Received an event with an unknown subject/topic: " + event.getTopic());
+        }
+
+        String className = (String) event.getProperty(LookupCache.CLASS_NAME_PARAM);
+        Collection<Long> deletedIds = (Collection<Long>) event.getProperty(LookupCache.DELETED_IDS_PARAM);
+        String origin = (String) event.getProperty(LookupCache.ORIGIN_PARAM);
+
+        LookupCache.handleInvalidation(className, deletedIds, origin);
+    }
+}
@@ -1,7 +1,10 @@
 package org.motechproject.mds.service.impl;
 
+import org.joda.time.DateTime;
 import org.motechproject.bundle.extender.MotechOsgiConfigurableApplicationContext;
+import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.service.TrashService;
 import org.motechproject.osgi.web.util.OSGiServiceUtils;
 import org.osgi.framework.BundleContext;
@@ -16,8 +19,10 @@ import org.springframework.context.ApplicationContext;
 
 import java.util.Collection;
 
+import static org.motechproject.commons.date.util.DateUtil.nowUTC;
+
 /**
- *  Job responsible for emptying MDS trash.
+ *  Job responsible for emptying MDS trash and removing old historical revisions.
  */
 public class MdsScheduledJob implements Job {
 
@@ -43,20 +48,44 @@ public class MdsScheduledJob implements Job {
             BundleContext bundleContext = ((MotechOsgiConfigurableApplicationContext) applicationContext).getBundleContext();
 
             TrashService trashService = OSGiServiceUtils.findService(bundleContext, TrashService.class);
+            HistoryService historyService = OSGiServiceUtils.findService(bundleContext, HistoryService.class);
+            SettingsService settingsService = OSGiServiceUtils.findService(bundleContext, SettingsService.class);
             EntityInfoReader entityInfoReader = OSGiServiceUtils.findService(bundleContext, EntityInfoReader.class);
 
-            if (trashService != null) {
-                if (entityInfoReader != null) {
-                    Collection<String> entitiesClassNames = entityInfoReader.getEntitiesClassNames();
-                    trashService.emptyTrash(entitiesClassNames);
-                } else {
-                    LOGGER.warn("EntityInfoReader is unavailable, unable to empty trash");
-                }
-            } else {
+            if (entityInfoReader == null) {
+                LOGGER.warn("EntityInfoReader is unavailable, unable to empty trash");
+                return;
+            }
+
+            Collection<String> entitiesClassNames = entityInfoReader.getEntitiesClassNames();
+
+            if (trashService == null) {
                 LOGGER.warn("TrashService is unavailable, unable to empty trash");
+            } else if (trashService.isEmptyTrashEnabled()) {
+                trashService.emptyTrash(entitiesClassNames);
+            }
+
+            if (settingsService != null && settingsService.isHistoryRetention()) {
+                purgeHistory(historyService, settingsService, entitiesClassNames);
             }
         } catch (Exception e) {
             LOGGER.error("Job execution failed.", e);
         }
     }
+
+    private void purgeHistory(HistoryService historyService, SettingsService settingsService,
+                              Collection<String> entitiesClassNames) {
+        if (historyService == null) {
+            LOGGER.warn("HistoryService is unavailable, unable to remove old history");
+            return;
+        }
+
+        long retention = settingsService.getHistoryRetentionTimeValue()
+                * settingsService.getHistoryRetentionTimeUnit().inMillis();
+        DateTime olderThan = nowUTC().minus(retention);
+
+        LOGGER.info("Removing history older than {}", olderThan);
+
+        historyService.purgeHistory(entitiesClassNames, olderThan);
+    }
 }
@@ -17,6 +17,8 @@ import org.motechproject.mds.service.impl.csv.writer.TableWriter;
 import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,9 +33,17 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * The instances are exported page by page, each page in a separate transaction, and the writer is flushed after
+ * every page, so that large tables are streamed to the output instead of being loaded into memory at once.
+ * For that reason the export methods of the implementing classes must not be transactional.
  */
 public abstract class AbstractMdsExporter {
 
+    /**
+     * The number of instances retrieved at once, if all instances are exported.
+     */
+    static final int EXPORT_PAGE_SIZE = 1000;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -66,23 +76,29 @@ public abstract class AbstractMdsExporter {
 
         try {
             writer.writeHeader(orderedHeaders);
+        } catch (IOException e) {
+            throw new DataExportException("IO Error when writing data", e);
+        }
 
-            long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
+        long rowsExported = 0;
 
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
+        // a single page is exported as it is, otherwise all instances are retrieved page by page with keyset
+        // pagination, so that retrieving the last pages costs the same as the first ones
+        QueryParams queryParams = (params != null && params.isPagingSet()) ? params :
+                QueryParams.keyset(EXPORT_PAGE_SIZE, params == null ? null : params.getOrderList(), null);
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
-            }
+        while (queryParams != null) {
+            // every page is exported in its own transaction, the instances are detached and released at its end,
+            // so the memory used by the export does not depend on the number of exported instances
+            ExportedPage page = (ExportedPage) dataService.doInTransaction(
+                    new ExportPageCallback(dataService, entityInfo, writer, lookupName, queryParams, params, orderedHeaders,
+                            lookupFields, fieldMap, exportCustomizer));
 
-            return rowsExported;
-        } catch (IOException e) {
-            throw new DataExportException("IO Error when writing data", e);
+            rowsExported += page.getRows();
+            queryParams = page.getNextPage();
         }
+
+        return rowsExported;
     }
 
     protected EntityInfo getEntity(long entityId) {
@@ -142,6 +158,77 @@ public abstract class AbstractMdsExporter {
         }
     }
 
+    private final class ExportPageCallback implements TransactionCallback<ExportedPage> {
+
+        private final MotechDataService dataService;
+        private final EntityInfo entityInfo;
+        private final TableWriter writer;
+        private final String lookupName;
+        private final QueryParams queryParams;
+        private final QueryParams params;
+        private final String[] headers;
+        private final Map<String, Object> lookupFields;
+        private final Map<String, FieldDto> fieldMap;
+        private final CsvExportCustomizer exportCustomizer;
+
+        private ExportPageCallback(MotechDataService dataService, EntityInfo entityInfo, TableWriter writer, String lookupName,
+                                   QueryParams queryParams, QueryParams params, String[] headers, Map<String, Object> lookupFields,
+                                   Map<String, FieldDto> fieldMap, CsvExportCustomizer exportCustomizer) {
+            this.dataService = dataService;
+            this.entityInfo = entityInfo;
+            this.writer = writer;
+            this.lookupName = lookupName;
+            this.queryParams = queryParams;
+            this.params = params;
+            this.headers = headers;
+            this.lookupFields = lookupFields;
+            this.fieldMap = fieldMap;
+            this.exportCustomizer = exportCustomizer;
+        }
+
+        @Override
+        public ExportedPage doInTransaction(TransactionStatus status) {
+            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(queryParams) :
+                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, queryParams);
+
+            try {
+                Map<String, String> row = new HashMap<>();
+                for (Object instance : instances) {
+                    buildCsvRow(row, fieldMap, instance, headers, exportCustomizer);
+                    writer.writeRow(row, headers);
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new DataExportException("IO Error when writing data", e);
+            }
+
+            // a page which is not full is the last one, the cursor is read while the last instance is still attached
+            QueryParams nextPage = (queryParams != params && instances.size() == EXPORT_PAGE_SIZE) ?
+                    queryParams.nextKeysetPage(instances.get(instances.size() - 1)) : null;
+
+            return new ExportedPage(instances.size(), nextPage);
+        }
+    }
+
+    private static final class ExportedPage {
+
+        private final int rows;
+        private final QueryParams nextPage;
+
+        private ExportedPage(int rows, QueryParams nextPage) {
+            this.rows = rows;
+            this.nextPage = nextPage;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public QueryParams getNextPage() {
+            return nextPage;
+        }
+    }
+
     protected BundleContext getBundleContext() {
         return bundleContext;
     }
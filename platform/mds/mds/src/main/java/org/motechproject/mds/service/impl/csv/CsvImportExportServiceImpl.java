@@ -2,8 +2,10 @@ package org.motechproject.mds.service.impl.csv;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.event.CrudEventBuilder;
+import org.motechproject.mds.ex.csv.CsvImportInterruptedException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.CsvImportCustomizer;
@@ -194,6 +196,44 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         return importResults;
     }
 
+    @Override
+    public CsvImportResults importCsv(long entityId, Reader reader, String fileName, CsvImportCustomizer importCustomizer,
+                                      CsvImportSettings settings) {
+        LOGGER.debug("Importing instances of entity with ID: {} in chunks of {}", entityId, settings.getChunkSize());
+
+        CsvImportResults importResults;
+        try {
+            importResults = csvImporterExporter.importCsv(entityId, reader, importCustomizer, settings);
+        } catch (RuntimeException e) {
+            EntityDto entity = entityService.getEntity(entityId);
+            sendImportFailureEvent(entity, fileName, e);
+            throw e;
+        }
+
+        sendImportSuccessEvent(importResults, fileName);
+
+        return importResults;
+    }
+
+    @Override
+    public CsvImportResults importCsv(String entityClassName, Reader reader, String fileName, CsvImportCustomizer importCustomizer,
+                                      CsvImportSettings settings) {
+        LOGGER.debug("Importing instances of entity: {} in chunks of {}", entityClassName, settings.getChunkSize());
+
+        CsvImportResults importResults;
+        try {
+            importResults = csvImporterExporter.importCsv(entityClassName, reader, importCustomizer, settings);
+        } catch (RuntimeException e) {
+            EntityDto entity = entityService.getEntityByClassName(entityClassName);
+            sendImportFailureEvent(entity, fileName, e);
+            throw e;
+        }
+
+        sendImportSuccessEvent(importResults, fileName);
+
+        return importResults;
+    }
+
     private void sendImportFailureEvent(EntityDto entity, String fileName, RuntimeException e) {
         Map<String, Object> params = new HashMap<>();
 
@@ -203,6 +243,14 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         params.put(Constants.MDSEvents.CSV_IMPORT_FAILURE_STACKTRACE, ExceptionUtils.getStackTrace(e));
         params.put(Constants.MDSEvents.CSV_IMPORT_FILENAME, fileName);
 
+        if (e instanceof CsvImportInterruptedException) {
+            // the chunks committed before the failure are not rolled back
+            CsvImportResults partialResults = ((CsvImportInterruptedException) e).getResults();
+            params.put(Constants.MDSEvents.CSV_IMPORT_CREATED_IDS, partialResults.getNewInstanceIDs());
+            params.put(Constants.MDSEvents.CSV_IMPORT_UPDATED_IDS, partialResults.getUpdatedInstanceIDs());
+            params.put(Constants.MDSEvents.CSV_IMPORT_COMMITTED_ROWS, partialResults.getCommittedRows());
+        }
+
         String subject = CrudEventBuilder.createSubject(entity.getModule(), entity.getNamespace(), entity.getName(),
                 Constants.MDSEvents.CSV_IMPORT_FAILURE);
 
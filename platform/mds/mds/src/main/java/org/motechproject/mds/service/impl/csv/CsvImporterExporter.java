@@ -1,15 +1,18 @@
 package org.motechproject.mds.service.impl.csv;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.MetadataDto;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.ex.csv.CsvImportException;
+import org.motechproject.mds.ex.csv.CsvImportInterruptedException;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
@@ -19,23 +22,36 @@ import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
-import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.motechproject.mds.util.TypeHelper;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
@@ -92,13 +108,48 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return importCsv(entityInfo, reader, continueOnError);
     }
 
+    /**
+     * Imports instances of the given entity to the database in chunks. The rows are read on the calling thread and
+     * converted to instances on a pool of worker threads, while the previous chunk is being committed. Every chunk is
+     * committed in a separate transaction, so this method is not transactional.
+     * @param entityId the ID of the entity for which instances will be imported
+     * @param reader reader from which the csv file will be read
+     * @param importCustomizer the customizer that will be used during instance import from rows
+     * @param settings the size of the chunks, the number of worker threads and the rows to skip
+     * @return IDs of instances updated/added during import
+     * @throws CsvImportInterruptedException if the import was stopped because of an error, the exception contains
+     *                                       the results of the committed chunks
+     */
+    public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer,
+                                      CsvImportSettings settings) {
+        EntityInfo entityInfo = getEntity(entityId);
+        return new ChunkedImport(entityInfo, importCustomizer, settings).importCsv(reader);
+    }
+
+    /**
+     * Imports instances of the given entity to the database in chunks. The rows are read on the calling thread and
+     * converted to instances on a pool of worker threads, while the previous chunk is being committed. Every chunk is
+     * committed in a separate transaction, so this method is not transactional.
+     * @param entityClassName the class name of the entity for which instances will be imported
+     * @param reader reader from which the csv file will be read
+     * @param importCustomizer the customizer that will be used during instance import from rows
+     * @param settings the size of the chunks, the number of worker threads and the rows to skip
+     * @return IDs of instances updated/added during import
+     * @throws CsvImportInterruptedException if the import was stopped because of an error, the exception contains
+     *                                       the results of the committed chunks
+     */
+    public CsvImportResults importCsv(final String entityClassName, final Reader reader, CsvImportCustomizer importCustomizer,
+                                      CsvImportSettings settings) {
+        EntityInfo entityInfo = getEntity(entityClassName);
+        return new ChunkedImport(entityInfo, importCustomizer, settings).importCsv(reader);
+    }
+
     /**
      * Exports entity instances to a CSV file.
      * @param entityId id of the entity for which the instances will be exported
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -112,7 +163,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -127,7 +177,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -142,7 +191,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -160,7 +208,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityId, writer, lookupName, params, headers, lookupFields,
@@ -177,7 +224,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityClassName, writer, lookupName, params, headers, lookupFields,
@@ -195,7 +241,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
@@ -216,7 +261,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
@@ -270,7 +314,7 @@ public class CsvImporterExporter extends AbstractMdsExporter {
                 }
             }
 
-            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, exceptions);
+            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, exceptions, rowNum);
         } catch (IOException e) {
             throw new CsvImportException("IO Error when importing CSV", e);
         }
@@ -309,13 +353,7 @@ public class CsvImporterExporter extends AbstractMdsExporter {
 
                 Object parsedValue = parseValue(entityDto, csvValue, field, entityClass.getClassLoader());
 
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
-                }
+                setFieldValue(instance, fieldName, field, csvValue, parsedValue);
             }
         }
 
@@ -326,11 +364,39 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             importedInstance = importCustomizer.doUpdate(instance, dataService);
         }
 
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
+        Long importedId = getInstanceId(importedInstance);
 
         return new RowImportResult(importedId, isNewInstance);
     }
 
+    private void setFieldValue(Object instance, String fieldName, FieldDto field, String csvValue, Object value) {
+        String msg = String.format("Error when processing field: %s, value in CSV file is %s", fieldName, csvValue);
+        String propertyName = StringUtils.uncapitalize(field.getBasic().getName());
+
+        boolean set;
+        try {
+            set = getAccessor(instance).set(instance, propertyName, value);
+        } catch (RuntimeException e) {
+            throw new CsvImportException(msg, e);
+        }
+
+        if (!set) {
+            throw new CsvImportException(msg + ", no property " + propertyName);
+        }
+    }
+
+    private Long getInstanceId(Object instance) {
+        return null == instance ? null : (Long) getAccessor(instance).get(instance, Constants.Util.ID_FIELD_NAME);
+    }
+
+    private PropertyAccessor getAccessor(Object instance) {
+        // the accessors of the entities are generated in the entities bundle
+        Bundle bundle = null == getBundleContext() ? null : getBundleContext().getBundle();
+        BundleWiring wiring = null == bundle ? null : bundle.adapt(BundleWiring.class);
+
+        return PropertyAccessors.forInstance(instance, null == wiring ? null : wiring.getClassLoader());
+    }
+
     private FieldDto findField(String fieldName, List<FieldDto> fields, Map<String, FieldDto> fieldMap, CsvImportCustomizer importCustomizer) {
         if (!fieldMap.containsKey(fieldName)) {
             FieldDto field = importCustomizer.findField(fieldName, fields);
@@ -423,6 +489,474 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return obj;
     }
 
+    /**
+     * A single chunked import. The rows of a chunk are converted to field values without touching the database,
+     * so that the conversion can run on the worker threads. The instances are then found or created, the related
+     * instances are retrieved with a single query per related entity and the chunk is persisted, all of that in
+     * the transaction of the chunk.
+     */
+    private class ChunkedImport {
+
+        private final EntityInfo entityInfo;
+        private final MotechDataService dataService;
+        private final CsvImportCustomizer importCustomizer;
+        private final CsvImportSettings settings;
+
+        private final Map<String, FieldDto> fieldMap = new HashMap<>();
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> rowErrors = new HashMap<>();
+        private int readRows;
+        private int committedRows;
+
+        ChunkedImport(EntityInfo entityInfo, CsvImportCustomizer importCustomizer, CsvImportSettings settings) {
+            this.entityInfo = entityInfo;
+            this.dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
+            this.importCustomizer = importCustomizer;
+            this.settings = settings;
+
+            if (settings.getChunkSize() < 1) {
+                throw new IllegalArgumentException("The chunk size must be positive, was " + settings.getChunkSize());
+            }
+        }
+
+        CsvImportResults importCsv(Reader reader) {
+            ExecutorService executor = Executors.newFixedThreadPool(getThreads());
+
+            try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+                final String[] headers = csvMapReader.getHeader(true);
+                resolveFields(headers);
+
+                readRows = skipRows(csvMapReader, headers);
+                committedRows = readRows;
+
+                // the next chunk is read and converted while the previous one is committed
+                List<Future<List<ConvertedRow>>> previousChunk = null;
+                List<CsvRow> chunk;
+                while (!(chunk = readChunk(csvMapReader, headers)).isEmpty()) {
+                    List<Future<List<ConvertedRow>>> convertedChunk = convertChunk(executor, chunk, headers);
+                    if (previousChunk != null) {
+                        commitChunk(getConvertedRows(previousChunk));
+                    }
+                    previousChunk = convertedChunk;
+                }
+                if (previousChunk != null) {
+                    commitChunk(getConvertedRows(previousChunk));
+                }
+
+                return getResults();
+            } catch (IOException e) {
+                throw new CsvImportException("IO Error when importing CSV", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private void resolveFields(String[] headers) {
+            for (String fieldName : headers) {
+                if (findField(fieldName, entityInfo.getFieldDtos(), fieldMap, importCustomizer) == null) {
+                    LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                            fieldName, entityInfo.getClassName());
+                }
+            }
+        }
+
+        private int skipRows(CsvMapReader csvMapReader, String[] headers) throws IOException {
+            int skipped = 0;
+            while (skipped < settings.getSkippedRows() && csvMapReader.read(headers) != null) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        private List<CsvRow> readChunk(CsvMapReader csvMapReader, String[] headers) throws IOException {
+            List<CsvRow> chunk = new ArrayList<>();
+
+            Map<String, String> row;
+            while (chunk.size() < settings.getChunkSize() && (row = csvMapReader.read(headers)) != null) {
+                chunk.add(new CsvRow(++readRows, row));
+            }
+
+            return chunk;
+        }
+
+        private List<Future<List<ConvertedRow>>> convertChunk(ExecutorService executor, List<CsvRow> chunk,
+                                                              final String[] headers) {
+            int sliceSize = (chunk.size() + getThreads() - 1) / getThreads();
+
+            List<Future<List<ConvertedRow>>> slices = new ArrayList<>();
+            for (final List<CsvRow> slice : Lists.partition(chunk, sliceSize)) {
+                slices.add(executor.submit(new Callable<List<ConvertedRow>>() {
+                    @Override
+                    public List<ConvertedRow> call() {
+                        List<ConvertedRow> convertedRows = new ArrayList<>(slice.size());
+                        for (CsvRow row : slice) {
+                            convertedRows.add(convertRow(row, headers));
+                        }
+                        return convertedRows;
+                    }
+                }));
+            }
+
+            return slices;
+        }
+
+        private ConvertedRow convertRow(CsvRow row, String[] headers) {
+            EntityDto entityDto = entityInfo.getEntity();
+            ClassLoader entityCl = dataService.getClassType().getClassLoader();
+            Map<String, Object> values = new LinkedHashMap<>();
+
+            try {
+                for (String fieldName : headers) {
+                    FieldDto field = fieldMap.get(fieldName);
+
+                    if (field != null && row.getValues().containsKey(fieldName)) {
+                        String csvValue = row.getValues().get(fieldName);
+                        // related instances are retrieved for the whole chunk, in the transaction of the chunk
+                        values.put(fieldName, field.getType().isRelationship() ? parseRelatedIds(csvValue, field) :
+                                parseValue(entityDto, csvValue, field, entityCl));
+                    }
+                }
+            } catch (RuntimeException e) {
+                return new ConvertedRow(row, null, e);
+            }
+
+            return new ConvertedRow(row, values, null);
+        }
+
+        private List<ConvertedRow> getConvertedRows(List<Future<List<ConvertedRow>>> slices) {
+            List<ConvertedRow> convertedRows = new ArrayList<>();
+            try {
+                for (Future<List<ConvertedRow>> slice : slices) {
+                    convertedRows.addAll(slice.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CsvImportException("CSV import was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new CsvImportException("Unable to convert CSV rows", e.getCause());
+            }
+            return convertedRows;
+        }
+
+        private void commitChunk(final List<ConvertedRow> chunk) {
+            Map<Integer, String> chunkErrors = new HashMap<>();
+
+            for (ConvertedRow row : chunk) {
+                if (row.getError() != null) {
+                    handleRowError(row.getRowNum(), row.getError(), chunkErrors);
+                }
+            }
+
+            ChunkImportResult result;
+            try {
+                result = (ChunkImportResult) dataService.doInTransaction(new TransactionCallback<ChunkImportResult>() {
+                    @Override
+                    public ChunkImportResult doInTransaction(TransactionStatus status) {
+                        return importChunk(chunk);
+                    }
+                });
+            } catch (CsvImportInterruptedException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (!settings.isContinueOnError()) {
+                    throw interrupted(chunk.get(0).getRowNum(), e);
+                }
+                // the whole chunk was rolled back
+                for (ConvertedRow row : chunk) {
+                    if (!chunkErrors.containsKey(row.getRowNum())) {
+                        chunkErrors.put(row.getRowNum(), e.getMessage());
+                    }
+                }
+                result = new ChunkImportResult();
+            }
+
+            newInstanceIDs.addAll(result.getNewInstanceIDs());
+            updatedInstanceIDs.addAll(result.getUpdatedInstanceIDs());
+            rowErrors.putAll(chunkErrors);
+            rowErrors.putAll(result.getRowErrors());
+            committedRows = chunk.get(chunk.size() - 1).getRowNum();
+        }
+
+        private ChunkImportResult importChunk(List<ConvertedRow> chunk) {
+            Class entityClass = dataService.getClassType();
+            Map<String, Map<Long, Object>> relatedInstances = retrieveRelatedInstances(chunk);
+            Map<Long, Object> existingInstances = isDefaultCustomizer() ? retrieveExistingInstances(chunk) : null;
+
+            ChunkImportResult result = new ChunkImportResult();
+            List<Object> newInstances = new ArrayList<>();
+            List<Object> updatedInstances = new ArrayList<>();
+
+            for (ConvertedRow row : chunk) {
+                if (row.getError() != null) {
+                    continue;
+                }
+
+                try {
+                    Object instance = findExistingInstance(row, existingInstances);
+                    boolean isNewInstance = instance == null;
+                    if (isNewInstance) {
+                        instance = entityClass.newInstance();
+                    }
+
+                    for (Map.Entry<String, Object> entry : row.getValues().entrySet()) {
+                        FieldDto field = fieldMap.get(entry.getKey());
+                        Object value = entry.getValue() instanceof RelatedIds ?
+                                ((RelatedIds) entry.getValue()).toValue(relatedInstances) : entry.getValue();
+
+                        setFieldValue(instance, entry.getKey(), field, row.getCsvRow().getValues().get(entry.getKey()), value);
+                    }
+
+                    if (existingInstances == null) {
+                        // a custom way of persisting instances is respected
+                        Object importedInstance = isNewInstance ? importCustomizer.doCreate(instance, dataService) :
+                                importCustomizer.doUpdate(instance, dataService);
+                        Long importedId = getInstanceId(importedInstance);
+
+                        if (isNewInstance) {
+                            result.getNewInstanceIDs().add(importedId);
+                        } else {
+                            result.getUpdatedInstanceIDs().add(importedId);
+                        }
+                    } else if (isNewInstance) {
+                        newInstances.add(instance);
+                    } else {
+                        updatedInstances.add(instance);
+                    }
+                } catch (InstantiationException | IllegalAccessException e) {
+                    throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
+                } catch (RuntimeException e) {
+                    handleRowError(row.getRowNum(), e, result.getRowErrors());
+                }
+            }
+
+            if (existingInstances != null) {
+                // the updated instances are persistent, so they are not retrieved again by the data service
+                result.getNewInstanceIDs().addAll(getIds(dataService.createAll(newInstances, settings.getChunkSize())));
+                result.getUpdatedInstanceIDs().addAll(getIds(dataService.updateAll(updatedInstances, settings.getChunkSize())));
+            }
+
+            return result;
+        }
+
+        private void handleRowError(int rowNum, RuntimeException e, Map<Integer, String> errors) {
+            if (settings.isContinueOnError()) {
+                errors.put(rowNum, e.getMessage());
+            } else {
+                throw interrupted(rowNum, e);
+            }
+        }
+
+        private CsvImportInterruptedException interrupted(int rowNum, RuntimeException e) {
+            String msg = String.format("CSV import stopped at row %d, the first %d rows were committed: %s",
+                    rowNum, committedRows, e.getMessage());
+            return new CsvImportInterruptedException(msg, e, getResults());
+        }
+
+        private CsvImportResults getResults() {
+            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, rowErrors, committedRows);
+        }
+
+        private int getThreads() {
+            return Math.max(1, settings.getThreads());
+        }
+
+        private boolean isDefaultCustomizer() {
+            return importCustomizer.getClass() == DefaultCsvImportCustomizer.class;
+        }
+
+        private Object findExistingInstance(ConvertedRow row, Map<Long, Object> existingInstances) {
+            if (existingInstances == null) {
+                return importCustomizer.findExistingInstance(row.getCsvRow().getValues(), dataService);
+            }
+
+            String id = row.getCsvRow().getValues().get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+            if (StringUtils.isBlank(id)) {
+                return null;
+            }
+
+            Object instance = existingInstances.get(Long.valueOf(id));
+            if (instance == null) {
+                throw new CsvImportException("Unable to update, no instance with id = " + id);
+            }
+            return instance;
+        }
+
+        private Map<Long, Object> retrieveExistingInstances(List<ConvertedRow> chunk) {
+            Set<Long> ids = new HashSet<>();
+            for (ConvertedRow row : chunk) {
+                String id = row.getCsvRow().getValues().get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+                if (row.getError() == null && StringUtils.isNotBlank(id)) {
+                    try {
+                        ids.add(Long.valueOf(id));
+                    } catch (NumberFormatException e) {
+                        // reported as an error of the row, when its instance is looked up
+                        LOGGER.debug("Invalid id {} in row {}", id, row.getRowNum());
+                    }
+                }
+            }
+
+            return mapById(dataService.findByIds(ids));
+        }
+
+        private Map<String, Map<Long, Object>> retrieveRelatedInstances(List<ConvertedRow> chunk) {
+            Map<String, Set<Long>> relatedIds = new HashMap<>();
+            for (ConvertedRow row : chunk) {
+                if (row.getError() == null) {
+                    for (Object value : row.getValues().values()) {
+                        if (value instanceof RelatedIds) {
+                            RelatedIds ids = (RelatedIds) value;
+                            if (!relatedIds.containsKey(ids.getRelatedClass())) {
+                                relatedIds.put(ids.getRelatedClass(), new HashSet<Long>());
+                            }
+                            relatedIds.get(ids.getRelatedClass()).addAll(ids.getIds());
+                        }
+                    }
+                }
+            }
+
+            Map<String, Map<Long, Object>> relatedInstances = new HashMap<>();
+            for (Map.Entry<String, Set<Long>> entry : relatedIds.entrySet()) {
+                MotechDataService relatedDataService = DataServiceHelper.getDataService(getBundleContext(), entry.getKey());
+                relatedInstances.put(entry.getKey(), mapById(relatedDataService.findByIds(entry.getValue())));
+            }
+
+            return relatedInstances;
+        }
+    }
+
+    private RelatedIds parseRelatedIds(String csvValue, FieldDto field) {
+        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
+        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
+            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+            return new RelatedIds(relationshipHolder, ids == null ? new ArrayList<Long>() : ids);
+        } else {
+            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
+            return new RelatedIds(relationshipHolder, id == null ? new ArrayList<Long>() : Collections.singletonList(id));
+        }
+    }
+
+    private Map<Long, Object> mapById(Collection<?> instances) {
+        Map<Long, Object> map = new HashMap<>();
+        for (Object instance : instances) {
+            map.put(getInstanceId(instance), instance);
+        }
+        return map;
+    }
+
+    private List<Long> getIds(Collection<?> instances) {
+        List<Long> ids = new ArrayList<>(instances.size());
+        for (Object instance : instances) {
+            ids.add(getInstanceId(instance));
+        }
+        return ids;
+    }
+
+    /**
+     * The ids of the instances related to an imported instance, which are retrieved for the whole chunk at once.
+     */
+    private class RelatedIds {
+        private final RelationshipHolder relationshipHolder;
+        private final List<Long> ids;
+
+        RelatedIds(RelationshipHolder relationshipHolder, List<Long> ids) {
+            this.relationshipHolder = relationshipHolder;
+            this.ids = ids;
+        }
+
+        String getRelatedClass() {
+            return relationshipHolder.getRelatedClass();
+        }
+
+        List<Long> getIds() {
+            return ids;
+        }
+
+        Object toValue(Map<String, Map<Long, Object>> relatedInstances) {
+            Map<Long, Object> instances = relatedInstances.get(getRelatedClass());
+            Collection<Object> relatedObjects = relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany() ?
+                    buildRelationshipCollection(relationshipHolder) : null;
+
+            for (Long id : ids) {
+                Object relatedObj = instances.get(id);
+                if (relatedObj == null) {
+                    LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                            getRelatedClass(), id);
+                } else if (relatedObjects == null) {
+                    return relatedObj;
+                } else {
+                    relatedObjects.add(relatedObj);
+                }
+            }
+
+            return relatedObjects;
+        }
+    }
+
+    private static class CsvRow {
+        private final int rowNum;
+        private final Map<String, String> values;
+
+        CsvRow(int rowNum, Map<String, String> values) {
+            this.rowNum = rowNum;
+            this.values = values;
+        }
+
+        int getRowNum() {
+            return rowNum;
+        }
+
+        Map<String, String> getValues() {
+            return values;
+        }
+    }
+
+    private static class ConvertedRow {
+        private final CsvRow csvRow;
+        private final Map<String, Object> values;
+        private final RuntimeException error;
+
+        ConvertedRow(CsvRow csvRow, Map<String, Object> values, RuntimeException error) {
+            this.csvRow = csvRow;
+            this.values = values;
+            this.error = error;
+        }
+
+        CsvRow getCsvRow() {
+            return csvRow;
+        }
+
+        int getRowNum() {
+            return csvRow.getRowNum();
+        }
+
+        Map<String, Object> getValues() {
+            return values;
+        }
+
+        RuntimeException getError() {
+            return error;
+        }
+    }
+
+    private static class ChunkImportResult {
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> rowErrors = new HashMap<>();
+
+        List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
+        }
+
+        List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
+        }
+
+        Map<Integer, String> getRowErrors() {
+            return rowErrors;
+        }
+    }
+
     /**
      * This class represents a result of a single row import.
      * It contains the ID of the created instance, it also contains information about whether it is a
@@ -5,7 +5,6 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.impl.csv.writer.PdfTableWriter;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.OutputStream;
 import java.util.List;
@@ -22,7 +21,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param outputStream the output stream that will be used for writing the file
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final long entityId, final OutputStream outputStream) {
         return exportPdf(entityId, outputStream, new DefaultCsvExportCustomizer());
     }
@@ -33,7 +31,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param outputStream the output stream that will be used for writing the file
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final String entityClassName, final OutputStream outputStream) {
         return exportPdf(entityClassName, outputStream, new DefaultCsvExportCustomizer());
     }
@@ -45,7 +42,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final long entityId, OutputStream outputStream, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (PdfTableWriter tableWriter = new PdfTableWriter(outputStream)) {
@@ -60,7 +56,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final String entityClassName, OutputStream outputStream, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (PdfTableWriter tableWriter = new PdfTableWriter(outputStream)) {
@@ -78,7 +73,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields) {
         return exportPdf(entityId, outputStream, lookupName, params, headers, lookupFields,
@@ -95,7 +89,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(String entityClassName, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields) {
         return exportPdf(entityClassName, outputStream, lookupName, params, headers, lookupFields,
@@ -113,7 +106,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
@@ -134,7 +126,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(String entityClassName, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
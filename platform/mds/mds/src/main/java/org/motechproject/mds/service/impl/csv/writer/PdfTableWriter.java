@@ -80,6 +80,11 @@ public class PdfTableWriter implements TableWriter {
         }
     }
 
+    @Override
+    public void flush() {
+        // the column widths depend on all rows, so the table can only be laid out once it is complete
+    }
+
     @Override
     public void close() {
         try {
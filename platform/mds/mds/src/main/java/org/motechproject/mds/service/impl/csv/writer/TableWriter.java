@@ -25,6 +25,12 @@ public interface TableWriter extends AutoCloseable {
      */
     void writeHeader(String[] headers) throws IOException;
 
+    /**
+     * Flushes the rows written so far to the underlying output, if the format allows writing the table in parts.
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
     /**
      * {@inheritDoc}
      */
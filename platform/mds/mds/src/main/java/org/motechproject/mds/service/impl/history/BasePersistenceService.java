@@ -1,20 +1,35 @@
 package org.motechproject.mds.service.impl.history;
 
 import org.datanucleus.enhancer.Persistable;
+import org.motechproject.mds.query.LookupCache;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.ServiceUtil;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.TypeHelper;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleWiring;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jdo.JdoTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
 import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * The <code>BasePersistenceService</code> class provides utility methods for communication
@@ -23,14 +38,21 @@ import java.util.Collection;
  */
 public abstract class BasePersistenceService {
 
+    /**
+     * The maximal number of records removed in a single transaction by the bulk deletes.
+     */
+    static final int DELETE_BATCH_SIZE = 1000;
+
     private PersistenceManagerFactory persistenceManagerFactory;
+    private JdoTransactionManager transactionManager;
     private BundleContext bundleContext;
     private ApplicationContext appContext;
+    private OsgiEventProxy osgiEventProxy;
 
     private final RelationshipConverter relConverter = new RelationshipConverter();
 
     protected Long getInstanceId(Object instance) {
-        Object value = PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+        Object value = getAccessor(instance).get(instance, Constants.Util.ID_FIELD_NAME);
         Number id = null;
 
         if (value instanceof Number) {
@@ -52,18 +74,35 @@ public abstract class BasePersistenceService {
             }
         }
 
-        PropertyUtil.copyProperties(recordInstance, instance, relConverter);
+        PropertyAccessor accessor = getAccessor(instance);
+        PropertyAccessor recordAccessor = getAccessor(recordInstance);
+
+        accessor.copy(recordInstance, instance, recordAccessor, relConverter, null);
         // the regular copy ignores auto generated fields, we want to copy a subset of them
-        PropertyUtil.copyProperties(recordInstance, instance, relConverter, Constants.Util.RECORD_FIELDS_TO_COPY);
+        accessor.copy(recordInstance, instance, recordAccessor, relConverter, Constants.Util.RECORD_FIELDS_TO_COPY);
 
         return recordInstance;
     }
 
+    /**
+     * Returns the property accessor of the class of the given instance. The accessors generated for the entities
+     * are looked up in the entities bundle.
+     *
+     * @param instance the instance, not null
+     * @return the accessor of the class of the instance
+     */
+    protected PropertyAccessor getAccessor(Object instance) {
+        Bundle bundle = null == bundleContext ? null : bundleContext.getBundle();
+        BundleWiring wiring = null == bundle ? null : bundle.adapt(BundleWiring.class);
+
+        return PropertyAccessors.forInstance(instance, null == wiring ? null : wiring.getClassLoader());
+    }
+
     protected Collection<Long> convertToIdsCollection(Collection collection) {
         Collection<Long> idColl = TypeHelper.suggestAndCreateCollectionImplementation(collection.getClass());
 
         for (Object obj : collection) {
-            idColl.add((Long) PropertyUtil.safeGetProperty(obj, Constants.Util.ID_FIELD_NAME));
+            idColl.add(getInstanceId(obj));
         }
 
         return idColl;
@@ -77,6 +116,70 @@ public abstract class BasePersistenceService {
         return dataService.getSchemaVersion();
     }
 
+    /**
+     * Removes the records of the given class with the given ids, using a single set-based delete. The delete
+     * bypasses the data services, so the lookup caches affected by it are invalidated here, on this and the other
+     * instances, once the transaction is committed.
+     *
+     * @param clazz the class of the records
+     * @param ids the ids of the records to remove
+     * @return the number of removed records
+     */
+    protected long deleteByIds(Class<?> clazz, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        Query query = manager.newQuery(clazz);
+        query.declareParameters("java.util.Collection ids");
+        query.setFilter("ids.contains(" + Constants.Util.ID_FIELD_NAME + ")");
+
+        long removed = query.deletePersistentAll(ids);
+        invalidateLookupCaches(clazz.getName(), ids);
+
+        return removed;
+    }
+
+    private void invalidateLookupCaches(final String className, Collection<Long> ids) {
+        final List<Long> deletedIds = new ArrayList<>(ids);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doInvalidateLookupCaches(className, deletedIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                doInvalidateLookupCaches(className, deletedIds);
+            }
+        });
+    }
+
+    private void doInvalidateLookupCaches(String className, List<Long> deletedIds) {
+        if (LookupCache.isTracked(className)) {
+            LookupCache.invalidate(className, deletedIds);
+            osgiEventProxy.broadcastEvent(LookupCache.INVALIDATE_TOPIC,
+                    LookupCache.createInvalidationParams(className, deletedIds), true);
+        }
+    }
+
+    /**
+     * Executes the given callback in a new transaction. The bulk deletes use it to commit each batch separately,
+     * so that the locks are not held for the whole operation.
+     *
+     * @param callback the callback to execute
+     * @param <T> the type of the result
+     * @return the result of the callback
+     */
+    protected <T> T doInTransaction(TransactionCallback<T> callback) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        return template.execute(callback);
+    }
+
     protected PersistenceManagerFactory getPersistenceManagerFactory() {
         return persistenceManagerFactory;
     }
@@ -91,6 +194,11 @@ public abstract class BasePersistenceService {
         this.persistenceManagerFactory = persistenceManagerFactory;
     }
 
+    @Autowired
+    public void setTransactionManager(JdoTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
@@ -101,6 +209,11 @@ public abstract class BasePersistenceService {
         this.appContext = appContext;
     }
 
+    @Autowired
+    public void setOsgiEventProxy(OsgiEventProxy osgiEventProxy) {
+        this.osgiEventProxy = osgiEventProxy;
+    }
+
     protected BundleContext getBundleContext() {
         return bundleContext;
     }
@@ -128,7 +241,7 @@ public abstract class BasePersistenceService {
                 }
             } else if (value instanceof Persistable) {
                 // 1:1 or M:1 relationship, just copy the id
-                return PropertyUtil.safeGetProperty(value, Constants.Util.ID_FIELD_NAME);
+                return getAccessor(value).get(value, Constants.Util.ID_FIELD_NAME);
             } else {
                 // regular field
                 return value;
@@ -1,5 +1,6 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.joda.time.DateTime;
 import org.motechproject.mds.domain.EntityType;
 import org.motechproject.mds.service.HistoryTrashClassHelper;
 import org.motechproject.mds.query.Property;
@@ -8,10 +9,12 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.util.Order;
-import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.PropertyAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
@@ -19,9 +22,13 @@ import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.MODIFICATION_DATE_FIELD_NAME;
 
 /**
  * Default implementation of {@link org.motechproject.mds.service.HistoryService} interface.
@@ -113,6 +120,82 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return obj;
     }
 
+    @Override
+    public void purgeHistory(Collection<String> entitiesClassNames, final DateTime olderThan) {
+        for (String className : entitiesClassNames) {
+            final Class<?> historyClass = HistoryTrashClassHelper.getClass(className, EntityType.HISTORY,
+                    getBundleContext());
+
+            if (null == historyClass) {
+                continue;
+            }
+
+            long removed = 0;
+            PurgedBatch batch = new PurgedBatch(0, 0L, 0);
+
+            // each batch is removed in its own transaction, so that the history table is not locked for long
+            do {
+                final Long lastId = batch.getLastId();
+
+                batch = doInTransaction(new TransactionCallback<PurgedBatch>() {
+                    @Override
+                    public PurgedBatch doInTransaction(TransactionStatus status) {
+                        return purgeHistoryBatch(historyClass, olderThan, lastId);
+                    }
+                });
+
+                removed += batch.getRemoved();
+            } while (batch.getSelected() == DELETE_BATCH_SIZE);
+
+            LOGGER.info("Removed {} historical revisions of {} made before {}", removed, className, olderThan);
+        }
+    }
+
+    private PurgedBatch purgeHistoryBatch(Class<?> historyClass, DateTime olderThan, Long lastId) {
+        String currentVersion = HistoryTrashClassHelper.currentVersion(historyClass);
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        // only the ids of the revisions and of their instances are retrieved
+        Query query = manager.newQuery(historyClass);
+        query.declareParameters("java.lang.Long lastId, org.joda.time.DateTime olderThan");
+        query.setFilter(String.format("%s > lastId && %s < olderThan", ID_FIELD_NAME, MODIFICATION_DATE_FIELD_NAME));
+        query.setResult(ID_FIELD_NAME + ", " + currentVersion);
+        query.setOrdering(ID_FIELD_NAME + " ascending");
+        query.setRange(0, DELETE_BATCH_SIZE);
+
+        List<Object[]> rows = new ArrayList<>((Collection<Object[]>) query.execute(lastId, olderThan));
+
+        if (rows.isEmpty()) {
+            return new PurgedBatch(0, lastId, 0);
+        }
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        Set<Long> instanceIds = new HashSet<>();
+
+        for (Object[] row : rows) {
+            ids.add((Long) row[0]);
+            if (null != row[1]) {
+                instanceIds.add((Long) row[1]);
+            }
+        }
+
+        // the latest revision of an instance is its current state, it must not be removed
+        if (!instanceIds.isEmpty()) {
+            Query latestQuery = manager.newQuery(historyClass);
+            latestQuery.declareParameters("java.util.Collection instanceIds");
+            latestQuery.setFilter(String.format("instanceIds.contains(%s)", currentVersion));
+            latestQuery.setResult(String.format("max(%s)", ID_FIELD_NAME));
+            latestQuery.setGrouping(currentVersion);
+
+            ids.removeAll((Collection<Long>) latestQuery.execute(instanceIds));
+        }
+
+        long removed = deleteByIds(historyClass, ids);
+        Long last = (Long) rows.get(rows.size() - 1)[0];
+
+        return new PurgedBatch(rows.size(), last, removed);
+    }
+
     private boolean shouldRecordHistory(Class<?> historyClass, Object instance) {
         // we don't want duplicate history instances
         // this checks will prevent double history being recorder from cascade events etc.
@@ -131,7 +214,8 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
                 return true;
             } else {
                 // check if any fields changed
-                List<String> changedFields = PropertyUtil.findChangedFields(instance, latestHistoryRev, getRelConverter());
+                List<String> changedFields = getAccessor(instance).findChangedFields(instance, latestHistoryRev,
+                        getAccessor(latestHistoryRev), getRelConverter());
                 return !changedFields.isEmpty();
             }
         }
@@ -152,13 +236,14 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
 
     private void setHistoryProperties(Object newHistoryObj, Object realCurrentObj) {
         // creates connection between instance object and history object
+        PropertyAccessor historyAccessor = getAccessor(newHistoryObj);
+
         Long id = getInstanceId(realCurrentObj);
-        PropertyUtil.safeSetProperty(newHistoryObj,
-                HistoryTrashClassHelper.currentVersion(newHistoryObj.getClass()), id);
+        historyAccessor.set(newHistoryObj, HistoryTrashClassHelper.currentVersion(newHistoryObj.getClass()), id);
 
         // add current entity schema version
         Long schemaVersion = getCurrentSchemaVersion(realCurrentObj.getClass().getName());
-        PropertyUtil.safeSetProperty(newHistoryObj,
+        historyAccessor.set(newHistoryObj,
                 HistoryTrashClassHelper.historySchemaVersion(newHistoryObj.getClass()), schemaVersion);
     }
 
@@ -202,6 +287,33 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         }
     }
 
+    /**
+     * The result of purging a single batch of historical revisions.
+     */
+    private static final class PurgedBatch {
+        private final int selected;
+        private final Long lastId;
+        private final long removed;
+
+        private PurgedBatch(int selected, Long lastId, long removed) {
+            this.selected = selected;
+            this.lastId = lastId;
+            this.removed = removed;
+        }
+
+        public int getSelected() {
+            return selected;
+        }
+
+        public Long getLastId() {
+            return lastId;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+    }
+
     /**
      * This TX sync does history related cleanup once a TX completes.
      * It clears the repository of the records we have stored in this TX.
@@ -1,6 +1,5 @@
 package org.motechproject.mds.service.impl.history;
 
-import org.apache.commons.beanutils.MethodUtils;
 import org.motechproject.mds.config.DeleteMode;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.domain.EntityType;
@@ -15,11 +14,12 @@ import org.motechproject.mds.util.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -54,9 +54,7 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
 
             LOGGER.debug("Created trash instance for: {}", instance);
 
-            try {
-                MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            if (!getAccessor(trash).set(trash, Constants.Util.SCHEMA_VERSION_FIELD_NAME, entityVersion)) {
                 LOGGER.error("Failed to set schema version of the trash instance.");
             }
 
@@ -133,6 +131,11 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         return (long) query.execute(schemaVersion);
     }
 
+    @Override
+    public boolean isEmptyTrashEnabled() {
+        return isTrashMode() && settingsService.isEmptyTrash();
+    }
+
     @Override
     @Transactional
     public void scheduleEmptyTrashJob() {
@@ -140,7 +143,8 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
         mdsSchedulerService.unscheduleRepeatingJob();
 
         // schedule new job only if trashMode is active and emptyTrash flag is set
-        if (isTrashMode() && settingsService.isEmptyTrash()) {
+        // or if old history revisions should be removed
+        if (isEmptyTrashEnabled() || settingsService.isHistoryRetention()) {
             Integer timeValue = settingsService.getTimeValue();
             Long timeUnit = settingsService.getTimeUnit().inMillis();
             long interval = timeValue * timeUnit;
@@ -150,21 +154,50 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
     }
 
     @Override
-    @Transactional
     public void emptyTrash(Collection<String> entitiesClassNames) {
-        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
-
         for (String className : entitiesClassNames) {
-            Class<?> trashClass = HistoryTrashClassHelper.getClass(className, EntityType.TRASH,
+            final Class<?> trashClass = HistoryTrashClassHelper.getClass(className, EntityType.TRASH,
                     getBundleContext());
 
-            Query query = manager.newQuery(trashClass);
-            Collection instances = (Collection) query.execute();
+            if (null == trashClass) {
+                continue;
+            }
+
+            long removed = 0;
+            int batchSize;
+
+            // each batch is removed in its own transaction, so that the trash table is not locked for long
+            do {
+                batchSize = doInTransaction(new TransactionCallback<Integer>() {
+                    @Override
+                    public Integer doInTransaction(TransactionStatus status) {
+                        return removeTrashBatch(trashClass);
+                    }
+                });
 
-            manager.deletePersistentAll(instances);
+                removed += batchSize;
+            } while (batchSize == DELETE_BATCH_SIZE);
+
+            LOGGER.info("Removed {} instances from the trash of {}", removed, className);
         }
     }
 
+    private int removeTrashBatch(Class<?> trashClass) {
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        // only the ids are retrieved, the instances are removed by a set-based delete
+        Query query = manager.newQuery(trashClass);
+        query.setResult(Constants.Util.ID_FIELD_NAME);
+        query.setOrdering(Constants.Util.ID_FIELD_NAME + " ascending");
+        query.setRange(0, DELETE_BATCH_SIZE);
+
+        List<Long> ids = new ArrayList<>((Collection<Long>) query.execute());
+
+        deleteByIds(trashClass, ids);
+
+        return ids.size();
+    }
+
     @Autowired
     public void setMdsSchedulerService(MdsSchedulerService mdsSchedulerService) {
         this.mdsSchedulerService = mdsSchedulerService;
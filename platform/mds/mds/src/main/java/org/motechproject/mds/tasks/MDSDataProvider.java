@@ -26,11 +26,16 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Class responsible for all actions connected with registering MDS data provider in Task module.
+ * The executors of the lookups used by the tasks are cached by the entity class name, lookup name and
+ * the schema version of the entity. The cache is cleared when the data provider is updated with a new schema.
  */
 @Component("mdsDataProvider")
 public class MDSDataProvider extends AbstractDataProvider {
@@ -44,6 +49,9 @@ public class MDSDataProvider extends AbstractDataProvider {
     private ServiceRegistration serviceRegistration;
     private EntityService entityService;
 
+    private final ConcurrentMap<String, LookupExecutor> lookupExecutors = new ConcurrentHashMap<>();
+    private volatile Map<String, Long> schemaVersions = new HashMap<>();
+
     @Autowired
     public MDSDataProvider(ResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
@@ -87,25 +95,9 @@ public class MDSDataProvider extends AbstractDataProvider {
     private Object findUsingLookup(String type, String lookupName, Map<String, String> lookupMap) {
         Object obj = null;
 
-        LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
-        if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
-        }
-
-        if (entity != null && lookup != null) {
-            String serviceName = MotechClassPool.getInterfaceName(type);
-            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
-
-            if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
-
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
-
-                obj = executor.execute(lookupMap);
-            } else {
-                getLogger().error("Service %s not found", serviceName);
-            }
+        LookupExecutor executor = getLookupExecutor(type, lookupName);
+        if (executor != null) {
+            obj = executor.execute(lookupMap);
         }
 
         // we allow executing lookups that return multiple objects
@@ -127,6 +119,54 @@ public class MDSDataProvider extends AbstractDataProvider {
         return result;
     }
 
+    private LookupExecutor getLookupExecutor(String type, String lookupName) {
+        String key = getLookupExecutorKey(type, lookupName);
+        String serviceName = MotechClassPool.getInterfaceName(type);
+
+        LookupExecutor executor = null == key ? null : lookupExecutors.get(key);
+        if (executor != null) {
+            // the data service is replaced when the entities bundle is restarted
+            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
+            if (executor.getDataService() == service) {
+                return executor;
+            }
+        }
+
+        executor = null;
+
+        LookupDto lookup = null;
+        EntityDto entity = entityService.getEntityByClassName(type);
+        if (entity != null) {
+            lookup = entityService.getLookupByName(entity.getId(), lookupName);
+        }
+
+        if (entity != null && lookup != null) {
+            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
+
+            if (service != null) {
+                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+
+                executor = new LookupExecutor(service, lookup, fieldsByName);
+
+                if (null != key) {
+                    lookupExecutors.put(key, executor);
+                }
+            } else {
+                getLogger().error("Service %s not found", serviceName);
+            }
+        }
+
+        return executor;
+    }
+
+    private String getLookupExecutorKey(String type, String lookupName) {
+        Map<String, Long> versions = schemaVersions;
+        // the executors are not cached before the data provider receives the schema
+        return versions.containsKey(type)
+                ? String.format("%s#%s#%s", type, lookupName, versions.get(type))
+                : null;
+    }
+
     @Override
     protected Class<?> getClassForType(String type) throws ClassNotFoundException {
         Bundle entitiesBundle = OsgiBundleUtils.findBundleBySymbolicName(bundleContext,
@@ -162,6 +202,14 @@ public class MDSDataProvider extends AbstractDataProvider {
 
     public void updateDataProvider(SchemaHolder schemaHolder) {
         setBody(mdsDataProviderBuilder.generateDataProvider(schemaHolder));
+
+        Map<String, Long> versions = new HashMap<>();
+        for (EntityDto entity : schemaHolder.getAllEntities()) {
+            versions.put(entity.getClassName(), entity.getSchemaVersion());
+        }
+        schemaVersions = versions;
+        lookupExecutors.clear();
+
         // we unregister the service, then register again
         if (serviceRegistration != null) {
             serviceRegistration.unregister();
@@ -96,6 +96,23 @@ public final class ClassName {
         return String.format("%s.All%ss", packageName, getSimpleName(className));
     }
 
+    /**
+     * Retrieves the name of the generated {@link PropertyAccessor} for the given entity, history or trash
+     * class name.
+     *
+     * @param className entity, history or trash class name
+     * @return fully qualified property accessor class name
+     */
+    public static String getAccessorClassName(String className) {
+        String packageName = getPackage(className);
+        if (StringUtils.isBlank(packageName) || Constants.PackagesGenerated.ENTITY.equals(packageName)) {
+            packageName = Constants.PackagesGenerated.ACCESSOR;
+        } else {
+            packageName += ".mdsaccessor";
+        }
+        return String.format("%s.%sAccessor", packageName, getSimpleName(className));
+    }
+
     /**
      * Retrieves interface name for the End User Defined Entity or for Developer Defined Entity
      * that do not define their own interface.
@@ -155,6 +155,14 @@ public final class Constants {
          */
         public static final String SERVICE_IMPL = SERVICE + ".impl";
 
+        /**
+         * Constant <code>ACCESSOR</code> presents a package for generated property accessors of the
+         * classes defined in {@link #ENTITY} package.
+         *
+         * @see #ENTITY
+         */
+        public static final String ACCESSOR = ENTITY + ".accessor";
+
         private PackagesGenerated() {
         }
     }
@@ -221,6 +229,33 @@ public final class Constants {
          */
         public static final String MDS_TIME_UNIT = "mds.emptyTrash.afterTimeUnit";
 
+        /**
+         * The boolean property that specifies if old historical revisions should be removed. The latest revision
+         * of an instance is always kept.
+         *
+         * @see #MDS_HISTORY_RETENTION_TIME_VALUE
+         * @see #MDS_HISTORY_RETENTION_TIME_UNIT
+         */
+        public static final String MDS_HISTORY_RETENTION = "mds.historyRetention";
+
+        /**
+         * The integer property that specifies after what time (according with correct time unit)
+         * historical revisions should be removed.
+         *
+         * @see #MDS_HISTORY_RETENTION
+         * @see #MDS_HISTORY_RETENTION_TIME_UNIT
+         */
+        public static final String MDS_HISTORY_RETENTION_TIME_VALUE = "mds.historyRetention.afterTimeValue";
+
+        /**
+         * The property that specifies what time unit should be used to specify after what time historical
+         * revisions should be removed. It accepts the same values as {@link #MDS_TIME_UNIT}.
+         *
+         * @see #MDS_HISTORY_RETENTION
+         * @see #MDS_HISTORY_RETENTION_TIME_VALUE
+         */
+        public static final String MDS_HISTORY_RETENTION_TIME_UNIT = "mds.historyRetention.afterTimeUnit";
+
         /**
          * The property that specifies default number of records in each data browser grid.
          */
@@ -568,6 +603,13 @@ public final class Constants {
         public static final String NAMESPACE = "namespace";
         public static final String ENTITY_CLASS = "entity_class";
         public static final String OBJECT_ID = "object_id";
+        public static final String OBJECT_IDS = "object_ids";
+
+        /**
+         * Appended to the action in the subject of the events sent once for a chunk of a bulk operation, so that
+         * they are not received by the listeners of the events of single instances.
+         */
+        public static final String BULK_SUFFIX = "_BULK";
 
         private static final String CSV_IMPORT_PREFIX = "csv-import.";
         public static final String CSV_IMPORT_CREATED_IDS = CSV_IMPORT_PREFIX + "created_ids";
@@ -578,6 +620,7 @@ public final class Constants {
         public static final String CSV_IMPORT_FAILURE_MSG = CSV_IMPORT_PREFIX + "failure_message";
         public static final String CSV_IMPORT_FAILURE_STACKTRACE = CSV_IMPORT_PREFIX + "failure_stacktrace";
         public static final String CSV_IMPORT_FILENAME = CSV_IMPORT_PREFIX + "filename";
+        public static final String CSV_IMPORT_COMMITTED_ROWS = CSV_IMPORT_PREFIX + "committed_rows";
 
         // subject
         public static final String BASE_SUBJECT = "mds.crud.";
@@ -0,0 +1,253 @@
+package org.motechproject.mds.util;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.ex.object.PropertyCopyException;
+import org.motechproject.mds.ex.object.PropertyReadException;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The <code>PropertyAccessor</code> reads and writes the properties of instances of a single class without
+ * reflection. The properties are the ones with both a public getter and a public setter, identified by their index
+ * in {@link #getPropertyNames()}. The accessors of the MDS entities, including their history and trash classes,
+ * are generated together with the entity classes, see {@link PropertyAccessors} for retrieving them.
+ * <p>
+ * The {@link #copy(Object, Object, PropertyAccessor, PropertyUtil.ValueConverter, Set)} and
+ * {@link #findChangedFields(Object, Object, PropertyAccessor, PropertyUtil.ValueConverter)} methods follow the
+ * rules of their counterparts in {@link PropertyUtil}.
+ */
+public abstract class PropertyAccessor {
+
+    private final Class<?> type;
+    private final String[] propertyNames;
+    private final Map<String, Integer> indexes;
+    private final boolean[] generated;
+    private final boolean[] version;
+
+    private volatile PropertyDescriptor[] descriptors;
+
+    /**
+     * Constructor used by the generated accessors.
+     *
+     * @param type the class which instances are accessed
+     * @param propertyNames the comma separated names of the properties, in the order of their indexes
+     */
+    protected PropertyAccessor(Class<?> type, String propertyNames) {
+        this(type, StringUtils.split(propertyNames, ','));
+    }
+
+    protected PropertyAccessor(Class<?> type, String[] propertyNames) {
+        this.type = type;
+        this.propertyNames = null == propertyNames ? new String[0] : propertyNames;
+        this.indexes = new HashMap<>();
+        this.generated = new boolean[this.propertyNames.length];
+        this.version = new boolean[this.propertyNames.length];
+
+        for (int i = 0; i < this.propertyNames.length; ++i) {
+            String name = this.propertyNames[i];
+
+            indexes.put(name, i);
+            generated[i] = ArrayUtils.contains(Constants.Util.GENERATED_FIELD_NAMES, name);
+            version[i] = Constants.Util.INSTANCE_VERSION_FIELD_NAME.equals(name);
+        }
+    }
+
+    /**
+     * Returns the value of the property with the given index.
+     *
+     * @param instance the instance, not null
+     * @param index the index of the property
+     * @return the value of the property
+     * @throws IndexOutOfBoundsException if there is no property with the given index
+     */
+    public abstract Object get(Object instance, int index);
+
+    /**
+     * Sets the value of the property with the given index. A null value is ignored for the primitive properties.
+     *
+     * @param instance the instance, not null
+     * @param index the index of the property
+     * @param value the new value of the property
+     * @throws IndexOutOfBoundsException if there is no property with the given index
+     */
+    public abstract void set(Object instance, int index, Object value);
+
+    /**
+     * Returns the value of the property with the given name, or null if there is no such property.
+     *
+     * @param instance the instance, null is allowed
+     * @param propertyName the name of the property
+     * @return the value of the property
+     */
+    public Object get(Object instance, String propertyName) {
+        int index = indexOf(propertyName);
+        return null == instance || index < 0 ? null : get(instance, index);
+    }
+
+    /**
+     * Sets the value of the property with the given name.
+     *
+     * @param instance the instance, not null
+     * @param propertyName the name of the property
+     * @param value the new value of the property
+     * @return true if the property was set; false if there is no such property
+     */
+    public boolean set(Object instance, String propertyName, Object value) {
+        int index = indexOf(propertyName);
+
+        if (index < 0) {
+            return false;
+        }
+
+        set(instance, index, value);
+        return true;
+    }
+
+    /**
+     * Returns the index of the property with the given name. Like {@link PropertyUtil#safeGetProperty(Object, String)},
+     * the uncapitalized name is tried if there is no property with the given name.
+     *
+     * @param propertyName the name of the property
+     * @return the index of the property, or -1 if there is no such property
+     */
+    public int indexOf(String propertyName) {
+        Integer index = indexes.get(propertyName);
+
+        if (null == index && StringUtils.isNotEmpty(propertyName) && Character.isUpperCase(propertyName.charAt(0))) {
+            index = indexes.get(StringUtils.uncapitalize(propertyName));
+        }
+
+        return null == index ? -1 : index;
+    }
+
+    /**
+     * Copies the properties of the source instance, accessed by this accessor, to the target instance. The
+     * properties missing in the target class are skipped.
+     *
+     * @param target the target instance
+     * @param source the source instance
+     * @param targetAccessor the accessor of the target class
+     * @param converter the converter applied to the copied values, null means no conversion
+     * @param fieldsToUpdate the names of the copied properties, if null all properties except the generated ones
+     *                       and the version field are copied
+     * @throws PropertyCopyException if a property could not be copied
+     */
+    public void copy(Object target, Object source, PropertyAccessor targetAccessor,
+                     PropertyUtil.ValueConverter converter, Set<String> fieldsToUpdate) {
+        for (int i = 0; i < propertyNames.length; ++i) {
+            if (shouldSkip(i, fieldsToUpdate)) {
+                continue;
+            }
+
+            // target and value can have different classes - for example when copying to history
+            int targetIndex = targetAccessor.indexOf(propertyNames[i]);
+            if (targetIndex < 0) {
+                continue;
+            }
+
+            try {
+                targetAccessor.set(target, targetIndex, readValue(source, i, converter));
+            } catch (RuntimeException e) {
+                throw new PropertyCopyException("Unable to copy properties for " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the properties which values differ between the given instances. The id and the
+     * properties missing in the class of the old instance are not compared.
+     *
+     * @param newInstance the new instance, accessed by this accessor
+     * @param oldInstance the old instance
+     * @param oldAccessor the accessor of the class of the old instance
+     * @param converter the converter applied to the compared values, null means no conversion
+     * @return the names of the changed properties
+     * @throws PropertyReadException if a property could not be read
+     */
+    public List<String> findChangedFields(Object newInstance, Object oldInstance, PropertyAccessor oldAccessor,
+                                          PropertyUtil.ValueConverter converter) {
+        List<String> changedProperties = new ArrayList<>();
+
+        for (int i = 0; i < propertyNames.length; ++i) {
+            String fieldName = propertyNames[i];
+
+            // skip the id field
+            if (Constants.Util.ID_FIELD_NAME.equals(fieldName)) {
+                continue;
+            }
+
+            int oldIndex = oldAccessor.indexOf(fieldName);
+            if (oldIndex < 0) {
+                continue;
+            }
+
+            try {
+                Object newValue = readValue(newInstance, i, converter);
+                Object oldValue = oldAccessor.readValue(oldInstance, oldIndex, converter);
+
+                if (!Objects.equals(newValue, oldValue)) {
+                    changedProperties.add(fieldName);
+                }
+            } catch (RuntimeException e) {
+                throw new PropertyReadException("Unable to compare properties for " + type.getName(), e);
+            }
+        }
+
+        return changedProperties;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String[] getPropertyNames() {
+        return propertyNames.clone();
+    }
+
+    public int getPropertyCount() {
+        return propertyNames.length;
+    }
+
+    private boolean shouldSkip(int index, Set<String> fieldsToUpdate) {
+        if (fieldsToUpdate != null) {
+            // if we have a list of fields to update, then skip if this field is not on it
+            return !fieldsToUpdate.contains(propertyNames[index]);
+        }
+
+        // we skip generated fields and the version field unless we have fields explicitly provided
+        return generated[index] || version[index];
+    }
+
+    private Object readValue(Object instance, int index, PropertyUtil.ValueConverter converter) {
+        Object value = get(instance, index);
+        return null == converter ? value : converter.convert(value, getDescriptor(index));
+    }
+
+    private PropertyDescriptor getDescriptor(int index) {
+        // the converters receive descriptors, they are looked up only once
+        PropertyDescriptor[] array = descriptors;
+
+        if (null == array) {
+            array = new PropertyDescriptor[propertyNames.length];
+
+            for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+                int i = indexOf(descriptor.getName());
+                if (i >= 0) {
+                    array[i] = descriptor;
+                }
+            }
+
+            descriptors = array;
+        }
+
+        return array[index];
+    }
+}
@@ -0,0 +1,125 @@
+package org.motechproject.mds.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>PropertyAccessors</code> util class provides the {@link PropertyAccessor}s of classes. For the MDS
+ * entities, their history and trash classes it returns the accessors generated together with them (see
+ * {@link ClassName#getAccessorClassName(String)}), for other classes a reflective accessor. The accessors are
+ * created once for each class.
+ */
+public final class PropertyAccessors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyAccessors.class);
+
+    private static final ClassValue<AccessorHolder> ACCESSORS = new ClassValue<AccessorHolder>() {
+        @Override
+        protected AccessorHolder computeValue(Class<?> type) {
+            return new AccessorHolder();
+        }
+    };
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * Returns the accessor of the given class. The generated accessor is looked for in the class loader of
+     * the given class.
+     *
+     * @param clazz the class
+     * @return the accessor of the class
+     */
+    public static PropertyAccessor forClass(Class<?> clazz) {
+        return forClass(clazz, null);
+    }
+
+    /**
+     * Returns the accessor of the given class. The generated accessor is looked for in the given class loader,
+     * then in the class loader of the given class. The accessors of the developer defined entities are not visible
+     * from their bundles, so the class loader of the MDS entities bundle should be passed here.
+     *
+     * @param clazz the class
+     * @param accessorClassLoader the class loader of the generated accessors, can be null
+     * @return the accessor of the class
+     */
+    public static PropertyAccessor forClass(Class<?> clazz, ClassLoader accessorClassLoader) {
+        AccessorHolder holder = ACCESSORS.get(clazz);
+        CachedAccessor cached = holder.cached;
+
+        // the developer defined entities outlive the entities bundle, so the accessor is looked up again
+        // when it is requested from a new bundle
+        if (null == cached || (null != accessorClassLoader && cached.classLoader != accessorClassLoader)) {
+            // concurrent lookups create equivalent accessors, any of them can be kept
+            cached = new CachedAccessor(loadAccessor(clazz, accessorClassLoader), accessorClassLoader);
+            holder.cached = cached;
+        }
+
+        return cached.accessor;
+    }
+
+    /**
+     * Returns the accessor of the class of the given instance.
+     *
+     * @param instance the instance, not null
+     * @param accessorClassLoader the class loader of the generated accessors, can be null
+     * @return the accessor of the class of the instance
+     * @see #forClass(Class, ClassLoader)
+     */
+    public static PropertyAccessor forInstance(Object instance, ClassLoader accessorClassLoader) {
+        return forClass(instance.getClass(), accessorClassLoader);
+    }
+
+    private static PropertyAccessor loadAccessor(Class<?> clazz, ClassLoader accessorClassLoader) {
+        String accessorName = ClassName.getAccessorClassName(clazz.getName());
+
+        PropertyAccessor accessor = loadAccessor(clazz, accessorName, accessorClassLoader);
+
+        if (null == accessor && clazz.getClassLoader() != accessorClassLoader) {
+            accessor = loadAccessor(clazz, accessorName, clazz.getClassLoader());
+        }
+
+        if (null == accessor) {
+            LOGGER.debug("No generated accessor for {}, using reflection", clazz.getName());
+            accessor = ReflectivePropertyAccessor.forClass(clazz);
+        }
+
+        return accessor;
+    }
+
+    private static PropertyAccessor loadAccessor(Class<?> clazz, String accessorName, ClassLoader classLoader) {
+        if (null == classLoader) {
+            return null;
+        }
+
+        try {
+            Class<?> accessorClass = classLoader.loadClass(accessorName);
+
+            // the accessor must be generated for this very class, not for a class from a previous bundle
+            if (null != accessorClass && PropertyAccessor.class.isAssignableFrom(accessorClass)) {
+                PropertyAccessor accessor = (PropertyAccessor) accessorClass.newInstance();
+                return accessor.getType() == clazz ? accessor : null;
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.trace("Accessor {} not found", accessorName, e);
+        } catch (InstantiationException | IllegalAccessException e) {
+            LOGGER.error("Unable to create the accessor {}", accessorName, e);
+        }
+
+        return null;
+    }
+
+    private static final class AccessorHolder {
+        private volatile CachedAccessor cached;
+    }
+
+    private static final class CachedAccessor {
+        private final PropertyAccessor accessor;
+        private final ClassLoader classLoader;
+
+        private CachedAccessor(PropertyAccessor accessor, ClassLoader classLoader) {
+            this.accessor = accessor;
+            this.classLoader = classLoader;
+        }
+    }
+}
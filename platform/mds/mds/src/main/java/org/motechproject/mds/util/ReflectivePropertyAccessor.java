@@ -0,0 +1,67 @@
+package org.motechproject.mds.util;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>ReflectivePropertyAccessor</code> is the {@link PropertyAccessor} used for classes without a generated
+ * accessor. It invokes the getters and setters through reflection, but looks them up only once.
+ */
+final class ReflectivePropertyAccessor extends PropertyAccessor {
+
+    private final Method[] getters;
+    private final Method[] setters;
+
+    static ReflectivePropertyAccessor forClass(Class<?> type) {
+        List<String> names = new ArrayList<>();
+        List<Method> getters = new ArrayList<>();
+        List<Method> setters = new ArrayList<>();
+
+        for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+            Method getter = descriptor.getReadMethod();
+            Method setter = descriptor.getWriteMethod();
+
+            if (null != getter && null != setter) {
+                names.add(descriptor.getName());
+                getters.add(getter);
+                setters.add(setter);
+            }
+        }
+
+        return new ReflectivePropertyAccessor(type, names.toArray(new String[names.size()]),
+                getters.toArray(new Method[getters.size()]), setters.toArray(new Method[setters.size()]));
+    }
+
+    private ReflectivePropertyAccessor(Class<?> type, String[] propertyNames, Method[] getters, Method[] setters) {
+        super(type, propertyNames);
+        this.getters = getters;
+        this.setters = setters;
+    }
+
+    @Override
+    public Object get(Object instance, int index) {
+        try {
+            return getters[index].invoke(instance);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to read the property " + getters[index].getName(), e);
+        }
+    }
+
+    @Override
+    public void set(Object instance, int index, Object value) {
+        if (null == value && setters[index].getParameterTypes()[0].isPrimitive()) {
+            return;
+        }
+
+        try {
+            setters[index].invoke(instance, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to write the property " + setters[index].getName(), e);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- add lookup cache settings in Tracking table --
+
+ALTER TABLE "Tracking" ADD "cacheLookups" boolean NOT NULL DEFAULT FALSE;
+ALTER TABLE "Tracking" ADD "lookupCacheSize" integer NOT NULL DEFAULT 1000;
+ALTER TABLE "Tracking" ADD "lookupCacheTimeToLive" integer NOT NULL DEFAULT 300;
@@ -0,0 +1,5 @@
+-- add lookup cache settings in Tracking table --
+
+ALTER TABLE Tracking ADD cacheLookups bit(1) NOT NULL DEFAULT 0;
+ALTER TABLE Tracking ADD lookupCacheSize int(11) NOT NULL DEFAULT 1000;
+ALTER TABLE Tracking ADD lookupCacheTimeToLive int(11) NOT NULL DEFAULT 300;
@@ -5,10 +5,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.builder.MDSDataProviderBuilder;
+import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.javassist.MotechClassPool;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.DefaultMotechDataService;
@@ -19,6 +22,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.springframework.core.io.ResourceLoader;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +31,8 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -54,6 +60,9 @@ public class MdsDataProviderTest {
     @Mock
     private EntityDto entity;
 
+    @Mock
+    private MDSDataProviderBuilder mdsDataProviderBuilder;
+
     private MDSDataProvider dataProvider;
 
     @Before
@@ -91,6 +100,7 @@ public class MdsDataProviderTest {
         dataProvider = new MDSDataProvider(resourceLoader);
         dataProvider.setEntityService(entityService);
         dataProvider.setBundleContext(bundleContext);
+        dataProvider.setMdsDataProviderBuilder(mdsDataProviderBuilder);
 
         MotechClassPool.registerServiceInterface(Record.class.getName(), LookupService.class.getName());
     }
@@ -148,6 +158,32 @@ public class MdsDataProviderTest {
         assertEquals("found by related field", record.getValue());
     }
 
+    @Test
+    public void shouldReuseLookupExecutorsUntilSchemaIsUpdated() {
+        when(entity.getClassName()).thenReturn(Record.class.getName());
+        when(entity.getSchemaVersion()).thenReturn(1L);
+
+        SchemaHolder schemaHolder = new SchemaHolder();
+        schemaHolder.addEntity(entity, new AdvancedSettingsDto(), new ArrayList<FieldDto>());
+
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        dataProvider.updateDataProvider(schemaHolder);
+
+        dataProvider.lookup(Record.class.getName(), "multiLookup", lookupMap);
+        Object result = dataProvider.lookup(Record.class.getName(), "multiLookup", lookupMap);
+
+        assertEquals("multi", ((Record) result).getValue());
+        verify(entityService).getLookupByName(ENTITY_ID, "multiLookup");
+        verify(entityService).getLookupFieldsMapping(ENTITY_ID, "multiLookup");
+
+        dataProvider.updateDataProvider(schemaHolder);
+        dataProvider.lookup(Record.class.getName(), "multiLookup", lookupMap);
+
+        verify(entityService, times(2)).getLookupByName(ENTITY_ID, "multiLookup");
+    }
+
     public static class LookupService extends DefaultMotechDataService<Record> {
 
         public Record singleLookup(String field) {
@@ -54,6 +54,7 @@ public class EntityInfrastructureBuilderTest {
     private static final String SAMPLE_REPOSITORY = "org.motechproject.mds.builder.mdsrepositoryimpl.AllSamples";
     private static final String SAMPLE_INTERFACE = "org.motechproject.mds.builder.mdsservice.SampleService";
     private static final String SAMPLE_SERVICE = "org.motechproject.mds.builder.mdsserviceimpl.SampleServiceImpl";
+    private static final String SAMPLE_ACCESSOR = "org.motechproject.mds.builder.mdsaccessor.SampleAccessor";
 
     private static final String SAMPLE_WITH_LOOKUPS_SERVICE = "org.motechproject.mds.builder.mdsserviceimpl.SampleWithLookupsServiceImpl";
     private static final String SAMPLE_WITH_LOOKUPS_INTERFACE = "org.motechproject.mds.builder.mdsservice.SampleWithLookupsService";
@@ -85,6 +86,7 @@ public class EntityInfrastructureBuilderTest {
         assertThat(data, hasItem(Matchers.<ClassData>hasProperty("className", equalTo(SAMPLE_REPOSITORY))));
         assertThat(data, hasItem(Matchers.<ClassData>hasProperty("className", equalTo(SAMPLE_INTERFACE))));
         assertThat(data, hasItem(Matchers.<ClassData>hasProperty("className", equalTo(SAMPLE_SERVICE))));
+        assertThat(data, hasItem(Matchers.<ClassData>hasProperty("className", equalTo(SAMPLE_ACCESSOR))));
         assertThat(data, hasItem(Matchers.<ClassData>hasProperty("interfaceClass", equalTo(true))));
     }
 
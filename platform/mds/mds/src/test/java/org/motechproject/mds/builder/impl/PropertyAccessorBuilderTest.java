@@ -0,0 +1,98 @@
+package org.motechproject.mds.builder.impl;
+
+import javassist.ClassPool;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.testutil.EntBuilderTestClass;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.testutil.records.history.Record__History;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.MDSClassLoader;
+import org.motechproject.mds.util.PropertyAccessor;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyAccessorBuilderTest {
+
+    private ClassPool classPool = MotechClassPool.getDefault();
+    private MDSClassLoader classLoader;
+
+    @Before
+    public void setUp() {
+        classLoader = MDSClassLoader.getStandaloneInstance(getClass().getClassLoader());
+    }
+
+    @Test
+    public void shouldBuildAccessorWithPrimitiveProperties() throws Exception {
+        PropertyAccessor accessor = buildAccessor(EntBuilderTestClass.class);
+
+        assertEquals(EntBuilderTestClass.class, accessor.getType());
+        assertArrayEquals(new String[]{"testBool", "testStr"}, accessor.getPropertyNames());
+
+        EntBuilderTestClass instance = new EntBuilderTestClass();
+
+        assertEquals(Boolean.FALSE, accessor.get(instance, 0));
+        assertEquals("defValForTestStr", accessor.get(instance, "testStr"));
+
+        accessor.set(instance, 0, true);
+        assertTrue(instance.isTestBool());
+
+        // nulls are ignored for primitives
+        accessor.set(instance, 0, null);
+        assertTrue(instance.isTestBool());
+
+        assertTrue(accessor.set(instance, "TestStr", "newValue"));
+        assertEquals("newValue", instance.getTestStr());
+
+        assertFalse(accessor.set(instance, "nonExistent", "value"));
+        assertNull(accessor.get(instance, "nonExistent"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldThrowExceptionForUnknownIndex() throws Exception {
+        PropertyAccessor accessor = buildAccessor(EntBuilderTestClass.class);
+        accessor.get(new EntBuilderTestClass(), accessor.getPropertyCount());
+    }
+
+    @Test
+    public void shouldCopyAndCompareInstancesOfDifferentClasses() throws Exception {
+        PropertyAccessor recordAccessor = buildAccessor(Record.class);
+        PropertyAccessor historyAccessor = buildAccessor(Record__History.class);
+
+        Record record = new Record();
+        record.setCreator("creator");
+        Record__History history = new Record__History();
+
+        recordAccessor.copy(history, record, historyAccessor, null, null);
+
+        assertEquals(record.getValue(), history.getValue());
+        assertEquals(record.getDate(), history.getDate());
+        // the id is a generated field
+        assertNull(history.getId());
+
+        assertEquals(Collections.<String>emptyList(),
+                recordAccessor.findChangedFields(record, history, historyAccessor, null));
+
+        record.setValue("changed");
+        record.setDate(null);
+
+        assertEquals(Arrays.asList("date", "value"),
+                recordAccessor.findChangedFields(record, history, historyAccessor, null));
+    }
+
+    private PropertyAccessor buildAccessor(Class<?> clazz) throws Exception {
+        byte[] bytecode = new PropertyAccessorBuilder(classPool, classPool.get(clazz.getName())).build();
+
+        Class<?> accessorClass = classLoader.safeDefineClass(ClassName.getAccessorClassName(clazz.getName()), bytecode);
+
+        return (PropertyAccessor) accessorClass.newInstance();
+    }
+}
@@ -18,6 +18,9 @@ import static org.mockito.Mockito.doReturn;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_BUNDLE_RESTART;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_DELETE_MODE;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_EMPTY_TRASH;
+import static org.motechproject.mds.config.ModuleSettings.DEFAULT_HISTORY_RETENTION;
+import static org.motechproject.mds.config.ModuleSettings.DEFAULT_HISTORY_RETENTION_TIME_UNIT;
+import static org.motechproject.mds.config.ModuleSettings.DEFAULT_HISTORY_RETENTION_TIME_VALUE;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_TIME_UNIT;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_TIME_VALUE;
 import static org.motechproject.mds.config.ModuleSettings.DEFAULT_GRID_SIZE;
@@ -58,6 +61,9 @@ public class SettingsServiceImplTest {
         assertEquals(DEFAULT_TIME_UNIT, settingsServiceImpl.getTimeUnit());
         assertEquals(DEFAULT_GRID_SIZE, settingsServiceImpl.getGridSize());
         assertEquals(DEFAULT_BUNDLE_RESTART, settingsServiceImpl.isRefreshModuleAfterTimeout());
+        assertEquals(DEFAULT_HISTORY_RETENTION, settingsServiceImpl.isHistoryRetention());
+        assertEquals(DEFAULT_HISTORY_RETENTION_TIME_VALUE, settingsServiceImpl.getHistoryRetentionTimeValue());
+        assertEquals(DEFAULT_HISTORY_RETENTION_TIME_UNIT, settingsServiceImpl.getHistoryRetentionTimeUnit());
 
         // settings should contains the same values
         ModuleSettings settings = settingsServiceImpl.getModuleSettings();
@@ -68,5 +74,8 @@ public class SettingsServiceImplTest {
         assertEquals(DEFAULT_TIME_UNIT, settings.getTimeUnit());
         assertEquals(DEFAULT_GRID_SIZE, settings.getGridSize());
         assertEquals(DEFAULT_BUNDLE_RESTART, settings.isRestartModuleAfterTimeout());
+        assertEquals(DEFAULT_HISTORY_RETENTION, settings.isHistoryRetention());
+        assertEquals(DEFAULT_HISTORY_RETENTION_TIME_VALUE, settings.getHistoryRetentionTimeValue());
+        assertEquals(DEFAULT_HISTORY_RETENTION_TIME_UNIT, settings.getHistoryRetentionTimeUnit());
     }
 }
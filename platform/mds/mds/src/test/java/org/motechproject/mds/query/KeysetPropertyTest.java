@@ -0,0 +1,108 @@
+package org.motechproject.mds.query;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.Order;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeysetPropertyTest extends PropertyTest {
+
+    private static final List<Order> ORDER_LIST = asList(new Order("value", Order.Direction.DESC),
+            new Order("id", Order.Direction.ASC));
+
+    @Override
+    protected Property getProperty() {
+        return new KeysetProperty(ORDER_LIST, asList(String.class.getName(), Long.class.getName()),
+                asList((Object) "abc", 5L));
+    }
+
+    @Override
+    protected int getIdx() {
+        return 1;
+    }
+
+    @Override
+    protected String expectedFilter() {
+        return "(((value < param1_0 || value == null)) || (value == param1_0 && id > param1_1))";
+    }
+
+    @Override
+    protected String expectedDeclareParameter() {
+        return "java.lang.String param1_0, java.lang.Long param1_1";
+    }
+
+    @Override
+    protected Collection expectedUnwrap() {
+        return asList("abc", 5L);
+    }
+
+    @Override
+    protected boolean isRelationSupported() {
+        return false;
+    }
+
+    @Test
+    public void shouldHandleNullValuesInCursor() {
+        KeysetProperty property = new KeysetProperty(asList(new Order("value", Order.Direction.ASC),
+                new Order("id", Order.Direction.ASC)), asList(String.class.getName(), Long.class.getName()),
+                asList(null, (Object) 5L));
+
+        assertEquals("((value != null) || (value == null && id > param0_1))", property.asFilter(0));
+        assertEquals("java.lang.Long param0_1", property.asDeclareParameter(0));
+        assertEquals(asList(5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldBuildPropertyFromCursor() {
+        DateTime date = new DateTime(2015, 5, 15, 10, 30);
+
+        Record record = new Record();
+        record.setId(7L);
+        record.setValue("a&b=c");
+        record.setDate(date.toDate());
+
+        QueryParams queryParams = QueryParams.keyset(10, asList(new Order("date", Order.Direction.DESC),
+                new Order("value", Order.Direction.ASC)), null);
+        assertTrue(queryParams.isKeyset());
+        assertFalse(queryParams.isCursorSet());
+
+        QueryParams nextPage = queryParams.nextKeysetPage(record);
+        assertTrue(nextPage.isCursorSet());
+        assertEquals(Integer.valueOf(10), nextPage.getPageSize());
+
+        Map<String, String> fieldTypeMap = new HashMap<>();
+        fieldTypeMap.put("date", java.util.Date.class.getName());
+        fieldTypeMap.put("value", String.class.getName());
+
+        KeysetProperty property = KeysetProperty.forCursor(nextPage, fieldTypeMap);
+
+        assertEquals(asList(date.toDate(), "a&b=c", 7L), property.unwrap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCursorForDifferentOrder() {
+        Record record = new Record();
+
+        String cursor = QueryParams.keyset(10, asList(new Order("value")), null).cursorAfter(record);
+
+        Map<String, String> fieldTypeMap = new HashMap<>();
+        fieldTypeMap.put("date", java.util.Date.class.getName());
+
+        KeysetProperty.forCursor(QueryParams.keyset(10, asList(new Order("date")), cursor), fieldTypeMap);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCursor() {
+        KeysetProperty.forCursor(QueryParams.keyset(10, null, "%%%"), new HashMap<String, String>());
+    }
+}
@@ -0,0 +1,189 @@
+package org.motechproject.mds.query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LookupCacheTest {
+
+    private static final String CLASS_NAME = "org.motechproject.mds.entity.Patient";
+    private static final String RELATED_CLASS_NAME = "org.motechproject.mds.entity.Clinic";
+
+    private long time;
+    private LookupCache cache;
+
+    @Before
+    public void setUp() {
+        cache = cache(CLASS_NAME, Collections.singletonList(RELATED_CLASS_NAME), 2);
+    }
+
+    @After
+    public void tearDown() {
+        LookupCache.unregister(cache);
+    }
+
+    @Test
+    public void shouldReturnCachedResults() {
+        Object result = asList("a", "b");
+
+        assertSame(LookupCache.MISS, cache.get("key"));
+        cache.put("key", result, asList(1L, 2L), cache.getGeneration());
+
+        assertSame(result, cache.get("key"));
+        assertStatistics(1, 1, 1, 0, 0);
+    }
+
+    @Test
+    public void shouldBuildEqualKeysForEqualLookups() {
+        QueryParams queryParams = new QueryParams(1, 10, new Order("name", Order.Direction.DESC));
+
+        assertEquals(LookupCache.key("retrieveAll", properties("name", "John"), queryParams),
+                LookupCache.key("retrieveAll", properties("name", "John"),
+                        new QueryParams(1, 10, new Order("name", Order.Direction.DESC))));
+
+        assertFalse(LookupCache.key("retrieveAll", properties("name", "John"), queryParams)
+                .equals(LookupCache.key("retrieveAll", properties("name", "Jane"), queryParams)));
+        assertFalse(LookupCache.key("retrieveAll", properties("name", "John"), queryParams)
+                .equals(LookupCache.key("retrieveAll", properties("name", "John"), new QueryParams(2, 10))));
+        assertFalse(LookupCache.key("retrieveAll", properties("name", "John"), null)
+                .equals(LookupCache.key("count", properties("name", "John"), null)));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResults() {
+        cache.put("first", 1L, null, cache.getGeneration());
+        cache.put("second", 2L, null, cache.getGeneration());
+        cache.get("first");
+        cache.put("third", 3L, null, cache.getGeneration());
+
+        assertSame(LookupCache.MISS, cache.get("second"));
+        assertEquals(1L, cache.get("first"));
+        assertEquals(3L, cache.get("third"));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void shouldExpireResults() {
+        cache.put("key", 1L, null, cache.getGeneration());
+
+        time += 59999;
+        assertEquals(1L, cache.get("key"));
+
+        time += 1;
+        assertSame(LookupCache.MISS, cache.get("key"));
+        assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void shouldInvalidateOnlyResultsWithDeletedInstances() {
+        cache.put("first", asList("a", "b"), asList(1L, 2L), cache.getGeneration());
+        cache.put("second", asList("c"), asList(3L), cache.getGeneration());
+
+        cache.invalidate(asList(2L, 4L));
+
+        assertSame(LookupCache.MISS, cache.get("first"));
+        assertEquals(asList("c"), cache.get("second"));
+
+        cache.put("count", 1L, null, cache.getGeneration());
+        cache.invalidate(asList(4L));
+
+        // counts are invalidated by every delete
+        assertSame(LookupCache.MISS, cache.get("count"));
+        assertEquals(asList("c"), cache.get("second"));
+
+        cache.invalidate(null);
+
+        assertSame(LookupCache.MISS, cache.get("second"));
+        assertEquals(3, cache.getStatistics().getInvalidations());
+    }
+
+    @Test
+    public void shouldNotCacheResultsRetrievedBeforeInvalidation() {
+        long generation = cache.getGeneration();
+
+        cache.invalidate(null);
+        cache.put("key", 1L, null, generation);
+
+        assertSame(LookupCache.MISS, cache.get("key"));
+    }
+
+    @Test
+    public void shouldInvalidateCachesOfDependentEntities() {
+        LookupCache.register(cache);
+        cache.put("key", 1L, null, cache.getGeneration());
+
+        assertTrue(LookupCache.isTracked(RELATED_CLASS_NAME));
+        assertFalse(LookupCache.isTracked("org.motechproject.Unrelated"));
+
+        LookupCache.invalidate("org.motechproject.Unrelated", null);
+        assertEquals(1L, cache.get("key"));
+
+        LookupCache.invalidate(RELATED_CLASS_NAME, asList(1L));
+        assertSame(LookupCache.MISS, cache.get("key"));
+    }
+
+    @Test
+    public void shouldInvalidateCachesOnlyForChangesFromOtherInstances() {
+        LookupCache.register(cache);
+        cache.put("first", asList("a"), asList(1L), cache.getGeneration());
+        cache.put("second", asList("b"), asList(2L), cache.getGeneration());
+
+        Map<String, Object> params = LookupCache.createInvalidationParams(CLASS_NAME, asList(1L));
+
+        // the changes made by this instance already invalidated its caches
+        LookupCache.handleInvalidation(CLASS_NAME, asList(1L), (String) params.get(LookupCache.ORIGIN_PARAM));
+        assertEquals(asList("a"), cache.get("first"));
+
+        LookupCache.handleInvalidation(CLASS_NAME, (List<Long>) params.get(LookupCache.DELETED_IDS_PARAM),
+                "other instance");
+        assertSame(LookupCache.MISS, cache.get("first"));
+        assertEquals(asList("b"), cache.get("second"));
+    }
+
+    @Test
+    public void shouldNotCacheResultsIfSizeIsZero() {
+        LookupCache disabled = cache(CLASS_NAME, new ArrayList<String>(), 0);
+
+        disabled.put("key", 1L, null, disabled.getGeneration());
+
+        assertSame(LookupCache.MISS, disabled.get("key"));
+    }
+
+    private LookupCache cache(String className, List<String> relatedClassNames, int maxSize) {
+        return new LookupCache(className, relatedClassNames, maxSize, 60) {
+            @Override
+            protected long now() {
+                return time;
+            }
+        };
+    }
+
+    private List<Property> properties(String name, Object value) {
+        List<Property> properties = new ArrayList<>();
+        properties.add(new EqualProperty<>(name, value, String.class.getName()));
+        return properties;
+    }
+
+    private void assertStatistics(int size, long hits, long misses, long evictions, long invalidations) {
+        LookupCacheStatisticsDto statistics = cache.getStatistics();
+
+        assertEquals(size, statistics.getSize());
+        assertEquals(hits, statistics.getHits());
+        assertEquals(misses, statistics.getMisses());
+        assertEquals(evictions, statistics.getEvictions());
+        assertEquals(invalidations, statistics.getInvalidations());
+    }
+}
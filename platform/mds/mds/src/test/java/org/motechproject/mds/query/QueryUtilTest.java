@@ -119,6 +119,32 @@ public class QueryUtilTest {
         verify(query).setOrdering("field1 descending, field2 ascending, field3 ascending");
     }
 
+    @Test
+    public void shouldOrderNullsExplicitlyForKeysetPagination() {
+        QueryParams queryParams = QueryParams.keyset(10, asList(new Order("field1", Order.Direction.DESC),
+                new Order("field2", Order.Direction.ASC)), null);
+
+        QueryUtil.setQueryParams(query, queryParams);
+
+        verify(query).setOrdering("field1 descending NULLS LAST, field2 ascending NULLS FIRST, id ascending");
+    }
+
+    @Test
+    public void shouldSelectProjectedFields() {
+        QueryParams projected = new QueryParams(1, 10, new Order("name", Order.Direction.DESC))
+                .withProjection(asList("name", "value"));
+
+        QueryUtil.setQueryParams(query, projected);
+
+        verify(query).setResult("id, name, value");
+
+        // the fields of the keyset order are selected too, so that the cursor can be built
+        QueryParams keyset = QueryParams.keyset(10, asList(new Order("date", Order.Direction.ASC)), null)
+                .withProjection(asList("name", "id"));
+
+        assertEquals(asList("id", "name", "date"), QueryUtil.getProjectedFields(keyset));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionForNullQueriesWhenSettingCountResult() {
         QueryUtil.setCountResult(null);
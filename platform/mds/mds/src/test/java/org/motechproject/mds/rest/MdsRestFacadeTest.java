@@ -11,7 +11,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
@@ -30,11 +32,13 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
 import org.motechproject.mds.testutil.records.Record;
 import org.motechproject.mds.util.Order;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -52,7 +56,12 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +70,7 @@ public class MdsRestFacadeTest {
 
     private static final String FORBIDDEN_LOOKUP_NAME = "forbiddenLookup";
     private static final String SUPPORTED_LOOKUP_NAME = "supportedLookup";
+    private static final String SINGLE_LOOKUP_NAME = "singleLookup";
     private static final String STR_FIELD = "strField";
     private static final String INT_FIELD = "intField";
     private static final String VALUE_FIELD = "value";
@@ -130,7 +140,10 @@ public class MdsRestFacadeTest {
         LookupDto supportedLookup = new LookupDto(SUPPORTED_LOOKUP_NAME, false, true,
                 asList(FieldTestHelper.lookupFieldDto(1L, STR_FIELD), FieldTestHelper.lookupFieldDto(2L, INT_FIELD)),
                 true);
-        when(entity.getLookups()).thenReturn(asList(forbiddenLookup, supportedLookup));
+        LookupDto singleLookup = new LookupDto(SINGLE_LOOKUP_NAME, true, true,
+                asList(FieldTestHelper.lookupFieldDto(1L, STR_FIELD), FieldTestHelper.lookupFieldDto(2L, INT_FIELD)),
+                true);
+        when(entity.getLookups()).thenReturn(asList(forbiddenLookup, supportedLookup, singleLookup));
 
         //set up record
         recordOne = testRecord();
@@ -156,7 +169,11 @@ public class MdsRestFacadeTest {
 
         RestResponse result = mdsRestFacade.get(queryParams, false);
 
-        verify(dataService).retrieveAll(queryParams);
+        // only the fields exposed by REST are retrieved, the blob is not
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(dataService).retrieveAll(captor.capture());
+        assertEquals(asList(VALUE_FIELD, DATE_FIELD), captor.getValue().getProjection());
+        assertEquals(queryParams.getOrderList(), captor.getValue().getOrderList());
 
         assertEquals(1, result.getData().size());
         assertEquals(3, result.getData().get(0).size());
@@ -305,6 +322,7 @@ public class MdsRestFacadeTest {
         Map<String, String> lookupMap = asLookupMap(null, "44");
         QueryParams queryParams = mock(QueryParams.class);
 
+        when(queryParams.withProjection(asList(VALUE_FIELD, DATE_FIELD))).thenReturn(queryParams);
         when(dataService.supportedLookup(null, 44, queryParams))
                 .thenReturn(asList(recordOne));
 
@@ -360,6 +378,108 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    // streamed responses
+
+    @Test
+    public void shouldStreamPageInMultipleChunks() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        setUpStreaming();
+        when(dataService.count()).thenReturn(1000L);
+
+        QueryParams queryParams = new QueryParams(1, 250, new Order(VALUE_FIELD, Order.Direction.ASC));
+
+        Map<String, Object> response = stream(mdsRestFacade.stream(queryParams, false));
+
+        assertEquals(250, ((List) response.get("data")).size());
+        assertEquals(1000, ((Map) response.get("metadata")).get("totalCount"));
+        assertNull(((Map) response.get("metadata")).get("nextCursor"));
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(dataService, times(3)).retrieveAll(captor.capture());
+
+        List<QueryParams> chunks = captor.getAllValues();
+        assertEquals(asList(100, 100, 50), asList(chunks.get(0).getPageSize(), chunks.get(1).getPageSize(),
+                chunks.get(2).getPageSize()));
+        assertNull(chunks.get(0).getCursor());
+        // each chunk starts after the last instance of the previous one
+        assertEquals(queryParams.cursorAfter(record(100)), chunks.get(1).getCursor());
+        assertEquals(queryParams.cursorAfter(record(200)), chunks.get(2).getCursor());
+        assertEquals(asList(VALUE_FIELD, DATE_FIELD), chunks.get(0).getProjection());
+    }
+
+    @Test
+    public void shouldStreamPageAfterLastInstanceOfPreviousPage() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        setUpStreaming();
+
+        QueryParams queryParams = new QueryParams(3, 20, new Order(VALUE_FIELD, Order.Direction.ASC));
+
+        StreamedRestResponse streamedResponse = mdsRestFacade.stream(queryParams, false);
+
+        // the last instance of the previous page is retrieved before anything is written
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(dataService).retrieveAll(captor.capture());
+        assertEquals(Integer.valueOf(40), captor.getValue().getPage());
+        assertEquals(Integer.valueOf(1), captor.getValue().getPageSize());
+
+        Map<String, Object> response = stream(streamedResponse);
+
+        assertEquals(20, ((List) response.get("data")).size());
+
+        verify(dataService, times(2)).retrieveAll(captor.capture());
+        QueryParams chunkParams = captor.getAllValues().get(captor.getAllValues().size() - 1);
+        assertTrue(chunkParams.isKeyset());
+        assertEquals(queryParams.cursorAfter(record(40)), chunkParams.getCursor());
+        assertEquals(Integer.valueOf(20), chunkParams.getPageSize());
+    }
+
+    @Test
+    public void shouldStreamCursorOfNextKeysetPage() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        setUpStreaming();
+
+        QueryParams queryParams = QueryParams.keyset(30, asList(new Order(VALUE_FIELD, Order.Direction.ASC)),
+                null);
+
+        Map<String, Object> response = stream(mdsRestFacade.stream(queryParams, false));
+
+        assertEquals(30, ((List) response.get("data")).size());
+        assertEquals(queryParams.cursorAfter(record(30)), ((Map) response.get("metadata")).get("nextCursor"));
+
+        // the next page is the last one
+        doReturn(asList(record(31))).when(dataService).retrieveAll(any(QueryParams.class));
+        QueryParams nextPage = QueryParams.keyset(30, queryParams.getOrderList(), queryParams.cursorAfter(record(30)));
+
+        response = stream(mdsRestFacade.stream(nextPage, false));
+
+        assertEquals(1, ((List) response.get("data")).size());
+        assertNull(((Map) response.get("metadata")).get("nextCursor"));
+    }
+
+    @Test
+    public void shouldStreamResultOfSingleObjectLookup() throws IOException {
+        when(dataService.singleLookup(eq("abc"), eq(44), any(QueryParams.class))).thenReturn(recordOne);
+
+        StreamedRestResponse streamedResponse = mdsRestFacade.streamLookup(SINGLE_LOOKUP_NAME,
+                asLookupMap("abc", "44"), new QueryParams(1, 10), false);
+
+        ByteArrayOutputStream output = spy(new ByteArrayOutputStream());
+        streamedResponse.writeTo(output);
+
+        // the stream is closed by the caller
+        verify(output, never()).close();
+
+        Map<String, Object> response = objectMapper.readValue(output.toByteArray(), Map.class);
+        List<Map<String, Object>> data = (List<Map<String, Object>>) response.get("data");
+        assertEquals(1, data.size());
+        assertEquals(recordOne.getValue(), data.get(0).get(VALUE_FIELD));
+    }
+
+    @Test(expected = RestLookupNotFoundException.class)
+    public void shouldReportMissingLookupBeforeStreaming() {
+        mdsRestFacade.streamLookup("nonExistent", new HashMap<String, String>(), new QueryParams(1, 10), false);
+    }
+
     // bad input exceptions verifications
 
     @Test(expected = RestBadBodyFormatException.class)
@@ -433,6 +553,52 @@ public class MdsRestFacadeTest {
         when(restOptions.isDelete()).thenReturn(allowDelete);
     }
 
+    private void setUpStreaming() {
+        when(dataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+        when(dataService.retrieveAll(any(QueryParams.class))).thenAnswer(new Answer<List<Record>>() {
+            @Override
+            public List<Record> answer(InvocationOnMock invocation) {
+                QueryParams queryParams = (QueryParams) invocation.getArguments()[0];
+                // the records are numbered from 1, a cursor starts after the record it was built from
+                int first = queryParams.isKeyset() ? cursorPosition(queryParams) + 1
+                        : (queryParams.getPage() - 1) * queryParams.getPageSize() + 1;
+
+                List<Record> records = new ArrayList<>();
+                for (int i = first; i < first + queryParams.getPageSize(); ++i) {
+                    records.add(record(i));
+                }
+                return records;
+            }
+        });
+    }
+
+    private int cursorPosition(QueryParams queryParams) {
+        for (int i = 1; i <= 1000; ++i) {
+            if (queryParams.cursorAfter(record(i)).equals(queryParams.getCursor())) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private Map<String, Object> stream(StreamedRestResponse streamedResponse) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamedResponse.writeTo(output);
+        return objectMapper.readValue(output.toByteArray(), Map.class);
+    }
+
+    private Record record(int number) {
+        Record record = new Record();
+        record.setId((long) number);
+        record.setValue(String.format("value%04d", number));
+        return record;
+    }
+
     private Record testRecord() {
         Record record = new Record();
         record.setValue("restTest");
@@ -467,5 +633,6 @@ public class MdsRestFacadeTest {
         List<Record> forbiddenLookup(String strField, Integer intField);
         List<Record> supportedLookup(String strField, Integer intField, QueryParams queryParams);
         long countSupportedLookup(String strField, Integer intField);
+        Record singleLookup(String strField, Integer intField, QueryParams queryParams);
     }
 }
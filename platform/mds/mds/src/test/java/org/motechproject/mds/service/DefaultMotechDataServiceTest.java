@@ -0,0 +1,377 @@
+package org.motechproject.mds.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.mds.entityinfo.EntityInfo;
+import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.entityinfo.FieldInfo;
+import org.motechproject.mds.dto.LookupCacheStatisticsDto;
+import org.motechproject.mds.query.EqualProperty;
+import org.motechproject.mds.query.LookupCache;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.repository.MotechDataRepository;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.SecurityMode;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.springframework.orm.jdo.JdoTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_IDS;
+
+public class DefaultMotechDataServiceTest {
+
+    @Mock
+    private MotechDataRepository<Record> repository;
+
+    @Mock
+    private EntityInfoReader entityInfoReader;
+
+    @Mock
+    private EntityInfo entityInfo;
+
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
+    @Mock
+    private JdoTransactionManager transactionManager;
+
+    private DefaultMotechDataService<Record> dataService;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(repository.getClassType()).thenReturn(Record.class);
+        when(entityInfoReader.getEntityInfo(Record.class.getName())).thenReturn(entityInfo);
+        when(entityInfo.getFieldsInfo()).thenReturn(new ArrayList<FieldInfo>());
+        when(entityInfo.getEntityName()).thenReturn("Record");
+        when(entityInfo.isCreateEventFired()).thenReturn(true);
+        when(entityInfo.isUpdateEventFired()).thenReturn(true);
+        when(entityInfo.isDeleteEventFired()).thenReturn(true);
+
+        dataService = new DefaultMotechDataService<Record>() { };
+        dataService.setRepository(repository);
+        dataService.setEntityInfoReader(entityInfoReader);
+        dataService.setOsgiEventProxy(osgiEventProxy);
+        dataService.setTransactionManager(transactionManager);
+        dataService.init();
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void shouldCreateInstancesInChunks() {
+        List<Record> records = records(1L, 2L, 3L);
+        for (Record record : records) {
+            when(repository.create(record)).thenReturn(record);
+        }
+
+        List<Record> created = dataService.createAll(records, 2);
+
+        assertEquals(records, created);
+        verify(repository, times(2)).flush();
+        verifyZeroInteractions(osgiEventProxy);
+
+        commit();
+
+        List<Map<String, Object>> params = verifySentEvents("mds.crud.Record.CREATE_BULK", 2);
+        assertEquals(asList(1L, 2L), params.get(0).get(OBJECT_IDS));
+        assertEquals(asList(3L), params.get(1).get(OBJECT_IDS));
+    }
+
+    @Test
+    public void shouldUpdateExistingAndCreateMissingInstances() {
+        Record existing = record(1L);
+        Record missing = record(2L);
+        when(repository.retrieveAllById(asList(1L, 2L))).thenReturn(asList(existing));
+        when(repository.create(missing)).thenReturn(missing);
+
+        Record update = record(1L);
+        update.setValue("updated");
+
+        List<Record> updated = dataService.updateAll(asList(update, missing));
+
+        assertEquals(asList(existing, missing), updated);
+        assertEquals("updated", existing.getValue());
+        verify(repository).flush();
+
+        commit();
+
+        assertEquals(asList(1L), verifySentEvents("mds.crud.Record.UPDATE_BULK", 1).get(0).get(OBJECT_IDS));
+        assertEquals(asList(2L), verifySentEvents("mds.crud.Record.CREATE_BULK", 1).get(0).get(OBJECT_IDS));
+    }
+
+    @Test
+    public void shouldReturnUpdatedInstancesInOrderOfGivenObjects() {
+        Record missing = record(1L);
+        Record existing = record(2L);
+        when(repository.retrieveAllById(asList(1L, 2L))).thenReturn(asList(existing));
+        when(repository.create(missing)).thenReturn(missing);
+
+        assertEquals(asList(missing, existing), dataService.updateAll(asList(missing, record(2L))));
+    }
+
+    @Test
+    public void shouldCreateMissingInstancesOfRestrictedEntities() {
+        when(entityInfo.getSecurityMode()).thenReturn(SecurityMode.CREATOR);
+        dataService.init();
+
+        Record missing = record(1L);
+        when(repository.retrieveAllById(asList(1L))).thenReturn(new ArrayList<Record>());
+        when(repository.create(missing)).thenReturn(missing);
+
+        assertEquals(asList(missing), dataService.updateAll(asList(missing)));
+        verify(repository).create(missing);
+    }
+
+    @Test
+    public void shouldDeleteExistingInstancesInChunks() {
+        List<Record> existing = records(1L, 2L);
+        when(repository.retrieveAllById(asList(1L, 2L))).thenReturn(existing);
+        when(repository.retrieveAllById(asList(3L))).thenReturn(new ArrayList<Record>());
+
+        dataService.deleteAll(records(1L, 2L, 3L), 2);
+
+        verify(repository).deleteAll(existing);
+        verify(repository, times(2)).flush();
+
+        commit();
+
+        List<Map<String, Object>> params = verifySentEvents("mds.crud.Record.DELETE_BULK", 1);
+        assertEquals(asList(1L, 2L), params.get(0).get(OBJECT_IDS));
+    }
+
+    @Test
+    public void shouldNotSendEventWhenNothingWasDeleted() {
+        when(repository.retrieveAllById(asList(1L))).thenReturn(new ArrayList<Record>());
+
+        dataService.deleteAll(records(1L));
+
+        verify(repository).deleteAll(new ArrayList<Record>());
+
+        commit();
+
+        verifyZeroInteractions(osgiEventProxy);
+    }
+
+    @Test
+    public void shouldCacheLookupResultsUntilInstancesAreDeleted() {
+        DefaultMotechDataService<Record> cachingService = cachingDataService();
+        CountingLookup lookup = new CountingLookup(records(1L, 2L));
+
+        try {
+            List<Record> first = lookup(cachingService, "first", lookup);
+
+            when(repository.retrieveAllById(asList(1L, 2L))).thenReturn(records(2L, 1L));
+            List<Record> second = lookup(cachingService, "first", lookup);
+
+            assertEquals(1, lookup.executions);
+            // the cached instances are retrieved by their ids, in the order of the lookup
+            assertEquals(first.get(0).getId(), second.get(0).getId());
+            assertEquals(first.get(1).getId(), second.get(1).getId());
+            assertNotSame(first.get(0), second.get(0));
+
+            lookup(cachingService, "second", lookup);
+            assertEquals(2, lookup.executions);
+
+            when(repository.retrieveAllById(asList(3L))).thenReturn(records(3L));
+            cachingService.deleteAll(records(3L));
+            commit();
+
+            // the deleted instance was not in the result
+            lookup(cachingService, "first", lookup);
+            assertEquals(2, lookup.executions);
+
+            when(repository.retrieveAllById(asList(1L))).thenReturn(records(1L));
+            cachingService.deleteAll(records(1L));
+            commit();
+
+            lookup(cachingService, "first", lookup);
+            assertEquals(3, lookup.executions);
+
+            LookupCacheStatisticsDto statistics = cachingService.getLookupCacheStatistics();
+            assertEquals(2, statistics.getHits());
+            assertEquals(3, statistics.getMisses());
+        } finally {
+            cachingService.destroy();
+        }
+    }
+
+    @Test
+    public void shouldNotUseLookupCacheInTransactionChangingInstances() {
+        DefaultMotechDataService<Record> cachingService = cachingDataService();
+        CountingLookup lookup = new CountingLookup(records(1L));
+
+        try {
+            lookup(cachingService, "lookup", lookup);
+
+            Record record = record(2L);
+            when(repository.create(record)).thenReturn(record);
+            cachingService.create(record);
+
+            lookup(cachingService, "lookup", lookup);
+            lookup(cachingService, "lookup", lookup);
+            assertEquals(3, lookup.executions);
+
+            commit();
+
+            when(repository.retrieveAllById(asList(1L))).thenReturn(records(1L));
+            lookup(cachingService, "lookup", lookup);
+            lookup(cachingService, "lookup", lookup);
+            assertEquals(4, lookup.executions);
+        } finally {
+            cachingService.destroy();
+        }
+    }
+
+    @Test
+    public void shouldExecuteLookupAgainIfCachedInstancesNoLongerExist() {
+        DefaultMotechDataService<Record> cachingService = cachingDataService();
+        CountingLookup lookup = new CountingLookup(records(1L, 2L));
+
+        try {
+            lookup(cachingService, "lookup", lookup);
+
+            // the second instance was removed without the cache being notified
+            when(repository.retrieveAllById(asList(1L, 2L))).thenReturn(records(1L));
+            lookup(cachingService, "lookup", lookup);
+
+            assertEquals(2, lookup.executions);
+        } finally {
+            cachingService.destroy();
+        }
+    }
+
+    @Test
+    public void shouldBroadcastLookupCacheInvalidationAfterCommit() {
+        DefaultMotechDataService<Record> cachingService = cachingDataService();
+
+        try {
+            when(repository.retrieveAllById(asList(1L))).thenReturn(records(1L));
+            cachingService.deleteAll(records(1L));
+
+            verify(osgiEventProxy, never()).broadcastEvent(eq(LookupCache.INVALIDATE_TOPIC), anyMap(), eq(true));
+
+            commit();
+
+            ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+            verify(osgiEventProxy).broadcastEvent(eq(LookupCache.INVALIDATE_TOPIC), captor.capture(), eq(true));
+            assertEquals(Record.class.getName(), captor.getValue().get(LookupCache.CLASS_NAME_PARAM));
+            assertEquals(asList(1L), captor.getValue().get(LookupCache.DELETED_IDS_PARAM));
+        } finally {
+            cachingService.destroy();
+        }
+    }
+
+    @Test
+    public void shouldReturnDisabledStatisticsIfLookupCacheIsNotEnabled() {
+        assertFalse(dataService.getLookupCacheStatistics().isEnabled());
+    }
+
+    private DefaultMotechDataService<Record> cachingDataService() {
+        when(entityInfo.isLookupCacheEnabled()).thenReturn(true);
+        when(entityInfo.getLookupCacheSize()).thenReturn(10);
+        when(entityInfo.getLookupCacheTimeToLive()).thenReturn(60);
+
+        DefaultMotechDataService<Record> cachingService = new DefaultMotechDataService<Record>() { };
+        cachingService.setRepository(repository);
+        cachingService.setEntityInfoReader(entityInfoReader);
+        cachingService.setOsgiEventProxy(osgiEventProxy);
+        cachingService.setTransactionManager(transactionManager);
+        cachingService.init();
+
+        return cachingService;
+    }
+
+    private List<Record> lookup(DefaultMotechDataService<Record> service, String value, CountingLookup lookup) {
+        List<Property> properties = new ArrayList<>();
+        properties.add(new EqualProperty<>("value", value, String.class.getName()));
+
+        return service.doInLookupCache("retrieveAll", properties, null, lookup);
+    }
+
+    private void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private List<Map<String, Object>> verifySentEvents(String subject, int count) {
+        ArgumentCaptor<String> subjectCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(osgiEventProxy, atLeastOnce()).sendEvent(subjectCaptor.capture(), paramsCaptor.capture());
+
+        List<Map<String, Object>> params = new ArrayList<>();
+        for (int i = 0; i < subjectCaptor.getAllValues().size(); ++i) {
+            if (subject.equals(subjectCaptor.getAllValues().get(i))) {
+                params.add(paramsCaptor.getAllValues().get(i));
+            }
+        }
+
+        assertEquals(count, params.size());
+        return params;
+    }
+
+    private List<Record> records(Long... ids) {
+        List<Record> records = new ArrayList<>();
+        for (Long id : ids) {
+            records.add(record(id));
+        }
+        return records;
+    }
+
+    private Record record(Long id) {
+        Record record = new Record();
+        record.setId(id);
+        return record;
+    }
+
+    private static class CountingLookup implements TransactionCallback<List<Record>> {
+        private final List<Record> result;
+        private int executions;
+
+        CountingLookup(List<Record> result) {
+            this.result = result;
+        }
+
+        @Override
+        public List<Record> doInTransaction(TransactionStatus status) {
+            ++executions;
+            return result;
+        }
+    }
+}
@@ -13,14 +13,17 @@ import org.mockito.stubbing.Answer;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.CsvImportSettings;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.UIDisplayFieldComparator;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.ex.csv.CsvImportInterruptedException;
 import org.motechproject.mds.javassist.MotechClassPool;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportCustomizer;
+import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
@@ -29,18 +32,22 @@ import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
@@ -137,6 +144,7 @@ public class CsvImporterExporterTest {
         when(csvExportCustomizer.exportDisplayName(any(FieldDto.class))).thenCallRealMethod();
 
         CsvTestHelper.mockRecord2Fields(entityInfo, advancedSettingsDto, browsingSettingsDto);
+        CsvTestHelper.mockTransactions(motechDataService);
     }
 
     @Test
@@ -150,6 +158,33 @@ public class CsvImporterExporterTest {
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
     }
 
+    @Test
+    public void shouldExportAllInstancesPageByPage() {
+        List<Record2> firstPage = new ArrayList<>();
+        for (int i = 0; i < AbstractMdsExporter.EXPORT_PAGE_SIZE; ++i) {
+            Record2 record = new Record2();
+            record.setId((long) i);
+            firstPage.add(record);
+        }
+        List<Record2> lastPage = testInstances(IdMode.INCLUDE_ID);
+
+        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(firstPage, lastPage);
+
+        long result = csvImporterExporter.exportCsv(ENTITY_ID, new StringWriter());
+
+        assertEquals(AbstractMdsExporter.EXPORT_PAGE_SIZE + INSTANCE_COUNT, result);
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(motechDataService, times(2)).retrieveAll(captor.capture());
+        verify(motechDataService, times(2)).doInTransaction(any(TransactionCallback.class));
+
+        assertTrue(captor.getAllValues().get(0).isKeyset());
+        assertFalse(captor.getAllValues().get(0).isCursorSet());
+        assertTrue(captor.getAllValues().get(1).isCursorSet());
+        assertEquals(captor.getAllValues().get(0).cursorAfter(firstPage.get(firstPage.size() - 1)),
+                captor.getAllValues().get(1).getCursor());
+    }
+
     @Test
     public void shouldUseExportCustomizer() {
         when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
@@ -239,6 +274,65 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldImportInChunks() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        CreateAllAnswer createAllAnswer = new CreateAllAnswer();
+        when(motechDataService.createAll(anyCollection(), eq(7))).thenAnswer(createAllAnswer);
+        when(relatedDataService.findByIds(anyCollection())).thenReturn(Arrays.asList(new RelatedClass(0L), new RelatedClass(1L)));
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, new DefaultCsvImportCustomizer(),
+                new CsvImportSettings(7, CONTINUE_ON_ERROR));
+
+        // 3 chunks, the related instances are retrieved once per chunk
+        verify(motechDataService, times(3)).doInTransaction(any(TransactionCallback.class));
+        verify(motechDataService, times(3)).createAll(anyCollection(), eq(7));
+        verify(motechDataService, never()).create(any(Record2.class));
+        verify(relatedDataService, times(3)).findByIds(anyCollection());
+        verify(relatedDataService, never()).findById(any(Long.class));
+
+        assertEquals(testInstances(IdMode.EMPTY_ID_COLUMN), createAllAnswer.getCreated());
+        assertEquals(listFromRangeInclusive(0, 19), results.getNewInstanceIDs());
+        assertEquals(0, results.updatedInstanceCount());
+        assertEquals(0, results.getRowErrors().size());
+        assertEquals(INSTANCE_COUNT, results.getCommittedRows());
+    }
+
+    @Test
+    public void shouldResumeChunkedImport() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        when(motechDataService.createAll(anyCollection(), eq(10))).thenAnswer(new CreateAllAnswer());
+        when(relatedDataService.findByIds(anyCollection())).thenReturn(Arrays.asList(new RelatedClass(0L), new RelatedClass(1L)));
+
+        CsvImportSettings settings = new CsvImportSettings(10, CONTINUE_ON_ERROR);
+        settings.setSkippedRows(15);
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, new DefaultCsvImportCustomizer(), settings);
+
+        assertEquals(5, results.newInstanceCount());
+        assertEquals(INSTANCE_COUNT, results.getCommittedRows());
+    }
+
+    @Test
+    public void shouldStopChunkedImportAfterLastCommittedChunk() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
+        when(motechDataService.createAll(anyCollection(), eq(2))).thenAnswer(new CreateAllAnswer());
+        when(relatedDataService.findByIds(anyCollection())).thenReturn(Arrays.asList(new RelatedClass(0L), new RelatedClass(1L)));
+
+        CsvImportResults results = null;
+        try {
+            csvImporterExporter.importCsv(ENTITY_ID, reader, new DefaultCsvImportCustomizer(), new CsvImportSettings(2, false));
+        } catch (CsvImportInterruptedException e) {
+            results = e.getResults();
+        }
+
+        // the 4th row is invalid, only the first chunk was committed
+        assertNotNull(results);
+        assertEquals(2, results.getCommittedRows());
+        assertEquals(listFromRangeInclusive(0, 1), results.getNewInstanceIDs());
+        verify(motechDataService, times(1)).createAll(anyCollection(), eq(2));
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
@@ -398,6 +492,30 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private class CreateAllAnswer implements Answer<List<Record2>> {
+
+        private long idCounter = 0;
+        private List<Record2> created = new ArrayList<>();
+
+        @Override
+        public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+            Collection<Record2> instances = (Collection<Record2>) invocation.getArguments()[0];
+            created.addAll(instances);
+
+            List<Record2> records = new ArrayList<>();
+            for (int i = 0; i < instances.size(); i++) {
+                Record2 record = new Record2();
+                record.setId(idCounter++);
+                records.add(record);
+            }
+            return records;
+        }
+
+        public List<Record2> getCreated() {
+            return created;
+        }
+    }
+
     private enum IdMode {
         INCLUDE_ID, EMPTY_ID_COLUMN, NO_ID_COLUMN, INVALID
     }
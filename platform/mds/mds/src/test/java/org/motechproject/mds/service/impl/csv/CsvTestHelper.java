@@ -6,20 +6,34 @@ import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.MetadataDto;
 import org.motechproject.mds.dto.SettingDto;
 import org.motechproject.mds.dto.TypeDto;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.entityinfo.EntityInfo;
+import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.records.Record2;
 import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.motechproject.mds.util.Constants;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
 public class CsvTestHelper {
 
+    public static void mockTransactions(MotechDataService dataServiceMock) {
+        when(dataServiceMock.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+    }
+
     public static void mockRecord2Fields(EntityInfo entityInfoMock, AdvancedSettingsDto advancedSettingsDtoMock, BrowsingSettingsDto browsingSettingsDtoMock) {
         List<FieldDto> fieldDtos = new ArrayList<>();
 
@@ -1,5 +1,6 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +27,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jdo.JdoTransactionManager;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jdo.PersistenceManager;
@@ -36,6 +38,7 @@ import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -79,6 +82,9 @@ public class HistoryServiceTest {
     @Mock
     private MotechDataService dataService;
 
+    @Mock
+    private JdoTransactionManager transactionManager;
+
     @Captor
     private ArgumentCaptor<Record__History> recordHistoryCaptor;
 
@@ -166,4 +172,19 @@ public class HistoryServiceTest {
         assertEquals(instance.getValue(), history.getValue());
         assertEquals(instance.getDate(), history.getDate());
     }
+
+    @Test
+    public void shouldPurgeOldRevisionsExceptTheLatestOnes() {
+        DateTime olderThan = DateTime.now().minusMonths(6);
+
+        doReturn(Arrays.asList(new Object[]{1L, 10L}, new Object[]{2L, 10L}, new Object[]{3L, 11L}))
+                .when(query).execute(anyObject(), anyObject());
+        // the latest revisions of the instances
+        doReturn(Arrays.asList(2L, 5L)).when(query).execute(anyObject());
+
+        historyService.purgeHistory(Arrays.asList(Record.class.getName()), olderThan);
+
+        verify(query).execute(0L, olderThan);
+        verify(query).deletePersistentAll(Arrays.asList(1L, 3L));
+    }
 }
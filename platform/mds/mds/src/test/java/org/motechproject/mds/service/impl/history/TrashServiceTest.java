@@ -28,10 +28,14 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.wiring.BundleWiring;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.orm.jdo.JdoTransactionManager;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -43,6 +47,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
 import static org.motechproject.testing.utils.TimeFaker.stopFakingTime;
 
@@ -62,6 +67,9 @@ public class TrashServiceTest {
     @Mock
     private PersistenceManagerFactory factory;
 
+    @Mock
+    private JdoTransactionManager transactionManager;
+
     @Mock
     private PersistenceManager manager;
 
@@ -97,6 +105,7 @@ public class TrashServiceTest {
         ((TrashServiceImpl) trashService).setMdsSchedulerService(schedulerService);
         ((TrashServiceImpl) trashService).setPersistenceManagerFactory(factory);
         ((TrashServiceImpl) trashService).setBundleContext(bundleContext);
+        ((TrashServiceImpl) trashService).setTransactionManager(transactionManager);
 
         doReturn(manager).when(factory).getPersistenceManager();
         doReturn(query).when(manager).newQuery(Record.class);
@@ -180,9 +189,29 @@ public class TrashServiceTest {
         assertEquals(captor.getValue(), trash.getValue());
     }
 
+    @Test
+    public void shouldEmptyTrashInBatches() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+
+        List<Long> firstBatch = new ArrayList<>();
+        for (long id = 1; id <= BasePersistenceService.DELETE_BATCH_SIZE; ++id) {
+            firstBatch.add(id);
+        }
+        List<Long> secondBatch = Arrays.asList(1001L, 1002L);
+
+        when(query.execute()).thenReturn(firstBatch, secondBatch);
+
+        trashService.emptyTrash(Arrays.asList(Record.class.getName()));
+
+        verify(query).deletePersistentAll(firstBatch);
+        verify(query).deletePersistentAll(secondBatch);
+    }
+
     @Test
     public void shouldNotScheduleJobIfNotTrashMode() throws Exception {
         doReturn(DeleteMode.DELETE).when(settingsService).getDeleteMode();
+        doReturn(false).when(settingsService).isHistoryRetention();
 
         trashService.scheduleEmptyTrashJob();
 
@@ -194,6 +223,7 @@ public class TrashServiceTest {
     public void shouldNotScheduleJobIfEmptyTrashPropertyIsNotSet() throws Exception {
         doReturn(DeleteMode.TRASH).when(settingsService).getDeleteMode();
         doReturn(false).when(settingsService).isEmptyTrash();
+        doReturn(false).when(settingsService).isHistoryRetention();
 
         trashService.scheduleEmptyTrashJob();
 
@@ -221,4 +251,17 @@ public class TrashServiceTest {
             stopFakingTime();
         }
     }
+
+    @Test
+    public void shouldScheduleJobIfHistoryRetentionIsEnabled() throws Exception {
+        doReturn(DeleteMode.DELETE).when(settingsService).getDeleteMode();
+        doReturn(true).when(settingsService).isHistoryRetention();
+        doReturn(1).when(settingsService).getTimeValue();
+        doReturn(TimeUnit.DAYS).when(settingsService).getTimeUnit();
+
+        trashService.scheduleEmptyTrashJob();
+
+        verify(schedulerService).unscheduleRepeatingJob();
+        verify(schedulerService).scheduleRepeatingJob(TimeUnit.DAYS.inMillis());
+    }
 }